@@ -26,6 +26,7 @@ import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.cmp.KeyGenerator;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorInstance;
 import org.apache.openejb.core.interceptor.InterceptorStack;
@@ -332,6 +333,7 @@ public class BeanContext extends DeploymentContext {
     private final Set<InterceptorData> instanceScopedInterceptors = new HashSet<>();
     private final List<InterceptorInstance> systemInterceptors = new ArrayList<>();
     private final List<InterceptorInstance> userInterceptors = new ArrayList<>();
+    private volatile int interceptorsVersion;
     private final List<Injection> injections = new ArrayList<>();
     private final Map<Class, InterfaceType> interfaces = new HashMap<>();
     private final Map<Class, ExceptionType> exceptions = new ConcurrentHashMap<>();
@@ -1126,14 +1128,17 @@ public class BeanContext extends DeploymentContext {
 
     public void addSystemInterceptor(final Object interceptor) {
         systemInterceptors.add(new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public void addFirstSystemInterceptor(final Object interceptor) {
         systemInterceptors.add(0, new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public void addUserInterceptor(final Object interceptor) {
         userInterceptors.add(new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public List<InterceptorInstance> getUserAndSystemInterceptors() {
@@ -1174,12 +1179,26 @@ public class BeanContext extends DeploymentContext {
         this.cdiInterceptors.clear();
         this.cdiInterceptors.addAll(cdiInterceptors);
         this.instanceScopedInterceptors.addAll(cdiInterceptors);
+        interceptorsChanged();
     }
 
     public List<InterceptorData> getMethodInterceptors(final Method method) {
         return getMethodContext(method).getInterceptors();
     }
 
+    /**
+     * @param method    the bean method
+     * @param operation BUSINESS or TIMEOUT
+     * @return the interceptors of the method resolved once and shared by all the bean instances
+     */
+    public InterceptorChain getMethodInterceptorChain(final Method method, final Operation operation) {
+        return getMethodContext(method).getInterceptorChain(operation, interceptorsVersion);
+    }
+
+    void interceptorsChanged() {
+        interceptorsVersion++;
+    }
+
     public List<InterceptorData> getInterceptorData() {
         final List<InterceptorData> datas = new ArrayList<>(getUserAndSystemInterceptors().size());
         for (final InterceptorInstance instance : getUserAndSystemInterceptors()) {
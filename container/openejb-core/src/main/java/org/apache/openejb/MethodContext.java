@@ -17,6 +17,8 @@
 
 package org.apache.openejb;
 
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.timer.ScheduleData;
 import org.apache.openejb.core.transaction.TransactionType;
@@ -43,6 +45,8 @@ public class MethodContext {
     private TransactionType transactionType;
     private Duration accessTimeout;
     private boolean asynchronous;
+    private volatile InterceptorChain businessChain;
+    private volatile InterceptorChain timeoutChain;
 
     public MethodContext(final BeanContext beanContext, final Method beanMethod) {
         this.beanContext = beanContext;
@@ -51,6 +55,7 @@ public class MethodContext {
 
     public void setSelfInterception(final InterceptorData data) {
         self = data;
+        beanContext.interceptorsChanged();
     }
 
     public void setAccessTimeout(final Duration accessTimeout) {
@@ -71,11 +76,13 @@ public class MethodContext {
 
     public void addCdiInterceptor(final InterceptorData data) {
         cdiInterceptors.add(data);
+        beanContext.interceptorsChanged();
     }
 
     public void setInterceptors(final List<InterceptorData> interceptors) {
         this.interceptors.clear();
         this.interceptors.addAll(interceptors);
+        beanContext.interceptorsChanged();
     }
 
     public List<InterceptorData> getInterceptors() {
@@ -89,6 +96,31 @@ public class MethodContext {
         return datas;
     }
 
+    /**
+     * @param operation BUSINESS or TIMEOUT
+     * @param version   interceptors version of the bean, a chain compiled for an older one is rebuilt
+     * @return the compiled interceptor chain of this method
+     */
+    public InterceptorChain getInterceptorChain(final Operation operation, final int version) {
+        final boolean timeout = operation == Operation.TIMEOUT;
+        if (!timeout && operation != Operation.BUSINESS) {
+            throw new IllegalArgumentException("Only business and timeout chains are cached: " + operation);
+        }
+
+        final InterceptorChain chain = timeout ? timeoutChain : businessChain;
+        if (chain != null && chain.getVersion() == version) {
+            return chain;
+        }
+
+        final InterceptorChain compiled = InterceptorChain.compile(beanMethod, operation, getInterceptors(), version);
+        if (timeout) {
+            timeoutChain = compiled;
+        } else {
+            businessChain = compiled;
+        }
+        return compiled;
+    }
+
     public LockType getLockType() {
         return lockType != null ? lockType : beanContext.getLockType();
     }
@@ -33,6 +33,7 @@ import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.monitoring.DynamicMBeanWrapper;
 import org.apache.openejb.monitoring.LocalMBeanServer;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.persistence.NoTxStatistics;
 import org.apache.openejb.persistence.PersistenceUnitInfoImpl;
 import org.apache.openejb.persistence.QueryLogEntityManager;
 import org.apache.openejb.spi.ContainerSystem;
@@ -92,6 +93,7 @@ public class ReloadableEntityManagerFactory implements EntityManagerFactory, Ser
 
     private final boolean logCriteriaJpql;
     private final String logCriteriaJpqlLevel;
+    private final NoTxStatistics noTxStatistics = new NoTxStatistics();
 
     public ReloadableEntityManagerFactory(final ClassLoader cl, final EntityManagerFactoryCallable callable, final PersistenceUnitInfoImpl unitInfo) {
         classLoader = cl;
@@ -275,6 +277,10 @@ public class ReloadableEntityManagerFactory implements EntityManagerFactory, Ser
         return delegate();
     }
 
+    public NoTxStatistics getNoTxStatistics() {
+        return noTxStatistics;
+    }
+
     public void register() throws OpenEJBException {
         if (!LocalMBeanServer.isJMXActive()) {
             return;
@@ -655,6 +661,30 @@ public class ReloadableEntityManagerFactory implements EntityManagerFactory, Ser
             return reloadableEntityManagerFactory.getExcludeUnlistedClasses();
         }
 
+        @ManagedAttribute
+        @Description("entity managers created for reads outside of a transaction")
+        public long getNoTxEntityManagersCreated() {
+            return reloadableEntityManagerFactory.noTxStatistics.getCreated();
+        }
+
+        @ManagedAttribute
+        @Description("entity manager usages outside of a transaction")
+        public long getNoTxReads() {
+            return reloadableEntityManagerFactory.noTxStatistics.getReads();
+        }
+
+        @ManagedAttribute
+        @Description("invocations which used an invocation scoped entity manager outside of a transaction")
+        public long getNoTxInvocations() {
+            return reloadableEntityManagerFactory.noTxStatistics.getInvocations();
+        }
+
+        @ManagedAttribute
+        @Description("entity managers created per read outside of a transaction")
+        public double getNoTxEntityManagersPerRead() {
+            return reloadableEntityManagerFactory.noTxStatistics.getCreatedPerRead();
+        }
+
         @ManagedAttribute
         @Description("get all properties")
         public TabularData getProperties() {
@@ -25,6 +25,7 @@ import org.apache.openejb.loader.Options;
 import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.ExecutorBuilder;
+import org.apache.openejb.util.executor.VirtualThreadExecutor;
 
 import java.rmi.NoSuchObjectException;
 import java.util.concurrent.BlockingQueue;
@@ -51,8 +52,12 @@ public class AsynchronousPool {
     private final Duration awaitDuration;
 
     public AsynchronousPool(final ThreadPoolExecutor threadPoolExecutor, final Duration awaitDuration) {
-        this.blockingQueue = threadPoolExecutor.getQueue();
-        this.executor = threadPoolExecutor;
+        this((ExecutorService) threadPoolExecutor, awaitDuration);
+    }
+
+    public AsynchronousPool(final ExecutorService executor, final Duration awaitDuration) {
+        this.blockingQueue = executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue() : null;
+        this.executor = executor;
         this.awaitDuration = awaitDuration;
     }
 
@@ -64,7 +69,7 @@ public class AsynchronousPool {
             .threadFactory(new DaemonThreadFactory("@Asynchronous", appContext.getId()));
 
         return new AsynchronousPool(
-            builder.build(options),
+            builder.buildExecutor(options),
             options.get("AsynchronousPool.ShutdownWaitDuration", new Duration(1, TimeUnit.MINUTES)));
     }
 
@@ -85,6 +90,13 @@ public class AsynchronousPool {
         }
     }
 
+    private boolean dequeue(final Runnable task) {
+        if (blockingQueue != null) {
+            return blockingQueue.remove(task);
+        }
+        return executor instanceof VirtualThreadExecutor && ((VirtualThreadExecutor) executor).remove(task);
+    }
+
     public void stop() {
         executor.shutdown();
         try { // shouldn't really wait
@@ -158,7 +170,7 @@ public class AsynchronousPool {
             if (canceled) {
                 return true;
             }
-            if (blockingQueue.remove((Runnable) target)) {
+            if (dequeue((Runnable) target)) {
                 //We successfully remove the task from the queue
                 canceled = true;
                 return true;
@@ -82,7 +82,7 @@ public class ConfigurableClasspathArchive extends CompositeArchive implements Sc
         try {
             final URL scanXml = new URLClassLoader(new URL[]{location}, new EmptyResourcesClassLoader()).getResource(name);
             if (scanXml == null && !forceDescriptor) {
-                return ClasspathArchive.archive(loader, location);
+                return ScanIndexArchive.archive(loader, location);
             } else if (scanXml == null) {
                 return new ClassesArchive();
             }
@@ -102,7 +102,7 @@ public class ConfigurableClasspathArchive extends CompositeArchive implements Sc
             if (forceDescriptor) {
                 return new ClassesArchive();
             }
-            return ClasspathArchive.archive(loader, location);
+            return ScanIndexArchive.archive(loader, location);
         }
     }
 
@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.xbean.asm7.ClassReader;
+import org.apache.xbean.asm7.ClassWriter;
+import org.apache.xbean.finder.archive.Archive;
+import org.apache.xbean.finder.archive.ClasspathArchive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Archive of a jar reading the classes from an index built by the first scan of this jar.
+ *
+ * The index keeps, for each class of the jar, its bytecode without the method bodies nor the
+ * debug information: the annotations of the class, methods, fields and parameters as well as the
+ * parent class and interfaces are all the finder reads. It is stored once per jar content
+ * (name, size and checksum) so it is reused after a restart and by the applications sharing a library.
+ *
+ * Enabled with openejb.scanning.index=true, the indexes are written in
+ * openejb.scanning.index.directory (default ${openejb.base}/work/scan-index). The directory
+ * also records the index used by each jar path, an index no path uses anymore is deleted.
+ */
+public class ScanIndexArchive implements Archive {
+    public static final String ACTIVE = "openejb.scanning.index";
+    public static final String DIRECTORY = "openejb.scanning.index.directory";
+
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ScanIndexArchive.class);
+    private static final int MAGIC = 0x4f534931; // OSI1
+    private static final String USES = "uses.properties"; // jar path -> index name
+
+    // checksums already computed for a path, size and last modified date
+    private static final Map<String, String> CHECKSUMS = new ConcurrentHashMap<>();
+
+    private final Archive delegate;
+    private final File index;
+    private final Map<String, long[]> positions; // name -> offset, length
+    private final List<String> names;
+    private final int[] lengths;
+    private final long headerSize;
+
+    private ScanIndexArchive(final Archive delegate, final File index) throws IOException {
+        this.delegate = delegate;
+        this.index = index;
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(IO.read(index)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a scan index: " + index);
+            }
+
+            final int count = in.readInt();
+            this.names = new ArrayList<>(count);
+            this.positions = new HashMap<>(count * 2);
+
+            this.lengths = new int[count];
+            long header = 8;
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                lengths[i] = in.readInt();
+                names.add(name);
+                header += 2 + utfLength(name) + 4;
+            }
+            this.headerSize = header;
+
+            long offset = headerSize;
+            for (int i = 0; i < count; i++) {
+                positions.put(names.get(i), new long[]{offset, lengths[i]});
+                offset += lengths[i];
+            }
+        }
+    }
+
+    public static Archive archive(final ClassLoader loader, final URL location) {
+        final Archive archive = ClasspathArchive.archive(loader, location);
+        if (!SystemInstance.get().getOptions().get(ACTIVE, false)) {
+            return archive;
+        }
+
+        if ("jar".equals(location.getProtocol()) && !location.getFile().endsWith("!/")) { // a folder of the jar only
+            return archive;
+        }
+
+        final File jar;
+        try {
+            jar = Files.toFile(location);
+        } catch (final RuntimeException e) {
+            return archive;
+        }
+        if (!jar.isFile() || !jar.getName().endsWith(".jar")) { // exploded folders change too often
+            return archive;
+        }
+
+        try {
+            final File index = new File(directory(), jar.getName() + "-" + jar.length() + "-" + checksum(jar) + ".idx");
+            if (!index.isFile()) {
+                write(archive, index);
+            }
+            use(jar, index);
+            return new ScanIndexArchive(archive, index);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.warning("Can't use the scan index of " + jar.getAbsolutePath() + ", scanning it: " + e.getMessage());
+            return archive;
+        }
+    }
+
+    @Override
+    public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+        final long[] position = positions.get(className);
+        if (position == null) {
+            return delegate.getBytecode(className);
+        }
+
+        final byte[] bytes = new byte[(int) position[1]];
+        try (final RandomAccessFile raf = new RandomAccessFile(index, "r")) {
+            raf.seek(position[0]);
+            raf.readFully(bytes);
+        } catch (final IOException e) { // index of a jar replaced meanwhile
+            return delegate.getBytecode(className);
+        }
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public Class<?> loadClass(final String className) throws ClassNotFoundException {
+        return delegate.loadClass(className);
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        if (names.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+
+        // the classes are read at once, in the order of the jar, so a caller stopping early leaks nothing
+        final List<Entry> entries = new ArrayList<>(names.size());
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(IO.read(index)))) {
+            in.readFully(new byte[(int) headerSize]);
+            for (int i = 0; i < names.size(); i++) {
+                final String name = names.get(i);
+                final byte[] bytes = new byte[lengths[i]];
+                in.readFully(bytes);
+                entries.add(new Entry() {
+                    @Override
+                    public String getName() {
+                        return name;
+                    }
+
+                    @Override
+                    public InputStream getBytecode() {
+                        return new ByteArrayInputStream(bytes);
+                    }
+                });
+            }
+        } catch (final IOException e) { // index removed meanwhile
+            return delegate.iterator();
+        }
+        return Collections.unmodifiableList(entries).iterator();
+    }
+
+    private static void write(final Archive archive, final File index) throws IOException {
+        final List<String> names = new ArrayList<>();
+        final List<byte[]> classes = new ArrayList<>();
+        for (final Entry entry : archive) {
+            final byte[] bytecode;
+            try (final InputStream in = entry.getBytecode()) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                IO.copy(in, out);
+                bytecode = out.toByteArray();
+            }
+            names.add(entry.getName());
+            classes.add(strip(bytecode));
+        }
+
+        // written aside then moved so a concurrent deployment never reads a partial index
+        final File tmp = File.createTempFile(index.getName(), ".tmp", index.getParentFile());
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(IO.write(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeInt(classes.get(i).length);
+            }
+            for (final byte[] bytes : classes) {
+                out.write(bytes);
+            }
+        }
+
+        try {
+            java.nio.file.Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            java.nio.file.Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Records the index of this jar path and deletes the indexes no path uses anymore:
+     * the previous one of this path if the jar changed and the ones of the removed jars.
+     */
+    private static synchronized void use(final File jar, final File index) throws IOException {
+        final File directory = index.getParentFile();
+        final File uses = new File(directory, USES);
+        final Properties paths = uses.isFile() ? IO.readProperties(uses) : new Properties();
+
+        final String path = jar.getAbsolutePath();
+        if (index.getName().equals(paths.getProperty(path))) {
+            return;
+        }
+
+        final Set<String> previous = new HashSet<>(paths.stringPropertyNames().size());
+        for (final String name : paths.stringPropertyNames()) {
+            previous.add(paths.getProperty(name));
+        }
+
+        paths.setProperty(path, index.getName());
+        for (final String name : paths.stringPropertyNames()) {
+            if (!new File(name).isFile()) {
+                paths.remove(name);
+            }
+        }
+
+        final File tmp = File.createTempFile(USES, ".tmp", directory);
+        try (final OutputStream out = IO.write(tmp)) {
+            paths.store(out, "jar path = scan index");
+        }
+        java.nio.file.Files.move(tmp.toPath(), uses.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        previous.removeAll(paths.values());
+        for (final String unused : previous) {
+            final File file = new File(directory, unused);
+            if (!file.delete() && file.exists()) {
+                LOGGER.debug("Can't delete the unused scan index " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static byte[] strip(final byte[] bytecode) {
+        try {
+            final ClassWriter writer = new ClassWriter(0);
+            new ClassReader(bytecode).accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return writer.toByteArray();
+        } catch (final RuntimeException e) { // let the finder handle it as it would without the index
+            return bytecode;
+        }
+    }
+
+    private static File directory() throws IOException {
+        final String configured = SystemInstance.get().getProperty(DIRECTORY);
+        final File directory = configured != null ? new File(configured) : new File(SystemInstance.get().getBase().getDirectory("work", true), "scan-index");
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Can't create " + directory.getAbsolutePath());
+        }
+        return directory;
+    }
+
+    private static String checksum(final File jar) throws IOException {
+        final String key = jar.getAbsolutePath() + '|' + jar.length() + '|' + jar.lastModified();
+        final String known = CHECKSUMS.get(key);
+        if (known != null) {
+            return known;
+        }
+
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[64 * 1024];
+        try (final InputStream in = IO.read(jar)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+
+        final String checksum = Long.toHexString(crc.getValue());
+        CHECKSUMS.put(key, checksum);
+        return checksum;
+    }
+
+    private static int utfLength(final String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+}
@@ -37,6 +37,8 @@ public class SingletonContainerBuilder extends Container {
     @XmlJavaTypeAdapter(DurationAdapter.class)
     @XmlAttribute
     private Duration accessTimeout = Duration.parse("30 seconds");
+    @XmlAttribute
+    private String lockEngine = "readwrite";
 
     public SingletonContainerBuilder() {
         setClassName("org.apache.openejb.core.singleton.SingletonContainer");
@@ -73,6 +75,19 @@ public class SingletonContainerBuilder extends Container {
         setAccessTimeout(new Duration(time, unit));
     }
 
+    public SingletonContainerBuilder withLockEngine(final String lockEngine) {
+        this.lockEngine = lockEngine;
+        return this;
+    }
+
+    public void setLockEngine(final String lockEngine) {
+        this.lockEngine = lockEngine;
+    }
+
+    public String getLockEngine() {
+        return lockEngine;
+    }
+
     public Properties getProperties() {
         return Builders.getProperties(this);
     }
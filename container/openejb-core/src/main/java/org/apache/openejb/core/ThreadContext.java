@@ -22,18 +22,44 @@ import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
-import java.util.Collections;
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * A context is confined to the thread invoking the bean (or handed over to another thread
+ * before being entered there) so its data is not synchronized.
+ *
+ * The data types get an index the first time they are used, the first SLOTS of them are
+ * then stored in an array, the others in a map created on demand.
+ */
 public class ThreadContext {
 
     private static final Logger log = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     private static final ThreadLocal<ThreadContext> threadStorage = new ThreadLocal<>();
-    private static final CopyOnWriteArraySet<ThreadContextListener> listeners = new CopyOnWriteArraySet<>();
     private static final ThreadLocal<AtomicBoolean> asynchronousCancelled = new ThreadLocal<>();
+    private static final ThreadContextListener[] NO_LISTENER = new ThreadContextListener[0];
+    private static volatile ThreadContextListener[] listeners = NO_LISTENER; // copy on write, iterated without allocation
+
+    private static final int SLOTS = 16;
+    private static final AtomicInteger nextSlot = new AtomicInteger();
+    private static final ClassValue<Integer> slots = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(final Class<?> type) {
+            // can be called concurrently for a type, only one value is kept so a slot can be lost, no big deal
+            final int slot = nextSlot.getAndIncrement();
+            return slot < SLOTS ? slot : -1;
+        }
+    };
+
+    static { // set on each invocation so always in a slot
+        slots.get(Method.class);
+        slots.get(InvocationContext.class);
+    }
 
     public static ThreadContext getThreadContext() {
         return threadStorage.get();
@@ -46,8 +72,12 @@ public class ThreadContext {
 
         // set the thread context class loader
         final Thread thread = Thread.currentThread();
-        newContext.oldClassLoader = thread.getContextClassLoader();
-        thread.setContextClassLoader(newContext.beanContext.getClassLoader());
+        final ClassLoader oldClassLoader = thread.getContextClassLoader();
+        final ClassLoader newClassLoader = newContext.beanContext.getClassLoader();
+        newContext.oldClassLoader = oldClassLoader;
+        if (oldClassLoader != newClassLoader) { // nested calls in the same application
+            thread.setContextClassLoader(newClassLoader);
+        }
 
         // update thread local
         final ThreadContext oldContext = threadStorage.get();
@@ -73,7 +103,10 @@ public class ThreadContext {
         }
 
         // set the thread context class loader back
-        Thread.currentThread().setContextClassLoader(exitingContext.oldClassLoader);
+        final Thread thread = Thread.currentThread();
+        if (thread.getContextClassLoader() != exitingContext.oldClassLoader) {
+            thread.setContextClassLoader(exitingContext.oldClassLoader);
+        }
         exitingContext.oldClassLoader = null;
 
         // update thread local
@@ -101,17 +134,40 @@ public class ThreadContext {
         asynchronousCancelled.remove();
     }
 
-    public static void addThreadContextListener(final ThreadContextListener listener) {
-        listeners.add(listener);
+    public static synchronized void addThreadContextListener(final ThreadContextListener listener) {
+        final ThreadContextListener[] current = listeners;
+        for (final ThreadContextListener existing : current) {
+            if (existing.equals(listener)) {
+                return;
+            }
+        }
+
+        final ThreadContextListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
     }
 
-    public static void removeThreadContextListener(final ThreadContextListener listener) {
-        listeners.remove(listener);
+    public static synchronized void removeThreadContextListener(final ThreadContextListener listener) {
+        final ThreadContextListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(listener)) {
+                if (current.length == 1) {
+                    listeners = NO_LISTENER;
+                } else {
+                    final ThreadContextListener[] updated = new ThreadContextListener[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    listeners = updated;
+                }
+                return;
+            }
+        }
     }
 
     private final BeanContext beanContext;
     private final Object primaryKey;
-    private final Map<Class, Object> data = Collections.synchronizedMap(new HashMap<>());
+    private Object[] slotValues; // created on the first set
+    private Map<Class, Object> overflow; // types without a slot
     private ClassLoader oldClassLoader;
     private Operation currentOperation;
     private Class invokedInterface;
@@ -139,7 +195,8 @@ public class ThreadContext {
     public ThreadContext(final ThreadContext that) {
         this.beanContext = that.beanContext;
         this.primaryKey = that.primaryKey;
-        this.data.putAll(that.data);
+        this.slotValues = that.slotValues == null ? null : that.slotValues.clone();
+        this.overflow = that.overflow == null ? null : new HashMap<>(that.overflow);
         this.oldClassLoader = that.oldClassLoader;
     }
 
@@ -185,17 +242,55 @@ public class ThreadContext {
 
     @SuppressWarnings({"unchecked"})
     public <T> T get(final Class<T> type) {
-        return (T) data.get(type);
+        final int slot = slots.get(type);
+        if (slot >= 0) {
+            return slotValues == null ? null : (T) slotValues[slot];
+        }
+        return overflow == null ? null : (T) overflow.get(type);
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T set(final Class<T> type, final T value) {
-        return (T) data.put(type, value);
+        final int slot = slots.get(type);
+        if (slot >= 0) {
+            if (slotValues == null) {
+                slotValues = new Object[SLOTS];
+            }
+            final Object old = slotValues[slot];
+            slotValues[slot] = value;
+            return (T) old;
+        }
+
+        if (overflow == null) {
+            overflow = new HashMap<>();
+        }
+        return (T) overflow.put(type, value);
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T remove(final Class<T> type) {
-        return (T) data.remove(type);
+        final int slot = slots.get(type);
+        if (slot >= 0) {
+            if (slotValues == null) {
+                return null;
+            }
+            final Object old = slotValues[slot];
+            slotValues[slot] = null;
+            return (T) old;
+        }
+        return overflow == null ? null : (T) overflow.remove(type);
+    }
+
+    private int dataSize() {
+        int size = overflow == null ? 0 : overflow.size();
+        if (slotValues != null) {
+            for (final Object value : slotValues) {
+                if (value != null) {
+                    size++;
+                }
+            }
+        }
+        return size;
     }
 
     public boolean isDiscardInstance() {
@@ -211,7 +306,7 @@ public class ThreadContext {
         return "ThreadContext{" +
             "beanContext=" + beanContext.getId() +
             ", primaryKey=" + primaryKey +
-            ", data=" + data.size() +
+            ", data=" + dataSize() +
             ", oldClassLoader=" + oldClassLoader +
             ", currentOperation=" + currentOperation +
             ", invokedInterface=" + invokedInterface +
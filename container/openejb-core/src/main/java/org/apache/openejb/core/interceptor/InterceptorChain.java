@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
+
+import javax.interceptor.InvocationContext;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interceptors and target of a business (or timeout) method resolved once
+ * per bean method instead of once per invocation.
+ *
+ * The chain does not depend on the bean instance so it is shared by all
+ * the instances of a bean, an invocation only walks an array and calls
+ * method handles, the interceptor instances being looked up by class
+ * in the instance map as {@link InterceptorStack} does.
+ */
+public final class InterceptorChain {
+    private static final MethodType AROUND = MethodType.methodType(Object.class, Object.class, InvocationContext.class);
+    private static final MethodType SPREAD = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    private final Operation operation;
+    private final Method method;
+    private final MethodHandle target;
+    private final boolean dropParameters;
+    private final Step[] steps;
+    private final int version;
+
+    private InterceptorChain(final Operation operation, final Method method, final Step[] steps, final int version) {
+        this.operation = operation;
+        this.method = method;
+        this.steps = steps;
+        this.version = version;
+        this.target = method == null ? null : spread(method);
+
+        // EJB 3.1, a timeout method can omit the Timer parameter which is still
+        // passed to the invocation since InvocationContext.getTimer() needs it
+        this.dropParameters = method != null && operation == Operation.TIMEOUT && method.getParameterTypes().length == 0;
+    }
+
+    public static InterceptorChain compile(final Method method, final Operation operation, final List<InterceptorData> interceptorDatas, final int version) {
+        if (interceptorDatas == null) {
+            throw new NullPointerException("interceptorDatas is null");
+        }
+
+        final List<Step> steps = new ArrayList<>(interceptorDatas.size());
+        for (final InterceptorData interceptorData : interceptorDatas) {
+            final Class<?> interceptorClass = interceptorData.getInterceptorClass();
+            for (final Method interceptorMethod : interceptorData.getMethods(operation)) {
+                steps.add(new Step(interceptorClass, interceptorMethod));
+            }
+        }
+        return new InterceptorChain(operation, method, steps.toArray(new Step[steps.size()]), version);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return steps.length;
+    }
+
+    public InvocationContext createInvocationContext(final Object beanInstance, final Map<String, Object> interceptorInstances, final Object... parameters) {
+        if (interceptorInstances == null) {
+            throw new NullPointerException("interceptorInstances is null");
+        }
+        return new ChainedInvocationContext(this, beanInstance, interceptorInstances, parameters);
+    }
+
+    private Object proceed(final ChainedInvocationContext context, final int position) throws Exception {
+        try {
+            if (position < steps.length) {
+                final Step step = steps[position];
+                final Object instance = step.instance(context.interceptorInstances);
+                if (step.around) {
+                    return (Object) step.handle.invokeExact(instance, (InvocationContext) context);
+                }
+
+                // callback style method, we need to call proceed so callbacks in subclasses get invoked
+                step.handle.invoke(instance, context.getParameters());
+                return context.proceed();
+            }
+            if (target == null) {
+                return null;
+            }
+            final Object[] parameters = dropParameters ? NO_PARAMETERS : context.getParameters();
+            return (Object) target.invokeExact(context.getTarget(), parameters);
+        } catch (final Exception | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    private static MethodHandle spread(final Method method) {
+        return unreflect(method).asSpreader(Object[].class, method.getParameterTypes().length).asType(SPREAD);
+    }
+
+    private static MethodHandle unreflect(final Method method) {
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflect(method);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException("Can't access " + method, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InterceptorChain{operation=" + operation + ", method=" + method + ", interceptors=" + steps.length + '}';
+    }
+
+    private static final class Step {
+        private final String interceptorClass;
+        private final MethodHandle handle;
+        private final boolean around;
+        private final boolean onHandler;
+
+        private Step(final Class<?> interceptorClass, final Method method) {
+            this.interceptorClass = interceptorClass.getName();
+            this.around = method.getParameterTypes().length == 1 && method.getParameterTypes()[0] == InvocationContext.class;
+            this.handle = around ? unreflect(method).asType(AROUND) : spread(method);
+
+            // dynamic implementations (see DynamicProxyImplFactory) declare the method on their handler
+            this.onHandler = !method.getDeclaringClass().isAssignableFrom(interceptorClass);
+        }
+
+        private Object instance(final Map<String, Object> interceptorInstances) {
+            final Object interceptorInstance = interceptorInstances.get(interceptorClass);
+            if (interceptorInstance == null) {
+                throw new IllegalArgumentException("No interceptor of type " + interceptorClass);
+            }
+            if (onHandler) {
+                final Object handler = DynamicProxyImplFactory.realHandler(interceptorInstance);
+                if (handler != null) {
+                    return handler;
+                }
+            }
+            return interceptorInstance;
+        }
+    }
+
+    private static final class ChainedInvocationContext extends ReflectionInvocationContext {
+        private final InterceptorChain chain;
+        private final Map<String, Object> interceptorInstances;
+        private int position;
+
+        private ChainedInvocationContext(final InterceptorChain chain, final Object target, final Map<String, Object> interceptorInstances, final Object... parameters) {
+            super(chain.operation, target, chain.method, parameters);
+            this.chain = chain;
+            this.interceptorInstances = interceptorInstances;
+        }
+
+        @Override
+        public Object proceed() throws Exception {
+            return chain.proceed(this, position++);
+        }
+    }
+}
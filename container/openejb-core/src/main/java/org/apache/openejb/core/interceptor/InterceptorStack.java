@@ -36,6 +36,26 @@ public class InterceptorStack {
     private final List<Interceptor> interceptors;
     private final Method targetMethod;
     private final Operation operation;
+    private final InterceptorChain chain;
+    private final Map<String, Object> interceptorInstances;
+
+    /**
+     * Uses a chain resolved once for the bean method, see {@link org.apache.openejb.BeanContext#getMethodInterceptorChain(Method, Operation)}.
+     */
+    public InterceptorStack(final Object beanInstance, final InterceptorChain chain, final Map<String, Object> interceptorInstances) {
+        if (chain == null) {
+            throw new NullPointerException("chain is null");
+        }
+        if (interceptorInstances == null) {
+            throw new NullPointerException("interceptorInstances is null");
+        }
+        this.beanInstance = beanInstance;
+        this.targetMethod = chain.getMethod();
+        this.operation = chain.getOperation();
+        this.chain = chain;
+        this.interceptorInstances = interceptorInstances;
+        this.interceptors = null;
+    }
 
     public InterceptorStack(final Object beanInstance, final Method targetMethod, final Operation operation, final List<InterceptorData> interceptorDatas, final Map<String, Object> interceptorInstances) {
         if (interceptorDatas == null) {
@@ -47,6 +67,8 @@ public class InterceptorStack {
         this.beanInstance = beanInstance;
         this.targetMethod = targetMethod;
         this.operation = operation;
+        this.chain = null;
+        this.interceptorInstances = interceptorInstances;
 
         interceptors = new ArrayList<>(interceptorDatas.size());
 
@@ -73,19 +95,23 @@ public class InterceptorStack {
     }
 
     public InvocationContext createInvocationContext(final Object... parameters) {
+        if (chain != null) {
+            return chain.createInvocationContext(beanInstance, interceptorInstances, parameters);
+        }
         return new ReflectionInvocationContext(operation, interceptors, beanInstance, targetMethod, parameters);
     }
 
     public Object invoke(final Object... parameters) throws Exception {
+        final ThreadContext threadContext = ThreadContext.getThreadContext();
         try {
             final InvocationContext invocationContext = createInvocationContext(parameters);
-            if (ThreadContext.getThreadContext() != null) {
-                ThreadContext.getThreadContext().set(InvocationContext.class, invocationContext);
+            if (threadContext != null) {
+                threadContext.set(InvocationContext.class, invocationContext);
             }
             return invocationContext.proceed();
         } finally {
-            if (ThreadContext.getThreadContext() != null) {
-                ThreadContext.getThreadContext().remove(InvocationContext.class);
+            if (threadContext != null) {
+                threadContext.remove(InvocationContext.class);
             }
         }
     }
@@ -24,6 +24,7 @@ import javax.interceptor.InvocationContext;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -37,8 +38,7 @@ public class ReflectionInvocationContext implements InvocationContext {
     private final Object target;
     private final Method method;
     private final Object[] parameters;
-    private final Map<String, Object> contextData = new TreeMap<>();
-    private final Class<?>[] parameterTypes;
+    private Map<String, Object> contextData;
 
     private final Operation operation;
 
@@ -58,12 +58,14 @@ public class ReflectionInvocationContext implements InvocationContext {
         this.target = target;
         this.method = method;
         this.parameters = parameters;
+    }
 
-        if (method == null) {
-            parameterTypes = new Class[0];
-        } else {
-            parameterTypes = method.getParameterTypes();
-        }
+    /**
+     * For subclasses handling the interceptors themselves,
+     * {@link #proceed()} must be overriden.
+     */
+    protected ReflectionInvocationContext(final Operation operation, final Object target, final Method method, final Object... parameters) {
+        this(operation, Collections.<Interceptor>emptyList(), target, method, parameters);
     }
 
     @Override
@@ -119,6 +121,7 @@ public class ReflectionInvocationContext implements InvocationContext {
         if (parameters == null) {
             throw new IllegalArgumentException("parameters is null");
         }
+        final Class<?>[] parameterTypes = method == null ? new Class<?>[0] : method.getParameterTypes();
         if (parameters.length != this.parameters.length) {
             throw new IllegalArgumentException("Expected " + this.parameters.length + " parameters, but only got " + parameters.length + " parameters");
         }
@@ -147,6 +150,9 @@ public class ReflectionInvocationContext implements InvocationContext {
 
     @Override
     public Map<String, Object> getContextData() {
+        if (contextData == null) { // most invocations never read it
+            contextData = new TreeMap<>();
+        }
         return contextData;
     }
 
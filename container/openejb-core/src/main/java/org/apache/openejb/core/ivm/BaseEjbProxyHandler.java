@@ -21,11 +21,13 @@ import org.apache.openejb.BeanContext;
 import org.apache.openejb.BeanType;
 import org.apache.openejb.InterfaceType;
 import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.RpcContainer;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.ThreadContextListener;
+import org.apache.openejb.core.rmi.BlacklistClassResolver;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.spi.SecurityService;
@@ -48,10 +50,7 @@ import javax.transaction.TransactionManager;
 import javax.transaction.TransactionRequiredException;
 import javax.transaction.TransactionRolledbackException;
 import javax.transaction.TransactionSynchronizationRegistry;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
@@ -60,7 +59,6 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.math.BigDecimal;
 import java.rmi.AccessException;
 import java.rmi.NoSuchObjectException;
 import java.rmi.Remote;
@@ -82,7 +80,6 @@ import static org.apache.openejb.core.ivm.IntraVmCopyMonitor.State.NONE;
 @SuppressWarnings("unchecked")
 public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializable {
 
-    private static final String OPENEJB_LOCALCOPY = "openejb.localcopy";
     private static final boolean REMOTE_COPY_ENABLED = parseRemoteCopySetting();
     static {
         ThreadContext.addThreadContextListener(new ThreadContextListener() {
@@ -130,6 +127,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
     private boolean doCrossClassLoaderCopy;
     private transient WeakHashMap<Class, Object> interfaces;
     private transient WeakReference<Class> mainInterface;
+    private transient volatile IntraVmCopier copier;
 
     public BaseEjbProxyHandler(final BeanContext beanContext, final Object pk, final InterfaceType interfaceType, List<Class> interfaces, Class mainInterface) {
         this.container = (RpcContainer) beanContext.getContainer();
@@ -156,7 +154,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
     }
 
     private static boolean parseRemoteCopySetting() {
-        return SystemInstance.get().getOptions().get(OPENEJB_LOCALCOPY, true);
+        return SystemInstance.get().getOptions().get(IntraVmCopier.OPENEJB_LOCALCOPY, true);
     }
 
     protected void setDoIntraVmCopy(final boolean doIntraVmCopy) {
@@ -323,7 +321,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
                 try {
                     args = copyArgs(args);
                     method = copyMethod(method);
-                    interfce = copyObj(interfce);
+                    interfce = copyClass(interfce);
                 } finally {
                     Thread.currentThread().setContextClassLoader(oldClassLoader);
                     IntraVmCopyMonitor.post();
@@ -478,19 +476,37 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
      */
 
     private Method copyMethod(final Method method) throws Exception {
-        final int parameterCount = method.getParameterTypes().length;
-        Class[] types = new Class[1 + parameterCount];
-        types[0] = method.getDeclaringClass();
-        System.arraycopy(method.getParameterTypes(), 0, types, 1, parameterCount);
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Class<?> targetClass = copyClass(method.getDeclaringClass());
+        boolean same = targetClass == method.getDeclaringClass();
 
-        types = (Class[]) copyArgs(types);
-
-        final Class targetClass = types[0];
-        final Class[] targetParameters = new Class[parameterCount];
-        System.arraycopy(types, 1, targetParameters, 0, parameterCount);
+        final Class<?>[] targetParameters = new Class<?>[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            targetParameters[i] = copyClass(parameterTypes[i]);
+            same = same && targetParameters[i] == parameterTypes[i];
+        }
+        if (same) {
+            return method;
+        }
         return targetClass.getMethod(method.getName(), targetParameters);
     }
 
+    /**
+     * Same resolution as a serialization round trip of the class (see {@link EjbObjectInputStream})
+     * without the serialization.
+     */
+    private static <T> Class<T> copyClass(final Class<T> type) throws ClassNotFoundException {
+        if (type.isPrimitive()) {
+            return type;
+        }
+        final String name = BlacklistClassResolver.DEFAULT.check(type.getName());
+        try {
+            return (Class<T>) Class.forName(name, false, Thread.currentThread().getContextClassLoader());
+        } catch (final ClassNotFoundException e) {
+            return (Class<T>) EjbObjectInputStream.class.getClassLoader().loadClass(name);
+        }
+    }
+
     protected Throwable getCause(final Throwable e) {
         if (e != null && e.getCause() != null) {
             return e.getCause();
@@ -566,47 +582,44 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
 
     /* change dereference to copy */
     protected <T> T copyObj(final T object) throws IOException, ClassNotFoundException {
-        // Check for primitive and other known class types that are immutable.  If detected
-        // we can safely return them.
         if (object == null) {
             return null;
         }
-        final Class ooc = object.getClass();
-        if (ooc == int.class ||
-            ooc == String.class ||
-            ooc == long.class ||
-            ooc == boolean.class ||
-            ooc == byte.class ||
-            ooc == float.class ||
-            ooc == double.class ||
-            ooc == short.class ||
-            ooc == Long.class ||
-            ooc == Boolean.class ||
-            ooc == Byte.class ||
-            ooc == Character.class ||
-            ooc == Float.class ||
-            ooc == Double.class ||
-            ooc == Short.class ||
-            ooc == BigDecimal.class) {
-            return object;
+        if (IntraVmCopyMonitor.isCrossClassLoaderOperation()) { // classes need to be resolved again
+            return SerializationCopier.INSTANCE.copy(object);
         }
+        return getCopier().copy(object);
+    }
 
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
-        try {
-            final ObjectOutputStream out = new ObjectOutputStream(baos);
-            out.writeObject(object);
-            out.close();
-        } catch (final NotSerializableException e) {
-            throw (IOException) new NotSerializableException(e.getMessage() +
-                " : The EJB specification restricts remote interfaces to only serializable data types.  This can be disabled for in-vm use with the " +
-                OPENEJB_LOCALCOPY +
-                "=false system property.").initCause(e);
-        }
-
-        final ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-        final ObjectInputStream in = new EjbObjectInputStream(bais);
-        final Object obj = in.readObject();
-        return (T) obj;
+    private IntraVmCopier getCopier() {
+        IntraVmCopier copier = this.copier;
+        if (copier == null) {
+            copier = copier(getBeanContext());
+            this.copier = copier;
+        }
+        return copier;
+    }
+
+    private static IntraVmCopier copier(final BeanContext beanContext) {
+        synchronized (beanContext) {
+            IntraVmCopier copier = beanContext.get(IntraVmCopier.class);
+            if (copier == null) {
+                final String strategy = beanContext.getOptions().get(IntraVmCopier.OPENEJB_LOCALCOPY_STRATEGY, "serialization").trim();
+                if ("serialization".equalsIgnoreCase(strategy)) {
+                    copier = SerializationCopier.INSTANCE;
+                } else if ("fast".equalsIgnoreCase(strategy)) {
+                    copier = FastCopier.INSTANCE;
+                } else {
+                    try {
+                        copier = IntraVmCopier.class.cast(beanContext.getClassLoader().loadClass(strategy).newInstance());
+                    } catch (final Exception e) {
+                        throw new OpenEJBRuntimeException("Can't create " + IntraVmCopier.OPENEJB_LOCALCOPY_STRATEGY + " " + strategy, e);
+                    }
+                }
+                beanContext.set(IntraVmCopier.class, copier);
+            }
+            return copier;
+        }
     }
 
     public void invalidateReference() {
@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import org.apache.openejb.util.proxy.LocalBeanProxyFactory;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Copy engine avoiding the serialization round trip when the graph allows it:
+ * <ul>
+ *     <li>immutable values (String, boxed primitives, enums, java.time values
+ *     and final serializable classes with only final immutable fields) are passed as they are</li>
+ *     <li>arrays, ArrayList, LinkedList, HashMap, HashSet and LinkedHashSet are copied element by element</li>
+ *     <li>serializable classes without any custom serialization (writeObject, readResolve...)
+ *     are copied field by field, transient fields keeping their default value</li>
+ * </ul>
+ * The per class analysis is done once, as soon as a graph contains anything else
+ * (proxies, Externalizable, custom serialization...) the whole graph is serialized
+ * so shared references and spec semantics are kept.
+ */
+public class FastCopier implements IntraVmCopier {
+    public static final FastCopier INSTANCE = new FastCopier();
+
+    private static final Set<Class<?>> IMMUTABLES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class,
+        Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, URI.class, Locale.class));
+
+    private static final Fallback FALLBACK = new Fallback();
+
+    private static final ClassValue<Plan> PLANS = new ClassValue<Plan>() {
+        @Override
+        protected Plan computeValue(final Class<?> type) {
+            return plan(type);
+        }
+    };
+
+    private final IntraVmCopier fallback;
+
+    public FastCopier() {
+        this(SerializationCopier.INSTANCE);
+    }
+
+    public FastCopier(final IntraVmCopier fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T copy(final T object) throws IOException, ClassNotFoundException {
+        if (object == null) {
+            return null;
+        }
+
+        final Plan plan = PLANS.get(object.getClass());
+        if (plan.kind == Kind.IMMUTABLE) {
+            return object;
+        }
+        if (plan.kind != Kind.UNSUPPORTED) {
+            try {
+                return (T) copy(object, new IdentityHashMap<Object, Object>());
+            } catch (final Fallback notSupported) {
+                // something in the graph needs a real serialization
+            }
+        }
+        return fallback.copy(object);
+    }
+
+    private static Object copy(final Object object, final IdentityHashMap<Object, Object> copies) {
+        if (object == null) {
+            return null;
+        }
+
+        final Plan plan = PLANS.get(object.getClass());
+        if (plan.kind == Kind.IMMUTABLE) {
+            return object;
+        }
+        if (plan.kind == Kind.UNSUPPORTED) {
+            throw FALLBACK;
+        }
+
+        final Object existing = copies.get(object);
+        if (existing != null) { // shared reference or cycle, same as serialization
+            return existing;
+        }
+
+        switch (plan.kind) {
+            case PRIMITIVE_ARRAY:
+                final Object clone = cloneArray(object);
+                copies.put(object, clone);
+                return clone;
+            case ARRAY:
+                final int length = Array.getLength(object);
+                final Object[] array = (Object[]) Array.newInstance(object.getClass().getComponentType(), length);
+                copies.put(object, array);
+                final Object[] source = (Object[]) object;
+                for (int i = 0; i < length; i++) {
+                    array[i] = copy(source[i], copies);
+                }
+                return array;
+            case COLLECTION:
+                final Collection<Object> collection = newCollection(object.getClass(), ((Collection<?>) object).size());
+                copies.put(object, collection);
+                for (final Object item : (Collection<?>) object) {
+                    collection.add(copy(item, copies));
+                }
+                return collection;
+            case MAP:
+                final Map<?, ?> map = (Map<?, ?>) object;
+                final Map<Object, Object> mapCopy = new HashMap<>(Math.max(16, (int) (map.size() / .75f) + 1));
+                copies.put(object, mapCopy);
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    mapCopy.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+                }
+                return mapCopy;
+            case FIELDS:
+                final Object instance = Allocator.allocate(object.getClass());
+                copies.put(object, instance);
+                try {
+                    for (final Field field : plan.fields) {
+                        if (field.getType().isPrimitive()) {
+                            field.set(instance, field.get(object));
+                        } else {
+                            field.set(instance, copy(field.get(object), copies));
+                        }
+                    }
+                } catch (final IllegalAccessException e) {
+                    throw FALLBACK;
+                }
+                return instance;
+            default:
+                throw FALLBACK;
+        }
+    }
+
+    private static Object cloneArray(final Object array) {
+        final int length = Array.getLength(array);
+        final Object clone = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, clone, 0, length);
+        return clone;
+    }
+
+    private static Collection<Object> newCollection(final Class<?> type, final int size) {
+        if (type == ArrayList.class) {
+            return new ArrayList<>(size);
+        }
+        if (type == LinkedList.class) {
+            return new LinkedList<>();
+        }
+        final int capacity = Math.max(16, (int) (size / .75f) + 1);
+        if (type == HashSet.class) {
+            return new HashSet<>(capacity);
+        }
+        return new LinkedHashSet<>(capacity);
+    }
+
+    private static Plan plan(final Class<?> type) {
+        if (isImmutable(type, new HashSet<Class<?>>())) {
+            return Plan.IMMUTABLE_PLAN;
+        }
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? Plan.PRIMITIVE_ARRAY_PLAN : Plan.ARRAY_PLAN;
+        }
+        if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class || type == LinkedHashSet.class) {
+            return Plan.COLLECTION_PLAN;
+        }
+        if (type == HashMap.class) {
+            return Plan.MAP_PLAN;
+        }
+        if (!Allocator.AVAILABLE || !isPlainSerializable(type)) {
+            return Plan.UNSUPPORTED_PLAN;
+        }
+
+        final List<Field> fields = new ArrayList<>();
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            for (final Field field : current.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (final RuntimeException e) { // java 9 modules
+                    return Plan.UNSUPPORTED_PLAN;
+                }
+                fields.add(field);
+            }
+        }
+        return new Plan(Kind.FIELDS, fields.toArray(new Field[fields.size()]));
+    }
+
+    private static boolean isImmutable(final Class<?> type, final Set<Class<?>> visiting) {
+        if (type.isPrimitive() || IMMUTABLES.contains(type) || type.isEnum()
+            || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+            return true;
+        }
+        if (type.isArray() || type.isInterface() || !Modifier.isFinal(type.getModifiers())) {
+            return false;
+        }
+        if (type.getName().startsWith("java.time.")) { // value based classes, serialized through a proxy
+            return Serializable.class.isAssignableFrom(type);
+        }
+        if (!isPlainSerializable(type)) {
+            return false;
+        }
+        if (type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+            return false;
+        }
+        if (!visiting.add(type)) { // recursive type, the outer check decides
+            return true;
+        }
+
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            for (final Field field : current.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers)) {
+                    continue;
+                }
+                if (Modifier.isTransient(modifiers) || !Modifier.isFinal(modifiers) || !isImmutable(field.getType(), visiting)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the default serialization of the type only copies its fields
+     */
+    private static boolean isPlainSerializable(final Class<?> type) {
+        if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+            || type == Class.class || Proxy.isProxyClass(type) || LocalBeanProxyFactory.isProxy(type)) {
+            return false;
+        }
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            if (!Serializable.class.isAssignableFrom(current)) { // serialization would call its no-arg constructor
+                return false;
+            }
+            if (declares(current, "writeObject", ObjectOutputStream.class)
+                || declares(current, "readObject", ObjectInputStream.class)
+                || declares(current, "readObjectNoData")
+                || declares(current, "writeReplace")
+                || declares(current, "readResolve")) {
+                return false;
+            }
+            try {
+                current.getDeclaredField("serialPersistentFields");
+                return false;
+            } catch (final NoSuchFieldException e) {
+                // expected
+            }
+        }
+        return true;
+    }
+
+    private static boolean declares(final Class<?> type, final String name, final Class<?>... parameters) {
+        try {
+            final Method method = type.getDeclaredMethod(name, parameters);
+            return !Modifier.isStatic(method.getModifiers());
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private enum Kind {
+        IMMUTABLE, PRIMITIVE_ARRAY, ARRAY, COLLECTION, MAP, FIELDS, UNSUPPORTED
+    }
+
+    private static final class Plan {
+        private static final Plan IMMUTABLE_PLAN = new Plan(Kind.IMMUTABLE, null);
+        private static final Plan PRIMITIVE_ARRAY_PLAN = new Plan(Kind.PRIMITIVE_ARRAY, null);
+        private static final Plan ARRAY_PLAN = new Plan(Kind.ARRAY, null);
+        private static final Plan COLLECTION_PLAN = new Plan(Kind.COLLECTION, null);
+        private static final Plan MAP_PLAN = new Plan(Kind.MAP, null);
+        private static final Plan UNSUPPORTED_PLAN = new Plan(Kind.UNSUPPORTED, null);
+
+        private final Kind kind;
+        private final Field[] fields;
+
+        private Plan(final Kind kind, final Field[] fields) {
+            this.kind = kind;
+            this.fields = fields;
+        }
+    }
+
+    // creates instances without calling any constructor as serialization does for fully serializable hierarchies
+    private static final class Allocator {
+        private static final Object UNSAFE;
+        private static final Method ALLOCATE_INSTANCE;
+        private static final boolean AVAILABLE;
+
+        static {
+            Object unsafe = null;
+            Method allocateInstance = null;
+            try {
+                final Class<?> unsafeClass = FastCopier.class.getClassLoader().loadClass("sun.misc.Unsafe");
+                final Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+            } catch (final Exception | LinkageError e) {
+                unsafe = null;
+                allocateInstance = null;
+            }
+            UNSAFE = unsafe;
+            ALLOCATE_INSTANCE = allocateInstance;
+            AVAILABLE = allocateInstance != null;
+        }
+
+        private static Object allocate(final Class<?> type) {
+            try {
+                return ALLOCATE_INSTANCE.invoke(UNSAFE, type);
+            } catch (final Exception e) {
+                throw FALLBACK;
+            }
+        }
+    }
+
+    private static final class Fallback extends RuntimeException {
+        private Fallback() {
+            super(null, null, false, false);
+        }
+    }
+}
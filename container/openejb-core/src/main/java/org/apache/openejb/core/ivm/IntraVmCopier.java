@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import java.io.IOException;
+
+/**
+ * Copies arguments, return values and exceptions of intra-vm calls
+ * to remote interfaces so they are passed by value.
+ *
+ * The engine is selected per bean with the openejb.localcopy.strategy
+ * property (serialization, fast or the qualified name of an implementation),
+ * it is only used when the caller and the bean share the same classloader,
+ * cross classloader copies always go through serialization.
+ */
+public interface IntraVmCopier {
+    String OPENEJB_LOCALCOPY = "openejb.localcopy";
+    String OPENEJB_LOCALCOPY_STRATEGY = "openejb.localcopy.strategy";
+
+    <T> T copy(T object) throws IOException, ClassNotFoundException;
+}
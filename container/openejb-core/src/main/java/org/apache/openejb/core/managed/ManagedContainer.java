@@ -612,8 +612,7 @@ public class ManagedContainer implements RpcContainer {
                 callContext.set(Method.class, runMethod);
 
                 // Initialize interceptor stack
-                final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS, interceptors, instance.interceptors);
+                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS), instance.interceptors);
 
                 // Invoke
                 returnValue = interceptorStack.invoke(args);
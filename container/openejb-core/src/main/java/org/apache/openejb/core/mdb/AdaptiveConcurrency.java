@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.mdb;
+
+import org.apache.openejb.monitoring.Event;
+import org.apache.openejb.monitoring.Managed;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of messages a MDB processes at the same time between MinSize and the MaxSize of its pool,
+ * the limit being adjusted periodically (AIMD):
+ *
+ * - decreased by a quarter when the average processing time goes over LatencyTolerance times the baseline
+ * latency (lowest recent average, slowly following a durable change)
+ * - increased by one when the limit is reached and deliveries wait for it or the destination has a backlog
+ * - kept otherwise
+ *
+ * Exposed in the Pool MBean of the bean with the Concurrency prefix.
+ */
+@Managed(append = true)
+public class AdaptiveConcurrency {
+    private static final double BASELINE_DRIFT = 0.05;
+    private static final double DECREASE_RATIO = 0.75;
+
+    private final Limit permits;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final LongSupplier backlog;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private volatile double baselineLatency;
+    private volatile double averageLatency;
+    private volatile double averageWait;
+    private volatile long lastBacklog = -1;
+    private volatile String lastDecision = "none";
+
+    @Managed
+    private final Event increases = new Event();
+
+    @Managed
+    private final Event decreases = new Event();
+
+    /**
+     * @param backlog messages waiting in the destination, negative if unknown, can be null
+     */
+    public AdaptiveConcurrency(final int minLimit, final int maxLimit, final double tolerance, final LongSupplier backlog) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid concurrency bounds [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = Math.max(1, tolerance);
+        this.backlog = backlog;
+        this.limit = maxLimit; // starts as the static pool, backs off if it hurts
+        this.permits = new Limit(maxLimit);
+    }
+
+    public boolean acquire(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long start = System.nanoTime();
+        final boolean ok;
+        if (timeout < 0) {
+            permits.acquire();
+            ok = true;
+        } else {
+            ok = permits.tryAcquire(timeout, unit);
+        }
+        if (ok) {
+            acquired.increment();
+            waitNanos.add(System.nanoTime() - start);
+            final int current = inFlight.incrementAndGet();
+            int peak;
+            while ((peak = peakInFlight.get()) < current && !peakInFlight.compareAndSet(peak, current)) {
+                // retry
+            }
+        }
+        return ok;
+    }
+
+    public void release(final long processingNanos) {
+        inFlight.decrementAndGet();
+        completed.increment();
+        latencyNanos.add(processingNanos);
+        permits.release();
+    }
+
+    /**
+     * Releases a permit for a delivery which didn't happen (pool timeout for instance).
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+
+    public synchronized void adjust() {
+        final long count = completed.sumThenReset();
+        final long latency = latencyNanos.sumThenReset();
+        final long waits = acquired.sumThenReset();
+        final long waited = waitNanos.sumThenReset();
+        final int peak = peakInFlight.getAndSet(inFlight.get());
+
+        averageLatency = count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(latency / count) / 1000.;
+        averageWait = waits == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waited / waits) / 1000.;
+        lastBacklog = readBacklog();
+
+        if (count > 0) {
+            final double base = baselineLatency;
+            baselineLatency = base == 0 || averageLatency < base ? averageLatency : base + (averageLatency - base) * BASELINE_DRIFT;
+        }
+
+        final int current = limit;
+        if (count > 0 && averageLatency > baselineLatency * tolerance && current > minLimit) {
+            setLimit(Math.max(minLimit, Math.min(current - 1, (int) (current * DECREASE_RATIO))));
+            decreases.record();
+            lastDecision = "decrease to " + limit + ", latency " + averageLatency + "ms > " + tolerance + " x " + baselineLatency + "ms";
+        } else if (peak >= current && current < maxLimit && (permits.hasQueuedThreads() || averageWait >= 1 || lastBacklog > 0)) {
+            setLimit(current + 1);
+            increases.record();
+            lastDecision = "increase to " + limit + ", wait " + averageWait + "ms, backlog " + lastBacklog;
+        } else {
+            lastDecision = "keep " + current;
+        }
+    }
+
+    private long readBacklog() {
+        if (backlog == null) {
+            return -1;
+        }
+        try {
+            return backlog.getAsLong();
+        } catch (final RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private void setLimit(final int newLimit) {
+        final int delta = newLimit - limit;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reducePermits(-delta); // running deliveries end normally
+        }
+        limit = newLimit;
+    }
+
+    @Managed
+    public int getLimit() {
+        return limit;
+    }
+
+    @Managed
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    @Managed
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @Managed
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Managed
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @Managed
+    public double getAverageLatency() {
+        return averageLatency;
+    }
+
+    @Managed
+    public double getBaselineLatency() {
+        return baselineLatency;
+    }
+
+    @Managed
+    public double getAverageWait() {
+        return averageWait;
+    }
+
+    @Managed
+    public long getBacklog() {
+        return lastBacklog;
+    }
+
+    @Managed
+    public String getLastDecision() {
+        return lastDecision;
+    }
+
+    private static final class Limit extends Semaphore {
+        private Limit(final int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(final int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
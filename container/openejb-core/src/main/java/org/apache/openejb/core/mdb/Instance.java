@@ -31,6 +31,7 @@ public class Instance {
     public final CreationalContext creationalContext;
 
     private Pool<Instance>.Entry poolEntry;
+    private long deliveryStart;
 
     public Instance(final Object bean, final Map<String, Object> interceptors, final CreationalContext creationalContext) {
         this.bean = bean;
@@ -45,4 +46,12 @@ public class Instance {
     public void setPoolEntry(final Pool<Instance>.Entry poolEntry) {
         this.poolEntry = poolEntry;
     }
+
+    public long getDeliveryStart() {
+        return deliveryStart;
+    }
+
+    public void setDeliveryStart(final long deliveryStart) {
+        this.deliveryStart = deliveryStart;
+    }
 }
@@ -193,6 +193,10 @@ public class MdbContainerFactory {
         poolBuilder.setMaxAgeOffset(maxAgeOffset);
     }
 
+    public void setPoolImplementation(final String implementation) {
+        poolBuilder.setPoolImplementation(implementation);
+    }
+
     public boolean isPool() {
         return pool;
     }
@@ -31,6 +31,7 @@ import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.timer.TimerServiceWrapper;
 import org.apache.openejb.loader.Options;
 import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.Managed;
 import org.apache.openejb.monitoring.ManagedMBean;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.apache.openejb.monitoring.StatsInterceptor;
@@ -81,11 +82,13 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -198,6 +201,13 @@ public class MdbInstanceManager {
 
         final Data data = new Data(builder.build(), accessTimeout, closeTimeout);
 
+        final Options options = new Options(beanContext.getProperties());
+        if (options.get("AdaptiveConcurrency", false)) {
+            final Duration interval = options.get("AdaptiveConcurrency.Interval", new Duration("1 second"));
+            setDefault(interval, TimeUnit.MILLISECONDS);
+            data.startAdaptiveConcurrency(createAdaptiveConcurrency(options, builder, activationSpec), interval);
+        }
+
         MdbContext mdbContext = new MdbContext(securityService, data::flush);
 
         try {
@@ -273,7 +283,6 @@ public class MdbInstanceManager {
             throw new OpenEJBException(e);
         }
 
-        final Options options = new Options(beanContext.getProperties());
         // Finally, fill the pool and start it
         if (!options.get("BackgroundStartup", false) && min > 0) {
             final ExecutorService es = Executors.newFixedThreadPool(min);
@@ -294,7 +303,7 @@ public class MdbInstanceManager {
             if (server.isRegistered(objectName)) {
                 server.unregisterMBean(objectName);
             }
-            server.registerMBean(new ManagedMBean(data.pool), objectName);
+            server.registerMBean(new ManagedMBean(data.concurrency == null ? data.pool : data), objectName);
             data.add(objectName);
         } catch (final Exception e) {
             logger.error("Unable to register MBean ", e);
@@ -308,6 +317,10 @@ public class MdbInstanceManager {
         if (actContext == null) {
             return;
         }
+        final Data data = (Data) beanContext.getContainerData();
+        if (data != null) {
+            data.stopAdaptiveConcurrency();
+        }
         final EndpointFactory endpointFactory = actContext.getEndpointFactory();
         if (endpointFactory != null) {
 
@@ -335,6 +348,15 @@ public class MdbInstanceManager {
         }
     }
 
+    private AdaptiveConcurrency createAdaptiveConcurrency(final Options options, final Pool.Builder builder, final ActivationSpec activationSpec) {
+        final int max = builder.getMax();
+        final int min = Math.max(1, Math.min(max, options.get("AdaptiveConcurrency.MinSize", builder.getMin())));
+        final double tolerance = options.get("AdaptiveConcurrency.LatencyTolerance", 2.);
+        final LongSupplier backlog = DestinationBacklog.class.isInstance(resourceAdapter) ?
+                () -> DestinationBacklog.class.cast(resourceAdapter).getBacklog(activationSpec) : null;
+        return new AdaptiveConcurrency(min, max, tolerance, backlog);
+    }
+
     private void addJMxControl(final BeanContext current, final String name, final MdbPoolContainer.MdbActivationContext activationContext) throws ResourceException {
         if (name == null || "false".equalsIgnoreCase(name)) {
             logger.debug("Not adding JMX control for " + current.getDeploymentID());
@@ -525,9 +547,17 @@ public class MdbInstanceManager {
         }
 
         if (null == instance) {
-            instance = createInstance(beanContext);
+            try {
+                instance = createInstance(beanContext);
+            } catch (final ApplicationException e) {
+                data.cancelDelivery();
+                throw e;
+            }
         }
 
+        if (data.concurrency != null) {
+            instance.setDeliveryStart(System.nanoTime());
+        }
         return instance;
     }
 
@@ -570,6 +600,7 @@ public class MdbInstanceManager {
         final BeanContext beanContext = callContext.getBeanContext();
         final Data data = (Data) beanContext.getContainerData();
         final Pool<Instance> pool = data.getPool();
+        data.endDelivery(instance);
 
         if (instance.getPoolEntry() != null) {
             pool.push(instance.getPoolEntry());
@@ -596,6 +627,7 @@ public class MdbInstanceManager {
         final Data data = (Data) beanContext.getContainerData();
 
         if (null != data) {
+            data.endDelivery(instance);
             final Pool<Instance> pool = data.getPool();
             pool.discard(instance.getPoolEntry());
         }
@@ -657,12 +689,17 @@ public class MdbInstanceManager {
 
     private class Data {
 
+        @Managed
         private final Pool<Instance> pool;
         private final Duration accessTimeout;
         private final Duration closeTimeout;
         private final List<ObjectName> jmxNames = new ArrayList<>();
         private BaseContext baseContext;
 
+        @Managed
+        private AdaptiveConcurrency concurrency;
+        private ScheduledFuture<?> adjustment;
+
         public Data(final Pool<Instance> pool, final Duration accessTimeout, final Duration closeTimeout) {
             this.pool = pool;
             this.accessTimeout = accessTimeout;
@@ -674,7 +711,52 @@ public class MdbInstanceManager {
         }
 
         public Pool<Instance>.Entry poolPop() throws InterruptedException, TimeoutException {
-            return pool.pop(accessTimeout.getTime(), accessTimeout.getUnit());
+            if (concurrency == null) {
+                return pool.pop(accessTimeout.getTime(), accessTimeout.getUnit());
+            }
+
+            final long timeout = accessTimeout.getTime();
+            final long deadline = System.nanoTime() + accessTimeout.getUnit().toNanos(timeout);
+            if (!concurrency.acquire(timeout, accessTimeout.getUnit())) {
+                throw new TimeoutException("Waited " + accessTimeout);
+            }
+            try {
+                if (timeout < 0) { // keeps its meaning for the pool
+                    return pool.pop(timeout, accessTimeout.getUnit());
+                }
+                // the access timeout covers both waits, the pool only gets what is left of it
+                return pool.pop(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (final TimeoutException | InterruptedException | RuntimeException e) {
+                concurrency.cancel();
+                throw e;
+            }
+        }
+
+        public void startAdaptiveConcurrency(final AdaptiveConcurrency concurrency, final Duration interval) {
+            final long period = interval.getTime(TimeUnit.MILLISECONDS);
+            this.concurrency = concurrency;
+            this.adjustment = scheduledExecutor.scheduleWithFixedDelay(concurrency::adjust, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        public void stopAdaptiveConcurrency() {
+            if (adjustment != null) {
+                adjustment.cancel(false);
+                adjustment = null;
+            }
+        }
+
+        public void endDelivery(final Instance instance) {
+            final long start = instance.getDeliveryStart();
+            if (concurrency != null && start != 0) { // released once even if the instance is pooled twice
+                instance.setDeliveryStart(0);
+                concurrency.release(System.nanoTime() - start);
+            }
+        }
+
+        public void cancelDelivery() {
+            if (concurrency != null) {
+                concurrency.cancel();
+            }
         }
 
         public Pool<Instance> getPool() {
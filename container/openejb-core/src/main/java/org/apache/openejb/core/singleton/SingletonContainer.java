@@ -55,6 +55,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.apache.openejb.core.transaction.EjbTransactionUtil.afterInvoke;
 import static org.apache.openejb.core.transaction.EjbTransactionUtil.createTransactionPolicy;
@@ -91,6 +92,10 @@ public class SingletonContainer implements RpcContainer {
         this.accessTimeout = duration;
     }
 
+    public void setLockEngine(final String lockEngine) {
+        instanceManager.setLockEngine(lockEngine);
+    }
+
     @Override
     public synchronized BeanContext[] getBeanContexts() {
         return deploymentRegistry.values().toArray(new BeanContext[deploymentRegistry.size()]);
@@ -250,7 +255,7 @@ public class SingletonContainer implements RpcContainer {
         final Duration accessTimeout = getAccessTimeout(beanContext, runMethod);
         final boolean read = javax.ejb.LockType.READ.equals(beanContext.getConcurrencyAttribute(runMethod));
 
-        final Lock lock = aquireLock(read, accessTimeout, instance, runMethod);
+        final Lock lock = aquireLock(read, accessTimeout, instance, runMethod, instanceManager.getLockStats(beanContext));
 
         Object returnValue;
         try {
@@ -263,11 +268,9 @@ public class SingletonContainer implements RpcContainer {
                     callContext.setCurrentOperation(Operation.BUSINESS_WS);
                     returnValue = invokeWebService(args, beanContext, runMethod, instance);
                 } else {
-                    final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
+                    final Operation operation = callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS;
                     final InterceptorStack interceptorStack = new InterceptorStack(instance.bean,
-                        runMethod,
-                        callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS,
-                        interceptors,
+                        beanContext.getMethodInterceptorChain(runMethod, operation),
                         instance.interceptors);
                     returnValue = interceptorStack.invoke(args);
                 }
@@ -307,7 +310,8 @@ public class SingletonContainer implements RpcContainer {
         return accessTimeout;
     }
 
-    private Lock aquireLock(final boolean read, final Duration accessTimeout, final Instance instance, final Method runMethod) {
+    private Lock aquireLock(final boolean read, final Duration accessTimeout, final Instance instance, final Method runMethod,
+                            final SingletonLockStats lockStats) {
         final Lock lock;
         if (read) {
             lock = instance.lock.readLock();
@@ -315,6 +319,30 @@ public class SingletonContainer implements RpcContainer {
             lock = instance.lock.writeLock();
         }
 
+        if (lockStats == null) {
+            return aquireLock(read, accessTimeout, instance, runMethod, lock);
+        }
+
+        // uncontended locks are only counted, don't barge in front of queued threads (writer starvation)
+        final SingletonLockStats.Stats stats = lockStats.get(runMethod);
+        final boolean queued = instance.lock instanceof ReentrantReadWriteLock && ((ReentrantReadWriteLock) instance.lock).hasQueuedThreads();
+        if (!queued && lock.tryLock()) {
+            stats.acquired();
+            return lock;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            aquireLock(read, accessTimeout, instance, runMethod, lock);
+        } catch (final ConcurrentAccessTimeoutException e) {
+            stats.waited(System.nanoTime() - start, false);
+            throw e;
+        }
+        stats.waited(System.nanoTime() - start, true);
+        return lock;
+    }
+
+    private Lock aquireLock(final boolean read, final Duration accessTimeout, final Instance instance, final Method runMethod, final Lock lock) {
         final boolean lockAcquired;
         if (accessTimeout == null || accessTimeout.getTime() < 0) {
             // wait indefinitely for a lock
@@ -54,6 +54,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -69,9 +70,13 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class SingletonInstanceManager {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
 
+    public static final String READ_WRITE_LOCK = "readwrite";
+    public static final String STRIPED_LOCK = "striped";
+
     private final SecurityService securityService;
     private final SingletonContext sessionContext;
     private final WebServiceContext webServiceContext;
+    private volatile String lockEngine = READ_WRITE_LOCK;
 
     public SingletonInstanceManager(final SecurityService securityService) {
         this.securityService = securityService;
@@ -79,6 +84,29 @@ public class SingletonInstanceManager {
         webServiceContext = new EjbWsContext(sessionContext);
     }
 
+    /**
+     * @param lockEngine {@link #READ_WRITE_LOCK} or {@link #STRIPED_LOCK}, used by the instances created after the call.
+     */
+    public void setLockEngine(final String lockEngine) {
+        final String engine = lockEngine == null ? READ_WRITE_LOCK : lockEngine.trim().toLowerCase(Locale.ENGLISH);
+        if (!READ_WRITE_LOCK.equals(engine) && !STRIPED_LOCK.equals(engine)) {
+            throw new IllegalArgumentException("Unknown singleton LockEngine '" + lockEngine + "', use " + READ_WRITE_LOCK + " or " + STRIPED_LOCK);
+        }
+        this.lockEngine = engine;
+    }
+
+    public String getLockEngine() {
+        return lockEngine;
+    }
+
+    /**
+     * @return the lock statistics of a container managed concurrency singleton, null otherwise.
+     */
+    public SingletonLockStats getLockStats(final BeanContext beanContext) {
+        final Object data = beanContext.getContainerData();
+        return data instanceof Data ? ((Data) data).lockStats : null;
+    }
+
     protected void start(final BeanContext beanContext) throws OpenEJBException {
         if (beanContext.isLoadOnStartup()) {
             initialize(beanContext);
@@ -197,7 +225,7 @@ public class SingletonInstanceManager {
                 lock = new BeanManagedLock();
             } else {
                 // Container-Managed Concurrency
-                lock = new ReentrantReadWriteLock();
+                lock = STRIPED_LOCK.equals(lockEngine) ? new StripedReadWriteLock() : new ReentrantReadWriteLock();
             }
 
             return new Instance(context.getBean(), context.getInterceptors(), context.getCreationalContext(), lock);
@@ -327,6 +355,30 @@ public class SingletonInstanceManager {
             }
         }
 
+        if (!beanContext.isBeanManagedConcurrency()) {
+            data.lockStats = new SingletonLockStats(lockEngine);
+
+            final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management");
+            jmxName.set("J2EEServer", "openejb");
+            jmxName.set("J2EEApplication", null);
+            jmxName.set("EJBModule", beanContext.getModuleID());
+            jmxName.set("SingletonSessionBean", beanContext.getEjbName());
+            jmxName.set("name", beanContext.getEjbName());
+            jmxName.set("j2eeType", "Locks");
+
+            final MBeanServer server = LocalMBeanServer.get();
+            try {
+                final ObjectName objectName = jmxName.build();
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(new ManagedMBean(data.lockStats), objectName);
+                data.add(objectName);
+            } catch (final Exception e) {
+                logger.error("Unable to register MBean ", e);
+            }
+        }
+
         try {
             final Context context = beanContext.getJndiEnc();
             context.bind("comp/EJBContext", sessionContext);
@@ -359,6 +411,7 @@ public class SingletonInstanceManager {
         private final AtomicReference<Future<Instance>> singleton = new AtomicReference<>();
         private final List<ObjectName> jmxNames = new ArrayList<>();
         private final BeanContext info;
+        private volatile SingletonLockStats lockStats;
 
         public Data(final BeanContext info) {
             this.info = info;
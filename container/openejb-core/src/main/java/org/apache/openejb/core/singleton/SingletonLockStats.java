@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.singleton;
+
+import org.apache.openejb.monitoring.Managed;
+import org.apache.openejb.monitoring.ManagedCollection;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Container managed concurrency lock acquisitions of a singleton, by bean method.
+ * Only contended acquisitions (the lock was not immediately available) are timed.
+ */
+public class SingletonLockStats {
+    private final Map<Method, Stats> map = new ConcurrentHashMap<>();
+    private final String engine;
+
+    public SingletonLockStats(final String engine) {
+        this.engine = engine;
+    }
+
+    @Managed
+    public String getLockEngine() {
+        return engine;
+    }
+
+    @Managed
+    public long getAcquisitions() {
+        long total = 0;
+        for (final Stats stats : map.values()) {
+            total += stats.getAcquisitions();
+        }
+        return total;
+    }
+
+    @Managed
+    public long getContentions() {
+        long total = 0;
+        for (final Stats stats : map.values()) {
+            total += stats.getContentions();
+        }
+        return total;
+    }
+
+    @Managed
+    public long getTimeouts() {
+        long total = 0;
+        for (final Stats stats : map.values()) {
+            total += stats.getTimeouts();
+        }
+        return total;
+    }
+
+    @ManagedCollection(type = Stats.class, key = "method")
+    public Collection<Stats> stats() {
+        return map.values();
+    }
+
+    public Stats get(final Method method) {
+        final Stats stats = map.get(method);
+        if (stats != null) {
+            return stats;
+        }
+        return map.computeIfAbsent(method, Stats::new);
+    }
+
+    public static class Stats {
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contentions = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder waitTime = new LongAdder();
+        private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0);
+
+        // Used as the prefix for the MBeanAttributeInfo
+        private final String method;
+
+        public Stats(final Method method) {
+            final StringBuilder sb = new StringBuilder(method.getName()).append('(');
+            final Class<?>[] params = method.getParameterTypes();
+            for (int i = 0; i < params.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(params[i].getSimpleName());
+            }
+            this.method = sb.append(')').toString();
+        }
+
+        public void acquired() {
+            acquisitions.increment();
+        }
+
+        /**
+         * @param nanos time spent waiting for the lock
+         * @param acquired false if the access timeout was reached
+         */
+        public void waited(final long nanos, final boolean acquired) {
+            contentions.increment();
+            waitTime.add(nanos);
+            maxWaitTime.accumulate(nanos);
+            if (acquired) {
+                acquisitions.increment();
+            } else {
+                timeouts.increment();
+            }
+        }
+
+        @Managed
+        public long getAcquisitions() {
+            return acquisitions.sum();
+        }
+
+        @Managed
+        public long getContentions() {
+            return contentions.sum();
+        }
+
+        @Managed
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        /**
+         * @return total time (ms) spent waiting for the lock
+         */
+        @Managed
+        public long getWaitTime() {
+            return TimeUnit.NANOSECONDS.toMillis(waitTime.sum());
+        }
+
+        @Managed
+        public long getMaxWaitTime() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+        }
+
+        /**
+         * @return average wait (microseconds) of the contended acquisitions
+         */
+        @Managed
+        public double getAverageContendedWaitTime() {
+            final long count = contentions.sum();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waitTime.sum()) / (double) count;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.singleton;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reader biased lock for container managed singletons: readers only increment the counter of their
+ * stripe (one cache line per stripe, threads spread by id) so @Lock(READ) calls on many cores don't
+ * all write the shared reader count of a ReentrantReadWriteLock.
+ *
+ * A writer takes a mutex, raises the writing flag then waits for all the stripes to drain, readers
+ * seeing the flag back off and wait for the writer mutex. Both locks are reentrant (a singleton calling
+ * itself through its business interface) and the write lock holder can take the read lock, a read lock
+ * holder asking for the write lock waits until its timeout as with ReentrantReadWriteLock.
+ * Conditions are not supported.
+ */
+public class StripedReadWriteLock implements ReadWriteLock {
+    private static final int PADDING = 16; // 128 bytes between two used cells
+    private static final int MAX_STRIPES = 64;
+
+    private final int mask;
+    private final AtomicLongArray readers;
+    private final ReentrantLock writer = new ReentrantLock();
+    private final ThreadLocal<int[]> readHolds = ThreadLocal.withInitial(() -> new int[1]);
+    private volatile boolean writing;
+    private volatile Thread pending; // writer waiting for the readers to drain
+    private volatile Thread owner;
+    private int writeHolds; // only touched by the owner
+
+    private final Lock readLock = new ReadLock();
+    private final Lock writeLock = new WriteLock();
+
+    public StripedReadWriteLock() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedReadWriteLock(final int stripes) {
+        int size = 1;
+        while (size < Math.min(Math.max(stripes, 1), MAX_STRIPES)) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        readers = new AtomicLongArray(size * PADDING);
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    public boolean isWriteLocked() {
+        return owner != null;
+    }
+
+    public long getReadLockCount() {
+        long count = 0;
+        for (int i = 0; i <= mask; i++) {
+            count += readers.get(i * PADDING);
+        }
+        return count;
+    }
+
+    private int cell() {
+        final long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40 & mask) * PADDING;
+    }
+
+    /**
+     * @param nanos negative to wait until acquired
+     */
+    private boolean acquireRead(final long nanos, final boolean interruptible) throws InterruptedException {
+        final Thread current = Thread.currentThread();
+        if (owner == current) {
+            writeHolds++;
+            return true;
+        }
+        final int[] holds = readHolds.get();
+        if (holds[0] > 0) {
+            holds[0]++;
+            return true;
+        }
+
+        final int cell = cell();
+        final long deadline = nanos > 0 ? System.nanoTime() + nanos : 0;
+        while (true) {
+            readers.incrementAndGet(cell);
+            if (!writing) {
+                holds[0] = 1;
+                return true;
+            }
+            releaseRead(cell);
+
+            // let the writer finish, it holds the writer mutex until then
+            if (nanos < 0) {
+                if (interruptible) {
+                    writer.lockInterruptibly();
+                } else {
+                    writer.lock();
+                }
+            } else if (nanos == 0 || !writer.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+            writer.unlock();
+        }
+    }
+
+    private void releaseRead(final int cell) {
+        readers.decrementAndGet(cell);
+        if (writing) {
+            final Thread waiting = pending;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+    }
+
+    private void unlockRead() {
+        if (owner == Thread.currentThread()) {
+            unlockWrite();
+            return;
+        }
+        final int[] holds = readHolds.get();
+        if (holds[0] <= 0) {
+            throw new IllegalMonitorStateException("read lock not held by the current thread");
+        }
+        if (--holds[0] == 0) {
+            releaseRead(cell());
+        }
+    }
+
+    private boolean acquireWrite(final long nanos, final boolean interruptible) throws InterruptedException {
+        final Thread current = Thread.currentThread();
+        if (owner == current) {
+            writeHolds++;
+            return true;
+        }
+
+        final long deadline = nanos > 0 ? System.nanoTime() + nanos : 0;
+        if (nanos < 0) {
+            if (interruptible) {
+                writer.lockInterruptibly();
+            } else {
+                writer.lock();
+            }
+        } else if (nanos == 0 ? !writer.tryLock() : !writer.tryLock(nanos, TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+
+        pending = current;
+        writing = true;
+        boolean interrupted = false;
+        try {
+            while (getReadLockCount() != 0) {
+                if (nanos >= 0) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (nanos == 0 || remaining <= 0) {
+                        abortWrite();
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    if (interruptible) {
+                        abortWrite();
+                        throw new InterruptedException();
+                    }
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+
+        pending = null;
+        owner = current;
+        writeHolds = 1;
+        return true;
+    }
+
+    private void abortWrite() {
+        writing = false;
+        pending = null;
+        writer.unlock();
+    }
+
+    private void unlockWrite() {
+        if (owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("write lock not held by the current thread");
+        }
+        if (--writeHolds == 0) {
+            owner = null;
+            writing = false;
+            writer.unlock();
+        }
+    }
+
+    private abstract class BaseLock implements Lock {
+        protected abstract boolean acquire(long nanos, boolean interruptible) throws InterruptedException;
+
+        @Override
+        public void lock() {
+            try {
+                acquire(-1, false);
+            } catch (final InterruptedException e) { // can't happen when not interruptible
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            acquire(-1, true);
+        }
+
+        @Override
+        public boolean tryLock() {
+            try {
+                return acquire(0, false);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return acquire(Math.max(0, unit.toNanos(time)), true);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final class ReadLock extends BaseLock {
+        @Override
+        protected boolean acquire(final long nanos, final boolean interruptible) throws InterruptedException {
+            return acquireRead(nanos, interruptible);
+        }
+
+        @Override
+        public void unlock() {
+            unlockRead();
+        }
+    }
+
+    private final class WriteLock extends BaseLock {
+        @Override
+        protected boolean acquire(final long nanos, final boolean interruptible) throws InterruptedException {
+            return acquireWrite(nanos, interruptible);
+        }
+
+        @Override
+        public void unlock() {
+            unlockWrite();
+        }
+    }
+}
@@ -0,0 +1,849 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.Container;
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Replicates the stateful beans of a container to backup members of a cluster, on top of the configured cache.
+ *
+ * When a bean is checked-in (end of the invocation or of its transaction) its serialized form is queued and a
+ * background task sends the queued beans in batches, compressed: the first time and when the backup members
+ * change the whole state, then only the blocks of the serialized form which changed since the last sent one
+ * (the whole state is sent again every few updates).
+ *
+ * Each update carries the version of the bean state. A backup seeing a gap (lost or reordered message)
+ * drops its replica and asks the primary for the whole state again, updates older than the replica are ignored.
+ * The primary keeps the last sent state of its beans to answer such requests.
+ *
+ * Backups only keep the bytes of the replicas. A replica is deserialized (and @PostActivate called)
+ * when a request for its bean reaches this member and the bean is not in the local cache, i.e. on fail-over,
+ * from then on this member is the primary of the bean and replicates it to its own backups.
+ */
+public class ReplicatedCache implements Cache<Object, Instance> {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    static final int BLOCK_SIZE = 512;
+
+    private static final byte END = 0;
+    private static final byte FULL = 1;
+    private static final byte DELTA = 2;
+    private static final byte REMOVE = 3;
+    private static final byte RESYNC = 4;
+
+    private static final Pending REMOVED = new Pending(null, 0);
+    private static final long PURGE_FREQUENCY = TimeUnit.MINUTES.toMillis(1);
+    private static final long TOMBSTONE_DURATION = TimeUnit.MINUTES.toMillis(5);
+    // a backup restarted under the same name misses the deltas until the next full update
+    private static final int MAX_DELTAS = 16;
+
+    private final Object containerId;
+    private final Cache<Object, Instance> delegate;
+    private final int backups;
+    private final long batchInterval;
+    private final int batchSize;
+
+    // primary side
+    private final Map<Object, Instance> checkedOut = new ConcurrentHashMap<>();
+    private final Map<Object, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<Object, Sent> sent = new ConcurrentHashMap<>();
+    private final Set<Object> notSerializable = ConcurrentHashMap.newKeySet();
+
+    // backup side
+    private final Map<Object, Replica> replicas = new ConcurrentHashMap<>();
+
+    private final LongAdder fullUpdates = new LongAdder();
+    private final LongAdder deltaUpdates = new LongAdder();
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder serializedBytes = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder activations = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+
+    private final Object flushLock = new Object();
+    private volatile ReplicationChannel channel;
+    private volatile long lastPurge = System.currentTimeMillis();
+    private volatile boolean warnedNoChannel;
+    private CacheListener<Instance> listener;
+    private ScheduledExecutorService executor;
+    private ObjectName objectName;
+
+    /**
+     * @param backups       number of members keeping a replica of each bean
+     * @param batchInterval duration (ms) between two sends, the beans are sent by the invoking thread if not positive
+     * @param batchSize     maximum number of beans in a message
+     */
+    public ReplicatedCache(final Object containerId, final Cache<Object, Instance> delegate,
+                           final int backups, final long batchInterval, final int batchSize) {
+        this.containerId = containerId;
+        this.delegate = delegate;
+        this.backups = backups;
+        this.batchInterval = batchInterval;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Hands a message received from another member to the replicated cache of the container.
+     */
+    public static void receive(final Object containerId, final byte[] message) {
+        final ContainerSystem containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
+        final Container container = containerSystem == null ? null : containerSystem.getContainer(containerId);
+        if (container instanceof StatefulContainer && ((StatefulContainer) container).getCache() instanceof ReplicatedCache) {
+            ((ReplicatedCache) ((StatefulContainer) container).getCache()).receive(message);
+        } else {
+            logger.warning("Ignoring stateful replication message for container " + containerId + ", it is not a replicated stateful container");
+        }
+    }
+
+    public Cache<Object, Instance> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Overrides the channel registered in the SystemInstance.
+     */
+    public void setChannel(final ReplicationChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public synchronized CacheListener<Instance> getListener() {
+        return listener;
+    }
+
+    @Override
+    public synchronized void setListener(final CacheListener<Instance> listener) {
+        this.listener = listener;
+        delegate.setListener(listener == null ? null : new ReplicationListener(listener));
+    }
+
+    @Override
+    public void add(final Object key, final Instance value) {
+        delegate.add(key, value);
+        checkedOut.put(key, value);
+    }
+
+    @Override
+    public Instance checkOut(final Object key, final boolean loadIfNotFound) throws Exception {
+        Instance instance = delegate.checkOut(key, loadIfNotFound);
+        if (instance == null && loadIfNotFound) {
+            instance = activate(key);
+        }
+        if (instance != null) {
+            checkedOut.put(key, instance);
+        }
+        return instance;
+    }
+
+    @Override
+    public void checkIn(final Object key) {
+        final Instance instance = checkedOut.remove(key);
+        if (instance != null) { // serialize before the check-in, nobody else can use it yet
+            queue(instance);
+        }
+        delegate.checkIn(key);
+        if (batchInterval <= 0) {
+            flush();
+        }
+    }
+
+    @Override
+    public Instance remove(final Object key) {
+        checkedOut.remove(key);
+        queueRemoval(key);
+        if (batchInterval <= 0) {
+            flush();
+        }
+        return delegate.remove(key);
+    }
+
+    @Override
+    public void removeAll(final CacheFilter<Instance> filter) {
+        final Collection<Object> removed = new ArrayList<>();
+        delegate.removeAll(instance -> {
+            final boolean matches = filter.matches(instance);
+            if (matches) {
+                removed.add(instance.primaryKey);
+            }
+            return matches;
+        });
+        for (final Object key : removed) {
+            checkedOut.remove(key);
+            queueRemoval(key);
+        }
+        if (batchInterval <= 0) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void init() {
+        delegate.init();
+
+        if (executor == null && batchInterval > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("openejb-stateful-replication", containerId));
+            executor.scheduleWithFixedDelay(this::flush, batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+        }
+
+        if (objectName == null && LocalMBeanServer.isJMXActive()) {
+            objectName = new ObjectNameBuilder("openejb.management")
+                .set("j2eeType", "StatefulReplication")
+                .set("name", containerId != null ? containerId.toString() : "cache-" + System.identityHashCode(this))
+                .build();
+            LocalMBeanServer.registerDynamicWrapperSilently(new Statistics(this), objectName);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        flush();
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+        delegate.destroy();
+    }
+
+    private void queue(final Instance instance) {
+        final byte[] state;
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (final ObjectOutputStream out = new ObjectOutputStream(baos)) {
+                out.writeObject(instance);
+            }
+            state = baos.toByteArray();
+        } catch (final IOException | RuntimeException e) {
+            final Object deploymentId = instance.beanContext.getDeploymentID();
+            if (notSerializable.add(deploymentId)) {
+                logger.warning("Stateful bean " + deploymentId + " can't be serialized, it will not be replicated: " + e.getMessage());
+            }
+            return;
+        }
+        serializedBytes.add(state.length);
+        pending.put(instance.primaryKey, new Pending(state, timeOut(instance)));
+    }
+
+    private void queueRemoval(final Object key) {
+        final Pending old = pending.remove(key);
+        if (old != null || sent.containsKey(key)) {
+            pending.put(key, REMOVED);
+        }
+    }
+
+    private static long timeOut(final Instance instance) {
+        final Duration duration = instance.getTimeOut();
+        return duration == null || duration.getTime() < 0 ? -1 : duration.getTime(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the queued changes to the backup members.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            doFlush();
+        }
+    }
+
+    private void doFlush() {
+        final long now = System.currentTimeMillis();
+        if (now - lastPurge > PURGE_FREQUENCY) {
+            lastPurge = now;
+            sent.values().removeIf(s -> s.expiry < now);
+            replicas.values().removeIf(r -> r.expiry < now);
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final ReplicationChannel channel = channel();
+        final List<String> targets = channel == null ? Collections.emptyList() : backups(channel);
+        if (targets.isEmpty()) { // nobody to send to, everything is sent again once there are members
+            if (channel == null && !warnedNoChannel) {
+                warnedNoChannel = true;
+                logger.warning("No ReplicationChannel available, stateful beans of " + containerId + " are not replicated");
+            }
+            pending.clear();
+            sent.clear();
+            return;
+        }
+
+        final Batch batch = new Batch(channel.getLocalMember());
+        for (final Map.Entry<Object, Pending> entry : pending.entrySet()) {
+            final Object key = entry.getKey();
+            final Pending update = entry.getValue();
+            if (!pending.remove(key, update)) {
+                continue; // updated meanwhile, sent next time
+            }
+            try {
+                write(batch, key, update, targets, now);
+            } catch (final IOException e) {
+                logger.warning("Can't write the replication data of stateful bean " + key + ": " + e.getMessage());
+                resend(Collections.singletonList(key));
+                continue;
+            }
+            if (batch.size == batchSize) {
+                send(channel, targets, batch);
+                batch.reset();
+            }
+        }
+        if (batch.size > 0) {
+            send(channel, targets, batch);
+        }
+    }
+
+    private void write(final Batch batch, final Object key, final Pending update, final List<String> targets, final long now) throws IOException {
+        final DataOutputStream out = batch.out();
+        final byte[] serializedKey = serializeKey(key);
+
+        if (update == REMOVED) {
+            out.writeByte(REMOVE);
+            writeBytes(out, serializedKey);
+            sent.remove(key);
+            removals.increment();
+        } else {
+            final Sent previous = sent.get(key);
+            final long[] hashes = hashes(update.state);
+            final long version;
+            final int deltas;
+            if (previous == null || previous.full || !previous.members.equals(targets) || previous.deltas >= MAX_DELTAS) {
+                version = previous == null ? 1 : previous.version + 1;
+                out.writeByte(FULL);
+                writeBytes(out, serializedKey);
+                out.writeLong(version);
+                out.writeLong(update.timeOut);
+                writeBytes(out, update.state);
+                deltas = 0;
+                fullUpdates.increment();
+            } else {
+                version = previous.version + 1;
+                out.writeByte(DELTA);
+                writeBytes(out, serializedKey);
+                out.writeLong(version);
+                out.writeLong(update.timeOut);
+                out.writeInt(update.state.length);
+                final List<Integer> changed = new ArrayList<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (i >= previous.hashes.length || hashes[i] != previous.hashes[i]) {
+                        changed.add(i);
+                    }
+                }
+                out.writeInt(changed.size());
+                for (final int block : changed) {
+                    final int offset = block * BLOCK_SIZE;
+                    final int length = Math.min(BLOCK_SIZE, update.state.length - offset);
+                    out.writeInt(block);
+                    out.writeInt(length);
+                    out.write(update.state, offset, length);
+                }
+                deltas = previous.deltas + 1;
+                deltaUpdates.increment();
+            }
+            sent.put(key, new Sent(version, deltas, hashes, update, targets, expiry(now, update.timeOut), false));
+        }
+        batch.keys.add(key);
+        batch.size++;
+    }
+
+    private void send(final ReplicationChannel channel, final List<String> targets, final Batch batch) {
+        final byte[] message;
+        try {
+            message = batch.finish();
+        } catch (final IOException e) {
+            logger.warning("Can't compress the stateful replication message: " + e.getMessage());
+            resend(batch.keys);
+            return;
+        }
+
+        for (final String member : targets) {
+            try {
+                channel.send(member, containerId, message);
+                messages.increment();
+                sentBytes.add(message.length);
+            } catch (final IOException | RuntimeException e) {
+                logger.warning("Can't send stateful replication message to " + member + ": " + e.getMessage());
+                resend(batch.keys); // the member may have missed a delta, send the whole state next time
+            }
+        }
+    }
+
+    // the version goes on so the backups don't take the whole state for an older one
+    private void resend(final Collection<Object> keys) {
+        for (final Object key : keys) {
+            sent.computeIfPresent(key, (k, s) -> s.fullNextTime());
+        }
+    }
+
+    // a backup missed an update of these beans
+    private void resync(final Collection<Object> keys) {
+        synchronized (flushLock) {
+            for (final Object key : keys) {
+                final Sent previous = sent.get(key);
+                if (previous != null) { // else removed or timed out
+                    sent.put(key, previous.fullNextTime());
+                    pending.putIfAbsent(key, previous.update);
+                }
+            }
+        }
+        if (batchInterval <= 0) {
+            flush();
+        }
+    }
+
+    // the members after this one in a ring sorted by name so the backups of a member are stable
+    private List<String> backups(final ReplicationChannel channel) {
+        final List<String> members = new ArrayList<>(channel.getMembers());
+        final String local = channel.getLocalMember();
+        members.remove(local);
+        if (members.isEmpty() || backups <= 0) {
+            return Collections.emptyList();
+        }
+        Collections.sort(members);
+
+        int start = 0;
+        while (start < members.size() && members.get(start).compareTo(local) < 0) {
+            start++;
+        }
+        final List<String> targets = new ArrayList<>();
+        for (int i = 0; i < Math.min(backups, members.size()); i++) {
+            targets.add(members.get((start + i) % members.size()));
+        }
+        return targets;
+    }
+
+    private ReplicationChannel channel() {
+        final ReplicationChannel channel = this.channel;
+        return channel != null ? channel : SystemInstance.get().getComponent(ReplicationChannel.class);
+    }
+
+    /**
+     * Applies a message sent by a primary member, or a request of a backup to send whole states again.
+     */
+    public void receive(final byte[] message) {
+        final long now = System.currentTimeMillis();
+        final List<Object> missed = new ArrayList<>();
+        final List<Object> requested = new ArrayList<>();
+        final String sender;
+        try (final DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(message)))) {
+            sender = in.readUTF();
+            byte type;
+            while ((type = in.readByte()) != END) {
+                final Object key = deserializeKey(readBytes(in));
+                switch (type) {
+                    case REMOVE: // kept a while so a late update doesn't bring it back
+                        replicas.put(key, new Replica(null, Long.MAX_VALUE, now + TOMBSTONE_DURATION));
+                        break;
+                    case FULL: {
+                        final long version = in.readLong();
+                        final long timeOut = in.readLong();
+                        final byte[] state = readBytes(in);
+                        final Replica previous = replicas.get(key);
+                        if (previous == null || previous.version <= version) { // else late
+                            replicas.put(key, new Replica(state, version, expiry(now, timeOut)));
+                        }
+                        break;
+                    }
+                    case DELTA: {
+                        final long version = in.readLong();
+                        final long timeOut = in.readLong();
+                        final Replica previous = replicas.get(key);
+                        final byte[] state = new byte[in.readInt()];
+                        if (previous != null && previous.state != null) {
+                            System.arraycopy(previous.state, 0, state, 0, Math.min(state.length, previous.state.length));
+                        }
+                        final int blocks = in.readInt();
+                        for (int i = 0; i < blocks; i++) {
+                            final int offset = in.readInt() * BLOCK_SIZE;
+                            in.readFully(state, offset, in.readInt());
+                        }
+                        if (previous != null && version <= previous.version) {
+                            break; // late
+                        }
+                        if (previous == null || previous.state == null || previous.version != version - 1) { // missed an update
+                            replicas.put(key, new Replica(null, previous == null ? 0 : previous.version, expiry(now, timeOut)));
+                            mismatches.increment();
+                            missed.add(key);
+                        } else {
+                            replicas.put(key, new Replica(state, version, expiry(now, timeOut)));
+                        }
+                        break;
+                    }
+                    case RESYNC:
+                        requested.add(key);
+                        break;
+                    default:
+                        throw new IOException("Unknown stateful replication entry " + type);
+                }
+            }
+        } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+            logger.warning("Invalid stateful replication message for container " + containerId + ": " + e.getMessage());
+            return;
+        }
+
+        if (!requested.isEmpty()) {
+            resync(requested);
+        }
+        if (!missed.isEmpty()) {
+            requestResync(sender, missed);
+        }
+    }
+
+    private void requestResync(final String primary, final Collection<Object> keys) {
+        final ReplicationChannel channel = channel();
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            final Batch batch = new Batch(channel.getLocalMember());
+            final DataOutputStream out = batch.out();
+            for (final Object key : keys) {
+                out.writeByte(RESYNC);
+                writeBytes(out, serializeKey(key));
+            }
+            final byte[] message = batch.finish();
+            channel.send(primary, containerId, message);
+            messages.increment();
+            sentBytes.add(message.length);
+        } catch (final IOException | RuntimeException e) { // the replicas stay dropped until the next full update
+            logger.warning("Can't ask " + primary + " for the whole state of " + keys.size() + " stateful beans: " + e.getMessage());
+        }
+    }
+
+    private static long expiry(final long now, final long timeOut) {
+        return timeOut < 0 ? Long.MAX_VALUE : now + timeOut;
+    }
+
+    private Instance activate(final Object key) throws Exception {
+        final Replica replica = replicas.get(key);
+        if (replica == null || replica.state == null) {
+            return null;
+        }
+        replicas.remove(key, replica);
+        final long now = System.currentTimeMillis();
+        if (replica.expiry < now) {
+            return null;
+        }
+
+        final Instance instance;
+        try (final ObjectInputStream in = new EjbObjectInputStream(new ByteArrayInputStream(replica.state))) {
+            instance = (Instance) in.readObject();
+        } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+            logger.warning("Can't activate the replica of stateful bean " + key + ": " + e.getMessage());
+            return null;
+        }
+
+        delegate.add(key, instance);
+        activations.increment();
+
+        // this member is now the primary, its updates follow the version of the replica
+        final Pending update = new Pending(replica.state, timeOut(instance));
+        sent.put(key, new Sent(replica.version, 0, hashes(replica.state), update, Collections.<String>emptyList(), expiry(now, update.timeOut), true));
+
+        final CacheListener<Instance> listener = getListener();
+        if (listener != null) {
+            listener.afterLoad(instance);
+        }
+        return instance;
+    }
+
+    private static byte[] serializeKey(final Object key) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(key);
+        }
+        return baos.toByteArray();
+    }
+
+    private static Object deserializeKey(final byte[] key) throws IOException, ClassNotFoundException {
+        try (final ObjectInputStream in = new EjbObjectInputStream(new ByteArrayInputStream(key))) {
+            return in.readObject();
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    // FNV-1a by block
+    static long[] hashes(final byte[] state) {
+        final long[] hashes = new long[(state.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        for (int block = 0; block < hashes.length; block++) {
+            long hash = 0xcbf29ce484222325L;
+            final int end = Math.min(state.length, (block + 1) * BLOCK_SIZE);
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                hash ^= state[i];
+                hash *= 0x100000001b3L;
+            }
+            hashes[block] = hash;
+        }
+        return hashes;
+    }
+
+    public int getReplicaCount() {
+        int count = 0;
+        for (final Replica replica : replicas.values()) {
+            if (replica.state != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean hasReplica(final Object key) {
+        final Replica replica = replicas.get(key);
+        return replica != null && replica.state != null;
+    }
+
+    private static final class Pending {
+        private final byte[] state;
+        private final long timeOut;
+
+        private Pending(final byte[] state, final long timeOut) {
+            this.state = state;
+            this.timeOut = timeOut;
+        }
+    }
+
+    private static final class Sent {
+        private final long version;
+        private final int deltas;
+        private final long[] hashes;
+        private final Pending update; // what the backups have, sent again if one of them misses an update
+        private final List<String> members;
+        private final long expiry;
+        private final boolean full;
+
+        private Sent(final long version, final int deltas, final long[] hashes, final Pending update,
+                     final List<String> members, final long expiry, final boolean full) {
+            this.version = version;
+            this.deltas = deltas;
+            this.hashes = hashes;
+            this.update = update;
+            this.members = members;
+            this.expiry = expiry;
+            this.full = full;
+        }
+
+        private Sent fullNextTime() {
+            return new Sent(version, deltas, hashes, update, members, expiry, true);
+        }
+    }
+
+    // a null state is a replica which missed an update or a removed bean
+    private static final class Replica {
+        private final byte[] state;
+        private final long version;
+        private final long expiry;
+
+        private Replica(final byte[] state, final long version, final long expiry) {
+            this.state = state;
+            this.version = version;
+            this.expiry = expiry;
+        }
+    }
+
+    private static final class Batch {
+        private final String sender;
+        private final List<Object> keys = new ArrayList<>();
+        private ByteArrayOutputStream bytes;
+        private DataOutputStream out;
+        private int size;
+
+        private Batch(final String sender) {
+            this.sender = sender;
+        }
+
+        private DataOutputStream out() throws IOException {
+            if (out == null) {
+                bytes = new ByteArrayOutputStream();
+                out = new DataOutputStream(new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED), 8192));
+                out.writeUTF(sender);
+            }
+            return out;
+        }
+
+        private byte[] finish() throws IOException {
+            out().writeByte(END);
+            out.close();
+            return bytes.toByteArray();
+        }
+
+        private void reset() {
+            keys.clear();
+            bytes = null;
+            out = null;
+            size = 0;
+        }
+    }
+
+    private final class ReplicationListener implements CacheListener<Instance> {
+        private final CacheListener<Instance> delegate;
+
+        private ReplicationListener(final CacheListener<Instance> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void afterLoad(final Instance value) throws Exception {
+            delegate.afterLoad(value);
+        }
+
+        @Override
+        public void beforeStore(final Instance value) throws Exception {
+            delegate.beforeStore(value);
+        }
+
+        @Override
+        public void timedOut(final Instance value) {
+            checkedOut.remove(value.primaryKey);
+            queueRemoval(value.primaryKey);
+            delegate.timedOut(value);
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Stateful session replication statistics")
+    public static final class Statistics {
+        private final ReplicatedCache cache;
+
+        public Statistics(final ReplicatedCache cache) {
+            this.cache = cache;
+        }
+
+        @ManagedAttribute
+        @Description("Number of backup members of a bean")
+        public int getBackups() {
+            return cache.backups;
+        }
+
+        @ManagedAttribute
+        @Description("Number of local beans replicated to the backup members")
+        public int getReplicatedBeans() {
+            return cache.sent.size();
+        }
+
+        @ManagedAttribute
+        @Description("Number of replicas kept for other members")
+        public int getReplicas() {
+            return cache.getReplicaCount();
+        }
+
+        @ManagedAttribute
+        @Description("Number of whole states sent")
+        public long getFullUpdates() {
+            return cache.fullUpdates.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Number of changed blocks updates sent")
+        public long getDeltaUpdates() {
+            return cache.deltaUpdates.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Number of removals sent")
+        public long getRemovals() {
+            return cache.removals.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Number of messages sent")
+        public long getMessages() {
+            return cache.messages.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Size in bytes of the serialized beans")
+        public long getSerializedBytes() {
+            return cache.serializedBytes.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Size in bytes of the messages sent")
+        public long getSentBytes() {
+            return cache.sentBytes.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Number of replicas activated after a fail-over")
+        public long getActivations() {
+            return cache.activations.sum();
+        }
+
+        @ManagedAttribute
+        @Description("Number of replicas dropped because an update was missed, the whole state is requested again")
+        public long getMismatches() {
+            return cache.mismatches.sum();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Transport used by {@link ReplicatedCache} to send the stateful session state to the backup members,
+ * registered as a SystemInstance component by the cluster integration (Tomcat cluster in TomEE).
+ *
+ * The receiving side hands the messages to {@link ReplicatedCache#receive(Object, byte[])}.
+ */
+public interface ReplicationChannel {
+    /**
+     * @return the name of this member, as seen by the other members.
+     */
+    String getLocalMember();
+
+    /**
+     * @return the names of the live members, this one excluded.
+     */
+    List<String> getMembers();
+
+    void send(String member, Object containerId, byte[] message) throws IOException;
+}
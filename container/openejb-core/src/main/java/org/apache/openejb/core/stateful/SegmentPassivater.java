@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.SystemException;
+import org.apache.openejb.core.EnvProps;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.JavaSecurityManagers;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends the passivated states to a few memory mapped segment files instead of a file per bean.
+ *
+ * Keys are spread over stripes, each one owning its segments and its lock so beans of
+ * different stripes are passivated and activated concurrently. An in memory index gives
+ * the segment and offset of each state. A segment is unmapped and deleted once all its states
+ * were activated or timed out and the sparse ones are compacted when a stripe rolls to a new
+ * segment, which happens on the cache thread passivating the beans.
+ */
+public class SegmentPassivater implements PassivationStrategy {
+
+    public static final String STRIPES = "openejb.stateful.passivation.stripes";
+    public static final String SEGMENT_SIZE = "openejb.stateful.passivation.segment-size";
+    public static final String TIME_OUT = "openejb.stateful.passivation.time-out";
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private final Map<Object, Pointer> index = new ConcurrentHashMap<>();
+    private File directory;
+    private Stripe[] stripes;
+    private int segmentSize;
+    private long timeOut;
+
+    public SegmentPassivater() throws SystemException {
+        init(null);
+    }
+
+    @Override
+    public void init(Properties props) throws SystemException {
+        if (props == null) {
+            props = new Properties();
+        }
+
+        final Options options = new Options(props, SystemInstance.get().getOptions());
+        final String dir = props.getProperty(EnvProps.IM_PASSIVATOR_PATH_PREFIX);
+
+        try {
+            final File parent;
+            if (dir != null) {
+                parent = SystemInstance.get().getBase().getDirectory(dir);
+            } else {
+                parent = new File(JavaSecurityManagers.getSystemProperty("java.io.tmpdir", File.separator + "tmp"));
+            }
+
+            directory = new File(parent, "passivation-segments-" + ids.incrementAndGet() + "-" + System.nanoTime());
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Failed to create session directory: " + directory.getAbsolutePath());
+            }
+            Files.deleteOnExit(directory); // the segments are deleted as they are dropped, only the leftovers are handled there
+
+            logger.info("Using directory " + directory + " for stateful session passivation");
+        } catch (final IOException e) {
+            throw new SystemException(getClass().getName() + ".init(): can't use directory prefix " + dir + ":" + e, e);
+        }
+
+        segmentSize = options.get(SEGMENT_SIZE, 8 * 1024 * 1024);
+        timeOut = options.get(TIME_OUT, -1L); // for the states not giving their own, passivated beans are not seen by the cache anymore
+        stripes = new Stripe[Math.max(1, options.get(STRIPES, 8))];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    @Override
+    public void passivate(final Map stateTable) throws SystemException {
+        for (final Object o : stateTable.entrySet()) {
+            final Map.Entry entry = (Map.Entry) o;
+            final Object primaryKey = entry.getKey();
+
+            final byte[] bytes;
+            try {
+                bytes = serialize(entry.getValue());
+            } catch (final NotSerializableException nse) {
+                logger.error("Passivation failed ", nse);
+                throw (SystemException) new SystemException("The type " + nse.getMessage() + " is not serializable as mandated by the EJB specification.").initCause(nse);
+            } catch (final IOException e) {
+                logger.error("Passivation failed ", e);
+                throw new SystemException(e);
+            }
+
+            try {
+                stripe(primaryKey).write(primaryKey, bytes, expiresAt(entry.getValue()));
+            } catch (final IOException e) {
+                logger.error("Passivation failed ", e);
+                throw new SystemException(e);
+            }
+        }
+    }
+
+    @Override
+    public Object activate(final Object primaryKey) throws SystemException {
+        final byte[] bytes = stripe(primaryKey).read(primaryKey);
+        if (bytes == null) {
+            return null;
+        }
+
+        try (final ObjectInputStream ois = new EjbObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        } catch (final Exception e) {
+            logger.info("Activation failed ", e);
+            throw new SystemException(e);
+        }
+    }
+
+    private long expiresAt(final Object state) {
+        long ms = timeOut;
+        if (state instanceof Cache.TimeOut) {
+            final Duration duration = ((Cache.TimeOut) state).getTimeOut();
+            if (duration != null) {
+                ms = duration.getTime(TimeUnit.MILLISECONDS);
+            }
+        }
+        return ms < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ms;
+    }
+
+    private Stripe stripe(final Object primaryKey) {
+        return stripes[(primaryKey.hashCode() & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private static byte[] serialize(final Object state) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(state);
+        }
+        return baos.toByteArray();
+    }
+
+    private static final class Pointer {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final long expiresAt;
+
+        private Pointer(final Segment segment, final int offset, final int length, final long expiresAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Stripe {
+        private final int id;
+        private final Lock lock = new ReentrantLock();
+
+        // only used inside the lock
+        private final List<Segment> segments = new ArrayList<>();
+        private Segment current;
+        private int segmentIds;
+
+        private Stripe(final int id) {
+            this.id = id;
+        }
+
+        private void write(final Object primaryKey, final byte[] bytes, final long expiresAt) throws IOException {
+            lock.lock();
+            try {
+                release(primaryKey, index.remove(primaryKey)); // passivated again without being activated
+                index.put(primaryKey, append(primaryKey, bytes, expiresAt));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private byte[] read(final Object primaryKey) {
+            lock.lock();
+            try {
+                final Pointer pointer = index.remove(primaryKey);
+                if (pointer == null) {
+                    return null;
+                }
+                if (pointer.expiresAt < System.currentTimeMillis()) {
+                    release(primaryKey, pointer);
+                    return null;
+                }
+
+                final byte[] bytes = new byte[pointer.length];
+                final ByteBuffer buffer = pointer.segment.buffer.duplicate();
+                buffer.position(pointer.offset);
+                buffer.get(bytes);
+
+                release(primaryKey, pointer);
+                return bytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Pointer append(final Object primaryKey, final byte[] bytes, final long expiresAt) throws IOException {
+            if (current == null || current.buffer.remaining() < bytes.length) {
+                roll(bytes.length);
+            }
+
+            final Segment segment = current;
+            final int offset = segment.buffer.position();
+            segment.buffer.put(bytes);
+            segment.live += bytes.length;
+            segment.keys.add(primaryKey);
+            return new Pointer(segment, offset, bytes.length, expiresAt);
+        }
+
+        private void release(final Object primaryKey, final Pointer pointer) {
+            if (pointer == null) {
+                return;
+            }
+
+            final Segment segment = pointer.segment;
+            segment.keys.remove(primaryKey);
+            segment.live -= pointer.length;
+            if (segment.live != 0) {
+                return;
+            }
+            if (segment != current) {
+                segments.remove(segment);
+                segment.delete();
+            } else {
+                segment.buffer.clear(); // reuse it from the start
+            }
+        }
+
+        private void roll(final int minSize) throws IOException {
+            expire();
+            if (current != null && current.buffer.remaining() >= minSize) { // emptied by the expiration
+                return;
+            }
+
+            final Segment previous = current;
+            current = new Segment(new File(directory, "segment-" + id + "-" + segmentIds++ + ".ser"), Math.max(segmentSize, minSize));
+            segments.add(current);
+
+            if (previous != null && previous.live == 0) {
+                segments.remove(previous);
+                previous.delete();
+            }
+
+            compact(minSize);
+        }
+
+        /**
+         * Drops the states of the beans which timed out while passivated, they would never be activated.
+         */
+        private void expire() {
+            final long now = System.currentTimeMillis();
+            for (final Segment segment : new ArrayList<>(segments)) {
+                for (final Object primaryKey : new ArrayList<>(segment.keys)) {
+                    final Pointer pointer = index.get(primaryKey);
+                    if (pointer != null && pointer.expiresAt < now) {
+                        index.remove(primaryKey);
+                        release(primaryKey, pointer);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves the states of the segments less than half used to the current one.
+         *
+         * @param reserved the room to keep in the current segment for the state being written
+         */
+        private void compact(final int reserved) throws IOException {
+            for (final Iterator<Segment> it = segments.iterator(); it.hasNext(); ) {
+                final Segment segment = it.next();
+                if (segment == current || segment.live * 2 > segment.size || segment.live > current.buffer.remaining() - reserved) {
+                    continue;
+                }
+
+                for (final Object primaryKey : segment.keys) {
+                    final Pointer pointer = index.get(primaryKey);
+                    final byte[] bytes = new byte[pointer.length];
+                    final ByteBuffer buffer = segment.buffer.duplicate();
+                    buffer.position(pointer.offset);
+                    buffer.get(bytes);
+                    index.put(primaryKey, append(primaryKey, bytes, pointer.expiresAt));
+                }
+
+                it.remove();
+                segment.delete();
+            }
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final int size;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+
+        // only used inside the lock of the stripe
+        private final Set<Object> keys = new HashSet<>();
+        private long live;
+
+        private Segment(final File file, final int size) throws IOException {
+            this.file = file;
+            this.size = size;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        private void delete() {
+            try {
+                raf.close();
+            } catch (final IOException e) {
+                // no-op
+            }
+            unmap(buffer); // else the mapping and the file live until the buffer is collected
+            if (!file.delete()) {
+                logger.debug("Can't delete " + file + ", it will be deleted with the passivation directory");
+            }
+        }
+
+        // the buffer must not be read anymore, the stripe lock guarantees it
+        private static void unmap(final MappedByteBuffer buffer) {
+            try { // java 9+
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+                return;
+            } catch (final Exception e) {
+                // try the java 8 way
+            }
+            try {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (final Exception e) {
+                // no-op: unmapped when collected
+            }
+        }
+    }
+}
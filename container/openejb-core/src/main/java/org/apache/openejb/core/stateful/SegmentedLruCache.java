@@ -0,0 +1,916 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.OpenEJBRuntimeException;
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stateful cache keeping the available values in a segmented LRU: values checked in for the first
+ * time enter the probation segment, values used again move to the protected one. Passivation
+ * picks the least recently used value of the probation segment first, so a burst of one-shot
+ * sessions doesn't push out the conversations in use. Both segments are linked lists so
+ * checking a value in or out and choosing a victim don't depend on the cache size.
+ *
+ * Time outs are found with one queue of check-in times per time out value, walked from the
+ * oldest and stopped at the first value not timed out, instead of scanning every value.
+ *
+ * The capacity is counted in beans and can be completed by MaxHeapBytes, a bound on the
+ * estimated size of the available values. The size of a bean is estimated by serializing a
+ * sample of the checked-in values.
+ *
+ * Unlike an admission policy such as TinyLFU, a passivated value is written to disk rather than
+ * dropped, so every value is admitted and the frequency only decides which one is passivated.
+ */
+public class SegmentedLruCache<K, V> implements Cache<K, V> {
+    public static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    /**
+     * Map of all known values by key
+     */
+    private final ConcurrentHashMap<K, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Available values, guarded by the order lock
+     */
+    private final ReentrantLock order = new ReentrantLock();
+    private final Segment probation = new Segment();
+    private final Segment protect = new Segment();
+
+    /**
+     * Check-in times of the available values by time out, oldest first
+     */
+    private final ConcurrentHashMap<Long, Queue<Entry>> checkIns = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong activations = new AtomicLong();
+    private final AtomicLong passivations = new AtomicLong();
+    private final AtomicLong timeOuts = new AtomicLong();
+
+    private volatile CacheListener<V> listener;
+    private volatile PassivationStrategy passivator;
+
+    /**
+     * Maximum number of available values
+     */
+    private volatile int capacity = 1000;
+
+    /**
+     * Maximum estimated size of the available values in bytes, 0 to only use the capacity
+     */
+    private volatile long maxHeapBytes;
+
+    /**
+     * Part of the capacity the protected segment can use
+     */
+    private volatile int protectedPercent = 80;
+
+    /**
+     * One checked-in value out of sampleRate is serialized to estimate the size of a bean
+     */
+    private volatile int sampleRate = 64;
+    private volatile long averageSize;
+
+    /**
+     * When the capacity is exceeded, this is the number of beans stored at once.
+     */
+    private volatile int bulkPassivate = 100;
+
+    /**
+     * A bean may be destroyed if it isn't used in this length of time (in milliseconds).
+     * A time out of value -1 means a bean will never be destroyed due to time out.
+     * A time out of value 0 means a bean can be immediately destroyed.
+     */
+    private volatile long timeOut = -1;
+
+    /**
+     * Specifies how often the cache is checked for timed out beans.
+     */
+    private volatile long frequency = 60 * 1000;
+
+    private volatile Object containerId;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> future;
+    private ObjectName objectName;
+
+    public SegmentedLruCache() {
+    }
+
+    public SegmentedLruCache(final CacheListener<V> listener, final PassivationStrategy passivator, final int capacity, final int bulkPassivate, final Duration timeOut) {
+        this.listener = listener;
+        this.passivator = passivator;
+        this.capacity = capacity;
+        this.bulkPassivate = bulkPassivate;
+        this.timeOut = timeOut.getTime(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void init() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread t = new Thread(runnable, "Stateful cache");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        if (frequency > 0 && future == null) {
+            // start any thread in container loader to avoid leaks
+            final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            Thread.currentThread().setContextClassLoader(SegmentedLruCache.class.getClassLoader());
+            try {
+                future = executor.scheduleWithFixedDelay(this::processLRU, frequency, frequency, TimeUnit.MILLISECONDS);
+            } finally {
+                Thread.currentThread().setContextClassLoader(loader);
+            }
+        }
+
+        if (objectName == null && LocalMBeanServer.isJMXActive()) {
+            objectName = new ObjectNameBuilder("openejb.management")
+                .set("j2eeType", "StatefulCache")
+                .set("name", containerId != null ? containerId.toString() : "cache-" + System.identityHashCode(this))
+                .build();
+            LocalMBeanServer.registerDynamicWrapperSilently(new Statistics(this), objectName);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public CacheListener<V> getListener() {
+        return listener;
+    }
+
+    @Override
+    public void setListener(final CacheListener<V> listener) {
+        this.listener = listener;
+    }
+
+    public PassivationStrategy getPassivator() {
+        return passivator;
+    }
+
+    public void setPassivator(final PassivationStrategy passivator) {
+        this.passivator = passivator;
+    }
+
+    public void setPassivator(final Class<? extends PassivationStrategy> passivatorClass) throws Exception {
+        this.passivator = passivatorClass.newInstance();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Old configurations use "PoolSize" to configure max cache size
+    public void setPoolSize(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getMaxHeapBytes() {
+        return maxHeapBytes;
+    }
+
+    public void setMaxHeapBytes(final long maxHeapBytes) {
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    public int getProtectedPercent() {
+        return protectedPercent;
+    }
+
+    public void setProtectedPercent(final int protectedPercent) {
+        this.protectedPercent = Math.max(0, Math.min(100, protectedPercent));
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(final int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    public int getBulkPassivate() {
+        return bulkPassivate;
+    }
+
+    public void setBulkPassivate(final int bulkPassivate) {
+        this.bulkPassivate = bulkPassivate;
+    }
+
+    public long getTimeOut() {
+        return timeOut;
+    }
+
+    private static long ms(final String durationValue, final TimeUnit defaultTU) {
+        final Duration duration = new Duration(durationValue.trim());
+        // default was minutes
+        if (duration.getUnit() == null) {
+            duration.setUnit(defaultTU);
+        }
+        return duration.getUnit().toMillis(duration.getTime());
+    }
+
+    public void setTimeOut(final String timeOut) {
+        this.timeOut = ms(timeOut, TimeUnit.MINUTES);
+    }
+
+    public void setFrequency(final String frequency) {
+        this.frequency = ms(frequency, TimeUnit.SECONDS);
+    }
+
+    public long getFrequency() {
+        return frequency;
+    }
+
+    public void setContainerId(final Object containerId) {
+        this.containerId = containerId;
+    }
+
+    @Override
+    public void add(final K key, final V value) {
+        // find the existing entry
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            entry.lock.lock();
+            try {
+                if (entry.state != EntryState.REMOVED) {
+                    throw new IllegalStateException("An entry for the key " + key + " already exists");
+                }
+                // Entry has been removed between get and lock, simply remove the garbage entry
+                cache.remove(key, entry);
+                unlink(entry);
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        entry = new Entry(key, value, EntryState.CHECKED_OUT);
+        cache.put(key, entry);
+    }
+
+    @Override
+    public V checkOut(final K key, final boolean loadEntryIfNotFound) throws Exception {
+        // attempt (up to 10 times) to obtain the entry from the cache
+        for (int i = 0; i < 10; i++) {
+            Entry entry = cache.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                if (!loadEntryIfNotFound) {
+                    return null;
+                }
+                entry = loadEntry(key);
+                if (entry == null) {
+                    return null;
+                }
+            } else {
+                hits.incrementAndGet();
+            }
+
+            entry.lock.lock();
+            try {
+                switch (entry.state) {
+                    case AVAILABLE:
+                        break;
+                    case CHECKED_OUT:
+                        return entry.value;
+                    case PASSIVATED:
+                        // Entry was passivated between get and lock, we need to load the Entry again
+                        cache.remove(key, entry);
+                        continue;
+                    case REMOVED:
+                        // Entry has been removed between get and lock (most likely by undeploying the EJB), simply drop the instance
+                        return null;
+                }
+
+                // mark entry as in-use, used again it will be protected when checked in
+                entry.state = EntryState.CHECKED_OUT;
+                entry.used = true;
+                unlink(entry);
+
+                return entry.value;
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        // something is really messed up with this entry, try to cleanup before throwing an exception
+        final Entry entry = cache.remove(key);
+        if (entry != null) {
+            unlink(entry);
+        }
+        throw new OpenEJBRuntimeException("Cache is corrupted: the entry " + key + " in the Map 'cache' is in state PASSIVATED");
+    }
+
+    @Override
+    public void checkIn(final K key) {
+        final Entry entry = cache.get(key);
+        if (entry == null) {
+            return;
+        }
+
+        entry.lock.lock();
+        try {
+            switch (entry.state) {
+                case AVAILABLE:
+                    // already checked in, it may be out of the segments for a moment while chosen as a victim
+                    entry.resetTimeOut();
+                    recordCheckIn(entry);
+                    return;
+                case PASSIVATED:
+                    // An entry in-use should not be passivated so we can only assume
+                    // that the caller never checked out the bean in the first place
+                    throw new IllegalStateException("The entry " + key + " is not checked-out");
+                case REMOVED:
+                    // Entry has been removed between get and lock (most likely by undeploying the EJB), simply drop the instance
+                    return;
+            }
+
+            if (maxHeapBytes > 0 && samples.incrementAndGet() % sampleRate == 0) {
+                sample(entry.value);
+            }
+
+            entry.state = EntryState.AVAILABLE;
+            entry.resetTimeOut();
+            link(entry);
+            recordCheckIn(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+
+        if (frequency == 0) {
+            processLRU();
+        } else if (isOverCapacity()) {
+            evictLater();
+        }
+    }
+
+    @Override
+    public V remove(final K key) {
+        final Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        entry.lock.lock();
+        try {
+            cache.remove(key, entry);
+            unlink(entry);
+
+            // There is no need to check the state because users of the cache
+            // are responsible for maintaining references to beans in use
+            entry.state = EntryState.REMOVED;
+
+            return entry.value;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(final CacheFilter<V> filter) {
+        for (final Entry entry : cache.values()) {
+            entry.lock.lock();
+            try {
+                if (entry.state != EntryState.REMOVED && filter.matches(entry.value)) {
+                    cache.remove(entry.key, entry);
+                    unlink(entry);
+                    entry.state = EntryState.REMOVED;
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    public void processLRU() {
+        expire();
+        evict();
+    }
+
+    private void expire() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<Long, Queue<Entry>> timedOut : checkIns.entrySet()) {
+            final long timeOut = timedOut.getKey();
+            final Queue<Entry> queue = timedOut.getValue();
+
+            Entry entry;
+            while ((entry = queue.peek()) != null && now - entry.queuedAccess > timeOut) {
+                queue.poll();
+
+                entry.lock.lock();
+                try {
+                    entry.queued = false;
+                    if (entry.state != EntryState.AVAILABLE) {
+                        continue;
+                    }
+
+                    if (!entry.isTimedOut()) {
+                        // used again since it was queued, it may be found a bit after its time out
+                        recordCheckIn(entry);
+                        continue;
+                    }
+
+                    cache.remove(entry.key, entry);
+                    unlink(entry);
+                    entry.state = EntryState.REMOVED;
+                    timeOuts.incrementAndGet();
+
+                    final CacheListener<V> listener = this.listener;
+                    if (listener != null) {
+                        try {
+                            listener.timedOut(entry.value);
+                        } catch (final Exception e) {
+                            logger.error("An unexpected exception occured from timedOut callback", e);
+                        }
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void evictLater() {
+        final ScheduledExecutorService executor = this.executor;
+        if (executor == null) {
+            evict();
+            return;
+        }
+
+        if (evicting.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            evict();
+                        } finally {
+                            evicting.set(false);
+                        }
+                    }
+                });
+            } catch (final RuntimeException e) { // shutdown
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void evict() {
+        while (isOverCapacity()) {
+            if (!passivateBulk()) {
+                return;
+            }
+        }
+    }
+
+    private boolean passivateBulk() {
+        final CacheListener<V> listener = this.listener;
+        final Map<K, V> valuesToStore = new LinkedHashMap<>();
+        final List<Entry> entries = new ArrayList<>();
+        final List<Entry> busy = new ArrayList<>();
+
+        int removed = 0;
+        final int bulkPassivate = Math.max(1, this.bulkPassivate);
+        for (int i = 0; i < bulkPassivate; i++) {
+            final Entry entry = pollVictim();
+            if (entry == null) {
+                break;
+            }
+
+            if (!entry.lock.tryLock()) {
+                // used by another thread, don't wait for it while holding the passivation locks
+                busy.add(entry);
+                continue;
+            }
+            try {
+                if (entry.state != EntryState.AVAILABLE) {
+                    continue;
+                }
+
+                cache.remove(entry.key, entry);
+                removed++;
+
+                // if the entry is actually timed out we just destroy it; otherwise it is written to disk
+                if (entry.isTimedOut()) {
+                    entry.state = EntryState.REMOVED;
+                    timeOuts.incrementAndGet();
+                    if (listener != null) {
+                        try {
+                            listener.timedOut(entry.value);
+                        } catch (final Exception e) {
+                            logger.error("An unexpected exception occured from timedOut callback", e);
+                        }
+                    }
+                } else {
+                    // entry will be passivated, so we need to obtain an additional lock until the passivation is complete
+                    entry.lock.lock();
+                    entries.add(entry);
+
+                    entry.state = EntryState.PASSIVATED;
+                    valuesToStore.put(entry.key, entry.value);
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        if (!valuesToStore.isEmpty()) {
+            try {
+                storeEntries(valuesToStore);
+            } finally {
+                for (final Entry entry : entries) {
+                    // release the extra passivation lock
+                    entry.lock.unlock();
+                }
+            }
+        }
+
+        // put back the entries skipped because they were locked and are still available
+        for (final Entry entry : busy) {
+            entry.lock.lock();
+            try {
+                if (entry.state == EntryState.AVAILABLE && entry.segment == null) {
+                    link(entry);
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+        return removed > 0;
+    }
+
+    private boolean isOverCapacity() {
+        final int available = probation.size + protect.size;
+        if (available >= capacity) {
+            return true;
+        }
+        final long maxHeapBytes = this.maxHeapBytes;
+        return maxHeapBytes > 0 && available * averageSize > maxHeapBytes;
+    }
+
+    private Entry loadEntry(final K key) throws Exception {
+        final PassivationStrategy passivator = this.passivator;
+        if (passivator == null) {
+            return null;
+        }
+
+        V value = null;
+        try {
+            value = (V) passivator.activate(key);
+        } catch (final Exception e) {
+            logger.error("An unexpected exception occured while reading entries from disk", e);
+        }
+
+        if (value == null) {
+            return null;
+        }
+        activations.incrementAndGet();
+
+        final CacheListener<V> listener = this.listener;
+        if (listener != null) {
+            listener.afterLoad(value);
+        }
+        final Entry entry = new Entry(key, value, EntryState.AVAILABLE);
+        entry.used = true; // it was worth keeping once already
+        cache.put(key, entry);
+        return entry;
+    }
+
+    private void storeEntries(final Map<K, V> entriesToStore) {
+        final CacheListener<V> listener = this.listener;
+        if (listener != null) {
+            for (final Iterator<Map.Entry<K, V>> iterator = entriesToStore.entrySet().iterator(); iterator.hasNext(); ) {
+                final Map.Entry<K, V> entry = iterator.next();
+                try {
+                    listener.beforeStore(entry.getValue());
+                } catch (final Exception e) {
+                    iterator.remove();
+                    logger.error("An unexpected exception occured from beforeStore callback", e);
+                }
+            }
+        }
+
+        final PassivationStrategy passivator = this.passivator;
+        if (passivator == null) {
+            return;
+        }
+
+        try {
+            passivator.passivate(entriesToStore);
+            passivations.addAndGet(entriesToStore.size());
+        } catch (final Exception e) {
+            logger.error("An unexpected exception occured while writting the entries to disk", e);
+        }
+    }
+
+    private void sample(final V value) {
+        final CountingOutputStream counter = new CountingOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            out.writeObject(value);
+        } catch (final Exception e) {
+            return; // not serializable outside of a passivation, keep the previous estimate
+        }
+
+        final long previous = averageSize;
+        averageSize = previous == 0 ? counter.count : (previous * 7 + counter.count) / 8;
+    }
+
+    private void recordCheckIn(final Entry entry) {
+        if (entry.timeOut < 0 || entry.queued) {
+            return;
+        }
+
+        Queue<Entry> queue = checkIns.get(entry.timeOut);
+        if (queue == null) {
+            final Queue<Entry> existing = checkIns.putIfAbsent(entry.timeOut, queue = new ConcurrentLinkedQueue<>());
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        entry.queued = true;
+        entry.queuedAccess = entry.lastAccess;
+        queue.add(entry);
+    }
+
+    private void link(final Entry entry) {
+        order.lock();
+        try {
+            if (entry.segment != null) {
+                entry.segment.remove(entry);
+            }
+            if (!entry.used) {
+                probation.addFirst(entry);
+                return;
+            }
+
+            protect.addFirst(entry);
+            if (protect.size > (long) capacity * protectedPercent / 100) {
+                final Entry demoted = protect.last;
+                protect.remove(demoted);
+                probation.addFirst(demoted);
+            }
+        } finally {
+            order.unlock();
+        }
+    }
+
+    private void unlink(final Entry entry) {
+        order.lock();
+        try {
+            if (entry.segment != null) {
+                entry.segment.remove(entry);
+            }
+        } finally {
+            order.unlock();
+        }
+    }
+
+    private Entry pollVictim() {
+        order.lock();
+        try {
+            final Segment segment = probation.last != null ? probation : protect;
+            final Entry victim = segment.last;
+            if (victim != null) {
+                segment.remove(victim);
+            }
+            return victim;
+        } finally {
+            order.unlock();
+        }
+    }
+
+    private enum EntryState {
+        AVAILABLE, CHECKED_OUT, PASSIVATED, REMOVED
+    }
+
+    /**
+     * Doubly linked list of entries, only used inside the order lock
+     */
+    private final class Segment {
+        private Entry first;
+        private Entry last;
+        private volatile int size;
+
+        private void addFirst(final Entry entry) {
+            entry.segment = this;
+            entry.previous = null;
+            entry.next = first;
+            if (first != null) {
+                first.previous = entry;
+            } else {
+                last = entry;
+            }
+            first = entry;
+            size++;
+        }
+
+        private void remove(final Entry entry) {
+            if (entry.previous != null) {
+                entry.previous.next = entry.next;
+            } else {
+                first = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.previous = entry.previous;
+            } else {
+                last = entry.previous;
+            }
+            entry.previous = null;
+            entry.next = null;
+            entry.segment = null;
+            size--;
+        }
+    }
+
+    private final class Entry {
+        private final K key;
+        private final V value;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long timeOut;
+
+        // inside the entry lock
+        private EntryState state;
+        private volatile long lastAccess;
+        private boolean used;
+        private boolean queued;
+        private long queuedAccess;
+
+        // inside the order lock
+        private Segment segment;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(final K key, final V value, final EntryState state) {
+            this.key = key;
+            this.value = value;
+            this.state = state;
+
+            if (value instanceof Cache.TimeOut) {
+                final Duration duration = ((Cache.TimeOut) value).getTimeOut();
+                this.timeOut = duration != null ? duration.getTime(TimeUnit.MILLISECONDS) : getTimeOut();
+            } else {
+                this.timeOut = getTimeOut();
+            }
+
+            lastAccess = System.currentTimeMillis();
+        }
+
+        private boolean isTimedOut() {
+            if (timeOut < 0) {
+                return false;
+            } else if (timeOut == 0) {
+                return true;
+            } else {
+                return System.currentTimeMillis() - lastAccess > timeOut;
+            }
+        }
+
+        private void resetTimeOut() {
+            if (timeOut > 0) {
+                lastAccess = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Stateful session cache statistics")
+    public static final class Statistics {
+        private final SegmentedLruCache<?, ?> cache;
+
+        public Statistics(final SegmentedLruCache<?, ?> cache) {
+            this.cache = cache;
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans found in memory")
+        public long getHits() {
+            return cache.hits.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans not found in memory")
+        public long getMisses() {
+            return cache.misses.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans read back from the passivation store")
+        public long getActivations() {
+            return cache.activations.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans written to the passivation store")
+        public long getPassivations() {
+            return cache.passivations.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans destroyed by a time out")
+        public long getTimeOuts() {
+            return cache.timeOuts.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans in memory")
+        public int getSize() {
+            return cache.cache.size();
+        }
+
+        @ManagedAttribute
+        @Description("Number of beans in memory and not in use")
+        public int getAvailable() {
+            return cache.probation.size + cache.protect.size;
+        }
+
+        @ManagedAttribute
+        @Description("Estimated size of a bean in bytes, 0 until MaxHeapBytes is set and a bean was sampled")
+        public long getEstimatedBeanSize() {
+            return cache.averageSize;
+        }
+    }
+}
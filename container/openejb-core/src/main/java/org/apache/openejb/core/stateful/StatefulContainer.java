@@ -722,8 +722,7 @@ public class StatefulContainer implements RpcContainer {
                 }
 
                 // Initialize interceptor stack
-                final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS, interceptors, instance.interceptors);
+                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS), instance.interceptors);
 
                 // Invoke
                 returnValue = interceptorStack.invoke(args);
@@ -90,6 +90,18 @@ public class StatefulContainerFactory {
         properties.put("Frequency", s);
     }
 
+    public void setReplicationBackups(final String s) {
+        properties.put("ReplicationBackups", s);
+    }
+
+    public void setReplicationBatchInterval(final String s) {
+        properties.put("ReplicationBatchInterval", s);
+    }
+
+    public void setReplicationBatchSize(final String s) {
+        properties.put("ReplicationBatchSize", s);
+    }
+
     public void setPreventExtendedEntityManagerSerialization(final boolean preventExtendedEntityManagerSerialization) {
         properties.put("PreventExtendedEntityManagerSerialization", Boolean.toString(preventExtendedEntityManagerSerialization));
     }
@@ -107,6 +119,7 @@ public class StatefulContainerFactory {
         if (cache == null) {
             buildCache();
         }
+        replicateCache();
         cache.init();
         return new StatefulContainer(
             id, securityService,
@@ -150,6 +163,7 @@ public class StatefulContainerFactory {
         serviceRecipe.allow(Option.IGNORE_MISSING_PROPERTIES);
         serviceRecipe.allow(Option.NAMED_PARAMETERS);
         serviceRecipe.setAllProperties(properties);
+        serviceRecipe.setProperty("ContainerId", id);
 
         // invoke recipe
         /* the cache should be created with container loader to avoid memory leaks
@@ -166,6 +180,20 @@ public class StatefulContainerFactory {
         this.cache = (Cache<Object, Instance>) cache;
     }
 
+    private void replicateCache() {
+        final Object backups = getProperty("ReplicationBackups");
+        if (backups == null || cache instanceof ReplicatedCache || Integer.parseInt(backups.toString().trim()) <= 0) {
+            return;
+        }
+
+        final Object interval = getProperty("ReplicationBatchInterval");
+        final Object batchSize = getProperty("ReplicationBatchSize");
+        cache = new ReplicatedCache(
+            id, cache, Integer.parseInt(backups.toString().trim()),
+            interval == null ? 100 : Duration.parse(interval.toString().trim()).getTime(TimeUnit.MILLISECONDS),
+            batchSize == null ? 500 : Integer.parseInt(batchSize.toString().trim()));
+    }
+
     private Object getProperty(final String name) {
         for (final Entry<Object, Object> entry : properties.entrySet()) {
             final Object key = entry.getKey();
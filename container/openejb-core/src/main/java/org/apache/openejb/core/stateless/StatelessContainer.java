@@ -246,9 +246,8 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer, Dest
                 callContext.setCurrentOperation(Operation.BUSINESS_WS);
                 returnValue = invokeWebService(args, beanContext, runMethod, instance);
             } else {
-                final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
                 final Operation operation = type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS;
-                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, operation, interceptors, instance.interceptors);
+                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, beanContext.getMethodInterceptorChain(runMethod, operation), instance.interceptors);
                 returnValue = interceptorStack.invoke(args);
             }
         } catch (final Throwable re) {// handle reflection exception
@@ -130,6 +130,10 @@ public class StatelessContainerFactory {
         pool.setMaxAgeOffset(maxAgeOffset);
     }
 
+    public void setPoolImplementation(final String implementation) {
+        pool.setPoolImplementation(implementation);
+    }
+
     public void setCloseTimeout(final Duration closeTimeout) {
         this.closeTimeout = closeTimeout;
     }
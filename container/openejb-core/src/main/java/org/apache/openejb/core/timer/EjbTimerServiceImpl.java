@@ -152,6 +152,12 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
                 return scheduler;
             }
 
+            if (TimingWheelScheduler.isSelected(deployment)) { // shared by all the applications using it
+                thisScheduler = TimingWheelScheduler.getDefaultScheduler();
+                deployment.set(Scheduler.class, thisScheduler);
+                return thisScheduler;
+            }
+
             final Properties properties = new Properties();
             int quartzProps = 0;
             quartzProps += putAll(properties, SystemInstance.get().getProperties());
@@ -316,6 +322,9 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
 
     @Override
     public void stop() {
+        if (timerStore instanceof JdbcTimerStore) { // let the other nodes take the timers
+            ((JdbcTimerStore) timerStore).stop();
+        }
         cleanTimerData();
         shutdownMyScheduler();
     }
@@ -350,6 +359,14 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
             return;
         }
 
+        try {
+            if (TimingWheelScheduler.NAME.equals(scheduler.getSchedulerName())) { // shared, stopped with the container
+                return;
+            }
+        } catch (final Exception e) {
+            // no-op: handled as a quartz scheduler
+        }
+
         boolean defaultScheduler = false;
         final Scheduler ds = SystemInstance.get().getComponent(Scheduler.class);
         try { // == is the faster way to test, we rely on name (key in quartz registry) only for serialization
@@ -365,6 +382,7 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
     }
 
     public static void shutdown() {
+        TimingWheelScheduler.shutdownDefault();
         shutdown(SystemInstance.get().getComponent(Scheduler.class));
     }
 
@@ -755,6 +773,10 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
      */
     @SuppressWarnings("ReturnInsideFinallyBlock")
     public void ejbTimeout(final TimerData timerData) {
+        if (timerStore instanceof JdbcTimerStore && !((JdbcTimerStore) timerStore).isOwner(timerData)) {
+            return; // fired by the node owning it (or rescheduled once the lease is renewed)
+        }
+
         final Thread thread = Thread.currentThread();
         final ClassLoader loader = thread.getContextClassLoader(); // container loader
         try {
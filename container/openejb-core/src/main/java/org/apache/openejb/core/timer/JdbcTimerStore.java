@@ -0,0 +1,889 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.MethodContext;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.quartz.SchedulerException;
+import org.apache.openejb.quartz.Trigger;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.ejb.ScheduleExpression;
+import javax.ejb.TimerConfig;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Timer store keeping the persistent timers in a database table shared by the nodes of a cluster.
+ *
+ * Each persistent timer is owned by one node for a lease, only the owner schedules and fires it.
+ * The nodes renew the lease of their timers periodically with a single update and take the timers
+ * whose lease expired (a node stopped or crashed), the earliest due first. The timers created or
+ * cancelled in a transaction are written in one batch when it commits.
+ *
+ * Non persistent timers are only kept in memory, as in MemoryTimerStore.
+ *
+ * Configuration (system properties):
+ * <ul>
+ *     <li>openejb.timer.store.jdbc.DataSource: the id of the DataSource resource, required</li>
+ *     <li>openejb.timer.store.jdbc.Table: the table, created if missing (default OPENEJB_TIMER)</li>
+ *     <li>openejb.timer.store.jdbc.BlobType: the SQL type used for the timer data when the table is created (default BLOB)</li>
+ *     <li>openejb.timer.store.jdbc.Node: the unique name of this node, a stable one lets a restarted node take back its timers at once (default a random name)</li>
+ *     <li>openejb.timer.store.jdbc.Lease: the lease duration in milliseconds, renewed every third of it (default 30000)</li>
+ *     <li>openejb.timer.store.jdbc.ClaimBatch: the maximum number of expired timers taken at each renewal (default 100)</li>
+ * </ul>
+ */
+public class JdbcTimerStore implements TimerStore {
+    public static final String PREFIX = "openejb.timer.store.jdbc.";
+
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+    private static final String DEFAULT_NODE = UUID.randomUUID().toString();
+    private static volatile ScheduledExecutorService leaseExecutor;
+
+    private final TransactionManager transactionManager;
+    private final String dataSourceId;
+    private final String table;
+    private final String blobType;
+    private final String node;
+    private final long lease;
+    private final int claimBatch;
+
+    // non persistent timers and the persistent ones owned by this node
+    private final Map<Long, TimerData> timers = new ConcurrentHashMap<>();
+    private final Map<Transaction, Batch> batches = new ConcurrentHashMap<>();
+    private final Map<Long, Long> nextFires = new ConcurrentHashMap<>(); // written at the next renewal
+    private final Map<String, Integer> autoTimerKeys = new HashMap<>();
+    private final Set<Long> autoTimers = ConcurrentHashMap.newKeySet();
+    private final Lock ownership = new ReentrantLock(); // local timers vs owned rows
+
+    private volatile DataSource dataSource;
+    private volatile boolean tableChecked;
+    private volatile EjbTimerServiceImpl timerService;
+    private volatile String deploymentId;
+    private volatile long leaseValidUntil;
+    private volatile boolean stopped;
+    private volatile ScheduledFuture<?> leaseTask;
+
+    public JdbcTimerStore(final TransactionManager transactionManager) {
+        this(transactionManager, null, SystemInstance.get().getOptions());
+    }
+
+    JdbcTimerStore(final TransactionManager transactionManager, final DataSource dataSource, final Options options) {
+        this.transactionManager = transactionManager;
+        this.dataSource = dataSource;
+        this.dataSourceId = options.get(PREFIX + "DataSource", (String) null);
+        this.table = options.get(PREFIX + "Table", "OPENEJB_TIMER");
+        this.blobType = options.get(PREFIX + "BlobType", "BLOB");
+        this.node = options.get(PREFIX + "Node", DEFAULT_NODE);
+        this.lease = Math.max(300, options.get(PREFIX + "Lease", 30000L));
+        this.claimBatch = Math.max(1, options.get(PREFIX + "ClaimBatch", 100));
+    }
+
+    @Override
+    public TimerData getTimer(final String deploymentId, final long timerId) {
+        final Batch batch = getBatch();
+        if (batch != null) {
+            if (batch.removed.contains(timerId)) {
+                return null;
+            }
+            final TimerData added = batch.added.get(timerId);
+            if (added != null) {
+                return added;
+            }
+        }
+
+        final TimerData local = timers.get(timerId);
+        if (local != null || stopped) {
+            return local;
+        }
+
+        // owned by another node
+        try (final Connection connection = getDataSource().getConnection();
+             final PreparedStatement statement = connection.prepareStatement("SELECT DEPLOYMENT_ID, TIMER_DATA FROM " + table + " WHERE ID = ?")) {
+            statement.setLong(1, timerId);
+            try (final ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    return readRemote(timerId, rs.getString(1), rs.getBytes(2));
+                }
+            }
+        } catch (final SQLException | TimerStoreException e) {
+            log.warning("Unable to read timer " + timerId + " from the database", e);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<TimerData> getTimers(final String deploymentId) {
+        final Map<Long, TimerData> all = new TreeMap<>();
+        for (final TimerData data : timers.values()) {
+            if (deploymentId == null || deploymentId.equals(data.getDeploymentId())) {
+                all.put(data.getId(), data);
+            }
+        }
+
+        if (!stopped) { // add the timers owned by the other nodes
+            try (final Connection connection = getDataSource().getConnection();
+                 final PreparedStatement statement = connection.prepareStatement("SELECT ID, DEPLOYMENT_ID, TIMER_DATA FROM " + table + " WHERE DEPLOYMENT_ID = ?")) {
+                statement.setString(1, deploymentId);
+                try (final ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        final long id = rs.getLong(1);
+                        if (!all.containsKey(id)) {
+                            all.put(id, readRemote(id, rs.getString(2), rs.getBytes(3)));
+                        }
+                    }
+                }
+            } catch (final SQLException | TimerStoreException e) {
+                log.warning("Unable to read the timers of " + deploymentId + " from the database", e);
+            }
+        }
+
+        final Batch batch = getBatch();
+        if (batch != null) {
+            all.keySet().removeAll(batch.removed);
+            all.putAll(batch.added);
+        }
+        return new ArrayList<>(all.values());
+    }
+
+    @Override
+    public Collection<TimerData> loadTimers(final EjbTimerServiceImpl timerService, final String deploymentId) throws TimerStoreException {
+        this.timerService = timerService;
+        this.deploymentId = deploymentId;
+
+        try (final Connection connection = getDataSource().getConnection()) {
+            removeStaleAutoTimers(connection);
+
+            ownership.lock();
+            try {
+                final long now = System.currentTimeMillis();
+                renew(connection, now);
+                claim(connection, now);
+                synchronizeOwned(connection);
+            } finally {
+                ownership.unlock();
+            }
+        } catch (final SQLException e) {
+            throw new TimerStoreException("Unable to load the timers of " + deploymentId, e);
+        }
+
+        // the owned ones and the ones created at deployment
+        final Collection<TimerData> loaded = new ArrayList<>();
+        for (final TimerData data : timers.values()) {
+            if (deploymentId == null || deploymentId.equals(data.getDeploymentId())) {
+                loaded.add(data);
+            }
+        }
+
+        final long period = lease / 3;
+        leaseTask = leaseExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                renewLease();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        return loaded;
+    }
+
+    // used to re-register a TimerData, if a cancel() is rolledback...
+    @Override
+    public void addTimerData(final TimerData timerData) throws TimerStoreException {
+        final Batch batch = getBatch();
+        if (batch != null) {
+            batch.add(timerData);
+        } else {
+            write(Collections.singletonList(timerData), Collections.<Long>emptySet());
+        }
+    }
+
+    @Override
+    public TimerData createSingleActionTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final Date expiration, final TimerConfig timerConfig) throws TimerStoreException {
+        final TimerData timerData = new SingleActionTimerData(newId(), timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, expiration);
+        addTimerData(timerData);
+        return timerData;
+    }
+
+    @Override
+    public TimerData createIntervalTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final Date initialExpiration, final long intervalDuration, final TimerConfig timerConfig)
+        throws TimerStoreException {
+        final TimerData timerData = new IntervalTimerData(newId(), timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, initialExpiration, intervalDuration);
+        addTimerData(timerData);
+        return timerData;
+    }
+
+    @Override
+    public TimerData createCalendarTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final ScheduleExpression schedule, final TimerConfig timerConfig, final boolean auto)
+        throws TimerStoreException {
+        final long id;
+        if (auto) { // created by each node at deployment, the same id lets only one of them keep it
+            id = autoTimerId(deploymentId, timeoutMethod, schedule);
+            autoTimers.add(id);
+        } else {
+            id = newId();
+        }
+
+        final TimerData timerData = new CalendarTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, schedule, auto);
+        addTimerData(timerData);
+        return timerData;
+    }
+
+    @Override
+    public void removeTimer(final long timerId) {
+        final Batch batch = getBatch();
+        if (batch != null) {
+            batch.remove(timerId);
+            return;
+        }
+
+        try {
+            write(Collections.<TimerData>emptyList(), Collections.singleton(timerId));
+        } catch (final TimerStoreException e) {
+            log.warning("Unable to remove timer data from the database", e);
+        }
+    }
+
+    @Override
+    public void updateIntervalTimer(final TimerData timerData) {
+        if (!timerData.isPersistent()) {
+            return;
+        }
+
+        final Trigger trigger = timerData.getTrigger();
+        final Date next = trigger == null ? null : trigger.getNextFireTime();
+        if (next != null) {
+            nextFires.put(timerData.getId(), next.getTime());
+        }
+    }
+
+    /**
+     * If the lease of this node lapsed (late renewal, long GC pause...) it is renewed before answering
+     * since the timer row may still be owned by this node and a skipped single action timer would never fire.
+     *
+     * @return true if this node has to fire this timer, false if another node owns it.
+     */
+    public boolean isOwner(final TimerData timerData) {
+        if (!timerData.isPersistent()) {
+            return true;
+        }
+        if (stopped || !timers.containsKey(timerData.getId())) {
+            return false;
+        }
+        return System.currentTimeMillis() < leaseValidUntil || renewLapsedLease(timerData);
+    }
+
+    private boolean renewLapsedLease(final TimerData timerData) {
+        final long id = timerData.getId();
+        ownership.lock();
+        try {
+            final String owner;
+            try (final Connection connection = getDataSource().getConnection()) {
+                renew(connection, System.currentTimeMillis());
+                try (final PreparedStatement statement = connection.prepareStatement("SELECT OWNER_NODE FROM " + table + " WHERE ID = ?")) {
+                    statement.setLong(1, id);
+                    try (final ResultSet rs = statement.executeQuery()) {
+                        owner = rs.next() ? rs.getString(1) : null;
+                    }
+                }
+            } catch (final SQLException | TimerStoreException | RuntimeException e) {
+                // forgotten locally, the next renewal finds the row still owned by this node and schedules it again
+                log.warning("Unable to renew the timer leases of " + deploymentId + ", timer " + id + " will be retried", e);
+                timers.remove(id);
+                return false;
+            }
+
+            if (node.equals(owner)) {
+                return true;
+            }
+            timers.remove(id); // taken by another node or cancelled meanwhile
+            return false;
+        } finally {
+            ownership.unlock();
+        }
+    }
+
+    // simulates a late renewal
+    void expireLease() {
+        leaseValidUntil = 0;
+    }
+
+    /**
+     * Stops renewing the leases and releases them so the other nodes take the timers at once.
+     */
+    public void stop() {
+        stopped = true;
+        leaseValidUntil = 0;
+
+        final ScheduledFuture<?> task = leaseTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+        if (deploymentId == null) {
+            return;
+        }
+
+        try (final Connection connection = getDataSource().getConnection();
+             final PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET LEASE_UNTIL = 0 WHERE OWNER_NODE = ? AND DEPLOYMENT_ID = ?")) {
+            statement.setString(1, node);
+            statement.setString(2, deploymentId);
+            statement.executeUpdate();
+        } catch (final SQLException | TimerStoreException e) {
+            log.warning("Unable to release the timers of " + deploymentId + ", they will be taken once their lease expired", e);
+        }
+    }
+
+    String getNode() {
+        return node;
+    }
+
+    void renewLease() {
+        if (stopped) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Collection<TimerData> taken;
+        try (final Connection connection = getDataSource().getConnection()) {
+            writeNextFires(connection);
+
+            ownership.lock();
+            try {
+                renew(connection, now);
+                claim(connection, now);
+                taken = synchronizeOwned(connection);
+            } finally {
+                ownership.unlock();
+            }
+        } catch (final SQLException | TimerStoreException | RuntimeException e) {
+            log.warning("Unable to renew the timer leases of " + deploymentId, e);
+            return;
+        }
+
+        if (timerService != null) {
+            for (final TimerData data : taken) {
+                data.newTimer(); // schedules it
+            }
+        }
+    }
+
+    private void renew(final Connection connection, final long now) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET LEASE_UNTIL = ? WHERE OWNER_NODE = ? AND DEPLOYMENT_ID = ?")) {
+            statement.setLong(1, now + lease);
+            statement.setString(2, node);
+            statement.setString(3, deploymentId);
+            statement.executeUpdate();
+        }
+        leaseValidUntil = now + lease;
+    }
+
+    private void claim(final Connection connection, final long now) throws SQLException {
+        final List<Long> expired = new ArrayList<>();
+        try (final PreparedStatement statement = connection.prepareStatement(
+            "SELECT ID FROM " + table + " WHERE DEPLOYMENT_ID = ? AND LEASE_UNTIL < ? ORDER BY NEXT_FIRE")) {
+            statement.setMaxRows(claimBatch);
+            statement.setString(1, deploymentId);
+            statement.setLong(2, now);
+            try (final ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    expired.add(rs.getLong(1));
+                }
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        // the lease condition lets only one node take a timer, synchronizeOwned() reads which ones we got
+        try (final PreparedStatement statement = connection.prepareStatement(
+            "UPDATE " + table + " SET OWNER_NODE = ?, LEASE_UNTIL = ? WHERE ID = ? AND LEASE_UNTIL < ?")) {
+            for (final Long id : expired) {
+                statement.setString(1, node);
+                statement.setLong(2, now + lease);
+                statement.setLong(3, id);
+                statement.setLong(4, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Aligns the local timers on the rows owned by this node.
+     *
+     * @return the timers newly owned, not scheduled yet
+     */
+    private Collection<TimerData> synchronizeOwned(final Connection connection) throws SQLException, TimerStoreException {
+        final Set<Long> owned = new HashSet<>();
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT ID FROM " + table + " WHERE OWNER_NODE = ? AND DEPLOYMENT_ID = ?")) {
+            statement.setString(1, node);
+            statement.setString(2, deploymentId);
+            try (final ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    owned.add(rs.getLong(1));
+                }
+            }
+        }
+
+        for (final Iterator<TimerData> it = timers.values().iterator(); it.hasNext(); ) {
+            final TimerData data = it.next();
+            if (data.isPersistent() && !owned.remove(data.getId())) { // taken by another node or cancelled there
+                it.remove();
+                unschedule(data);
+            }
+        }
+
+        final Collection<TimerData> added = new ArrayList<>(owned.size());
+        if (owned.isEmpty()) {
+            return added;
+        }
+
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT TIMER_DATA FROM " + table + " WHERE ID = ?")) {
+            for (final Long id : owned) {
+                statement.setLong(1, id);
+                try (final ResultSet rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        final TimerData data = read(id, deploymentId, rs.getBytes(1));
+                        timers.put(id, data);
+                        added.add(data);
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    private void removeStaleAutoTimers(final Connection connection) throws SQLException {
+        final List<Long> stale = new ArrayList<>();
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT ID FROM " + table + " WHERE DEPLOYMENT_ID = ? AND AUTO_TIMER = 1")) {
+            statement.setString(1, deploymentId);
+            try (final ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    final long id = rs.getLong(1);
+                    if (!autoTimers.contains(id)) { // schedule changed or removed since it was created
+                        stale.add(id);
+                    }
+                }
+            }
+        }
+        if (!stale.isEmpty()) {
+            delete(connection, stale);
+        }
+    }
+
+    private void writeNextFires(final Connection connection) throws SQLException {
+        if (nextFires.isEmpty()) {
+            return;
+        }
+
+        try (final PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET NEXT_FIRE = ? WHERE ID = ?")) {
+            for (final Iterator<Map.Entry<Long, Long>> it = nextFires.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<Long, Long> entry = it.next();
+                it.remove();
+                statement.setLong(1, entry.getValue());
+                statement.setLong(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void write(final Collection<TimerData> added, final Collection<Long> removed) throws TimerStoreException {
+        final List<TimerData> persistent = new ArrayList<>(added.size());
+        for (final TimerData data : added) {
+            if (data.isPersistent()) {
+                persistent.add(data);
+            }
+        }
+
+        ownership.lock();
+        try {
+            if (!persistent.isEmpty() || !removed.isEmpty()) {
+                try (final Connection connection = getDataSource().getConnection()) {
+                    if (!removed.isEmpty()) {
+                        delete(connection, removed);
+                    }
+                    if (!persistent.isEmpty()) {
+                        insert(connection, persistent);
+                    }
+                } catch (final SQLException e) {
+                    throw new TimerStoreException("Unable to write the timers in the database", e);
+                }
+            }
+
+            for (final Long id : removed) {
+                timers.remove(id);
+                nextFires.remove(id);
+            }
+            for (final TimerData data : added) {
+                timers.put(data.getId(), data);
+            }
+        } finally {
+            ownership.unlock();
+        }
+    }
+
+    private void insert(final Connection connection, final List<TimerData> added) throws SQLException, TimerStoreException {
+        final String sql = "INSERT INTO " + table + " (ID, DEPLOYMENT_ID, AUTO_TIMER, OWNER_NODE, LEASE_UNTIL, NEXT_FIRE, TIMER_DATA) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        final long until = System.currentTimeMillis() + lease;
+        try (final PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (final TimerData data : added) {
+                bind(statement, data, until);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (final BatchUpdateException e) { // an auto timer created by another node or a rolled back cancel()
+            try (final PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (final TimerData data : added) {
+                    bind(statement, data, until);
+                    try {
+                        statement.executeUpdate();
+                    } catch (final SQLException duplicate) {
+                        if (duplicate.getSQLState() == null || !duplicate.getSQLState().startsWith("23")) {
+                            throw duplicate;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void bind(final PreparedStatement statement, final TimerData data, final long until) throws SQLException, TimerStoreException {
+        statement.setLong(1, data.getId());
+        statement.setString(2, data.getDeploymentId());
+        statement.setInt(3, data instanceof CalendarTimerData && ((CalendarTimerData) data).isAutoCreated() ? 1 : 0);
+        statement.setString(4, node);
+        statement.setLong(5, until);
+        statement.setLong(6, firstFire(data));
+        statement.setBytes(7, serialize(data));
+    }
+
+    private void delete(final Connection connection, final Collection<Long> removed) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE ID = ?")) {
+            for (final Long id : removed) {
+                statement.setLong(1, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void unschedule(final TimerData data) {
+        final EjbTimerServiceImpl service = timerService;
+        final Trigger trigger = data.getTrigger();
+        if (service == null || service.getScheduler() == null || trigger == null) {
+            return;
+        }
+
+        try {
+            service.getScheduler().unscheduleJob(trigger.getKey());
+        } catch (final SchedulerException e) {
+            log.warning("Unable to unschedule timer " + data.getId() + " now owned by another node", e);
+        }
+    }
+
+    private TimerData readRemote(final long id, final String deploymentId, final byte[] bytes) throws TimerStoreException {
+        final TimerData data = read(id, deploymentId, bytes);
+        data.initializeUnscheduledTrigger();
+        return data;
+    }
+
+    private TimerData read(final long id, final String deploymentId, final byte[] bytes) throws TimerStoreException {
+        final ContainerSystem containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
+        final BeanContext beanContext = containerSystem == null ? null : containerSystem.getBeanContext(deploymentId);
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader loader = thread.getContextClassLoader();
+        if (beanContext != null) {
+            thread.setContextClassLoader(beanContext.getClassLoader());
+        }
+        try (final ObjectInputStream in = new EjbObjectInputStream(new ByteArrayInputStream(bytes))) {
+            final TimerType type = TimerType.valueOf(in.readUTF());
+            final Object primaryKey = in.readObject();
+            final TimerConfig config = new TimerConfig((Serializable) in.readObject(), true);
+            final Method method = findTimeoutMethod(beanContext, in.readUTF());
+            switch (type) {
+                case SingleAction:
+                    return new SingleActionTimerData(id, timerService, deploymentId, primaryKey, method, config, new Date(in.readLong()));
+                case Interval:
+                    final Date initial = new Date(in.readLong());
+                    return new IntervalTimerData(id, timerService, deploymentId, primaryKey, method, config, initial, in.readLong());
+                default:
+                    final ScheduleExpression schedule = (ScheduleExpression) in.readObject();
+                    return new CalendarTimerData(id, timerService, deploymentId, primaryKey, method, config, schedule, in.readBoolean());
+            }
+        } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+            throw new TimerStoreException("Unable to read timer " + id, e);
+        } finally {
+            thread.setContextClassLoader(loader);
+        }
+    }
+
+    private static byte[] serialize(final TimerData data) throws TimerStoreException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeUTF(data.getType().name());
+            out.writeObject(data.getPrimaryKey());
+            out.writeObject(data.getInfo());
+            out.writeUTF(data.getTimeoutMethod() == null ? "" : data.getTimeoutMethod().getName());
+            if (data instanceof SingleActionTimerData) {
+                out.writeLong(((SingleActionTimerData) data).getExpiration().getTime());
+            } else if (data instanceof IntervalTimerData) {
+                final IntervalTimerData interval = (IntervalTimerData) data;
+                out.writeLong(interval.getInitialExpiration().getTime());
+                out.writeLong(interval.getIntervalDuration());
+            } else {
+                final CalendarTimerData calendar = (CalendarTimerData) data;
+                out.writeObject(calendar.getSchedule());
+                out.writeBoolean(calendar.isAutoCreated());
+            }
+        } catch (final IOException e) {
+            throw new TimerStoreException("Unable to serialize timer " + data.getId() + ", the info and primary key of a persistent timer have to be serializable", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Method findTimeoutMethod(final BeanContext beanContext, final String name) {
+        if (beanContext == null || name.isEmpty()) {
+            return null;
+        }
+
+        for (final Iterator<Map.Entry<Method, MethodContext>> it = beanContext.iteratorMethodContext(); it.hasNext(); ) {
+            final Method method = it.next().getValue().getBeanMethod();
+            if (method != null && method.getName().equals(name)) {
+                return method;
+            }
+        }
+        return beanContext.getEjbTimeout();
+    }
+
+    private static long firstFire(final TimerData data) {
+        try {
+            final Date first = data.initializeTrigger().computeFirstFireTime(null);
+            if (first != null) {
+                return first.getTime();
+            }
+        } catch (final RuntimeException e) {
+            // no-op: ordering only
+        }
+        return System.currentTimeMillis();
+    }
+
+    private static long newId() { // random ids avoid a sequence shared by the nodes
+        return ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    }
+
+    private long autoTimerId(final String deploymentId, final Method method, final ScheduleExpression schedule) {
+        final String key = deploymentId + '|' + (method == null ? "" : method.toGenericString()) + '|'
+            + schedule.getSecond() + ' ' + schedule.getMinute() + ' ' + schedule.getHour() + ' '
+            + schedule.getDayOfMonth() + ' ' + schedule.getMonth() + ' ' + schedule.getDayOfWeek() + ' '
+            + schedule.getYear() + ' ' + schedule.getTimezone() + ' ' + schedule.getStart() + ' ' + schedule.getEnd();
+
+        final int occurrence; // the same schedule twice on a method
+        synchronized (autoTimerKeys) {
+            final Integer previous = autoTimerKeys.get(key);
+            occurrence = previous == null ? 0 : previous + 1;
+            autoTimerKeys.put(key, occurrence);
+        }
+
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        final String value = key + '#' + occurrence;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+
+    private DataSource getDataSource() throws TimerStoreException {
+        DataSource ds = dataSource;
+        if (ds == null) {
+            if (dataSourceId == null) {
+                throw new TimerStoreException(PREFIX + "DataSource is not set");
+            }
+            try {
+                ds = (DataSource) SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext().lookup("openejb:Resource/" + dataSourceId);
+            } catch (final NamingException | RuntimeException e) {
+                throw new TimerStoreException("Unable to find DataSource " + dataSourceId, e);
+            }
+            dataSource = ds;
+        }
+
+        if (!tableChecked) {
+            createTableIfMissing(ds);
+        }
+        return ds;
+    }
+
+    private synchronized void createTableIfMissing(final DataSource ds) throws TimerStoreException {
+        if (tableChecked) {
+            return;
+        }
+
+        try (final Connection connection = ds.getConnection()) {
+            try (final Statement statement = connection.createStatement()) {
+                statement.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE 1 = 0").close();
+            } catch (final SQLException missing) {
+                try (final Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("CREATE TABLE " + table + " ("
+                        + "ID BIGINT NOT NULL PRIMARY KEY, "
+                        + "DEPLOYMENT_ID VARCHAR(255) NOT NULL, "
+                        + "AUTO_TIMER INTEGER NOT NULL, "
+                        + "OWNER_NODE VARCHAR(255) NOT NULL, "
+                        + "LEASE_UNTIL BIGINT NOT NULL, "
+                        + "NEXT_FIRE BIGINT NOT NULL, "
+                        + "TIMER_DATA " + blobType + " NOT NULL)");
+                    // renewal and lookup of the timers of a node, then expired timers by due date
+                    statement.executeUpdate("CREATE INDEX " + table + "_OWNER ON " + table + " (OWNER_NODE, DEPLOYMENT_ID)");
+                    statement.executeUpdate("CREATE INDEX " + table + "_LEASE ON " + table + " (DEPLOYMENT_ID, LEASE_UNTIL, NEXT_FIRE)");
+                }
+            }
+            tableChecked = true;
+        } catch (final SQLException e) {
+            throw new TimerStoreException("Unable to create table " + table, e);
+        }
+    }
+
+    private static ScheduledExecutorService leaseExecutor() {
+        if (leaseExecutor == null) {
+            synchronized (JdbcTimerStore.class) {
+                if (leaseExecutor == null) {
+                    leaseExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("openejb-timer-lease"));
+                }
+            }
+        }
+        return leaseExecutor;
+    }
+
+    private Batch getBatch() {
+        Transaction transaction = null;
+        int status = Status.STATUS_NO_TRANSACTION;
+        try {
+            transaction = transactionManager.getTransaction();
+            if (transaction != null) {
+                status = transaction.getStatus();
+            }
+        } catch (final SystemException e) {
+            // no-op
+        }
+
+        if (status != Status.STATUS_ACTIVE && status != Status.STATUS_MARKED_ROLLBACK) {
+            return null;
+        }
+
+        Batch batch = batches.get(transaction);
+        if (batch == null) {
+            batch = new Batch(transaction);
+            try {
+                transaction.registerSynchronization(batch);
+            } catch (final RollbackException | SystemException e) {
+                return null; // can't be written at commit, write it now
+            }
+            batches.put(transaction, batch);
+        }
+        return batch;
+    }
+
+    /**
+     * The changes of a transaction, written in one batch when it commits.
+     * A transaction is used by a single thread so it is not synchronized.
+     */
+    private final class Batch implements Synchronization {
+        private final Transaction transaction;
+        private final Map<Long, TimerData> added = new LinkedHashMap<>();
+        private final Set<Long> removed = new LinkedHashSet<>();
+
+        private Batch(final Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        private void add(final TimerData timerData) {
+            removed.remove(timerData.getId());
+            added.put(timerData.getId(), timerData);
+        }
+
+        private void remove(final Long timerId) {
+            added.remove(timerId);
+            removed.add(timerId);
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // no-op
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            batches.remove(transaction);
+            if (status != Status.STATUS_COMMITTED) {
+                return;
+            }
+
+            try {
+                write(added.values(), removed);
+            } catch (final TimerStoreException e) {
+                log.error("Unable to write the timers of the committed transaction " + transaction, e);
+            }
+        }
+    }
+}
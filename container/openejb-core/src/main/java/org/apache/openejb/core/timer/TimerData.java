@@ -231,6 +231,17 @@ public abstract class TimerData implements Serializable {
         }
     }
 
+    /**
+     * Computes the trigger of a timer scheduled by another node, it is not scheduled here
+     * but its next timeout can be read.
+     */
+    void initializeUnscheduledTrigger() {
+        trigger = initializeTrigger();
+        trigger.computeFirstFireTime(null);
+        trigger.setGroup(OPEN_EJB_TIMEOUT_TRIGGER_GROUP_NAME);
+        trigger.setName(OPEN_EJB_TIMEOUT_TRIGGER_NAME_PREFIX + deploymentId + "_" + id);
+    }
+
     public boolean isCancelled() {
         return cancelled;
     }
@@ -0,0 +1,487 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.DeploymentContext;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.quartz.JobDataMap;
+import org.apache.openejb.quartz.JobKey;
+import org.apache.openejb.quartz.Scheduler;
+import org.apache.openejb.quartz.Trigger;
+import org.apache.openejb.quartz.TriggerKey;
+import org.apache.openejb.quartz.impl.triggers.AbstractTrigger;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.ExecutorBuilder;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Timer engine based on a hierarchical timing wheel, an alternative to a Quartz RAM scheduler
+ * for applications creating a lot of short lived timers.
+ *
+ * The wheel has LEVELS levels of WHEEL_SIZE buckets, a bucket of the first level lasting one tick
+ * and a bucket of a level the whole previous level. A timer is linked in the bucket of its deadline
+ * at the lowest level covering it and moved down when the lower level wraps, so scheduling and
+ * cancelling are O(1). Only the worker thread touches the buckets, other threads queue their changes.
+ *
+ * The triggers are the Quartz ones computed by TimerData (EJBCronTrigger for calendar timers), the
+ * engine is exposed as a Scheduler supporting the methods the timer service uses. Firings run in
+ * an executor configured with the EjbTimerWheelPool prefix (see ExecutorBuilder).
+ *
+ * Selected with openejb.timer.engine=wheel in the application, module or bean properties, or globally.
+ */
+public class TimingWheelScheduler {
+    public static final String ENGINE = "openejb.timer.engine";
+    public static final String TICK = "openejb.timer.wheel.tick";
+    public static final String NAME = "OpenEJB-TimerService-Wheel";
+
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    private static final int WHEEL_BITS = 9;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4; // 512^4 ticks, years with a tick of 10ms
+
+    private static final int WAITING = 0;
+    private static final int PAUSED = 1;
+    private static final int CANCELLED = 2;
+
+    private final long tickMillis;
+    private final long tickNanos;
+    private final long startNanos;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final ConcurrentMap<TriggerKey, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> additions = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry> cancellations = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Consumer<AbstractTrigger<?>> task;
+    private final Scheduler scheduler;
+    private final Thread worker;
+    private volatile boolean shutdown;
+    private long currentTick; // worker thread only
+
+    TimingWheelScheduler(final long tickMillis, final Executor executor, final Consumer<AbstractTrigger<?>> task) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(this.tickMillis);
+        this.executor = executor;
+        this.task = task;
+        for (final Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+
+        this.scheduler = (Scheduler) Proxy.newProxyInstance(TimingWheelScheduler.class.getClassLoader(), new Class<?>[]{Scheduler.class}, new SchedulerHandler());
+
+        this.startNanos = System.nanoTime();
+        // created by the first application using the wheel, the factory doesn't let the worker keep its loader
+        this.worker = new DaemonThreadFactory(NAME).newThread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        });
+        this.worker.start();
+    }
+
+    /**
+     * @return true if the timers of this bean use the timing wheel, the most specific configuration wins
+     */
+    public static boolean isSelected(final BeanContext deployment) {
+        for (final DeploymentContext context : Arrays.asList(deployment, deployment.getModuleContext(), deployment.getModuleContext().getAppContext())) {
+            final String engine = context.getProperties().getProperty(ENGINE);
+            if (engine != null) {
+                return "wheel".equalsIgnoreCase(engine.trim());
+            }
+        }
+        return "wheel".equalsIgnoreCase(SystemInstance.get().getProperty(ENGINE, "quartz").trim());
+    }
+
+    /**
+     * @return the scheduler shared by the applications using the timing wheel, created the first time
+     */
+    public static synchronized Scheduler getDefaultScheduler() {
+        final SystemInstance systemInstance = SystemInstance.get();
+        TimingWheelScheduler wheel = systemInstance.getComponent(TimingWheelScheduler.class);
+        if (wheel == null || wheel.shutdown) {
+            final Options options = systemInstance.getOptions();
+            final ExecutorService executor = new ExecutorBuilder()
+                .size(options.get(DefaultTimerThreadPoolAdapter.OPENEJB_TIMER_POOL_SIZE, 3))
+                .prefix("EjbTimerWheelPool")
+                .buildExecutor(options);
+            wheel = new TimingWheelScheduler(options.get(TICK, 10L), executor, new Consumer<AbstractTrigger<?>>() {
+                @Override
+                public void accept(final AbstractTrigger<?> trigger) {
+                    final JobDataMap data = trigger.getJobDataMap();
+                    final EjbTimerServiceImpl timerService = (EjbTimerServiceImpl) data.get(EjbTimeoutJob.EJB_TIMERS_SERVICE);
+                    timerService.ejbTimeout((TimerData) data.get(EjbTimeoutJob.TIMER_DATA));
+                }
+            });
+            systemInstance.setComponent(TimingWheelScheduler.class, wheel);
+        }
+        return wheel.scheduler;
+    }
+
+    public static synchronized void shutdownDefault() {
+        final TimingWheelScheduler wheel = SystemInstance.get().getComponent(TimingWheelScheduler.class);
+        if (wheel != null) {
+            wheel.shutdown();
+            SystemInstance.get().removeComponent(TimingWheelScheduler.class);
+        }
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Date schedule(final Trigger trigger) {
+        if (shutdown) {
+            throw new IllegalStateException(NAME + " is shutdown");
+        }
+
+        final AbstractTrigger<?> abstractTrigger = (AbstractTrigger<?>) trigger;
+        final Date next = abstractTrigger.getNextFireTime();
+        if (next == null) { // will never fire
+            return null;
+        }
+
+        final Entry entry = new Entry(abstractTrigger, tickOf(next));
+        final Entry previous = entries.put(trigger.getKey(), entry);
+        if (previous != null) {
+            cancel(previous);
+        }
+        additions.add(entry);
+        return next;
+    }
+
+    public boolean unschedule(final TriggerKey key) {
+        final Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        cancel(entry);
+        return true;
+    }
+
+    public void pause(final TriggerKey key) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.state == WAITING) {
+            entry.state = PAUSED; // stays linked, skipped when it expires
+        }
+    }
+
+    public void resume(final TriggerKey key) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.state == PAUSED) {
+            entries.remove(key, entry);
+            cancel(entry);
+            schedule(entry.trigger); // a missed fire time expires with the next tick
+        }
+    }
+
+    public Trigger getTrigger(final TriggerKey key) {
+        final Entry entry = entries.get(key);
+        return entry == null ? null : entry.trigger;
+    }
+
+    public Trigger.TriggerState getTriggerState(final TriggerKey key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return Trigger.TriggerState.NONE;
+        }
+        return entry.state == PAUSED ? Trigger.TriggerState.PAUSED : Trigger.TriggerState.NORMAL;
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(worker);
+        entries.clear();
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private void cancel(final Entry entry) {
+        entry.state = CANCELLED;
+        cancellations.add(entry);
+    }
+
+    // the wheel follows nanoTime, the wall clock only gives the delay to wait from now
+    private long tickOf(final Date date) {
+        final long now = elapsedTicks();
+        final long delay = date.getTime() - System.currentTimeMillis();
+        return delay <= 0 ? now : now + (delay + tickMillis - 1) / tickMillis;
+    }
+
+    private long elapsedTicks() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    private void work() {
+        while (!shutdown) {
+            final long elapsed = elapsedTicks();
+            if (elapsed <= currentTick) {
+                LockSupport.parkNanos(startNanos + (currentTick + 1) * tickNanos - System.nanoTime());
+                continue;
+            }
+
+            while (currentTick < elapsed && !shutdown) { // catch up after a pause of the thread
+                currentTick++;
+                cascade();
+                processCancellations();
+                processAdditions();
+                expire(wheels[0][(int) (currentTick & MASK)]);
+            }
+        }
+    }
+
+    private void cascade() { // highest level first, its entries can land in the lower bucket cascaded next
+        for (int level = LEVELS - 1; level > 0; level--) {
+            final int shift = WHEEL_BITS * level;
+            if ((currentTick & ((1L << shift) - 1)) == 0) {
+                final Bucket bucket = wheels[level][(int) ((currentTick >>> shift) & MASK)];
+                Entry entry;
+                while ((entry = bucket.poll()) != null) {
+                    if (entry.state != CANCELLED) {
+                        place(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void processCancellations() {
+        Entry entry;
+        while ((entry = cancellations.poll()) != null) {
+            if (entry.bucket != null) {
+                entry.bucket.remove(entry);
+            }
+        }
+    }
+
+    private void processAdditions() {
+        Entry entry;
+        while ((entry = additions.poll()) != null) {
+            if (entry.state != CANCELLED) {
+                place(entry);
+            }
+        }
+    }
+
+    private void place(final Entry entry) {
+        final long ticks = entry.deadline - currentTick;
+        if (ticks <= 0) { // late, expires with the current bucket
+            wheels[0][(int) (currentTick & MASK)].add(entry);
+            return;
+        }
+
+        for (int level = 0; level < LEVELS; level++) {
+            final int shift = WHEEL_BITS * level;
+            if (ticks < 1L << (shift + WHEEL_BITS)) {
+                wheels[level][(int) ((entry.deadline >>> shift) & MASK)].add(entry);
+                return;
+            }
+        }
+
+        // further than the wheel, parked in the last bucket of the top level and placed again when it is cascaded
+        final int shift = WHEEL_BITS * (LEVELS - 1);
+        wheels[LEVELS - 1][(int) (((currentTick >>> shift) - 1) & MASK)].add(entry);
+    }
+
+    private void expire(final Bucket bucket) {
+        Entry entry;
+        while ((entry = bucket.poll()) != null) {
+            if (entry.state == WAITING) { // a paused entry is dropped from the wheel, resume() schedules it again
+                fire(entry);
+            }
+        }
+    }
+
+    private void fire(final Entry entry) {
+        final AbstractTrigger<?> trigger = entry.trigger;
+        final TriggerKey key = trigger.getKey();
+
+        // as quartz the next fire time is computed before the timeout runs
+        trigger.triggered(null);
+        final Date next = trigger.getNextFireTime();
+        if (next != null) {
+            final Entry following = new Entry(trigger, tickOf(next));
+            if (entries.replace(key, entry, following)) {
+                place(following);
+            }
+        } else {
+            entries.remove(key, entry);
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.accept(trigger);
+                    } catch (final RuntimeException e) {
+                        log.warning("Timer " + key + " failed", e);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            log.warning("Timer " + key + " can't be fired, its executor is full or stopped", e);
+        }
+    }
+
+    private static final class Entry {
+        private final AbstractTrigger<?> trigger;
+        private final long deadline; // in ticks
+        private volatile int state = WAITING;
+
+        // worker thread only
+        private Bucket bucket;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(final AbstractTrigger<?> trigger, final long deadline) {
+            this.trigger = trigger;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        private void add(final Entry entry) {
+            entry.bucket = this;
+            entry.previous = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        private void remove(final Entry entry) {
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.bucket = null;
+            entry.previous = null;
+            entry.next = null;
+        }
+
+        private Entry poll() {
+            final Entry entry = head;
+            if (entry != null) {
+                remove(entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Exposes the wheel as a Quartz Scheduler, only the methods used by the timer service are supported.
+     */
+    private final class SchedulerHandler implements InvocationHandler {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            final Class<?>[] types = method.getParameterTypes();
+            switch (name) {
+                case "scheduleJob":
+                    if (types.length == 1 && Trigger.class.equals(types[0])) {
+                        return schedule((Trigger) args[0]);
+                    }
+                    break;
+                case "unscheduleJob":
+                    return unschedule((TriggerKey) args[0]);
+                case "pauseTrigger":
+                    pause((TriggerKey) args[0]);
+                    return null;
+                case "resumeTrigger":
+                    resume((TriggerKey) args[0]);
+                    return null;
+                case "checkExists":
+                    return JobKey.class.equals(types[0]) || entries.containsKey((TriggerKey) args[0]);
+                case "getTrigger":
+                    return getTrigger((TriggerKey) args[0]);
+                case "getTriggerState":
+                    return getTriggerState((TriggerKey) args[0]);
+                case "getSchedulerName":
+                    return NAME;
+                case "getSchedulerInstanceId":
+                    return "OpenEJB";
+                case "isShutdown":
+                    return shutdown;
+                case "isStarted":
+                    return !shutdown;
+                case "isInStandbyMode":
+                    return false;
+                case "start":
+                case "pauseAll": // the wheel is shared, applications pause their own timers
+                case "resumeAll":
+                    return null;
+                case "shutdown":
+                    shutdown();
+                    return null;
+                case "toString":
+                    return NAME + "[" + entries.size() + " timers]";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            throw new UnsupportedOperationException(name + " is not supported by " + NAME);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of the values recorded in the last minutes.
+ *
+ * Values are counted in log-linear buckets (16 buckets per power of two so about 6% of
+ * precision) instead of being kept, recording a value is a few atomic increments on one
+ * of the stripes of the current slot of 5 seconds, chosen by thread so threads rarely share
+ * a counter. Reading merges the slots of the requested window so it slides by 5 seconds.
+ *
+ * Once a slot is over its stripes are merged and only the used buckets are kept.
+ */
+public class Histogram {
+    public static final int ONE_MINUTE = 1;
+    public static final int FIVE_MINUTES = 5;
+    public static final int FIFTEEN_MINUTES = 15;
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40; // bigger values are counted in the last bucket
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+    private static final long SLOT_MILLIS = 5000;
+    private static final int SLOTS_PER_MINUTE = (int) (60000 / SLOT_MILLIS);
+    private static final int SLOTS = 256; // > FIFTEEN_MINUTES * SLOTS_PER_MINUTE, power of 2
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < Math.min(8, Runtime.getRuntime().availableProcessors())) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(SLOTS);
+
+    public void record(final long value) {
+        record(value, System.currentTimeMillis());
+    }
+
+    void record(final long value, final long millis) {
+        final long now = millis / SLOT_MILLIS;
+        final int index = (int) (now & (SLOTS - 1));
+
+        Slot slot = slots.get(index);
+        while (slot == null || slot.time != now) {
+            if (slot != null && slot.time > now) { // clock moved back
+                return;
+            }
+
+            final Slot next = new Slot(now);
+            if (slots.compareAndSet(index, slot, next)) {
+                closePrevious(now);
+                slot = next;
+            } else {
+                slot = slots.get(index);
+            }
+        }
+        slot.record(Math.max(0, value));
+    }
+
+    /**
+     * @param window the number of minutes to merge, up to the current slot of 5 seconds, at most FIFTEEN_MINUTES
+     */
+    public Snapshot snapshot(final int window) {
+        return snapshot(window, System.currentTimeMillis());
+    }
+
+    Snapshot snapshot(final int window, final long millis) {
+        final long now = millis / SLOT_MILLIS;
+        final long size = (long) window * SLOTS_PER_MINUTE;
+        final Snapshot snapshot = new Snapshot();
+        for (int i = 0; i < SLOTS; i++) {
+            final Slot slot = slots.get(i);
+            if (slot != null && slot.time <= now && now - slot.time < size) {
+                slot.mergeInto(snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    private void closePrevious(final long now) {
+        for (int i = 0; i < SLOTS; i++) {
+            final Slot slot = slots.get(i);
+            if (slot != null && slot.time < now) {
+                slot.close();
+            }
+        }
+    }
+
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        long v = value;
+        if (exponent > MAX_EXPONENT) {
+            exponent = MAX_EXPONENT;
+            v = (1L << (MAX_EXPONENT + 1)) - 1;
+        }
+        final int mantissa = (int) ((v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    static double value(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long width = 1L << (exponent - SUB_BITS);
+        final long lower = (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+        return lower + (width - 1) / 2.;
+    }
+
+    private static final class Slot {
+        private final long time;
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        // while the slot is current
+        private volatile AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+        // once it is over, the used buckets and their count
+        private volatile int[] buckets;
+        private volatile long[] counts;
+
+        private Slot(final long time) {
+            this.time = time;
+        }
+
+        private void record(final long value) {
+            final AtomicReferenceArray<AtomicLongArray> stripes = this.stripes;
+            if (stripes == null) { // closed while this thread was recording, rare enough to be ignored
+                return;
+            }
+
+            final int index = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+            AtomicLongArray stripe = stripes.get(index);
+            if (stripe == null) {
+                stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS));
+                stripe = stripes.get(index);
+            }
+
+            stripe.incrementAndGet(bucket(value));
+            sum.add(value);
+
+            long current;
+            while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+                // retry
+            }
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // retry
+            }
+        }
+
+        private synchronized void close() {
+            final AtomicReferenceArray<AtomicLongArray> stripes = this.stripes;
+            if (stripes == null) {
+                return;
+            }
+
+            final long[] merged = merge(stripes);
+            int used = 0;
+            for (final long count : merged) {
+                if (count > 0) {
+                    used++;
+                }
+            }
+
+            final int[] buckets = new int[used];
+            final long[] counts = new long[used];
+            int j = 0;
+            for (int i = 0; i < merged.length; i++) {
+                if (merged[i] > 0) {
+                    buckets[j] = i;
+                    counts[j++] = merged[i];
+                }
+            }
+
+            this.buckets = buckets;
+            this.counts = counts;
+            this.stripes = null;
+        }
+
+        private void mergeInto(final Snapshot snapshot) {
+            final AtomicReferenceArray<AtomicLongArray> stripes = this.stripes;
+            if (stripes != null) {
+                final long[] merged = merge(stripes);
+                for (int i = 0; i < merged.length; i++) {
+                    snapshot.counts[i] += merged[i];
+                    snapshot.count += merged[i];
+                }
+            } else { // buckets and counts are set before stripes is cleared
+                final int[] buckets = this.buckets;
+                final long[] counts = this.counts;
+                for (int i = 0; i < buckets.length; i++) {
+                    snapshot.counts[buckets[i]] += counts[i];
+                    snapshot.count += counts[i];
+                }
+            }
+
+            snapshot.sum += sum.sum();
+            snapshot.min = Math.min(snapshot.min, min.get());
+            snapshot.max = Math.max(snapshot.max, max.get());
+        }
+
+        private static long[] merge(final AtomicReferenceArray<AtomicLongArray> stripes) {
+            final long[] merged = new long[BUCKETS];
+            for (int s = 0; s < stripes.length(); s++) {
+                final AtomicLongArray stripe = stripes.get(s);
+                if (stripe != null) {
+                    for (int i = 0; i < BUCKETS; i++) {
+                        merged[i] += stripe.get(i);
+                    }
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Statistics of a window, the moments and percentiles use the middle of the buckets.
+     */
+    public static final class Snapshot {
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return count == 0 ? 0 : sum;
+        }
+
+        public double getMin() {
+            return count == 0 ? Double.NaN : min;
+        }
+
+        public double getMax() {
+            return count == 0 ? Double.NaN : max;
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : sum / (double) count;
+        }
+
+        /**
+         * @param percentile between 0 (excluded) and 100
+         */
+        public double getPercentile(final double percentile) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100. * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, value(i)));
+                }
+            }
+            return max;
+        }
+
+        public double getSumsq() {
+            double sumsq = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    final double value = value(i);
+                    sumsq += value * value * counts[i];
+                }
+            }
+            return sumsq;
+        }
+
+        public double getVariance() {
+            if (count == 0) {
+                return Double.NaN;
+            } else if (count == 1) {
+                return 0;
+            }
+            return centralMoment(2) / (count - 1);
+        }
+
+        public double getStandardDeviation() {
+            return Math.sqrt(getVariance());
+        }
+
+        public double getGeometricMean() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+
+            double logs = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    logs += Math.log(value(i)) * counts[i];
+                }
+            }
+            return Math.exp(logs / count);
+        }
+
+        public double getSkewness() {
+            if (count < 3) {
+                return Double.NaN;
+            }
+
+            final double variance = getVariance();
+            if (variance < 10E-20) {
+                return 0;
+            }
+            final double n = count;
+            return n / ((n - 1) * (n - 2)) * centralMoment(3) / Math.pow(variance, 1.5);
+        }
+
+        public double getKurtosis() {
+            if (count < 4) {
+                return Double.NaN;
+            }
+
+            final double variance = getVariance();
+            if (variance < 10E-20) {
+                return 0;
+            }
+            final double n = count;
+            final double prefix = n * (n + 1) / ((n - 1) * (n - 2) * (n - 3));
+            final double term = 3 * (n - 1) * (n - 1) / ((n - 2) * (n - 3));
+            return prefix * centralMoment(4) / (variance * variance) - term;
+        }
+
+        /**
+         * @return at most size values spread over the distribution, sorted
+         */
+        public double[] getValues(final int size) {
+            final int length = (int) Math.min(count, Math.max(0, size));
+            final double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = getPercentile(100. * (i + 1) / length);
+            }
+            return values;
+        }
+
+        private double centralMoment(final int order) {
+            final double mean = getMean();
+            double moment = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    moment += Math.pow(value(i) - mean, order) * counts[i];
+                }
+            }
+            return moment;
+        }
+    }
+}
@@ -17,133 +17,167 @@
 
 package org.apache.openejb.monitoring;
 
-import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistics;
-
 /**
+ * Statistics of the last 15 minutes unless the attribute names another window.
+ *
  * @version $Rev$ $Date$
  */
 @Managed(append = true)
 public class Stats {
 
     private final Event event = new Event();
-    private final SynchronizedDescriptiveStatistics samples;
+    private final Histogram samples = new Histogram();
+    private volatile int sampleSize;
 
     public Stats() {
         this(1000);
     }
 
+    /**
+     * @param window the number of values returned by values() and sortedValues()
+     */
     public Stats(final int window) {
-        this.samples = new SynchronizedDescriptiveStatistics(window);
+        this.sampleSize = window;
     }
 
     @Managed
     public void setSampleSize(final int i) {
-        samples.setWindowSize(i);
+        sampleSize = i;
     }
 
     @Managed
     public int getSampleSize() {
-        return samples.getWindowSize();
+        return sampleSize;
     }
 
     @Managed
     public double getPercentile99() {
-        return samples.getPercentile(99.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(99.0);
+    }
+
+    @Managed
+    public double getPercentile99LastMinute() {
+        return samples.snapshot(Histogram.ONE_MINUTE).getPercentile(99.0);
+    }
+
+    @Managed
+    public double getPercentile99Last5Minutes() {
+        return samples.snapshot(Histogram.FIVE_MINUTES).getPercentile(99.0);
     }
 
     @Managed
     public double getPercentile90() {
-        return samples.getPercentile(90.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(90.0);
     }
 
     @Managed
     public double getPercentile75() {
-        return samples.getPercentile(75.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(75.0);
     }
 
     @Managed
     public double getPercentile50() {
-        return samples.getPercentile(50.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(50.0);
+    }
+
+    @Managed
+    public double getPercentile50LastMinute() {
+        return samples.snapshot(Histogram.ONE_MINUTE).getPercentile(50.0);
+    }
+
+    @Managed
+    public double getPercentile50Last5Minutes() {
+        return samples.snapshot(Histogram.FIVE_MINUTES).getPercentile(50.0);
     }
 
     @Managed
     public double getPercentile25() {
-        return samples.getPercentile(25.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(25.0);
     }
 
     @Managed
     public double getPercentile10() {
-        return samples.getPercentile(10.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(10.0);
     }
 
     @Managed
     public double getPercentile01() {
-        return samples.getPercentile(1.0);
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(1.0);
     }
 
     @Managed
     public double getStandardDeviation() {
-        return samples.getStandardDeviation();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getStandardDeviation();
     }
 
     @Managed
     public double getMean() {
-        return samples.getMean();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getMean();
+    }
+
+    @Managed
+    public double getMeanLastMinute() {
+        return samples.snapshot(Histogram.ONE_MINUTE).getMean();
+    }
+
+    @Managed
+    public double getMeanLast5Minutes() {
+        return samples.snapshot(Histogram.FIVE_MINUTES).getMean();
     }
 
     @Managed
     public double getVariance() {
-        return samples.getVariance();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getVariance();
     }
 
     @Managed
     public double getGeometricMean() {
-        return samples.getGeometricMean();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getGeometricMean();
     }
 
     @Managed
     public double getSkewness() {
-        return samples.getSkewness();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getSkewness();
     }
 
     @Managed
     public double getKurtosis() {
-        return samples.getKurtosis();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getKurtosis();
     }
 
     @Managed
     public double getMax() {
-        return samples.getMax();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getMax();
     }
 
     @Managed
     public double getMin() {
-        return samples.getMin();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getMin();
     }
 
     @Managed
     public double getSum() {
-        return samples.getSum();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getSum();
     }
 
     @Managed
     public double getSumsq() {
-        return samples.getSumsq();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getSumsq();
     }
 
     @Managed
     public double[] sortedValues() {
-        return samples.getSortedValues();
+        return samples.snapshot(Histogram.FIFTEEN_MINUTES).getValues(sampleSize);
     }
 
     @Managed
     public double[] values() {
-        return samples.getValues();
+        return sortedValues();
     }
 
     public void record(final long time) {
         event.record();
-        samples.addValue(time);
+        samples.record(time);
     }
 
     @Managed
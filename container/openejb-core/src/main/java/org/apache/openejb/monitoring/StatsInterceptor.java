@@ -20,7 +20,6 @@ package org.apache.openejb.monitoring;
 import org.apache.openejb.api.Monitor;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.loader.SystemInstance;
-import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistics;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 import org.apache.xbean.finder.ClassFinder;
@@ -40,7 +39,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @version $Rev$ $Date$
@@ -55,8 +54,8 @@ public class StatsInterceptor {
     public static final InterceptorData metadata = InterceptorData.scan(StatsInterceptor.class);
 
     private final Map<Method, Stats> map = new ConcurrentHashMap<>();
-    private final AtomicLong invocations = new AtomicLong();
-    private final AtomicLong invocationTime = new AtomicLong();
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder invocationTime = new LongAdder();
 
     private final Monitor monitor;
     private final boolean enabled;
@@ -77,12 +76,12 @@ public class StatsInterceptor {
 
     @Managed
     public long getInvocationCount() {
-        return invocations.get();
+        return invocations.sum();
     }
 
     @Managed
     public long getInvocationTime() {
-        return invocationTime.get();
+        return invocationTime.sum();
     }
 
     @Managed
@@ -183,7 +182,7 @@ public class StatsInterceptor {
     }
 
     private Object record(final InvocationContext invocationContext, final Method callback) throws Exception {
-        invocations.incrementAndGet();
+        invocations.increment();
 
         final Stats stats = enabled ? stats(invocationContext, callback) : null;
         final long start = System.nanoTime();
@@ -195,7 +194,7 @@ public class StatsInterceptor {
             if (stats != null) {
                 stats.record(time);
             }
-            invocationTime.addAndGet(time);
+            invocationTime.add(time);
         }
     }
 
@@ -219,9 +218,13 @@ public class StatsInterceptor {
         return stats;
     }
 
+    /**
+     * Statistics of the last 15 minutes unless the attribute names another window.
+     */
     public class Stats {
-        private final AtomicLong count = new AtomicLong();
-        private final SynchronizedDescriptiveStatistics samples;
+        private final LongAdder count = new LongAdder();
+        private final Histogram samples = new Histogram();
+        private volatile int sampleSize;
 
         // Used as the prefix for the MBeanAttributeInfo
         private final String method;
@@ -229,9 +232,7 @@ public class StatsInterceptor {
         public Stats(final Method method, final Monitor classAnnotation) {
             final Monitor methodAnnotation = method.getAnnotation(Monitor.class);
 
-            final int window = methodAnnotation != null ? methodAnnotation.sample() : classAnnotation != null ? classAnnotation.sample() : 2000;
-
-            this.samples = new SynchronizedDescriptiveStatistics(window);
+            this.sampleSize = methodAnnotation != null ? methodAnnotation.sample() : classAnnotation != null ? classAnnotation.sample() : 2000;
             final String s = ",";
 
             final StringBuilder sb = new StringBuilder(method.getName());
@@ -249,119 +250,152 @@ public class StatsInterceptor {
             this.method = sb.toString();
         }
 
+        /**
+         * @param i the number of values returned by values() and sortedValues()
+         */
         @Managed
         public void setSampleSize(final int i) {
-            samples.setWindowSize(i);
+            sampleSize = i;
         }
 
         @Managed
         public int getSampleSize() {
-            return samples.getWindowSize();
+            return sampleSize;
         }
 
         @Managed
         public long getCount() {
-            return count.get();
+            return count.sum();
         }
 
         @Managed
         public double getPercentile99() {
-            return samples.getPercentile(99.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(99.0);
+        }
+
+        @Managed
+        public double getPercentile99LastMinute() {
+            return samples.snapshot(Histogram.ONE_MINUTE).getPercentile(99.0);
+        }
+
+        @Managed
+        public double getPercentile99Last5Minutes() {
+            return samples.snapshot(Histogram.FIVE_MINUTES).getPercentile(99.0);
         }
 
         @Managed
         public double getPercentile90() {
-            return samples.getPercentile(90.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(90.0);
         }
 
         @Managed
         public double getPercentile75() {
-            return samples.getPercentile(75.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(75.0);
         }
 
         @Managed
         public double getPercentile50() {
-            return samples.getPercentile(50.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(50.0);
+        }
+
+        @Managed
+        public double getPercentile50LastMinute() {
+            return samples.snapshot(Histogram.ONE_MINUTE).getPercentile(50.0);
+        }
+
+        @Managed
+        public double getPercentile50Last5Minutes() {
+            return samples.snapshot(Histogram.FIVE_MINUTES).getPercentile(50.0);
         }
 
         @Managed
         public double getPercentile25() {
-            return samples.getPercentile(25.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(25.0);
         }
 
         @Managed
         public double getPercentile10() {
-            return samples.getPercentile(10.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(10.0);
         }
 
         @Managed
         public double getPercentile01() {
-            return samples.getPercentile(1.0);
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getPercentile(1.0);
         }
 
         @Managed
         public double getStandardDeviation() {
-            return samples.getStandardDeviation();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getStandardDeviation();
         }
 
         @Managed
         public double getMean() {
-            return samples.getMean();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getMean();
+        }
+
+        @Managed
+        public double getMeanLastMinute() {
+            return samples.snapshot(Histogram.ONE_MINUTE).getMean();
+        }
+
+        @Managed
+        public double getMeanLast5Minutes() {
+            return samples.snapshot(Histogram.FIVE_MINUTES).getMean();
         }
 
         @Managed
         public double getVariance() {
-            return samples.getVariance();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getVariance();
         }
 
         @Managed
         public double getGeometricMean() {
-            return samples.getGeometricMean();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getGeometricMean();
         }
 
         @Managed
         public double getSkewness() {
-            return samples.getSkewness();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getSkewness();
         }
 
         @Managed
         public double getKurtosis() {
-            return samples.getKurtosis();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getKurtosis();
         }
 
         @Managed
         public double getMax() {
-            return samples.getMax();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getMax();
         }
 
         @Managed
         public double getMin() {
-            return samples.getMin();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getMin();
         }
 
         @Managed
         public double getSum() {
-            return samples.getSum();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getSum();
         }
 
         @Managed
         public double getSumsq() {
-            return samples.getSumsq();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getSumsq();
         }
 
         @Managed
         public double[] sortedValues() {
-            return samples.getSortedValues();
+            return samples.snapshot(Histogram.FIFTEEN_MINUTES).getValues(sampleSize);
         }
 
         @Managed
         public double[] values() {
-            return samples.getValues();
+            return sortedValues();
         }
 
         public void record(final long time) {
-            count.incrementAndGet();
-            samples.addValue(time);
+            count.increment();
+            samples.record(time);
         }
 
     }
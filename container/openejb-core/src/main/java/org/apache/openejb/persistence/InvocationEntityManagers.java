@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.persistence;
+
+import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.ThreadContextListener;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Entity managers used outside of a transaction during an EJB invocation (openejb.jpa.no-tx.entity-manager=invocation):
+ * one per factory, created by the first read and cleared then closed when the invocation exits.
+ */
+final class InvocationEntityManagers {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB.createChild("persistence"), InvocationEntityManagers.class);
+
+    static {
+        ThreadContext.addThreadContextListener(new ThreadContextListener() {
+            @Override
+            public void contextEntered(final ThreadContext oldContext, final ThreadContext newContext) {
+                // no-op: created lazily
+            }
+
+            @Override
+            public void contextExited(final ThreadContext exitedContext, final ThreadContext reenteredContext) {
+                final InvocationEntityManagers entityManagers = exitedContext.get(InvocationEntityManagers.class);
+                if (entityManagers != null && entityManagers.owner == exitedContext) {
+                    exitedContext.remove(InvocationEntityManagers.class);
+                    entityManagers.close();
+                }
+            }
+        });
+    }
+
+    private final ThreadContext owner; // a copied ThreadContext (asynchronous call) must not share the entity managers
+    private final Map<EntityManagerFactory, EntityManager> entityManagers = new IdentityHashMap<>(2);
+
+    private InvocationEntityManagers(final ThreadContext owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * @return the entity manager of the current invocation for this factory, null if there is no invocation
+     */
+    static EntityManager get(final JtaEntityManager jtaEntityManager, final EntityManagerFactory factory, final NoTxStatistics statistics) {
+        final ThreadContext context = ThreadContext.getThreadContext();
+        if (context == null) {
+            return null;
+        }
+
+        InvocationEntityManagers current = context.get(InvocationEntityManagers.class);
+        if (current == null || current.owner != context) {
+            current = new InvocationEntityManagers(context);
+            context.set(InvocationEntityManagers.class, current);
+            statistics.invocation();
+        }
+
+        EntityManager entityManager = current.entityManagers.get(factory);
+        if (entityManager == null || !entityManager.isOpen()) {
+            entityManager = jtaEntityManager.createNoTxEntityManager();
+            current.entityManagers.put(factory, entityManager);
+        }
+        return entityManager;
+    }
+
+    static boolean isInvocationScoped(final EntityManager entityManager) {
+        final ThreadContext context = ThreadContext.getThreadContext();
+        if (context == null) {
+            return false;
+        }
+        final InvocationEntityManagers current = context.get(InvocationEntityManagers.class);
+        return current != null && current.owner == context && current.entityManagers.containsValue(entityManager);
+    }
+
+    private void close() {
+        for (final EntityManager entityManager : entityManagers.values()) {
+            try {
+                if (entityManager.isOpen()) {
+                    entityManager.clear();
+                    entityManager.close();
+                }
+                logger.debug("Closed EntityManager(hashCode=" + entityManager.hashCode() + ") at the end of the invocation");
+            } catch (final RuntimeException e) {
+                logger.warning("Can't close the EntityManager of the invocation", e);
+            }
+        }
+        entityManagers.clear();
+    }
+}
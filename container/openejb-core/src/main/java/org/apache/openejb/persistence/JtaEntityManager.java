@@ -87,6 +87,8 @@ public class JtaEntityManager implements EntityManager, Serializable {
     private final String unitName;
     private final Logger logger;
     private final boolean wrapNoTxQueries;
+    private final boolean invocationScopedNoTx;
+    private final NoTxStatistics noTxStatistics;
     private final boolean timer;
 
     public JtaEntityManager(final JtaEntityManagerRegistry registry, final EntityManagerFactory entityManagerFactory,
@@ -113,9 +115,14 @@ public class JtaEntityManager implements EntityManager, Serializable {
         final Object localTimerConfig = properties == null ? null : properties.get("openejb.jpa.timer");
         this.timer = localTimerConfig == null ? (globalTimerConfig == null || Boolean.parseBoolean(globalTimerConfig)) : Boolean.parseBoolean(localTimerConfig.toString());
         logger = unitName == null ? baseLogger : baseLogger.getChildLogger(unitName);
-        final String wrapConfig = ReloadableEntityManagerFactory.class.isInstance(entityManagerFactory) ?
+        final boolean reloadable = ReloadableEntityManagerFactory.class.isInstance(entityManagerFactory);
+        final String wrapConfig = reloadable ?
                 ReloadableEntityManagerFactory.class.cast(entityManagerFactory).getUnitProperties().getProperty("openejb.jpa.query.wrap-no-tx", "true") : "true";
         this.wrapNoTxQueries = wrapConfig == null || "true".equalsIgnoreCase(wrapConfig);
+        final String noTxConfig = reloadable ?
+                ReloadableEntityManagerFactory.class.cast(entityManagerFactory).getUnitProperties().getProperty("openejb.jpa.no-tx.entity-manager", "call") : "call";
+        this.invocationScopedNoTx = "invocation".equalsIgnoreCase(noTxConfig);
+        this.noTxStatistics = reloadable ? ReloadableEntityManagerFactory.class.cast(entityManagerFactory).getNoTxStatistics() : new NoTxStatistics();
     }
 
     public static boolean isJPA21(final EntityManagerFactory entityManagerFactory) {
@@ -142,6 +149,21 @@ public class JtaEntityManager implements EntityManager, Serializable {
     }
 
     EntityManager getEntityManager() {
+        if (!extended && !isTransactionActive()) {
+            noTxStatistics.read();
+            if (invocationScopedNoTx) {
+                final EntityManager entityManager = InvocationEntityManagers.get(this, entityManagerFactory, noTxStatistics);
+                if (entityManager != null) {
+                    return entityManager;
+                }
+            }
+            return createNoTxEntityManager();
+        }
+        return registry.getEntityManager(entityManagerFactory, properties, extended, unitName, synchronizationType);
+    }
+
+    EntityManager createNoTxEntityManager() {
+        noTxStatistics.created();
         return registry.getEntityManager(entityManagerFactory, properties, extended, unitName, synchronizationType);
     }
 
@@ -170,6 +192,9 @@ public class JtaEntityManager implements EntityManager, Serializable {
      */
     void closeIfNoTx(final EntityManager entityManager) {
         if (!extended && !isTransactionActive()) {
+            if (invocationScopedNoTx && InvocationEntityManagers.isInvocationScoped(entityManager)) {
+                return; // closed at the end of the invocation
+            }
             entityManager.close();
             logger.debug("Closed EntityManager(unit=" + unitName + ", hashCode=" + entityManager.hashCode() + ")");
         }
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the entity managers created for the reads done outside of a transaction, exposed by the persistence unit MBean.
+ */
+public class NoTxStatistics {
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder invocations = new LongAdder();
+
+    void read() {
+        reads.increment();
+    }
+
+    void created() {
+        created.increment();
+    }
+
+    void invocation() {
+        invocations.increment();
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    /**
+     * @return invocations which used an invocation scoped entity manager
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public double getCreatedPerRead() {
+        final long r = reads.sum();
+        return r == 0 ? 0 : created.sum() / (double) r;
+    }
+}
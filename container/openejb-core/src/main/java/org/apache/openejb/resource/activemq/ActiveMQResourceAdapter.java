@@ -21,12 +21,16 @@ import org.apache.activemq.ActiveMQConnection;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.RedeliveryPolicy;
 import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.TransportConnector;
+import org.apache.activemq.broker.region.Destination;
+import org.apache.activemq.command.ActiveMQQueue;
 import org.apache.activemq.ra.ActiveMQConnectionRequestInfo;
 import org.apache.activemq.ra.ActiveMQEndpointActivationKey;
 import org.apache.activemq.ra.ActiveMQEndpointWorker;
 import org.apache.activemq.ra.ActiveMQManagedConnection;
 import org.apache.activemq.ra.MessageActivationSpec;
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.core.mdb.DestinationBacklog;
 import org.apache.openejb.core.mdb.MdbContainer;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.resource.AutoConnectionTracker;
@@ -45,12 +49,17 @@ import javax.jms.JMSException;
 import javax.management.ObjectName;
 import javax.naming.NamingException;
 import javax.resource.ResourceException;
+import javax.resource.spi.ActivationSpec;
 import javax.resource.spi.BootstrapContext;
 import javax.resource.spi.ResourceAdapterInternalException;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
 import java.util.Iterator;
@@ -61,7 +70,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("UnusedDeclaration")
-public class ActiveMQResourceAdapter extends org.apache.activemq.ra.ActiveMQResourceAdapter {
+public class ActiveMQResourceAdapter extends org.apache.activemq.ra.ActiveMQResourceAdapter implements DestinationBacklog {
 
     private String dataSource;
     private String useDatabaseLock;
@@ -181,6 +190,82 @@ public class ActiveMQResourceAdapter extends org.apache.activemq.ra.ActiveMQReso
         throw new IllegalStateException("No worker for " + beanContext.getDeploymentID());
     }
 
+    @Override
+    public long getBacklog(final ActivationSpec activationSpec) { // only known for the queues of the embedded broker we are connected to
+        if (!MessageActivationSpec.class.isInstance(activationSpec)) {
+            return -1;
+        }
+        final MessageActivationSpec spec = MessageActivationSpec.class.cast(activationSpec);
+        if (spec.getDestination() == null || !"javax.jms.Queue".equals(spec.getDestinationType())) {
+            return -1;
+        }
+
+        final BrokerService broker = findConnectedBroker();
+        if (broker == null) {
+            return -1;
+        }
+        try {
+            // not broker.getDestination() which creates the destination
+            final Destination destination = broker.getRegionBroker().getDestinationMap().get(new ActiveMQQueue(spec.getDestination()));
+            return destination == null ? 0 : destination.getDestinationStatistics().getMessages().getCount();
+        } catch (final Exception e) {
+            return -1;
+        }
+    }
+
+    private BrokerService findConnectedBroker() {
+        final String serverUrl = getServerUrl();
+        if (serverUrl == null) {
+            return null;
+        }
+
+        final URI uri;
+        final Collection<BrokerService> brokers;
+        try {
+            uri = URLs.uri(serverUrl.trim());
+            brokers = ActiveMQFactory.getBrokers();
+        } catch (final Exception e) {
+            return null;
+        }
+        if (uri.getHost() == null) { // failover:(...), vm:(broker:...)...
+            return null;
+        }
+
+        for (final BrokerService broker : brokers) {
+            if ("vm".equalsIgnoreCase(uri.getScheme())) {
+                if (uri.getHost().equals(broker.getBrokerName())) {
+                    return broker;
+                }
+                continue;
+            }
+            for (final TransportConnector connector : broker.getTransportConnectors()) {
+                URI connectorUri;
+                try {
+                    connectorUri = connector.getConnectUri();
+                } catch (final Exception e) {
+                    connectorUri = connector.getUri();
+                }
+                if (connectorUri != null && connectorUri.getPort() == uri.getPort() && isSameHost(connectorUri.getHost(), uri.getHost())) {
+                    return broker;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameHost(final String connectorHost, final String host) {
+        if (connectorHost == null || connectorHost.equalsIgnoreCase(host)) {
+            return true;
+        }
+        try {
+            final InetAddress address = InetAddress.getByName(host);
+            final InetAddress bound = InetAddress.getByName(connectorHost);
+            return address.equals(bound) || (bound.isAnyLocalAddress() && (address.isLoopbackAddress() || NetworkInterface.getByInetAddress(address) != null));
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
     @Override
     public BootstrapContext getBootstrapContext() {
         return this.bootstrapContext;
@@ -25,6 +25,8 @@ import org.apache.openejb.resource.XAResourceWrapper;
 import org.apache.openejb.resource.jdbc.dbcp.DbcpDataSourceCreator;
 import org.apache.openejb.resource.jdbc.driver.AlternativeDriver;
 import org.apache.openejb.resource.jdbc.logging.LoggingSqlDataSource;
+import org.apache.openejb.resource.jdbc.logging.ProfilingSqlDataSource;
+import org.apache.openejb.resource.jdbc.logging.SqlProfiler;
 import org.apache.openejb.resource.jdbc.plugin.AbstractDataSourcePlugin;
 import org.apache.openejb.resource.jdbc.plugin.DataSourcePlugin;
 import org.apache.openejb.resource.jdbc.pool.DataSourceCreator;
@@ -69,11 +71,15 @@ public class DataSourceFactory {
 
     public static final String LOG_SQL_PROPERTY = "LogSql";
     public static final String LOG_SQL_PACKAGE_PROPERTY = "LogSqlPackages";
+    public static final String PROFILE_SQL_PROPERTY = "ProfileSql";
+    public static final String PROFILE_SQL_SAMPLING_PROPERTY = "ProfileSqlSampling";
+    public static final String PROFILE_SQL_TOP_PROPERTY = "ProfileSqlTop";
     public static final String FLUSHABLE_PROPERTY = "Flushable";
     public static final String RESET_PROPERTY = "ResetOnError";
     public static final String RESET_METHODS_PROPERTY = "ResetOnErrorMethods";
     public static final String GLOBAL_LOG_SQL_PROPERTY = "openejb.jdbc.log";
     public static final String GLOBAL_LOG_SQL_PACKAGE_PROPERTY = "openejb.jdbc.log.packages";
+    public static final String GLOBAL_PROFILE_SQL_PROPERTY = "openejb.jdbc.profile";
     public static final String GLOBAL_FLUSH_PROPERTY = "openejb.jdbc.flushable";
     public static final String POOL_PROPERTY = "openejb.datasource.pool";
     public static final String DATA_SOURCE_CREATOR_PROP = "DataSourceCreator";
@@ -142,7 +148,11 @@ public class DataSourceFactory {
         final boolean logSql = SystemInstance.get().getOptions().get(GLOBAL_LOG_SQL_PROPERTY,
             "true".equalsIgnoreCase((String) properties.remove(LOG_SQL_PROPERTY)));
         final String logPackages = SystemInstance.get().getProperty(GLOBAL_LOG_SQL_PACKAGE_PROPERTY, (String) properties.remove(LOG_SQL_PACKAGE_PROPERTY));
-        final DataSourceCreator creator = creator(properties.remove(DATA_SOURCE_CREATOR_PROP), logSql);
+        final boolean profileSql = SystemInstance.get().getOptions().get(GLOBAL_PROFILE_SQL_PROPERTY,
+            "true".equalsIgnoreCase((String) properties.remove(PROFILE_SQL_PROPERTY)));
+        final String profileSampling = (String) properties.remove(PROFILE_SQL_SAMPLING_PROPERTY);
+        final String profileTop = (String) properties.remove(PROFILE_SQL_TOP_PROPERTY);
+        final DataSourceCreator creator = creator(properties.remove(DATA_SOURCE_CREATOR_PROP), logSql || profileSql);
         final String resetOnError = (String) properties.remove(RESET_PROPERTY);
         final String resetMethods = (String) properties.remove(RESET_METHODS_PROPERTY); // before setProperties()
 
@@ -224,7 +234,7 @@ public class DataSourceFactory {
             }
 
             final boolean doResetOnError = resetOnError != null && !"false".equals(resetOnError);
-            if (doResetOnError || logSql || flushable) { // will get proxied
+            if (doResetOnError || logSql || profileSql || flushable) { // will get proxied
                 ObjectRecipe objectRecipe = null;
                 ResettableDataSourceHandler existingResettableHandler = null;
                 FlushableDataSourceHandler flushableDataSourceHandler = null;
@@ -264,6 +274,12 @@ public class DataSourceFactory {
                 if (logSql) {
                     ds = makeItLogging(ds, logPackages);
                 }
+                if (profileSql) {
+                    ds = makeItProfiling(ds, name,
+                        profileSampling == null ? 100 : Integer.parseInt(profileSampling.trim()),
+                        profileTop == null ? 10 : Integer.parseInt(profileTop.trim()),
+                        logPackages);
+                }
 
                 final ResettableDataSourceHandler resettableDataSourceHandler;
                 if (doResetOnError) { // needs to be done after flushable
@@ -384,6 +400,12 @@ public class DataSourceFactory {
             new Class<?>[]{DataSource.class, Serializable.class}, new LoggingSqlDataSource(ds, pck));
     }
 
+    public static DataSource makeItProfiling(final CommonDataSource ds, final String name, final int sampling, final int top, final String packagesStr) {
+        final String[] pck = packagesStr == null ? null : packagesStr.split(" *, *");
+        return (DataSource) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
+            new Class<?>[]{DataSource.class, Serializable.class}, new ProfilingSqlDataSource(ds, SqlProfiler.acquire(name, sampling, top, pck)));
+    }
+
     private static void normalizeJdbcUrl(final Properties properties) {
         final String key = "JdbcUrl";
         final String jdbcUrl = properties.getProperty(key);
@@ -507,6 +529,8 @@ public class DataSourceFactory {
 
     @SuppressWarnings("SuspiciousMethodCalls")
     public static void destroy(final Object o) throws Throwable {
+        releaseProfiler(o);
+
         final Object instance = realInstance(o);
         if (instance == null) {
             return;
@@ -520,6 +544,26 @@ public class DataSourceFactory {
         }
     }
 
+    private static void releaseProfiler(final Object o) {
+        if (o == null || !(o instanceof DataSource)) {
+            return;
+        }
+
+        Object ds = o;
+        while (Proxy.isProxyClass(ds.getClass())) {
+            final InvocationHandler handler = Proxy.getInvocationHandler(ds);
+            if (ProfilingSqlDataSource.class.isInstance(handler)) {
+                ProfilingSqlDataSource.class.cast(handler).getProfiler().release();
+                return;
+            }
+            if (DelegatableHandler.class.isInstance(handler)) {
+                ds = DelegatableHandler.class.cast(handler).getDelegate();
+            } else {
+                break;
+            }
+        }
+    }
+
     // remove proxy added by us in front of the datasource returned by the creator
     private static Object realInstance(final Object o) {
         if (o == null || !(o instanceof DataSource)) {
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.logging;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Only measures executions, parameters are not captured since the fingerprint doesn't use them.
+ */
+public class ProfilingSqlStatement implements InvocationHandler {
+    private final Object delegate;
+    private final String sql;
+    private final SqlProfiler profiler;
+    private String batchSql;
+
+    public ProfilingSqlStatement(final Object statement, final String sql, final SqlProfiler profiler) {
+        this.delegate = statement;
+        this.sql = sql;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final String mtdName = method.getName();
+        if (!mtdName.startsWith("execute")) {
+            if (sql == null && "addBatch".equals(mtdName) && args != null && args.length == 1) {
+                batchSql = (String) args[0];
+            }
+            try {
+                return method.invoke(delegate, args);
+            } catch (final InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+
+        final String executed;
+        if (args != null && args.length > 0 && String.class.isInstance(args[0])) {
+            executed = (String) args[0];
+        } else if (sql != null) {
+            executed = sql;
+        } else {
+            executed = batchSql;
+        }
+
+        final long start = System.nanoTime();
+        boolean error = false;
+        try {
+            return method.invoke(delegate, args);
+        } catch (final InvocationTargetException ite) {
+            error = true;
+            throw ite.getCause();
+        } finally {
+            profiler.record(executed, System.nanoTime() - start, error);
+        }
+    }
+}
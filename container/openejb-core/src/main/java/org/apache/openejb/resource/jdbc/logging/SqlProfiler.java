@@ -0,0 +1,423 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.logging;
+
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates the statements executed through a datasource by fingerprint (literals replaced by ?).
+ *
+ * The executing thread only measures the statement and queues it (plus its stack for one execution out of
+ * sampling), the normalization and the aggregation are done by a background thread. Executions are dropped
+ * (and counted) if this thread can't follow.
+ *
+ * Profilers are shared by name to survive a datasource flush and exposed in JMX with the j2eeType SqlProfiler.
+ */
+public final class SqlProfiler {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_SQL, SqlProfiler.class);
+
+    private static final ConcurrentMap<String, SqlProfiler> PROFILERS = new ConcurrentHashMap<>();
+
+    private static final String OTHER = "<other>";
+    private static final int MAX_PENDING = 10000;
+    private static final int MAX_FINGERPRINTS = 1000;
+    private static final int MAX_STACK_FRAMES = 10;
+    private static final long DRAIN_INTERVAL = 100;
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern ROWS = Pattern.compile("(\\(\\?\\+?\\))(?:\\s*,\\s*\\(\\?\\+?\\))+");
+
+    private static final String[] COLUMNS = {
+        "fingerprint", "count", "errors", "average (ms)", "p50 (ms)", "p99 (ms)", "max (ms)", "total (ms)", "sampled stack"
+    };
+
+    private final String name;
+    private final int sampling;
+    private final int top;
+    private final String[] packages;
+    private final AtomicInteger users = new AtomicInteger();
+    private final Queue<Execution> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final ConcurrentMap<String, SqlStatistics> statistics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<>();
+    private ScheduledExecutorService drainer;
+    private ObjectName objectName;
+
+    private SqlProfiler(final String name, final int sampling, final int top, final String[] packages) {
+        this.name = name;
+        this.sampling = sampling;
+        this.top = top;
+        this.packages = packages;
+    }
+
+    public static SqlProfiler acquire(final String name, final int sampling, final int top, final String[] packages) {
+        while (true) {
+            final SqlProfiler profiler = PROFILERS.computeIfAbsent(name, n -> new SqlProfiler(n, sampling, top, packages));
+            synchronized (profiler) {
+                if (PROFILERS.get(name) == profiler) { // else released concurrently
+                    if (profiler.users.getAndIncrement() == 0) {
+                        profiler.start();
+                    }
+                    return profiler;
+                }
+            }
+        }
+    }
+
+    public static SqlProfiler get(final String name) {
+        return PROFILERS.get(name);
+    }
+
+    public void release() {
+        synchronized (this) {
+            if (users.decrementAndGet() > 0) {
+                return;
+            }
+            PROFILERS.remove(name, this);
+            stop();
+        }
+    }
+
+    private void start() {
+        drainer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("openejb-sql-profiler", name));
+        drainer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (final RuntimeException e) {
+                    LOGGER.warning("Can't aggregate SQL statistics of " + name + ": " + e.getMessage());
+                }
+            }
+        }, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+
+        objectName = new ObjectNameBuilder("openejb.management")
+            .set("J2EEServer", "openejb")
+            .set("J2EEApplication", null)
+            .set("j2eeType", "SqlProfiler")
+            .set("name", name)
+            .build();
+        LocalMBeanServer.registerDynamicWrapperSilently(new JMXSqlProfiler(this), objectName);
+    }
+
+    private void stop() {
+        if (drainer != null) {
+            drainer.shutdownNow();
+            drainer = null;
+        }
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+    }
+
+    /**
+     * Called by the executing thread, must stay cheap.
+     */
+    public void record(final String sql, final long nanos, final boolean error) {
+        if (sql == null) {
+            return;
+        }
+        if (pendingSize.incrementAndGet() > MAX_PENDING) {
+            pendingSize.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        final StackTraceElement[] stack = sampling > 0 && ThreadLocalRandom.current().nextInt(sampling) == 0 ?
+            new Exception().getStackTrace() : null;
+        pending.add(new Execution(sql, nanos, error, stack));
+    }
+
+    /**
+     * Aggregates the queued executions, done periodically in background.
+     */
+    public synchronized void flush() {
+        Execution execution;
+        while ((execution = pending.poll()) != null) {
+            pendingSize.decrementAndGet();
+
+            final SqlStatistics stats = statistics(fingerprint(execution.sql));
+            stats.record(execution.nanos, execution.error);
+            if (execution.stack != null) {
+                stats.setSampledStack(inlineStack(execution.stack));
+            }
+        }
+    }
+
+    private SqlStatistics statistics(final String fingerprint) {
+        SqlStatistics stats = statistics.get(fingerprint);
+        if (stats == null) {
+            final String key = statistics.size() < MAX_FINGERPRINTS ? fingerprint : OTHER;
+            stats = statistics.computeIfAbsent(key, SqlStatistics::new);
+        }
+        return stats;
+    }
+
+    private String fingerprint(final String sql) {
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = normalize(sql);
+            if (fingerprints.size() >= MAX_FINGERPRINTS * 10) { // literals inlined by the application
+                fingerprints.clear();
+            }
+            fingerprints.put(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Replaces literals by ?, collapses whitespaces, IN lists and multi rows VALUES.
+     */
+    public static String normalize(final String sql) {
+        final StringBuilder out = new StringBuilder(sql.length());
+        final int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (c == '\'') {
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                out.append('?');
+                i++;
+            } else if (c == '"' || c == '`') {
+                final int end = sql.indexOf(c, i + 1);
+                final int stop = end < 0 ? length : end + 1;
+                out.append(sql, i, stop);
+                i = stop;
+            } else if (Character.isDigit(c) && (out.length() == 0 || !isIdentifierPart(out.charAt(out.length() - 1)))) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+
+        String normalized = SPACES.matcher(out).replaceAll(" ").trim();
+        normalized = LIST.matcher(normalized).replaceAll("(?+)");
+        return ROWS.matcher(normalized).replaceAll("$1+");
+    }
+
+    private static boolean isIdentifierPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private String inlineStack(final StackTraceElement[] stack) {
+        final StringBuilder inlined = new StringBuilder();
+        int frames = 0;
+        for (final StackTraceElement elt : stack) {
+            final String className = elt.getClassName();
+            if (packages != null ? !accepted(className) : ignored(className)) {
+                continue;
+            }
+            inlined.append(" -> ").append(className).append('.').append(elt.getMethodName()).append(':').append(elt.getLineNumber());
+            if (++frames == MAX_STACK_FRAMES) {
+                break;
+            }
+        }
+        return inlined.toString();
+    }
+
+    private boolean accepted(final String className) {
+        for (final String p : packages) {
+            if (className.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean ignored(final String className) {
+        return className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("jdk.")
+            || className.startsWith("sun.") || className.startsWith("com.sun.proxy.") || className.startsWith("$Proxy")
+            || className.startsWith("org.apache.openejb.resource.jdbc.");
+    }
+
+    public Collection<SqlStatistics> getStatistics() {
+        return statistics.values();
+    }
+
+    public List<SqlStatistics> getSlowest() {
+        return top(Comparator.comparingDouble(SqlStatistics::getAverageTime));
+    }
+
+    public List<SqlStatistics> getHeaviest() {
+        return top(Comparator.comparingDouble(SqlStatistics::getTotalTime));
+    }
+
+    private List<SqlStatistics> top(final Comparator<SqlStatistics> comparator) {
+        final List<SqlStatistics> all = new ArrayList<>(statistics.values());
+        all.sort(comparator.reversed());
+        return all.size() > top ? new ArrayList<>(all.subList(0, top)) : all;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public void reset() {
+        statistics.clear();
+        dropped.reset();
+    }
+
+    private static final class Execution {
+        private final String sql;
+        private final long nanos;
+        private final boolean error;
+        private final StackTraceElement[] stack;
+
+        private Execution(final String sql, final long nanos, final boolean error, final StackTraceElement[] stack) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.error = error;
+            this.stack = stack;
+        }
+    }
+
+    @MBean
+    @Description("SQL executions of a datasource aggregated by fingerprint")
+    public static class JMXSqlProfiler {
+        private final SqlProfiler profiler;
+
+        public JMXSqlProfiler(final SqlProfiler profiler) {
+            this.profiler = profiler;
+        }
+
+        @ManagedAttribute
+        @Description("executions")
+        public long getExecutions() {
+            long total = 0;
+            for (final SqlStatistics stats : profiler.getStatistics()) {
+                total += stats.getCount();
+            }
+            return total;
+        }
+
+        @ManagedAttribute
+        @Description("failed executions")
+        public long getErrors() {
+            long total = 0;
+            for (final SqlStatistics stats : profiler.getStatistics()) {
+                total += stats.getErrors();
+            }
+            return total;
+        }
+
+        @ManagedAttribute
+        @Description("executions not recorded because the aggregation didn't follow")
+        public long getDropped() {
+            return profiler.getDropped();
+        }
+
+        @ManagedAttribute
+        @Description("distinct fingerprints")
+        public int getFingerprints() {
+            return profiler.getStatistics().size();
+        }
+
+        @ManagedAttribute
+        @Description("fingerprints with the highest average time")
+        public TabularData getSlowestQueries() {
+            return table("slowest", profiler.getSlowest());
+        }
+
+        @ManagedAttribute
+        @Description("fingerprints with the highest total time")
+        public TabularData getHeaviestQueries() {
+            return table("heaviest", profiler.getHeaviest());
+        }
+
+        @ManagedOperation
+        @Description("reset the statistics")
+        public void reset() {
+            profiler.reset();
+        }
+
+        private static TabularData table(final String typeName, final List<SqlStatistics> list) {
+            final String[] names = new String[COLUMNS.length + 1];
+            names[0] = "rank";
+            System.arraycopy(COLUMNS, 0, names, 1, COLUMNS.length);
+            final OpenType<?>[] types = {
+                SimpleType.INTEGER, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE,
+                SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.STRING
+            };
+
+            try {
+                final CompositeType ct = new CompositeType(typeName, typeName + " queries", names, names, types);
+                final TabularDataSupport data = new TabularDataSupport(new TabularType(typeName, typeName + " queries", ct, new String[]{"rank"}));
+                int rank = 1;
+                for (final SqlStatistics stats : list) {
+                    data.put(new CompositeDataSupport(ct, names, new Object[]{
+                        rank++, stats.getFingerprint(), stats.getCount(), stats.getErrors(), stats.getAverageTime(),
+                        stats.getPercentile(50), stats.getPercentile(99), stats.getMaxTime(), stats.getTotalTime(),
+                        stats.getSampledStack() == null ? "" : stats.getSampledStack()
+                    }));
+                }
+                return data;
+            } catch (final OpenDataException e) {
+                return null;
+            }
+        }
+    }
+}
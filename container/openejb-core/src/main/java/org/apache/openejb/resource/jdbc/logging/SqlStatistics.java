@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executions of a SQL fingerprint, latencies are kept in a histogram of power of two microseconds buckets.
+ */
+public final class SqlStatistics {
+    private static final int BUCKETS = 40;
+
+    private final String fingerprint;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private volatile String sampledStack;
+
+    SqlStatistics(final String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    void record(final long nanos, final boolean error) {
+        count.increment();
+        if (error) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    void setSampledStack(final String sampledStack) {
+        this.sampledStack = sampledStack;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public double getTotalTime() {
+        return toMillis(totalNanos.sum());
+    }
+
+    public double getAverageTime() {
+        final long c = count.sum();
+        return c == 0 ? 0 : toMillis(totalNanos.sum() / c);
+    }
+
+    public double getMaxTime() {
+        return toMillis(maxNanos.get());
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound in ms of the histogram bucket containing the percentile
+     */
+    public double getPercentile(final double percentile) {
+        long total = 0;
+        final long[] values = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = histogram.get(i);
+            total += values[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += values[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.;
+            }
+        }
+        return getMaxTime();
+    }
+
+    public String getSampledStack() {
+        return sampledStack;
+    }
+
+    private static double toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlStatistics{fingerprint='" + fingerprint + "', count=" + getCount() + ", errors=" + getErrors()
+            + ", average=" + getAverageTime() + "ms, max=" + getMaxTime() + "ms}";
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.router;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Read/write splitting router: connections go to the primary datasource except when they are used read only
+ * (Connection.setReadOnly(true) before the first statement, or any connection obtained without transaction
+ * when readOnlyWithoutTransaction is true) where a replica is used.
+ *
+ * The replica is the one with the lowest (in flight connections + 1) x average latency. A replica failing to give a
+ * connection, slower than maxLatency or lagging more than maxLag (lagQuery) is ejected, it is probed again every
+ * probeInterval and comes back once the probe succeeds. Without any available replica the primary is used.
+ */
+public class ReadReplicaRouter extends AbstractRouter {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_SERVER, ReadReplicaRouter.class);
+
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final double MIN_LATENCY = 0.01; // ms, avoids a zero score for a never measured replica
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private DataSource primaryDataSource;
+    private DataSource facade;
+    private TransactionManager transactionManager;
+    private ScheduledExecutorService prober;
+
+    private String primary;
+    private String replicaNames = "";
+    private String delimiter = ",";
+    private boolean readOnlyWithoutTransaction;
+    private long maxLatency = 1000;
+    private long probeInterval = 5000;
+    private int probeTimeout = 1;
+    private String lagQuery;
+    private double maxLag = 10;
+
+    @Override
+    public DataSource getDataSource() {
+        return facade;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (primary == null || primary.trim().isEmpty()) {
+            throw new IllegalArgumentException("primary datasource is required");
+        }
+        primaryDataSource = lookup(primary.trim());
+        replicas.clear();
+        for (final String ds : replicaNames.split(Pattern.quote(delimiter))) {
+            final String name = ds.trim();
+            if (!name.isEmpty()) {
+                LOGGER.debug("Found replica '" + name + "'");
+                replicas.add(new Replica(lookup(name), name));
+            }
+        }
+        transactionManager = OpenEJB.getTransactionManager();
+        facade = DataSource.class.cast(Proxy.newProxyInstance(
+                Thread.currentThread().getContextClassLoader(),
+                new Class<?>[]{DataSource.class}, new FacadeHandler()));
+
+        if (probeInterval > 0 && !replicas.isEmpty()) {
+            prober = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(ReadReplicaRouter.class));
+            prober.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    /**
+     * Checks all the replicas (connection, validity, lag) and updates their state.
+     */
+    public void probe() {
+        for (final Replica replica : replicas) {
+            final long start = System.nanoTime();
+            try (final Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(probeTimeout)) {
+                    replica.eject("invalid connection");
+                    continue;
+                }
+                if (lagQuery != null) {
+                    replica.lag = readLag(connection);
+                }
+                replica.latency(System.nanoTime() - start);
+                if (replica.lag > maxLag) {
+                    replica.eject("lag of " + replica.lag + "s");
+                } else if (replica.latency > maxLatency) {
+                    replica.eject("latency of " + replica.latency + "ms");
+                } else {
+                    replica.reinstate();
+                }
+            } catch (final SQLException | RuntimeException e) {
+                replica.eject(e.getMessage());
+            }
+        }
+    }
+
+    private double readLag(final Connection connection) throws SQLException {
+        try (final Statement statement = connection.createStatement();
+             final ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return 0;
+            }
+            final double lag = rs.getDouble(1);
+            return rs.wasNull() ? 0 : lag;
+        }
+    }
+
+    private DataSource lookup(final String name) {
+        try {
+            final Object o = getOpenEJBResource(name);
+            if (DataSource.class.isInstance(o)) {
+                return DataSource.class.cast(o);
+            }
+            throw new IllegalArgumentException(name + " (" + o + ") is not a datasource");
+        } catch (final NamingException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private boolean inTransaction() {
+        try {
+            return transactionManager != null && transactionManager.getTransaction() != null;
+        } catch (final SystemException e) {
+            return true; // the primary is always a safe choice
+        }
+    }
+
+    private Replica select() {
+        final int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+
+        final int offset = ThreadLocalRandom.current().nextInt(size); // spreads ties
+        Replica best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            final Replica replica = replicas.get((offset + i) % size);
+            if (replica.ejected) {
+                continue;
+            }
+            final double score = (replica.inFlight.get() + 1) * Math.max(MIN_LATENCY, replica.latency);
+            if (score < bestScore) {
+                best = replica;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    public Collection<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    public void setPrimary(final String primary) {
+        this.primary = primary;
+    }
+
+    public void setReplicaNames(final String replicaNames) {
+        this.replicaNames = replicaNames;
+    }
+
+    public void setDelimiter(final String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public void setReadOnlyWithoutTransaction(final boolean readOnlyWithoutTransaction) {
+        this.readOnlyWithoutTransaction = readOnlyWithoutTransaction;
+    }
+
+    public void setMaxLatency(final long maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+
+    public void setProbeInterval(final long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    public void setProbeTimeout(final int probeTimeout) {
+        this.probeTimeout = probeTimeout;
+    }
+
+    public void setLagQuery(final String lagQuery) {
+        this.lagQuery = lagQuery == null || lagQuery.trim().isEmpty() ? null : lagQuery;
+    }
+
+    public void setMaxLag(final double maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public static final class Replica {
+        private final DataSource dataSource;
+        private final String name;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latency; // ms
+        private volatile double lag; // s
+        private volatile boolean ejected;
+
+        private Replica(final DataSource dataSource, final String name) {
+            this.dataSource = dataSource;
+            this.name = name;
+        }
+
+        private void latency(final long nanos) {
+            final double ms = TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.;
+            final double current = latency;
+            latency = current == 0 ? ms : current + (ms - current) * LATENCY_WEIGHT; // races only lose a sample
+        }
+
+        private void eject(final String reason) {
+            if (!ejected) {
+                ejected = true;
+                LOGGER.warning("Ejecting replica '" + name + "': " + reason);
+            }
+        }
+
+        private void reinstate() {
+            if (ejected) {
+                ejected = false;
+                LOGGER.info("Replica '" + name + "' is back");
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public double getLatency() {
+            return latency;
+        }
+
+        public double getLag() {
+            return lag;
+        }
+
+        public boolean isEjected() {
+            return ejected;
+        }
+
+        @Override
+        public String toString() {
+            return "Replica{name='" + name + "', inFlight=" + inFlight + ", latency=" + latency
+                + "ms, lag=" + lag + "s, ejected=" + ejected + '}';
+        }
+    }
+
+    private class FacadeHandler implements InvocationHandler {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                if ("toString".equals(method.getName())) {
+                    return "ReadReplicaDataSource{primary=" + primary + ", replicas=" + replicas + "}";
+                }
+                if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                }
+            }
+
+            if ("getConnection".equals(method.getName())) {
+                if (inTransaction()) { // writes and enlistment belong to the primary
+                    return invoke(primaryDataSource, method, args);
+                }
+                return Proxy.newProxyInstance(
+                        Thread.currentThread().getContextClassLoader(),
+                        new Class<?>[]{Connection.class}, new LazyConnectionHandler(args, readOnlyWithoutTransaction));
+            }
+
+            if (method.getName().startsWith("set")) {
+                for (final Replica replica : replicas) {
+                    invoke(replica.dataSource, method, args);
+                }
+            }
+            return invoke(primaryDataSource, method, args);
+        }
+    }
+
+    /**
+     * Defers the choice of the datasource until the connection is really used to know if it is read only.
+     */
+    private class LazyConnectionHandler implements InvocationHandler {
+        private final Object[] credentials;
+        private boolean readOnly;
+        private Boolean autoCommit;
+        private Integer isolation;
+        private Connection delegate;
+        private Replica replica;
+        private boolean closed;
+
+        private LazyConnectionHandler(final Object[] credentials, final boolean readOnly) {
+            this.credentials = credentials;
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public synchronized Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (Object.class.equals(method.getDeclaringClass())) {
+                if ("toString".equals(name)) {
+                    return "ReadReplicaConnection{" + (delegate == null ? "not used" : (replica == null ? primary : replica.name)) + "}";
+                }
+                if ("hashCode".equals(name)) {
+                    return System.identityHashCode(proxy);
+                }
+                if ("equals".equals(name)) {
+                    return proxy == args[0];
+                }
+            }
+
+            if ("close".equals(name)) {
+                if (!closed) {
+                    closed = true;
+                    release();
+                }
+                return null;
+            }
+            if ("isClosed".equals(name) && (closed || delegate == null)) {
+                return closed;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+
+            if (delegate == null) {
+                switch (name) {
+                    case "setReadOnly":
+                        readOnly = Boolean.class.cast(args[0]);
+                        return null;
+                    case "isReadOnly":
+                        return readOnly;
+                    case "setAutoCommit":
+                        autoCommit = Boolean.class.cast(args[0]);
+                        return null;
+                    case "setTransactionIsolation":
+                        isolation = Integer.class.cast(args[0]);
+                        return null;
+                    default:
+                        acquire();
+                }
+            }
+            return ReadReplicaRouter.invoke(delegate, method, args);
+        }
+
+        private void acquire() throws SQLException {
+            if (readOnly) {
+                Replica candidate;
+                while ((candidate = select()) != null) {
+                    final long start = System.nanoTime();
+                    candidate.inFlight.incrementAndGet();
+                    try {
+                        delegate = connect(candidate.dataSource);
+                        candidate.latency(System.nanoTime() - start);
+                        if (candidate.latency > maxLatency) {
+                            candidate.eject("latency of " + candidate.latency + "ms");
+                        }
+                        replica = candidate;
+                        break;
+                    } catch (final SQLException | RuntimeException e) {
+                        candidate.inFlight.decrementAndGet();
+                        candidate.eject(e.getMessage());
+                    }
+                }
+            }
+            if (delegate == null) {
+                delegate = connect(primaryDataSource);
+            }
+
+            if (autoCommit != null) {
+                delegate.setAutoCommit(autoCommit);
+            }
+            if (isolation != null) {
+                delegate.setTransactionIsolation(isolation);
+            }
+            if (readOnly) {
+                delegate.setReadOnly(true);
+            }
+        }
+
+        private Connection connect(final DataSource dataSource) throws SQLException {
+            return credentials != null && credentials.length == 2 ?
+                    dataSource.getConnection(String.class.cast(credentials[0]), String.class.cast(credentials[1])) :
+                    dataSource.getConnection();
+        }
+
+        private void release() throws SQLException {
+            if (delegate == null) {
+                return;
+            }
+            try {
+                if (readOnly && replica == null) {
+                    delegate.setReadOnly(false); // pooled primary connections are shared with writers
+                }
+            } finally {
+                try {
+                    delegate.close();
+                } finally {
+                    if (replica != null) {
+                        replica.inFlight.decrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException ite) {
+            throw ite.getTargetException();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.openejb.threads.reject.CURejectHandler;
 import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.executor.VirtualThreadExecutor;
 
 import javax.enterprise.concurrent.ManagedThreadFactory;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -36,12 +37,21 @@ public class ManagedExecutorServiceImplFactory {
     private Duration keepAlive = new Duration("5 second");
     private int queue = 15;
     private String threadFactory;
+    private boolean virtual;
 
     public ManagedExecutorServiceImpl create() {
         return new ManagedExecutorServiceImpl(createExecutorService());
     }
 
     private ExecutorService createExecutorService() {
+        if (virtual) {
+            if (VirtualThreadExecutor.isSupported()) { // Max tasks run at once, the others wait for a permit
+                return new VirtualThreadExecutor(max, VirtualThreadExecutor.newThreadFactory("managed-virtual-thread-"));
+            }
+            Logger.getInstance(LogCategory.OPENEJB, ManagedExecutorServiceImplFactory.class)
+                .warning("Virtual threads are not supported by this JVM, using a thread pool");
+        }
+
         final BlockingQueue<Runnable> blockingQueue;
         if (queue <= 0) {
             blockingQueue = new LinkedBlockingQueue<>();
@@ -81,4 +91,8 @@ public class ManagedExecutorServiceImplFactory {
     public void setThreadFactory(final String threadFactory) {
         this.threadFactory = threadFactory;
     }
+
+    public void setVirtual(final boolean virtual) {
+        this.virtual = virtual;
+    }
 }
@@ -22,6 +22,7 @@ import org.apache.openejb.threads.task.CUCallable;
 import org.apache.openejb.threads.task.CURunnable;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.executor.VirtualThreadExecutor;
 
 import javax.enterprise.concurrent.ManagedExecutorService;
 import java.util.List;
@@ -72,6 +73,8 @@ public class ManagedExecutorServiceImpl extends AbstractExecutorService implemen
     public Integer getMaximumPoolSize() {
         if (delegate instanceof ThreadPoolExecutor) {
             return ((ThreadPoolExecutor) delegate).getMaximumPoolSize();
+        } else if (delegate instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) delegate).getMaxConcurrency();
         } else {
             return null;
         }
@@ -88,6 +91,8 @@ public class ManagedExecutorServiceImpl extends AbstractExecutorService implemen
     public Integer getActiveCount() {
         if (delegate instanceof ThreadPoolExecutor) {
             return ((ThreadPoolExecutor) delegate).getActiveCount();
+        } else if (delegate instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) delegate).getActiveCount();
         } else {
             return null;
         }
@@ -104,6 +109,8 @@ public class ManagedExecutorServiceImpl extends AbstractExecutorService implemen
     public Integer getQueueSize() {
         if (delegate instanceof ThreadPoolExecutor) {
             return ((ThreadPoolExecutor) delegate).getQueue().size();
+        } else if (delegate instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) delegate).getWaitingCount();
         } else {
             return null;
         }
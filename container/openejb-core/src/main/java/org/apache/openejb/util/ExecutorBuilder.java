@@ -20,9 +20,11 @@ package org.apache.openejb.util;
 import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.loader.Options;
 import org.apache.openejb.util.executor.OfferRejectedExecutionHandler;
+import org.apache.openejb.util.executor.VirtualThreadExecutor;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -61,6 +63,26 @@ public class ExecutorBuilder {
         return this;
     }
 
+    /**
+     * Same as build() unless prefix.Virtual is true and the JVM supports virtual threads,
+     * the executor then starts a virtual thread per task and runs at most prefix.MaxConcurrency
+     * tasks at the same time (default to the maximum pool size).
+     */
+    public ExecutorService buildExecutor(final Options options) {
+        if (options.get(prefix + ".Virtual", false)) {
+            if (VirtualThreadExecutor.isSupported()) {
+                final int corePoolSize = Math.max(1, options.get(prefix + ".CorePoolSize", size));
+                final int maximumPoolSize = Math.max(options.get(prefix + ".MaximumPoolSize", corePoolSize), corePoolSize);
+                return new VirtualThreadExecutor(
+                    options.get(prefix + ".MaxConcurrency", maximumPoolSize),
+                    VirtualThreadExecutor.newThreadFactory(prefix + "-"));
+            }
+            Logger.getInstance(LogCategory.OPENEJB, ExecutorBuilder.class)
+                .warning(prefix + ".Virtual is ignored, virtual threads are not supported by this JVM");
+        }
+        return build(options);
+    }
+
     public ThreadPoolExecutor build(final Options options) {
 
         int corePoolSize = options.get(prefix + ".CorePoolSize", size);
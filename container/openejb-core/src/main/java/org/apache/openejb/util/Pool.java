@@ -21,10 +21,13 @@ import org.apache.openejb.monitoring.Managed;
 
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -59,9 +62,10 @@ import static java.util.concurrent.TimeUnit.SECONDS;
  * @version $Rev$ $Date$
  */
 @SuppressWarnings("StatementWithEmptyBody")
+@Managed
 public class Pool<T> {
 
-    private final LinkedList<Entry> pool = new LinkedList<>();
+    private final Store<Entry> pool;
     private final Semaphore instances;
     private final Semaphore available;
     private final Semaphore minimum;
@@ -98,12 +102,18 @@ public class Pool<T> {
     @Managed
     private final boolean garbageCollection;
 
+    private final Implementation implementation;
+
     public Pool(final int max, final int min, final boolean strict) {
         this(max, min, strict, 0, 0, 0, null, null, false, -1, false, false);
     }
 
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, final long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+        this(max, min, strict, maxAge, idleTimeout, sweepInterval, executor, supplier, replaceAged, maxAgeOffset, garbageCollection, replaceFlushed, Implementation.LINKED);
+    }
+
     @SuppressWarnings("unchecked")
-    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed, final Implementation implementation) {
         if (min > max) {
             greater("max", max, "min", min);
         }
@@ -126,6 +136,8 @@ public class Pool<T> {
         this.sweeper = new Sweeper(idleTimeout, max);
         this.stats = new Stats(min, max, idleTimeout);
         this.garbageCollection = garbageCollection;
+        this.implementation = implementation != null ? implementation : Implementation.LINKED;
+        this.pool = this.implementation == Implementation.STRIPED ? new StripedStore(max) : new LinkedStore();
     }
 
     public Pool start() {
@@ -253,15 +265,16 @@ public class Pool<T> {
 
         Entry entry;
         do {
-            synchronized (pool) {
-                try {
-                    entry = pool.removeFirst();
-                } catch (final NoSuchElementException e) {
-                    return null;
-                }
+            entry = pool.poll();
+            if (entry == null) {
+                return null;
             }
 
-            final Pool<T>.Entry.Instance instance = entry.soft.get();
+            // "min" instances are strongly held anyway, no need to touch the SoftReference
+            Pool<T>.Entry.Instance instance = entry.hard.get();
+            if (instance == null) {
+                instance = entry.soft.get();
+            }
 
             if (instance != null) {
 
@@ -401,9 +414,7 @@ public class Pool<T> {
                     entry.hard.set(obj);
                 }
 
-                synchronized (pool) {
-                    pool.addFirst(entry);
-                }
+                pool.offer(entry);
                 added = true;
             }
         } finally {
@@ -805,6 +816,126 @@ public class Pool<T> {
         FULL, IDLE, AGED, FLUSHED, GC
     }
 
+    public enum Implementation {
+        /**
+         * Single LIFO list guarded by a monitor, the historical behavior.
+         */
+        LINKED,
+
+        /**
+         * Thread affine lock-free stripes, a thread which finds its own stripe
+         * empty steals the least recently returned entry of the other stripes.
+         */
+        STRIPED;
+
+        public static Implementation from(final String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return LINKED;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown pool implementation '" + value + "', expected one of " + Arrays.toString(values()));
+            }
+        }
+    }
+
+    /**
+     * Holds the idle entries, {@link #poll()} returns null when no entry is available.
+     */
+    private interface Store<E> {
+
+        E poll();
+
+        void offer(E entry);
+    }
+
+    private final class LinkedStore implements Store<Entry> {
+        private final LinkedList<Entry> entries = new LinkedList<>();
+
+        @Override
+        public Entry poll() {
+            synchronized (entries) {
+                try {
+                    return entries.removeFirst();
+                } catch (final NoSuchElementException e) {
+                    return null;
+                }
+            }
+        }
+
+        @Override
+        public void offer(final Entry entry) {
+            synchronized (entries) {
+                entries.addFirst(entry);
+            }
+        }
+    }
+
+    private final class StripedStore implements Store<Entry> {
+        private final ConcurrentLinkedDeque<Entry>[] stripes;
+        private final int mask;
+
+        // number of entries which can be reserved, an entry is always
+        // visible in a stripe before being counted here so a poll()
+        // never misses an entry and never hands a creation permit
+        // while an idle instance exists
+        private final AtomicInteger size = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        private StripedStore(final int max) {
+            final int wanted = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), max));
+            int stripeCount = 1;
+            while (stripeCount < wanted) {
+                stripeCount <<= 1;
+            }
+            this.stripes = new ConcurrentLinkedDeque[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new ConcurrentLinkedDeque<>();
+            }
+            this.mask = stripeCount - 1;
+        }
+
+        @Override
+        public Entry poll() {
+            int current;
+            do {
+                current = size.get();
+                if (current == 0) {
+                    return null;
+                }
+            } while (!size.compareAndSet(current, current - 1));
+
+            final int home = stripe();
+            final Entry local = stripes[home].pollFirst();
+            if (local != null) {
+                return local;
+            }
+
+            // steal the coldest entry of the other stripes, one is
+            // guaranteed to be there thanks to the reservation
+            while (true) {
+                for (int i = 1; i <= stripes.length; i++) {
+                    final Entry stolen = stripes[(home + i) & mask].pollLast();
+                    if (stolen != null) {
+                        return stolen;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void offer(final Entry entry) {
+            stripes[stripe()].offerFirst(entry);
+            size.incrementAndGet();
+        }
+
+        private int stripe() {
+            final long id = Thread.currentThread().getId();
+            return (int) (id ^ (id >>> 16)) & mask;
+        }
+    }
+
     private final class Expired {
         private final Entry entry;
         private final AtomicBoolean discarded = new AtomicBoolean();
@@ -1124,6 +1255,7 @@ public class Pool<T> {
         private boolean replaceAged;
         private boolean replaceFlushed;
         private boolean garbageCollection = true;
+        private Implementation implementation = Implementation.LINKED;
 
         public Builder(final Builder<T> that) {
             this.max = that.max;
@@ -1138,6 +1270,7 @@ public class Pool<T> {
             this.replaceAged = that.replaceAged;
             this.replaceFlushed = that.replaceFlushed;
             this.garbageCollection = that.garbageCollection;
+            this.implementation = that.implementation;
         }
 
         public Builder() {
@@ -1147,6 +1280,10 @@ public class Pool<T> {
             return min;
         }
 
+        public int getMax() {
+            return max;
+        }
+
         public boolean isGarbageCollection() {
             return garbageCollection;
         }
@@ -1159,6 +1296,17 @@ public class Pool<T> {
             this.replaceAged = replaceAged;
         }
 
+        public Implementation getPoolImplementation() {
+            return implementation;
+        }
+
+        /**
+         * @param implementation "linked" (default) or "striped"
+         */
+        public void setPoolImplementation(final String implementation) {
+            this.implementation = Implementation.from(implementation);
+        }
+
         public void setReplaceFlushed(final boolean replaceFlushed) {
             this.replaceFlushed = replaceFlushed;
         }
@@ -1239,7 +1387,7 @@ public class Pool<T> {
         @SuppressWarnings("unchecked")
         public Pool<T> build() {
             //noinspection unchecked
-            final Pool pool = new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed);
+            final Pool pool = new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed, implementation);
             if (scheduledExecutorService != null) {
                 pool.scheduler.set(scheduledExecutorService);
             }
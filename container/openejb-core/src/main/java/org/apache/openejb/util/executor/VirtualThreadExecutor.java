@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.util.executor;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor starting a virtual thread per task, the number of tasks running at the same time
+ * is bounded by a semaphore instead of a number of threads: tasks over the limit wait
+ * on the semaphore in their own virtual thread as they would wait in the queue of a pool.
+ *
+ * Virtual threads are looked up by reflection so this class can be loaded on a JVM without them,
+ * see isSupported().
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (final Exception | LinkageError e) {
+            ofVirtual = null; // before java 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final ThreadFactory threadFactory;
+    private final Set<Job> jobs = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    public VirtualThreadExecutor(final int maxConcurrency, final ThreadFactory threadFactory) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency);
+        this.threadFactory = threadFactory;
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param prefix the name of the threads, followed by a counter
+     * @throws IllegalStateException if the JVM doesn't support virtual threads
+     */
+    public static ThreadFactory newThreadFactory(final String prefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return ThreadFactory.class.cast(FACTORY.invoke(builder));
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shutdown");
+        }
+
+        final Job job = new Job(command);
+        jobs.add(job);
+        final Thread thread = threadFactory.newThread(job);
+        if (thread == null) {
+            jobs.remove(job);
+            throw new RejectedExecutionException("Can't create a thread for " + command);
+        }
+        job.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Like ThreadPoolExecutor.remove(), prevents a task waiting for a permit to run.
+     *
+     * @return true if the task didn't start and will not run
+     */
+    public boolean remove(final Runnable task) {
+        for (final Job job : jobs) {
+            if (job.command == task) {
+                return job.claimed.compareAndSet(false, true);
+            }
+        }
+        return false;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int getWaitingCount() {
+        return Math.max(0, jobs.size() - getActiveCount());
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        signalIfTerminated();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+
+        final List<Runnable> notStarted = new ArrayList<>();
+        for (final Job job : jobs) {
+            if (job.claimed.compareAndSet(false, true)) {
+                notStarted.add(job.command);
+            }
+            final Thread thread = job.thread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        signalIfTerminated();
+        return notStarted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && jobs.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long end = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (jobs) {
+            while (!isTerminated()) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                jobs.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private void signalIfTerminated() {
+        if (isTerminated()) {
+            synchronized (jobs) {
+                jobs.notifyAll();
+            }
+        }
+    }
+
+    private final class Job implements Runnable {
+        private final Runnable command;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile Thread thread;
+
+        private Job(final Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                permits.acquire();
+            } catch (final InterruptedException e) { // shutdownNow()
+                jobs.remove(this);
+                signalIfTerminated();
+                return;
+            }
+
+            try {
+                if (claimed.compareAndSet(false, true)) {
+                    command.run();
+                }
+            } finally {
+                permits.release();
+                jobs.remove(this);
+                signalIfTerminated();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.xbean.finder.archive.Archive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.Singleton;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanIndexArchiveTest {
+    private File work;
+
+    @Before
+    public void activate() {
+        work = Files.mkdirs(new File("target/ScanIndexArchiveTest/" + System.nanoTime()));
+        SystemInstance.get().setProperty(ScanIndexArchive.ACTIVE, "true");
+        SystemInstance.get().setProperty(ScanIndexArchive.DIRECTORY, new File(work, "index").getAbsolutePath());
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.get().getProperties().remove(ScanIndexArchive.ACTIVE);
+        SystemInstance.get().getProperties().remove(ScanIndexArchive.DIRECTORY);
+        Files.delete(work);
+    }
+
+    @Test
+    public void indexIsBuiltThenReused() throws Exception {
+        final File jar = jar("lib.jar", Annotated.class, Plain.class);
+
+        final ClassLoader loader = getClass().getClassLoader();
+        for (int i = 0; i < 2; i++) { // build then read the index
+            final Archive archive = ScanIndexArchive.archive(loader, jar.toURI().toURL());
+            assertTrue(archive instanceof ScanIndexArchive);
+            assertEquals(1, indexes());
+
+            final List<String> names = new ArrayList<>();
+            for (final Archive.Entry entry : archive) {
+                names.add(entry.getName());
+            }
+            assertEquals(2, names.size());
+            assertTrue(names.contains(Annotated.class.getName()));
+
+            final FinderFactory.OpenEJBAnnotationFinder finder = new FinderFactory.OpenEJBAnnotationFinder(archive);
+            final List<Class<?>> singletons = finder.findAnnotatedClasses(Singleton.class);
+            assertEquals(1, singletons.size());
+            assertEquals(Annotated.class, singletons.get(0));
+            assertEquals(1, finder.findSubclasses(Plain.class).size());
+        }
+    }
+
+    @Test
+    public void indexOfAReplacedJarIsDeleted() throws Exception {
+        final ClassLoader loader = getClass().getClassLoader();
+        final File jar = jar("lib.jar", Annotated.class, Plain.class);
+        final File other = jar("other.jar", Plain.class);
+        ScanIndexArchive.archive(loader, jar.toURI().toURL());
+        ScanIndexArchive.archive(loader, other.toURI().toURL());
+        assertEquals(2, indexes());
+
+        jar("lib.jar", Plain.class); // new version
+        final Archive archive = ScanIndexArchive.archive(loader, jar.toURI().toURL());
+        assertEquals(2, indexes());
+        assertEquals(Plain.class.getName(), archive.iterator().next().getName());
+
+        assertTrue(other.delete());
+        jar("lib.jar", Annotated.class, Plain.class);
+        ScanIndexArchive.archive(loader, jar.toURI().toURL());
+        assertEquals(1, indexes());
+    }
+
+    private File jar(final String name, final Class<?>... types) throws Exception {
+        final File jar = new File(work, name);
+        try (final JarOutputStream out = new JarOutputStream(IO.write(jar))) {
+            for (final Class<?> type : types) {
+                out.putNextEntry(new JarEntry(type.getName().replace('.', '/') + ".class"));
+                try (final InputStream in = getClass().getClassLoader().getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+                    IO.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private int indexes() {
+        final File[] indexes = new File(work, "index").listFiles((dir, name) -> name.endsWith(".idx"));
+        return indexes == null ? 0 : indexes.length;
+    }
+
+    public static class Plain {
+        public int compute() {
+            return 42;
+        }
+    }
+
+    @Singleton
+    public static class Annotated extends Plain {
+        @Override
+        public int compute() {
+            return super.compute() + 1;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.AppContext;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.ModuleContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ThreadContextTest {
+    @Test
+    public void data() throws Exception {
+        final ThreadContext context = new ThreadContext(beanContext(), null);
+        final Class<?>[] types = { // more types than slots
+            Method.class, String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class,
+            Character.class, Boolean.class, Object.class, Number.class, Thread.class, Runnable.class, List.class,
+            Map.class, HashMap.class, ArrayList.class, Properties.class, Exception.class, Error.class, Class.class
+        };
+
+        for (final Class<?> type : types) {
+            assertNull(context.get(type));
+            set(context, type, type.getName());
+            assertEquals(type.getName(), context.get(type));
+            assertEquals(type.getName(), set(context, type, "again"));
+        }
+        for (final Class<?> type : types) {
+            assertEquals("again", context.get(type));
+        }
+
+        final ThreadContext copy = new ThreadContext(context);
+        assertEquals("again", copy.remove(String.class));
+        assertNull(copy.get(String.class));
+        assertEquals("again", context.get(String.class));
+        assertEquals("again", copy.get(Integer.class));
+    }
+
+    @Test
+    public void listeners() throws Exception {
+        final List<String> events = new ArrayList<>();
+        final ThreadContextListener listener = new ThreadContextListener() {
+            @Override
+            public void contextEntered(final ThreadContext oldContext, final ThreadContext newContext) {
+                events.add("entered");
+            }
+
+            @Override
+            public void contextExited(final ThreadContext exitedContext, final ThreadContext reenteredContext) {
+                events.add("exited");
+            }
+        };
+
+        final ThreadContext context = new ThreadContext(beanContext(), null);
+        ThreadContext.addThreadContextListener(listener);
+        ThreadContext.addThreadContextListener(listener);
+        try {
+            final ThreadContext old = ThreadContext.enter(context);
+            assertSame(context, ThreadContext.getThreadContext());
+            ThreadContext.exit(old);
+        } finally {
+            ThreadContext.removeThreadContextListener(listener);
+        }
+
+        final ThreadContext old = ThreadContext.enter(context);
+        ThreadContext.exit(old);
+        assertEquals(2, events.size());
+        assertEquals("entered", events.get(0));
+        assertEquals("exited", events.get(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object set(final ThreadContext context, final Class<?> type, final Object value) {
+        return context.set((Class<Object>) type, value);
+    }
+
+    private static BeanContext beanContext() throws Exception {
+        SystemInstance.init(new Properties());
+        return new BeanContext("foo", null, new ModuleContext("foo", null, "bar", new AppContext("foo", SystemInstance.get(), null, null, null, false), null, null), Object.class, null, new HashMap<>());
+    }
+}
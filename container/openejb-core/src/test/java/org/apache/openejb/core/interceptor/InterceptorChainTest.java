@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import org.apache.openejb.core.Operation;
+import org.junit.Test;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class InterceptorChainTest {
+    @Test
+    public void order() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        final Bean bean = new Bean(calls);
+        final Map<String, Object> instances = new HashMap<>();
+        instances.put(First.class.getName(), new First(calls));
+        instances.put(Second.class.getName(), new Second(calls));
+
+        final InterceptorChain chain = InterceptorChain.compile(
+            Bean.class.getMethod("echo", String.class), Operation.BUSINESS,
+            Arrays.asList(InterceptorData.scan(First.class), InterceptorData.scan(Second.class)), 0);
+        assertEquals(2, chain.size());
+
+        assertEquals("first:second:hello", new InterceptorStack(bean, chain, instances).invoke("hello"));
+        assertEquals(Arrays.asList("first", "second", "bean"), calls);
+
+        // the chain is stateless so it can be reused
+        calls.clear();
+        assertEquals("first:second:again", new InterceptorStack(bean, chain, instances).invoke("again"));
+        assertEquals(Arrays.asList("first", "second", "bean"), calls);
+    }
+
+    @Test
+    public void setParameters() throws Exception {
+        final Map<String, Object> instances = new HashMap<>();
+        instances.put(Replacing.class.getName(), new Replacing());
+
+        final InterceptorChain chain = InterceptorChain.compile(
+            Bean.class.getMethod("echo", String.class), Operation.BUSINESS,
+            Arrays.asList(InterceptorData.scan(Replacing.class)), 0);
+        assertEquals("replaced", new InterceptorStack(new Bean(new ArrayList<String>()), chain, instances).invoke("original"));
+    }
+
+    @Test
+    public void exceptionsAreNotWrapped() throws Exception {
+        final InterceptorChain chain = InterceptorChain.compile(
+            Bean.class.getMethod("fail"), Operation.BUSINESS, new ArrayList<InterceptorData>(), 0);
+        try {
+            new InterceptorStack(new Bean(new ArrayList<String>()), chain, new HashMap<String, Object>()).invoke();
+            fail();
+        } catch (final IllegalStateException ise) {
+            assertEquals("expected", ise.getMessage());
+        }
+    }
+
+    @Test
+    public void timeoutWithoutTimerParameter() throws Exception {
+        final InterceptorChain chain = InterceptorChain.compile(
+            Bean.class.getMethod("timeout"), Operation.TIMEOUT, new ArrayList<InterceptorData>(), 0);
+        final Object timer = new Object();
+        assertSame(Bean.TIMEOUT, new InterceptorStack(new Bean(new ArrayList<String>()), chain, new HashMap<String, Object>()).invoke(timer));
+    }
+
+    public static class Bean {
+        public static final Object TIMEOUT = new Object();
+
+        private final List<String> calls;
+
+        public Bean(final List<String> calls) {
+            this.calls = calls;
+        }
+
+        public String echo(final String value) {
+            calls.add("bean");
+            return value;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("expected");
+        }
+
+        public Object timeout() {
+            return TIMEOUT;
+        }
+    }
+
+    public static class First {
+        private final List<String> calls;
+
+        public First(final List<String> calls) {
+            this.calls = calls;
+        }
+
+        @AroundInvoke
+        public Object invoke(final InvocationContext context) throws Exception {
+            calls.add("first");
+            context.getContextData().put("first", "first:");
+            return context.getContextData().get("first") + String.valueOf(context.proceed());
+        }
+    }
+
+    public static class Second {
+        private final List<String> calls;
+
+        public Second(final List<String> calls) {
+            this.calls = calls;
+        }
+
+        @AroundInvoke
+        public Object invoke(final InvocationContext context) throws Exception {
+            calls.add("second");
+            return "second:" + context.proceed();
+        }
+    }
+
+    public static class Replacing {
+        @AroundInvoke
+        public Object invoke(final InvocationContext context) throws Exception {
+            context.setParameters(new Object[]{"replaced"});
+            return context.proceed();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class FastCopierTest {
+    private final FastCopier copier = new FastCopier();
+
+    @Test
+    public void immutables() throws Exception {
+        final Object[] values = {"string", 1, 2L, 'c', true, TimeUnit.SECONDS, LocalDate.now(), new Point(1, 2)};
+        for (final Object value : values) {
+            assertSame(value, copier.copy(value));
+        }
+        assertNull(copier.copy(null));
+    }
+
+    @Test
+    public void graph() throws Exception {
+        final Node root = new Node("root");
+        final Node child = new Node("child");
+        root.children.add(child);
+        root.children.add(child);
+        child.parent = root;
+        root.attributes.put("numbers", new int[]{1, 2, 3});
+        root.cache = "transient";
+
+        final Node copy = copier.copy(root);
+        assertNotSame(root, copy);
+        assertEquals("root", copy.name);
+        assertNull(copy.cache);
+        assertEquals(2, copy.children.size());
+        assertNotSame(child, copy.children.get(0));
+        assertSame(copy.children.get(0), copy.children.get(1));
+        assertSame(copy, copy.children.get(0).parent);
+
+        final int[] numbers = (int[]) copy.attributes.get("numbers");
+        assertNotSame(root.attributes.get("numbers"), numbers);
+        assertArrayEquals(new int[]{1, 2, 3}, numbers);
+    }
+
+    @Test
+    public void customSerializationFallsBack() throws Exception {
+        final Custom custom = new Custom();
+        custom.value = "value";
+        final Custom copy = copier.copy(custom);
+        assertNotSame(custom, copy);
+        assertEquals("value-written", copy.value);
+
+        final Date date = new Date();
+        final Date dateCopy = copier.copy(date);
+        assertNotSame(date, dateCopy);
+        assertEquals(date, dateCopy);
+    }
+
+    @Test
+    public void notSerializable() throws Exception {
+        final Node root = new Node("root");
+        root.attributes.put("invalid", new Object());
+        try {
+            copier.copy(root);
+            fail();
+        } catch (final NotSerializableException nse) {
+            // ok
+        }
+    }
+
+    public static final class Point implements Serializable {
+        private final int x;
+        private final int y;
+
+        public Point(final int x, final int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    public static class Node implements Serializable {
+        private final String name;
+        private final List<Node> children = new ArrayList<>();
+        private final Map<String, Object> attributes = new HashMap<>();
+        private Node parent;
+        private transient String cache;
+
+        public Node(final String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Custom implements Serializable {
+        private String value;
+
+        private void writeObject(final ObjectOutputStream out) throws IOException {
+            value = value + "-written";
+            out.defaultWriteObject();
+        }
+    }
+}
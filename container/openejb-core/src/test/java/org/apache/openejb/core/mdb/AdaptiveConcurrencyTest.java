@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.mdb;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyTest {
+    private final AtomicLong backlog = new AtomicLong(-1);
+    private final AdaptiveConcurrency concurrency = new AdaptiveConcurrency(2, 8, 2, backlog::get);
+
+    @Test
+    public void decreaseWhenLatencyGrows() throws InterruptedException {
+        deliver(4, 10);
+        concurrency.adjust();
+        assertEquals(8, concurrency.getLimit());
+        assertEquals(10., concurrency.getBaselineLatency(), 0.1);
+
+        deliver(4, 50);
+        concurrency.adjust();
+        assertEquals(6, concurrency.getLimit());
+        assertTrue(concurrency.getLastDecision().startsWith("decrease"));
+
+        for (int i = 0; i < 10; i++) {
+            deliver(1, 50 + 100 * i);
+            concurrency.adjust();
+        }
+        assertEquals(2, concurrency.getLimit()); // min bound
+    }
+
+    @Test
+    public void increaseWithBacklog() throws InterruptedException {
+        deliver(1, 10);
+        concurrency.adjust();
+        deliver(1, 100);
+        concurrency.adjust();
+        assertEquals(6, concurrency.getLimit());
+
+        // saturated but nothing waits: kept
+        acquire(6);
+        assertFalse(concurrency.acquire(0, TimeUnit.MILLISECONDS));
+        concurrency.adjust();
+        assertEquals(6, concurrency.getLimit());
+
+        backlog.set(100);
+        concurrency.adjust();
+        assertEquals(7, concurrency.getLimit());
+        assertEquals(100, concurrency.getBacklog());
+        assertTrue(concurrency.acquire(0, TimeUnit.MILLISECONDS));
+
+        concurrency.adjust();
+        concurrency.adjust();
+        assertEquals(8, concurrency.getLimit()); // max bound
+        assertEquals(7, concurrency.getInFlight());
+    }
+
+    @Test
+    public void keepWhenIdle() {
+        backlog.set(100);
+        concurrency.adjust();
+        assertEquals(8, concurrency.getLimit());
+        assertEquals("keep 8", concurrency.getLastDecision());
+    }
+
+    private void acquire(final int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            assertTrue(concurrency.acquire(0, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void deliver(final int count, final long latencyMs) throws InterruptedException {
+        acquire(count);
+        for (int i = 0; i < count; i++) {
+            concurrency.release(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        }
+    }
+}
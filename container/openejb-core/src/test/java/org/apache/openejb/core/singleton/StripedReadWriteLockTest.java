@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.singleton;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StripedReadWriteLockTest {
+    @Test
+    public void reentrant() {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(4);
+
+        lock.readLock().lock();
+        lock.readLock().lock();
+        assertEquals(1, lock.getReadLockCount());
+        lock.readLock().unlock();
+        lock.readLock().unlock();
+        assertEquals(0, lock.getReadLockCount());
+
+        lock.writeLock().lock();
+        assertTrue(lock.writeLock().tryLock());
+        assertTrue(lock.readLock().tryLock()); // write holder can read
+        lock.readLock().unlock();
+        lock.writeLock().unlock();
+        assertTrue(lock.isWriteLocked());
+        lock.writeLock().unlock();
+        assertFalse(lock.isWriteLocked());
+    }
+
+    @Test
+    public void timeouts() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        final ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            lock.readLock().lock();
+            assertFalse(es.submit(() -> lock.writeLock().tryLock(50, TimeUnit.MILLISECONDS)).get());
+            assertTrue(es.submit(() -> {
+                lock.readLock().lock(); // the aborted writer let readers in again
+                lock.readLock().unlock();
+                return true;
+            }).get());
+            lock.readLock().unlock();
+
+            lock.writeLock().lock();
+            assertFalse(es.submit(() -> lock.readLock().tryLock()).get());
+            assertFalse(es.submit(() -> lock.readLock().tryLock(50, TimeUnit.MILLISECONDS)).get());
+            assertFalse(es.submit(() -> lock.writeLock().tryLock(50, TimeUnit.MILLISECONDS)).get());
+            lock.writeLock().unlock();
+
+            assertTrue(es.submit(() -> {
+                final boolean locked = lock.writeLock().tryLock(50, TimeUnit.MILLISECONDS);
+                lock.writeLock().unlock();
+                return locked;
+            }).get());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void writerWaitsForReaders() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService es = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> reader = es.submit(() -> {
+                lock.readLock().lock();
+                try {
+                    reading.countDown();
+                    release.await();
+                } finally {
+                    lock.readLock().unlock();
+                }
+                return null;
+            });
+            assertTrue(reading.await(1, TimeUnit.MINUTES));
+
+            final Future<Boolean> writer = es.submit(() -> {
+                lock.writeLock().lock();
+                lock.writeLock().unlock();
+                return true;
+            });
+            Thread.sleep(100);
+            assertFalse(writer.isDone());
+
+            release.countDown();
+            reader.get(1, TimeUnit.MINUTES);
+            assertTrue(writer.get(1, TimeUnit.MINUTES));
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void mutualExclusion() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+        final AtomicInteger readers = new AtomicInteger();
+        final AtomicInteger writers = new AtomicInteger();
+        final AtomicInteger violations = new AtomicInteger();
+        final int threads = 8;
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            final Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                final boolean write = t % 4 == 0;
+                futures[t] = es.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        if (write) {
+                            lock.writeLock().lock();
+                            try {
+                                if (writers.incrementAndGet() != 1 || readers.get() != 0) {
+                                    violations.incrementAndGet();
+                                }
+                                writers.decrementAndGet();
+                            } finally {
+                                lock.writeLock().unlock();
+                            }
+                        } else {
+                            lock.readLock().lock();
+                            try {
+                                readers.incrementAndGet();
+                                if (writers.get() != 0) {
+                                    violations.incrementAndGet();
+                                }
+                                readers.decrementAndGet();
+                            } finally {
+                                lock.readLock().unlock();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+        assertEquals(0, violations.get());
+        assertEquals(0, lock.getReadLockCount());
+        assertFalse(lock.isWriteLocked());
+    }
+}
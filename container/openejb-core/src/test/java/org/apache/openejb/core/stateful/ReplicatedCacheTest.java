@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.Container;
+import org.apache.openejb.core.ivm.BaseEjbProxyHandler;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatefulBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.util.proxy.ProxyManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.Local;
+import javax.ejb.Remove;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class ReplicatedCacheTest {
+    @Test
+    public void replicateAndActivate() throws Exception {
+        final ReplicatedCache primary = primary();
+        final ReplicatedCache backup = new ReplicatedCache("Replicated Stateful Container", new SimpleCache<>(), 1, 0, 10);
+        primary.setChannel(new LoopbackChannel(PRIMARY, BACKUP, backup));
+
+        final List<Instance> activated = new ArrayList<>();
+        backup.setListener(new Cache.CacheListener<Instance>() {
+            @Override
+            public void afterLoad(final Instance value) {
+                activated.add(value);
+            }
+
+            @Override
+            public void beforeStore(final Instance value) {
+                // no-op
+            }
+
+            @Override
+            public void timedOut(final Instance value) {
+                // no-op
+            }
+        });
+
+        final Counter counter = lookup();
+        for (int i = 0; i < 3; i++) {
+            counter.increment();
+        }
+        final Object primaryKey = BaseEjbProxyHandler.class.cast(ProxyManager.getInvocationHandler(counter)).primaryKey;
+        assertTrue(backup.hasReplica(primaryKey));
+
+        final ReplicatedCache.Statistics statistics = new ReplicatedCache.Statistics(primary);
+        assertEquals(1, statistics.getFullUpdates());
+        assertEquals(2, statistics.getDeltaUpdates());
+        assertEquals(3, statistics.getMessages());
+        assertTrue(statistics.getSentBytes() < statistics.getSerializedBytes());
+
+        // fail-over
+        final Instance instance = backup.checkOut(primaryKey, true);
+        assertNotNull(instance);
+        assertEquals(3, CounterBean.class.cast(instance.bean).getCount());
+        assertEquals(Collections.singletonList(instance), activated);
+        assertFalse(backup.hasReplica(primaryKey));
+
+        // removal
+        final Counter other = lookup();
+        other.increment();
+        assertEquals(1, backup.getReplicaCount());
+        other.remove();
+        assertEquals(0, backup.getReplicaCount());
+    }
+
+    @Test
+    public void wholeStateIsSentAgainAfterAFailedSend() throws Exception {
+        final ReplicatedCache primary = primary();
+        final ReplicatedCache backup = new ReplicatedCache("Replicated Stateful Container", new SimpleCache<>(), 1, 0, 10);
+        final LoopbackChannel channel = new LoopbackChannel(PRIMARY, BACKUP, backup);
+        primary.setChannel(channel);
+
+        final Counter counter = lookup();
+        counter.increment();
+        final Object primaryKey = BaseEjbProxyHandler.class.cast(ProxyManager.getInvocationHandler(counter)).primaryKey;
+        assertTrue(backup.hasReplica(primaryKey));
+
+        channel.connected = false;
+        counter.increment(); // missed by the backup
+        channel.connected = true;
+        counter.increment(); // sent again whole since the previous send failed
+        assertEquals(3, CounterBean.class.cast(backup.checkOut(primaryKey, true).bean).getCount());
+    }
+
+    @Test
+    public void backupAsksTheWholeStateAfterALostUpdate() throws Exception {
+        final ReplicatedCache primary = primary();
+        final ReplicatedCache backup = new ReplicatedCache("Replicated Stateful Container", new SimpleCache<>(), 1, 0, 10);
+        final LoopbackChannel channel = new LoopbackChannel(PRIMARY, BACKUP, backup);
+        primary.setChannel(channel);
+        backup.setChannel(new LoopbackChannel(BACKUP, PRIMARY, primary));
+
+        final Counter counter = lookup();
+        counter.increment();
+        final Object primaryKey = BaseEjbProxyHandler.class.cast(ProxyManager.getInvocationHandler(counter)).primaryKey;
+
+        channel.lost = true;
+        counter.increment(); // lost without the sender knowing, as an asynchronous transport would do
+        channel.lost = false;
+        counter.increment(); // the backup sees the gap and asks the whole state
+
+        assertEquals(1, new ReplicatedCache.Statistics(backup).getMismatches());
+        assertTrue(backup.hasReplica(primaryKey));
+        assertEquals(3, CounterBean.class.cast(backup.checkOut(primaryKey, true).bean).getCount());
+    }
+
+    @Test
+    public void olderWholeStateIsIgnored() throws Exception {
+        final ReplicatedCache primary = primary();
+        final ReplicatedCache backup = new ReplicatedCache("Replicated Stateful Container", new SimpleCache<>(), 1, 0, 10);
+        final LoopbackChannel channel = new LoopbackChannel(PRIMARY, BACKUP, backup);
+        primary.setChannel(channel);
+
+        final Counter counter = lookup();
+        for (int i = 0; i < 3; i++) {
+            counter.increment();
+        }
+        final Object primaryKey = BaseEjbProxyHandler.class.cast(ProxyManager.getInvocationHandler(counter)).primaryKey;
+
+        backup.receive(channel.messages.get(0)); // the first whole state delivered late
+        assertEquals(3, CounterBean.class.cast(backup.checkOut(primaryKey, true).bean).getCount());
+    }
+
+    private static final String PRIMARY = "tcp://127.0.0.1:4000";
+    private static final String BACKUP = "tcp://127.0.0.1:4001";
+
+    private static ReplicatedCache primary() {
+        final ContainerSystem containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
+        final Container container = containerSystem.getContainer("Replicated Stateful Container");
+        return ReplicatedCache.class.cast(StatefulContainer.class.cast(container).getCache());
+    }
+
+    private static Counter lookup() throws Exception {
+        return (Counter) SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext()
+            .lookup("global/ReplicatedCacheTest/ReplicatedCacheTest/Counter");
+    }
+
+    @Module
+    public EjbJar bean() {
+        final EjbJar ejbJar = new EjbJar(getClass().getSimpleName());
+        ejbJar.addEnterpriseBean(new StatefulBean("Counter", CounterBean.class));
+        return ejbJar;
+    }
+
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.put("Replicated Stateful Container", "new://Container?type=STATEFUL");
+        p.put("Replicated Stateful Container.ReplicationBackups", "1");
+        p.put("Replicated Stateful Container.ReplicationBatchInterval", "0 milliseconds");
+        return p;
+    }
+
+    private static class LoopbackChannel implements ReplicationChannel {
+        private final String local;
+        private final String remote;
+        private final ReplicatedCache target;
+        private final List<byte[]> messages = new ArrayList<>();
+        private volatile boolean connected = true;
+        private volatile boolean lost;
+
+        private LoopbackChannel(final String local, final String remote, final ReplicatedCache target) {
+            this.local = local;
+            this.remote = remote;
+            this.target = target;
+        }
+
+        @Override
+        public String getLocalMember() {
+            return local;
+        }
+
+        @Override
+        public List<String> getMembers() {
+            return Collections.singletonList(remote);
+        }
+
+        @Override
+        public void send(final String member, final Object containerId, final byte[] message) {
+            if (!connected) {
+                throw new IllegalStateException("disconnected");
+            }
+            if (lost) {
+                return;
+            }
+            messages.add(message);
+            target.receive(message);
+        }
+    }
+
+    @Local
+    public interface Counter {
+        int increment();
+
+        void remove();
+    }
+
+    public static class CounterBean implements Counter {
+        private final StringBuilder history = new StringBuilder();
+        private int count;
+
+        @Override
+        public int increment() {
+            history.append("increment ").append(++count).append(" of a replicated stateful bean\n");
+            return count;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Remove
+        @Override
+        public void remove() {
+            // no-op
+        }
+    }
+}
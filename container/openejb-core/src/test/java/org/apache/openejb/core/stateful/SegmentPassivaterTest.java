@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.reflection.Reflections;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+public class SegmentPassivaterTest extends TestCase {
+
+    public void testPassivateActivate() throws Exception {
+        final SegmentPassivater passivater = new SegmentPassivater();
+
+        final Map<Object, Object> states = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            states.put("key-" + i, "state-" + i);
+        }
+        passivater.passivate(states);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("state-" + i, passivater.activate("key-" + i));
+        }
+
+        // activating removes the state
+        assertNull(passivater.activate("key-0"));
+        assertNull(passivater.activate("unknown"));
+    }
+
+    public void testSmallSegmentsAreRolledAndCompacted() throws Exception {
+        final Properties props = new Properties();
+        props.setProperty(SegmentPassivater.STRIPES, "1");
+        props.setProperty(SegmentPassivater.SEGMENT_SIZE, "1024");
+
+        final SegmentPassivater passivater = new SegmentPassivater();
+        passivater.init(props);
+
+        for (int round = 0; round < 10; round++) {
+            final Map<Object, Object> states = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                states.put(round + "-" + i, new StringBuilder("state-").append(round).append('-').append(i));
+            }
+            passivater.passivate(states);
+
+            // leave the segments sparse so they get compacted by the next rolls
+            for (int i = 0; i < 50; i += 2) {
+                assertEquals("state-" + round + "-" + i, passivater.activate(round + "-" + i).toString());
+            }
+        }
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 1; i < 50; i += 2) {
+                assertEquals("state-" + round + "-" + i, passivater.activate(round + "-" + i).toString());
+            }
+        }
+    }
+
+    public void testLargerThanSegment() throws Exception {
+        final Properties props = new Properties();
+        props.setProperty(SegmentPassivater.SEGMENT_SIZE, "64");
+
+        final SegmentPassivater passivater = new SegmentPassivater();
+        passivater.init(props);
+
+        final Map<Object, Object> states = new HashMap<>();
+        states.put("big", new byte[4096]);
+        passivater.passivate(states);
+
+        assertEquals(4096, ((byte[]) passivater.activate("big")).length);
+    }
+
+    public void testDroppedSegmentsAreDeleted() throws Exception {
+        final Properties props = new Properties();
+        props.setProperty(SegmentPassivater.STRIPES, "1");
+        props.setProperty(SegmentPassivater.SEGMENT_SIZE, "1024");
+
+        final SegmentPassivater passivater = new SegmentPassivater();
+        passivater.init(props);
+
+        final Map<Object, Object> states = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            states.put("key-" + i, "state-" + i);
+        }
+        passivater.passivate(states);
+
+        final File directory = (File) Reflections.get(passivater, "directory");
+        assertTrue(directory.list().length > 1);
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals("state-" + i, passivater.activate("key-" + i));
+        }
+        assertEquals(1, directory.list().length); // the current one
+    }
+
+    public void testTimedOutStatesAreDropped() throws Exception {
+        final Properties props = new Properties();
+        props.setProperty(SegmentPassivater.STRIPES, "1");
+        props.setProperty(SegmentPassivater.SEGMENT_SIZE, "1024");
+
+        final SegmentPassivater passivater = new SegmentPassivater();
+        passivater.init(props);
+
+        final Map<Object, Object> states = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            states.put("expired-" + i, new TimedOutState(0));
+        }
+        states.put("alive", new TimedOutState(TimeUnit.HOURS.toMillis(1)));
+        passivater.passivate(states);
+        Thread.sleep(10);
+
+        assertNull(passivater.activate("expired-0"));
+
+        // rolling drops the other timed out states
+        final Map<Object, Object> next = new HashMap<>();
+        next.put("big", new byte[900]);
+        passivater.passivate(next);
+
+        final Map<?, ?> index = (Map<?, ?>) Reflections.get(passivater, "index");
+        assertEquals(2, index.size());
+        assertNotNull(passivater.activate("alive"));
+        assertEquals(900, ((byte[]) passivater.activate("big")).length);
+    }
+
+    public static class TimedOutState implements Serializable, Cache.TimeOut {
+        private final long timeOut;
+
+        public TimedOutState(final long timeOut) {
+            this.timeOut = timeOut;
+        }
+
+        @Override
+        public Duration getTimeOut() {
+            return new Duration(timeOut, TimeUnit.MILLISECONDS);
+        }
+    }
+}
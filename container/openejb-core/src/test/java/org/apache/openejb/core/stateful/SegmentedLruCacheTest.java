@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+import org.apache.openejb.SystemException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class SegmentedLruCacheTest extends TestCase {
+
+    public void testProtectedEntriesArePassivatedLast() throws Exception {
+        final MapPassivater passivater = new MapPassivater();
+        final SegmentedLruCache<String, String> cache = newCache(passivater, 4);
+
+        // used twice, it is protected
+        cache.add("hot", "hot");
+        cache.checkIn("hot");
+        assertEquals("hot", cache.checkOut("hot", true));
+        cache.checkIn("hot");
+
+        // a burst of one-shot sessions
+        for (int i = 0; i < 10; i++) {
+            cache.add("cold-" + i, "cold-" + i);
+            cache.checkIn("cold-" + i);
+        }
+
+        assertFalse(passivater.states.containsKey("hot"));
+        assertTrue(passivater.states.containsKey("cold-0"));
+
+        // activated back from the passivater
+        assertEquals("cold-0", cache.checkOut("cold-0", true));
+        assertFalse(passivater.states.containsKey("cold-0"));
+        assertNull(cache.checkOut("unknown", true));
+    }
+
+    public void testTimeOut() throws Exception {
+        final MapPassivater passivater = new MapPassivater();
+        final SegmentedLruCache<String, String> cache = newCache(passivater, 100);
+        cache.setTimeOut("0 milliseconds");
+
+        final List<String> timedOut = new ArrayList<>();
+        cache.setListener(new Cache.CacheListener<String>() {
+            @Override
+            public void afterLoad(final String value) {
+                // no-op
+            }
+
+            @Override
+            public void beforeStore(final String value) {
+                // no-op
+            }
+
+            @Override
+            public void timedOut(final String value) {
+                timedOut.add(value);
+            }
+        });
+
+        cache.add("a", "a");
+        cache.checkIn("a");
+        Thread.sleep(5);
+        cache.processLRU();
+
+        assertEquals(1, timedOut.size());
+        assertNull(cache.checkOut("a", true));
+        assertTrue(passivater.states.isEmpty());
+    }
+
+    public void testHeapBound() throws Exception {
+        final MapPassivater passivater = new MapPassivater();
+        final SegmentedLruCache<String, byte[]> cache = new SegmentedLruCache<>();
+        cache.setPassivator(passivater);
+        cache.setFrequency("0");
+        cache.setCapacity(1000);
+        cache.setBulkPassivate(1);
+        cache.setSampleRate(1);
+        cache.setMaxHeapBytes(10 * 1024);
+
+        for (int i = 0; i < 20; i++) {
+            cache.add("k-" + i, new byte[1024]);
+            cache.checkIn("k-" + i);
+        }
+
+        assertTrue(passivater.states.size() >= 10);
+    }
+
+    private static <V> SegmentedLruCache<String, V> newCache(final PassivationStrategy passivater, final int capacity) {
+        final SegmentedLruCache<String, V> cache = new SegmentedLruCache<>();
+        cache.setPassivator(passivater);
+        cache.setCapacity(capacity);
+        cache.setBulkPassivate(1);
+        cache.setFrequency("0");
+        return cache;
+    }
+
+    private static class MapPassivater implements PassivationStrategy {
+        private final Map<Object, Object> states = new HashMap<>();
+
+        @Override
+        public void init(final Properties props) {
+            // no-op
+        }
+
+        @Override
+        public void passivate(final Map stateTable) throws SystemException {
+            states.putAll(stateTable);
+        }
+
+        @Override
+        public Object activate(final Object primaryKey) throws SystemException {
+            return states.remove(primaryKey);
+        }
+    }
+}
@@ -199,14 +199,20 @@ public class StatelessInvocationStatsTest {
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Kurtosis", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Max", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Mean", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".MeanLast5Minutes", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".MeanLastMinute", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Min", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile01", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile10", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile25", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile50", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile50Last5Minutes", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile50LastMinute", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile75", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile90", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile99", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile99Last5Minutes", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile99LastMinute", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".SampleSize", "int", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Skewness", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".StandardDeviation", "double", "", true, false, false));
@@ -222,14 +228,20 @@ public class StatelessInvocationStatsTest {
             expectedValues.put(s + ".Kurtosis", Double.NaN);
             expectedValues.put(s + ".Max", 0.0);
             expectedValues.put(s + ".Mean", 0.0);
+            expectedValues.put(s + ".MeanLast5Minutes", 0.0);
+            expectedValues.put(s + ".MeanLastMinute", 0.0);
             expectedValues.put(s + ".Min", 0.0);
             expectedValues.put(s + ".Percentile01", 0.0);
             expectedValues.put(s + ".Percentile10", 0.0);
             expectedValues.put(s + ".Percentile25", 0.0);
             expectedValues.put(s + ".Percentile50", 0.0);
+            expectedValues.put(s + ".Percentile50Last5Minutes", 0.0);
+            expectedValues.put(s + ".Percentile50LastMinute", 0.0);
             expectedValues.put(s + ".Percentile75", 0.0);
             expectedValues.put(s + ".Percentile90", 0.0);
             expectedValues.put(s + ".Percentile99", 0.0);
+            expectedValues.put(s + ".Percentile99Last5Minutes", 0.0);
+            expectedValues.put(s + ".Percentile99LastMinute", 0.0);
             expectedValues.put(s + ".SampleSize", 2000);
             expectedValues.put(s + ".Skewness", Double.NaN);
             expectedValues.put(s + ".StandardDeviation", 0.0);
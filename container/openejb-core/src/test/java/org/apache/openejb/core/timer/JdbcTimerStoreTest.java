@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+import org.apache.openejb.loader.Options;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.ScheduleExpression;
+import javax.ejb.TimerConfig;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JdbcTimerStoreTest {
+    private static final String DEPLOYMENT = "bean";
+
+    private final List<JdbcTimerStore> stores = new ArrayList<>();
+    private GeronimoTransactionManager transactionManager;
+    private JDBCDataSource dataSource;
+
+    @Before
+    public void init() throws Exception {
+        transactionManager = new GeronimoTransactionManager();
+        dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:JdbcTimerStoreTest");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+    }
+
+    @After
+    public void close() throws SQLException {
+        for (final JdbcTimerStore store : stores) {
+            store.stop();
+        }
+        execute(dataSource, "DROP TABLE OPENEJB_TIMER");
+    }
+
+    @Test
+    public void timersAreWrittenAtCommit() throws Exception {
+        final JdbcTimerStore store = store("node1", 30000);
+
+        transactionManager.begin();
+        for (int i = 0; i < 3; i++) {
+            store.createSingleActionTimer(null, DEPLOYMENT, null, null, new Date(System.currentTimeMillis() + 60000), new TimerConfig("timer" + i, true));
+        }
+        store.createSingleActionTimer(null, DEPLOYMENT, null, null, new Date(System.currentTimeMillis() + 60000), new TimerConfig("memory", false));
+        assertEquals(4, store.getTimers(DEPLOYMENT).size());
+        assertEquals(0, count());
+        transactionManager.commit();
+
+        assertEquals(3, count());
+        assertEquals(4, store.getTimers(DEPLOYMENT).size());
+
+        final long id = store.getTimers(DEPLOYMENT).iterator().next().getId();
+        transactionManager.begin();
+        store.removeTimer(id);
+        assertEquals(3, store.getTimers(DEPLOYMENT).size());
+        transactionManager.rollback();
+        assertEquals(4, store.getTimers(DEPLOYMENT).size());
+    }
+
+    @Test
+    public void expiredLeaseIsTakenByAnotherNode() throws Exception {
+        final JdbcTimerStore node1 = store("node1", 500);
+        final JdbcTimerStore node2 = store("node2", 500);
+        node1.loadTimers(null, DEPLOYMENT);
+        node2.loadTimers(null, DEPLOYMENT);
+
+        final TimerData created = node1.createSingleActionTimer(null, DEPLOYMENT, null, null, new Date(System.currentTimeMillis() + 60000), new TimerConfig("info", true));
+        assertTrue(node1.isOwner(created));
+
+        final Collection<TimerData> seenByNode2 = node2.getTimers(DEPLOYMENT);
+        assertEquals(1, seenByNode2.size());
+        assertFalse(node2.isOwner(seenByNode2.iterator().next()));
+
+        node1.stop(); // releases its leases
+        node2.renewLease();
+        final TimerData taken = node2.getTimer(DEPLOYMENT, created.getId());
+        assertEquals("info", taken.getInfo());
+        assertTrue(node2.isOwner(taken));
+        assertFalse(node1.isOwner(created));
+    }
+
+    @Test
+    public void lapsedLeaseIsRenewedBeforeFiring() throws Exception {
+        final JdbcTimerStore node1 = store("node1", 30000);
+        node1.loadTimers(null, DEPLOYMENT);
+        final TimerData timer = node1.createSingleActionTimer(null, DEPLOYMENT, null, null, new Date(System.currentTimeMillis() + 100), new TimerConfig("info", true));
+
+        // the lease thread was late, nobody took the timer meanwhile
+        node1.expireLease();
+        execute(dataSource, "UPDATE OPENEJB_TIMER SET LEASE_UNTIL = 0");
+        assertTrue(node1.isOwner(timer));
+        assertEquals(0, count("LEASE_UNTIL < " + System.currentTimeMillis()));
+
+        // the lease thread was late and another node took the timer
+        node1.expireLease();
+        execute(dataSource, "UPDATE OPENEJB_TIMER SET LEASE_UNTIL = 0");
+        final JdbcTimerStore node2 = store("node2", 30000);
+        node2.loadTimers(null, DEPLOYMENT);
+        assertTrue(node2.isOwner(node2.getTimer(DEPLOYMENT, timer.getId())));
+        assertFalse(node1.isOwner(timer));
+    }
+
+    @Test
+    public void automaticTimersAreCreatedOnce() throws Exception {
+        final ScheduleExpression schedule = new ScheduleExpression().hour("*").minute("*/5");
+        for (final String node : new String[]{"node1", "node2"}) {
+            final JdbcTimerStore store = store(node, 30000);
+            store.createCalendarTimer(null, DEPLOYMENT, null, null, schedule, new TimerConfig(null, true), true);
+            store.loadTimers(null, DEPLOYMENT);
+        }
+        assertEquals(1, count());
+    }
+
+    private JdbcTimerStore store(final String node, final long lease) {
+        final Properties properties = new Properties();
+        properties.setProperty(JdbcTimerStore.PREFIX + "Node", node);
+        properties.setProperty(JdbcTimerStore.PREFIX + "Lease", Long.toString(lease));
+        properties.setProperty(JdbcTimerStore.PREFIX + "BlobType", "VARBINARY(16000)");
+        final JdbcTimerStore store = new JdbcTimerStore(transactionManager, dataSource, new Options(properties));
+        stores.add(store);
+        return store;
+    }
+
+    private int count() throws SQLException {
+        return count("1 = 1");
+    }
+
+    private int count(final String where) throws SQLException {
+        try (final Connection connection = dataSource.getConnection();
+             final Statement statement = connection.createStatement();
+             final ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM OPENEJB_TIMER WHERE " + where)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void execute(final DataSource dataSource, final String sql) throws SQLException {
+        try (final Connection connection = dataSource.getConnection();
+             final Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.quartz.Scheduler;
+import org.apache.openejb.quartz.Trigger;
+import org.apache.openejb.quartz.TriggerKey;
+import org.apache.openejb.quartz.impl.triggers.AbstractTrigger;
+import org.apache.openejb.quartz.impl.triggers.SimpleTriggerImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelSchedulerTest {
+    private final ConcurrentMap<TriggerKey, AtomicInteger> fired = new ConcurrentHashMap<>();
+    private volatile CountDownLatch latch;
+    private TimingWheelScheduler wheel;
+
+    @Before
+    public void start() {
+        wheel = new TimingWheelScheduler(1, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        }, new Consumer<AbstractTrigger<?>>() {
+            @Override
+            public void accept(final AbstractTrigger<?> trigger) {
+                final AtomicInteger count = fired.computeIfAbsent(trigger.getKey(), k -> new AtomicInteger());
+                count.incrementAndGet();
+                if (latch != null) {
+                    latch.countDown();
+                }
+            }
+        });
+    }
+
+    @After
+    public void stop() {
+        wheel.shutdown();
+    }
+
+    @Test
+    public void singleAction() throws InterruptedException {
+        latch = new CountDownLatch(2);
+        wheel.schedule(trigger("soon", 20, 0, 0));
+        wheel.schedule(trigger("later", 700, 0, 0)); // second level of the wheel
+
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        assertEquals(1, fired.get(new TriggerKey("soon", "test")).get());
+        assertEquals(1, fired.get(new TriggerKey("later", "test")).get());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void interval() throws InterruptedException {
+        latch = new CountDownLatch(3);
+        wheel.schedule(trigger("interval", 10, 10, 2));
+
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        Thread.sleep(100);
+        assertEquals(3, fired.get(new TriggerKey("interval", "test")).get());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        latch = new CountDownLatch(1);
+        final TriggerKey cancelled = new TriggerKey("cancelled", "test");
+        wheel.schedule(trigger("cancelled", 100, 0, 0));
+        wheel.schedule(trigger("kept", 200, 0, 0));
+        assertTrue(wheel.unschedule(cancelled));
+
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        assertNull(fired.get(cancelled));
+        assertFalse(wheel.unschedule(cancelled));
+    }
+
+    @Test
+    public void pause() throws Exception {
+        final Scheduler scheduler = wheel.getScheduler();
+        final Trigger trigger = trigger("paused", 50, 0, 0);
+        scheduler.scheduleJob(trigger);
+        scheduler.pauseTrigger(trigger.getKey());
+        assertEquals(Trigger.TriggerState.PAUSED, scheduler.getTriggerState(trigger.getKey()));
+
+        Thread.sleep(200);
+        assertNull(fired.get(trigger.getKey()));
+
+        latch = new CountDownLatch(1);
+        scheduler.resumeTrigger(trigger.getKey()); // missed, fires at once
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        assertEquals(Trigger.TriggerState.NONE, scheduler.getTriggerState(trigger.getKey()));
+    }
+
+    @Test
+    public void workerDoesntKeepTheApplicationLoader() throws InterruptedException {
+        final ClassLoader appLoader = new URLClassLoader(new URL[0]);
+        final AtomicReference<ClassLoader> firingLoader = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader old = thread.getContextClassLoader();
+        thread.setContextClassLoader(appLoader); // the wheel is created by the first application scheduling a timer
+        final TimingWheelScheduler appWheel;
+        try {
+            appWheel = new TimingWheelScheduler(1, new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    command.run();
+                }
+            }, new Consumer<AbstractTrigger<?>>() {
+                @Override
+                public void accept(final AbstractTrigger<?> trigger) {
+                    firingLoader.set(Thread.currentThread().getContextClassLoader());
+                    done.countDown();
+                }
+            });
+        } finally {
+            thread.setContextClassLoader(old);
+        }
+
+        try {
+            appWheel.schedule(trigger("loader", 10, 0, 0));
+            assertTrue(done.await(1, TimeUnit.MINUTES));
+            assertNotSame(appLoader, firingLoader.get());
+        } finally {
+            appWheel.shutdown();
+        }
+    }
+
+    private static Trigger trigger(final String name, final long delay, final long interval, final int repeat) {
+        final SimpleTriggerImpl trigger = new SimpleTriggerImpl();
+        trigger.setKey(new TriggerKey(name, "test"));
+        trigger.setStartTime(new Date(System.currentTimeMillis() + delay));
+        trigger.setRepeatInterval(interval);
+        trigger.setRepeatCount(repeat);
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+    @Test
+    public void buckets() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            final double bucketValue = Histogram.value(Histogram.bucket(value));
+            assertTrue(value + " => " + bucketValue, Math.abs(bucketValue - value) <= Math.max(1, value * 0.07));
+        }
+        assertEquals(Histogram.bucket(Long.MAX_VALUE), Histogram.bucket(1L << 45));
+    }
+
+    @Test
+    public void statistics() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        final Histogram.Snapshot snapshot = histogram.snapshot(Histogram.FIFTEEN_MINUTES);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500., snapshot.getSum(), 0.);
+        assertEquals(500.5, snapshot.getMean(), 0.);
+        assertEquals(1., snapshot.getMin(), 0.);
+        assertEquals(1000., snapshot.getMax(), 0.);
+        assertEquals(500., snapshot.getPercentile(50), 500 * 0.07);
+        assertEquals(990., snapshot.getPercentile(99), 990 * 0.07);
+        assertEquals(288.8, snapshot.getStandardDeviation(), 288.8 * 0.07);
+        assertEquals(10, snapshot.getValues(10).length);
+    }
+
+    @Test
+    public void empty() {
+        final Histogram.Snapshot snapshot = new Histogram().snapshot(Histogram.ONE_MINUTE);
+        assertEquals(0, snapshot.getCount());
+        assertTrue(Double.isNaN(snapshot.getPercentile(99)));
+        assertTrue(Double.isNaN(snapshot.getMean()));
+        assertEquals(0, snapshot.getValues(100).length);
+    }
+
+    @Test
+    public void windowSlidesOverMinutes() {
+        final Histogram histogram = new Histogram();
+        final long minute = 1000 * 60000L;
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1, minute - 1000); // end of the previous minute
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(2, minute + 1000);
+        }
+
+        assertEquals(20, histogram.snapshot(Histogram.ONE_MINUTE, minute + 1000).getCount());
+        assertEquals(10, histogram.snapshot(Histogram.ONE_MINUTE, minute + 59000).getCount());
+        assertEquals(2., histogram.snapshot(Histogram.ONE_MINUTE, minute + 59000).getMin(), 0.);
+        assertEquals(0, histogram.snapshot(Histogram.ONE_MINUTE, minute + 65000).getCount());
+        assertEquals(20, histogram.snapshot(Histogram.FIVE_MINUTES, minute + 65000).getCount());
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i % 100);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // a slot can end during the test, the samples recorded while it is closed are dropped
+        final long count = histogram.snapshot(Histogram.FIVE_MINUTES).getCount();
+        assertTrue(String.valueOf(count), count > 79000 && count <= 80000);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.persistence;
+
+import org.apache.openejb.assembler.classic.ReloadableEntityManagerFactory;
+import org.apache.openejb.jee.Empty;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.jee.jpa.unit.Persistence;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.util.reflection.Reflections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+@RunWith(ApplicationComposer.class)
+public class InvocationEntityManagersTest {
+    @EJB
+    private Reader reader;
+
+    @Module
+    public StatelessBean bean() {
+        final StatelessBean bean = new StatelessBean(Reader.class);
+        bean.setLocalBean(new Empty());
+        return bean;
+    }
+
+    @Module
+    public Persistence persistence() {
+        final org.apache.openejb.jee.jpa.unit.PersistenceUnit unit = new org.apache.openejb.jee.jpa.unit.PersistenceUnit("invocation-unit");
+        unit.setExcludeUnlistedClasses(true);
+        unit.setProperty("openejb.jpa.no-tx.entity-manager", "invocation");
+        return new Persistence(unit);
+    }
+
+    @Test
+    public void oneEntityManagerPerInvocation() {
+        final NoTxStatistics statistics = reader.statistics();
+        final long created = statistics.getCreated();
+        final long invocations = statistics.getInvocations();
+
+        for (int i = 0; i < 2; i++) {
+            final List<EntityManager> used = reader.read();
+            assertEquals(3, used.size());
+            assertSame(used.get(0), used.get(1));
+            assertSame(used.get(0), used.get(2));
+            assertFalse(used.get(0).isOpen()); // closed with the invocation
+        }
+
+        assertEquals(2, statistics.getCreated() - created);
+        assertEquals(2, statistics.getInvocations() - invocations);
+    }
+
+    @LocalBean
+    @Stateless
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public static class Reader {
+        @PersistenceContext
+        private EntityManager em;
+
+        @PersistenceUnit
+        private EntityManagerFactory emf;
+
+        public List<EntityManager> read() {
+            final List<EntityManager> used = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final JtaQuery query = em.createNativeQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS").unwrap(JtaQuery.class);
+                query.getResultList();
+                used.add(EntityManager.class.cast(Reflections.get(query, "entityManager")));
+            }
+            return used;
+        }
+
+        public NoTxStatistics statistics() {
+            return ReloadableEntityManagerFactory.class.cast(emf).getNoTxStatistics();
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.openejb.resource.activemq;
 
 import junit.framework.TestCase;
 import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.ra.ActiveMQActivationSpec;
 import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.NetworkUtil;
 import org.apache.openejb.util.reflection.Reflections;
@@ -70,4 +72,27 @@ public class ActiveMQResourceAdapterTest extends TestCase {
         assertFalse(Boolean.class.cast(Reflections.get(ActiveMQFactory.getBrokers().iterator().next(), "schedulerSupport")));
         resourceAdapter.stop();
     }
+
+    public void testBacklogDoesNotCreateQueues() throws Exception {
+        final ActiveMQResourceAdapter resourceAdapter = new ActiveMQResourceAdapter();
+        resourceAdapter.setServerUrl("vm://localhost?waitForStart=30000&async=false");
+        resourceAdapter.setBrokerXmlConfig(NetworkUtil.getLocalAddress("broker:(tcp://", ")?useJmx=false"));
+        resourceAdapter.setStartupTimeout(new Duration(10, TimeUnit.SECONDS));
+        resourceAdapter.start(null);
+        try {
+            final ActiveMQActivationSpec spec = new ActiveMQActivationSpec();
+            spec.setDestinationType("javax.jms.Queue");
+            spec.setDestination("backlog");
+
+            assertEquals(0, resourceAdapter.getBacklog(spec));
+            final BrokerService broker = ActiveMQFactory.getBrokers().iterator().next();
+            assertNull(broker.getRegionBroker().getDestinationMap().get(new ActiveMQQueue("backlog")));
+
+            final ActiveMQResourceAdapter remote = new ActiveMQResourceAdapter();
+            remote.setServerUrl("tcp://broker.example.com:61616");
+            assertEquals(-1, remote.getBacklog(spec));
+        } finally {
+            resourceAdapter.stop();
+        }
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.resource.jdbc.router.ReadReplicaRouter;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.testng.PropertiesBuilder;
+import org.apache.xbean.finder.AnnotationFinder;
+import org.apache.xbean.finder.IAnnotationFinder;
+import org.apache.xbean.finder.archive.ClassesArchive;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.apache.openejb.resource.jdbc.FailOverRouters.datasource;
+import static org.apache.openejb.resource.jdbc.FailOverRouters.url;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class ReadReplicaRouterTest {
+    @Resource(name = "routedDs")
+    private DataSource routed;
+
+    @Resource(name = "router")
+    private ReadReplicaRouter router;
+
+    @Resource(name = "ro1")
+    private DataSource replica1;
+
+    @Resource(name = "ro2")
+    private DataSource replica2;
+
+    @Test
+    public void route() throws SQLException {
+        assertEquals("jdbc:hsqldb:mem:rw", url(routed.getConnection()));
+
+        final Connection connection = routed.getConnection();
+        connection.setReadOnly(true);
+        assertEquals(0, inFlight());
+        assertTrue(connection.getMetaData().getURL().startsWith("jdbc:hsqldb:mem:ro"));
+        assertTrue(connection.isReadOnly());
+        assertEquals(1, inFlight());
+        connection.close();
+        assertEquals(0, inFlight());
+
+        assertEquals("jdbc:hsqldb:mem:rw", url(routed.getConnection())); // still writable
+    }
+
+    @Test
+    public void ejectLaggingReplica() throws SQLException {
+        lag(replica1, 0);
+        lag(replica2, 60);
+
+        router.probe();
+        assertFalse(replica("ro1").isEjected());
+        assertTrue(replica("ro2").isEjected());
+        assertEquals(60., replica("ro2").getLag(), 0.);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("jdbc:hsqldb:mem:ro1", readOnlyUrl());
+        }
+
+        lag(replica2, 0);
+        router.probe();
+        assertFalse(replica("ro2").isEjected());
+    }
+
+    private String readOnlyUrl() throws SQLException {
+        final Connection connection = routed.getConnection();
+        connection.setReadOnly(true);
+        return url(connection);
+    }
+
+    private int inFlight() {
+        int total = 0;
+        for (final ReadReplicaRouter.Replica replica : router.getReplicas()) {
+            total += replica.getInFlight();
+        }
+        return total;
+    }
+
+    private ReadReplicaRouter.Replica replica(final String name) {
+        for (final ReadReplicaRouter.Replica replica : router.getReplicas()) {
+            if (name.equals(replica.getName())) {
+                return replica;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static void lag(final DataSource dataSource, final int seconds) throws SQLException {
+        try (final Connection connection = dataSource.getConnection();
+             final Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE REPLICATION_STATUS IF EXISTS");
+            statement.execute("CREATE TABLE REPLICATION_STATUS (LAG INTEGER)");
+            statement.execute("INSERT INTO REPLICATION_STATUS VALUES (" + seconds + ")");
+        }
+    }
+
+    @Configuration
+    public Properties configuration() {
+        return datasource(datasource(datasource(new PropertiesBuilder(), "rw"), "ro1"), "ro2")
+
+            .property("router", "new://Resource?class-name=" + ReadReplicaRouter.class.getName())
+            .property("router.primary", "rw")
+            .property("router.replicaNames", "ro1,ro2")
+            .property("router.probeInterval", "0") // probed by the test
+            .property("router.lagQuery", "SELECT LAG FROM REPLICATION_STATUS")
+            .property("router.maxLag", "5")
+
+            .property("routedDs", "new://Resource?provider=RoutedDataSource&type=DataSource")
+            .property("routedDs.router", "router")
+
+            .build();
+    }
+
+    @Module
+    public IAnnotationFinder finder() { // needed to run the test
+        return new AnnotationFinder(new ClassesArchive());
+    }
+}
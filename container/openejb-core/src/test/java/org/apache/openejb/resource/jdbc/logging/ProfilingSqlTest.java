@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc.logging;
+
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.testing.Classes;
+import org.apache.openejb.testing.ContainerProperties;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@Classes
+@ContainerProperties({
+    @ContainerProperties.Property(name = "profiled", value = "new://Resource?type=DataSource"),
+    @ContainerProperties.Property(name = "profiled.ProfileSql", value = "true"),
+    @ContainerProperties.Property(name = "profiled.ProfileSqlSampling", value = "1"),
+    @ContainerProperties.Property(name = "profiled.LogSqlPackages", value = "org.apache.openejb.resource.jdbc.logging.ProfilingSqlTest")
+})
+@RunWith(ApplicationComposer.class)
+public class ProfilingSqlTest {
+    @Resource
+    private DataSource profiled;
+
+    @Test
+    public void aggregateByFingerprint() throws Exception {
+        try (final Connection c = profiled.getConnection()) {
+            try (final Statement statement = c.createStatement()) {
+                for (int i = 0; i < 3; i++) {
+                    statement.executeQuery("select " + i + " from INFORMATION_SCHEMA.SYSTEM_USERS where USER_NAME = 'user" + i + "'").close();
+                }
+                try {
+                    statement.executeQuery("select missing from INFORMATION_SCHEMA.SYSTEM_USERS");
+                    fail();
+                } catch (final SQLException expected) {
+                    // recorded as an error
+                }
+            }
+            try (final PreparedStatement preparedStatement = c.prepareStatement("select USER_NAME from INFORMATION_SCHEMA.SYSTEM_USERS where USER_NAME = ?")) {
+                preparedStatement.setString(1, "SA");
+                preparedStatement.executeQuery().close();
+            }
+        }
+
+        final SqlProfiler profiler = SqlProfiler.get("profiled");
+        assertNotNull(profiler);
+        profiler.flush();
+
+        final SqlStatistics literals = find(profiler, "select ? from INFORMATION_SCHEMA.SYSTEM_USERS where USER_NAME = ?");
+        assertEquals(3, literals.getCount());
+        assertEquals(0, literals.getErrors());
+        assertTrue(literals.getSampledStack().startsWith(" -> org.apache.openejb.resource.jdbc.logging.ProfilingSqlTest.aggregateByFingerprint:"));
+
+        assertEquals(1, find(profiler, "select missing from INFORMATION_SCHEMA.SYSTEM_USERS").getErrors());
+
+        final List<SqlStatistics> slowest = profiler.getSlowest();
+        assertEquals(3, slowest.size());
+        assertTrue(slowest.get(0).getAverageTime() >= slowest.get(2).getAverageTime());
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals("select * from T where A = ? and B = ? and C1 in (?+)",
+            SqlProfiler.normalize("select  *\n from T where A = 'it''s' and B = 12.5 and C1 in (1, 2,3)"));
+        assertEquals("insert into \"T 1\" values (?+)+", SqlProfiler.normalize("insert into \"T 1\" values (1, 'a'), (2, 'b')"));
+    }
+
+    private static SqlStatistics find(final SqlProfiler profiler, final String fingerprint) {
+        for (final SqlStatistics statistics : profiler.getStatistics()) {
+            if (fingerprint.equals(statistics.getFingerprint())) {
+                return statistics;
+            }
+        }
+        throw new AssertionError(fingerprint + " not in " + profiler.getStatistics());
+    }
+}
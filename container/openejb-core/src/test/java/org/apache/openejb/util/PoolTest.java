@@ -165,9 +165,13 @@ public class PoolTest extends TestCase {
     }
 
     private void exerciseStrictPool(final int max, final int min) throws InterruptedException {
+        exerciseStrictPool(max, min, Pool.Implementation.LINKED);
+    }
+
+    private void exerciseStrictPool(final int max, final int min, final Pool.Implementation implementation) throws InterruptedException {
         Bean.instances.set(0);
 
-        final Pool<String> pool = new Pool<>(max, min, true);
+        final Pool<String> pool = new Pool<>(max, min, true, 0, 0, 0, null, null, false, -1, false, false, implementation);
 
         // Fill the pool
         for (int i = 0; i < max; i++) {
@@ -271,6 +275,79 @@ public class PoolTest extends TestCase {
 
     }
 
+    public void testStripedBasics() throws Exception {
+        System.out.println("PoolTest.testStripedBasics");
+        exerciseStrictPool(1, 0, Pool.Implementation.STRIPED);
+        exerciseStrictPool(3, 0, Pool.Implementation.STRIPED);
+        exerciseStrictPool(4, 2, Pool.Implementation.STRIPED);
+        exerciseStrictPool(5, 5, Pool.Implementation.STRIPED);
+        exerciseStrictPool(64, 16, Pool.Implementation.STRIPED);
+    }
+
+    public void testStripedMultiThreaded() throws Exception {
+        System.out.println("PoolTest.testStripedMultiThreaded");
+        final int threadCount = 32;
+        final int iterations = 2000;
+        final int max = 8;
+        final int min = 2;
+
+        final Pool.Builder<Bean> builder = new Pool.Builder<>();
+        builder.setMaxSize(max);
+        builder.setMinSize(min);
+        builder.setPoolImplementation("striped");
+        final Pool<Bean> pool = builder.build();
+        assertEquals(Pool.Implementation.STRIPED, builder.getPoolImplementation());
+
+        final CountDownLatch startPistol = new CountDownLatch(1);
+        final CountDownLatch finishingLine = new CountDownLatch(threadCount);
+        final AtomicInteger errors = new AtomicInteger();
+
+        final Runnable r = new Runnable() {
+            public void run() {
+                try {
+                    startPistol.await();
+                    for (int i = 0; i < iterations; i++) {
+                        final Pool<Bean>.Entry entry = pool.pop(5, TimeUnit.SECONDS);
+                        if (entry == null) {
+                            pool.push(new Bean());
+                        } else {
+                            pool.push(entry);
+                        }
+                    }
+                } catch (final Exception e) {
+                    errors.incrementAndGet();
+                }
+                finishingLine.countDown();
+            }
+        };
+
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(r).start();
+        }
+        startPistol.countDown();
+
+        assertTrue(finishingLine.await(60, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+
+        // permits must be intact whatever stripe the entries ended in
+        final List<Pool<Bean>.Entry> entries = drain(pool);
+        checkMax(max, entries);
+        checkMin(min, entries);
+        push(pool, entries);
+    }
+
+    public void testUnknownImplementation() throws Exception {
+        final Pool.Builder<Bean> builder = new Pool.Builder<>();
+        try {
+            builder.setPoolImplementation("foo");
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // ok
+        }
+        builder.setPoolImplementation("Striped");
+        assertEquals(Pool.Implementation.STRIPED, builder.getPoolImplementation());
+    }
+
     public void testClose() throws Exception {
         System.out.println("PoolTest.testClose");
 
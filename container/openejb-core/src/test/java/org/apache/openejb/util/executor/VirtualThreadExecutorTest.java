@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util.executor;
+
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadExecutorTest {
+    @Test
+    public void concurrencyIsBounded() throws Exception {
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(2, factory());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final int current = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(current, Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertTrue(maxRunning.get() <= 2);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void waitingTaskCanBeRemoved() throws Exception {
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(1, factory());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<?> busy = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        assertTrue(started.await(1, TimeUnit.MINUTES));
+
+        final AtomicInteger ran = new AtomicInteger();
+        final Future<?> waiting = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+            }
+        });
+
+        assertTrue(executor.remove((Runnable) waiting));
+        assertFalse(executor.remove((Runnable) waiting));
+
+        release.countDown();
+        busy.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(0, ran.get());
+        assertFalse(executor.remove((Runnable) busy));
+    }
+
+    @Test
+    public void shutdownNowReturnsWaitingTasks() throws Exception {
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(1, factory());
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.MINUTES));
+
+        final Runnable waiting = new Runnable() {
+            @Override
+            public void run() {
+                // no-op
+            }
+        };
+        executor.execute(waiting);
+
+        assertEquals(1, executor.shutdownNow().size());
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertTrue(executor.isTerminated());
+    }
+
+    private static ThreadFactory factory() {
+        // any factory works, a virtual one is only available on recent JVM
+        return VirtualThreadExecutor.isSupported() ? VirtualThreadExecutor.newThreadFactory("test-") : new DaemonThreadFactory("test");
+    }
+}
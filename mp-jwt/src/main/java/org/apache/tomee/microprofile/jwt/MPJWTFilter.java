@@ -25,6 +25,8 @@ import org.apache.tomee.catalina.TomcatSecurityService;
 import org.apache.tomee.microprofile.jwt.bval.ValidationInterceptor;
 import org.apache.tomee.microprofile.jwt.config.JWTAuthConfiguration;
 import org.apache.tomee.microprofile.jwt.config.JWTAuthConfigurationProperties;
+import org.apache.tomee.microprofile.jwt.config.PublicKeysRefresher;
+import org.apache.tomee.microprofile.jwt.config.VerifiedTokenCache;
 import org.apache.tomee.microprofile.jwt.principal.JWTCallerPrincipal;
 import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.JsonWebToken;
@@ -62,6 +64,7 @@ import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -324,6 +327,31 @@ public class MPJWTFilter implements Filter {
         }
 
         public static JWTCallerPrincipal parse(final String token, final JWTAuthConfiguration authContextInfo) throws ParseException {
+            final VerifiedTokenCache cache = authContextInfo.getTokenCache();
+            if (cache != null) {
+                final JWTCallerPrincipal cached = cache.get(token);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            final PublicKeysRefresher refresher = authContextInfo.getPublicKeysRefresher();
+            if (refresher != null) {
+                refresher.onToken(token);
+            }
+
+            final long start = System.nanoTime();
+            final JWTCallerPrincipal principal = verify(token, authContextInfo);
+            if (cache != null) {
+                cache.recordVerification(System.nanoTime() - start);
+                final long exp = principal.getExpirationTime(); // required so always there
+                final long grace = Math.max(0, authContextInfo.getExpGracePeriodSecs());
+                cache.put(token, principal, TimeUnit.SECONDS.toMillis(exp + grace));
+            }
+            return principal;
+        }
+
+        private static JWTCallerPrincipal verify(final String token, final JWTAuthConfiguration authContextInfo) throws ParseException {
             JWTCallerPrincipal principal;
 
             try {
@@ -21,8 +21,11 @@ import org.jose4j.lang.JoseException;
 
 import java.security.Key;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -33,24 +36,24 @@ public class JWTAuthConfiguration {
     private static final Logger logger = Logger.getLogger(JWTAuthConfiguration.class.getName());
     public static final String DEFAULT_KEY = "DEFAULT";
 
-    private Map<String, Key> publicKeys;
+    private volatile Map<String, Key> publicKeys;
+    private volatile Set<String> keyIds;
+    private volatile List<JsonWebKey> jsonWebKeys;
     private String issuer;
     private int expGracePeriodSecs = 60;
     private String headerName = "Authorization";
     private String headerScheme = "Bearer";
+    private VerifiedTokenCache tokenCache;
+    private PublicKeysRefresher publicKeysRefresher;
 
     private JWTAuthConfiguration(final Key publicKey, final String issuer) {
         this.publicKeys = Collections.singletonMap(DEFAULT_KEY, publicKey);
+        this.keyIds = Collections.emptySet();
         this.issuer = issuer;
     }
 
     private JWTAuthConfiguration(final Map<String, Key> publicKeys, final String issuer) {
-        if (publicKeys.size() == 1) {
-            final Key singleKey = publicKeys.values().iterator().next();
-            this.publicKeys = Collections.singletonMap(DEFAULT_KEY, singleKey);
-        } else {
-            this.publicKeys = Collections.unmodifiableMap(publicKeys);
-        }
+        setPublicKeys(publicKeys);
         this.issuer = issuer;
     }
 
@@ -70,7 +73,51 @@ public class JWTAuthConfiguration {
         return publicKeys.get(DEFAULT_KEY);
     }
 
+    public boolean hasKeyId(final String keyId) {
+        return keyIds.contains(keyId);
+    }
+
+    /**
+     * Replaces the keys (refresh of a remote key set), cached tokens are dropped if the keys changed
+     * since they can have been signed by a revoked key.
+     */
+    public synchronized void updatePublicKeys(final Map<String, Key> keys) {
+        final Map<String, Key> old = publicKeys;
+        final Set<String> oldKeyIds = keyIds;
+        setPublicKeys(keys);
+        if (tokenCache != null && (!Objects.equals(old, publicKeys) || !Objects.equals(oldKeyIds, keyIds))) {
+            tokenCache.clear();
+        }
+    }
+
+    private void setPublicKeys(final Map<String, Key> keys) {
+        final Set<String> ids = new HashSet<>(keys.keySet());
+        ids.remove(null);
+        if (keys.size() == 1) {
+            final Key singleKey = keys.values().iterator().next();
+            this.publicKeys = Collections.singletonMap(DEFAULT_KEY, singleKey);
+        } else {
+            this.publicKeys = Collections.unmodifiableMap(keys);
+        }
+        this.keyIds = Collections.unmodifiableSet(ids);
+        this.jsonWebKeys = null; // converted lazily and once per key set, not per token
+    }
+
     public List<JsonWebKey> getPublicKeys() {
+        List<JsonWebKey> keys = jsonWebKeys;
+        if (keys == null) {
+            synchronized (this) {
+                keys = jsonWebKeys;
+                if (keys == null) {
+                    keys = Collections.unmodifiableList(toJsonWebKeys(publicKeys));
+                    jsonWebKeys = keys;
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static List<JsonWebKey> toJsonWebKeys(final Map<String, Key> publicKeys) {
         return publicKeys.entrySet().stream().map(key -> {
             try {
                 final JsonWebKey jsonWebKey = JsonWebKey.Factory.newJwk(key.getValue());
@@ -110,4 +157,20 @@ public class JWTAuthConfiguration {
     public void setHeaderScheme(final String headerScheme) {
         this.headerScheme = headerScheme;
     }
+
+    public VerifiedTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    public void setTokenCache(final VerifiedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+    public PublicKeysRefresher getPublicKeysRefresher() {
+        return publicKeysRefresher;
+    }
+
+    public void setPublicKeysRefresher(final PublicKeysRefresher publicKeysRefresher) {
+        this.publicKeysRefresher = publicKeysRefresher;
+    }
 }
@@ -16,19 +16,24 @@
  */
 package org.apache.tomee.microprofile.jwt.config;
 
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Initialized;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.spi.DeploymentException;
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import java.security.Key;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.eclipse.microprofile.jwt.config.Names.ISSUER;
 import static org.eclipse.microprofile.jwt.config.Names.VERIFIER_PUBLIC_KEY;
@@ -48,12 +53,54 @@ public class JWTAuthConfigurationProperties {
     public static final String PUBLIC_KEY_ERROR = "Could not read MicroProfile Public Key";
     public static final String PUBLIC_KEY_ERROR_LOCATION = PUBLIC_KEY_ERROR + " from Location: ";
 
+    // TomEE specific, 0 disables the feature
+    public static final String TOKEN_CACHE_SIZE = "tomee.mp.jwt.token.cache.size";
+    public static final String KEYS_REFRESH_INTERVAL = "tomee.mp.jwt.keys.refresh.interval";
+    public static final String KEYS_REFRESH_MIN_INTERVAL = "tomee.mp.jwt.keys.refresh.min-interval";
+
     private Config config;
     private JWTAuthConfiguration jwtAuthConfiguration;
+    private ObjectName tokenCacheObjectName;
 
     public void init(@Observes @Initialized(ApplicationScoped.class) ServletContext context) {
         this.config = ConfigProvider.getConfig();
         this.jwtAuthConfiguration = createJWTAuthConfiguration();
+        if (jwtAuthConfiguration == null) {
+            return;
+        }
+
+        final String name = context.getContextPath().isEmpty() ? "/" : context.getContextPath();
+        final int cacheSize = config.getOptionalValue(TOKEN_CACHE_SIZE, Integer.class).orElse(1000);
+        if (cacheSize > 0) {
+            final VerifiedTokenCache cache = new VerifiedTokenCache(cacheSize);
+            jwtAuthConfiguration.setTokenCache(cache);
+            tokenCacheObjectName = new ObjectNameBuilder("openejb.management")
+                    .set("J2EEServer", "openejb")
+                    .set("J2EEApplication", null)
+                    .set("j2eeType", "MPJWTTokenCache")
+                    .set("name", name)
+                    .build();
+            LocalMBeanServer.registerDynamicWrapperSilently(new VerifiedTokenCache.JMXVerifiedTokenCache(cache), tokenCacheObjectName);
+        }
+
+        final Optional<String> location = getPublicKeyLocation();
+        if (location.isPresent() && location.get().startsWith("http")) { // remote key set, can rotate
+            final PublicKeysRefresher refresher = new PublicKeysRefresher(jwtAuthConfiguration,
+                    () -> new PublicKeyResolver().readPublicKeysFromLocation(location.get()),
+                    TimeUnit.SECONDS.toMillis(config.getOptionalValue(KEYS_REFRESH_MIN_INTERVAL, Long.class).orElse(30L)));
+            refresher.start(TimeUnit.SECONDS.toMillis(config.getOptionalValue(KEYS_REFRESH_INTERVAL, Long.class).orElse(3600L)), name);
+            jwtAuthConfiguration.setPublicKeysRefresher(refresher);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (tokenCacheObjectName != null) {
+            LocalMBeanServer.unregisterSilently(tokenCacheObjectName);
+        }
+        if (jwtAuthConfiguration != null && jwtAuthConfiguration.getPublicKeysRefresher() != null) {
+            jwtAuthConfiguration.getPublicKeysRefresher().close();
+        }
     }
 
     public Optional<JWTAuthConfiguration> getJWTAuthConfiguration() {
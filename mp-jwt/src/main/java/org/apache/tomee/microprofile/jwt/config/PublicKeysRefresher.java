@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.config;
+
+import org.apache.openejb.util.DaemonThreadFactory;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reloads the public keys of a remote location (JWKS endpoint) in the background
+ * and, rate limited, when a token references a key id which is not known yet (key rotation).
+ */
+public class PublicKeysRefresher implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(PublicKeysRefresher.class.getName());
+
+    private final JWTAuthConfiguration configuration;
+    private final Supplier<Map<String, Key>> loader;
+    private final long minInterval;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastRefresh = System.currentTimeMillis();
+
+    /**
+     * @param minInterval minimum duration (ms) between two refreshes triggered by an unknown key id.
+     */
+    public PublicKeysRefresher(final JWTAuthConfiguration configuration, final Supplier<Map<String, Key>> loader, final long minInterval) {
+        this.configuration = configuration;
+        this.loader = loader;
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * @param interval duration (ms) between two background refreshes, nothing is scheduled if not positive.
+     */
+    public synchronized PublicKeysRefresher start(final long interval, final String name) {
+        if (interval > 0 && scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("tomee-mp-jwt-keys", name));
+            scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Called before verifying a token, refreshes the keys if the token uses a key id we don't have.
+     */
+    public void onToken(final String token) {
+        final String kid = keyId(token);
+        if (kid == null || configuration.hasKeyId(kid)) {
+            return;
+        }
+        synchronized (this) {
+            if (configuration.hasKeyId(kid) || System.currentTimeMillis() - lastRefresh < minInterval) {
+                return;
+            }
+            refresh();
+        }
+    }
+
+    public synchronized void refresh() {
+        lastRefresh = System.currentTimeMillis();
+        try {
+            configuration.updatePublicKeys(loader.get());
+        } catch (final RuntimeException e) { // keep the current keys
+            logger.log(Level.WARNING, "Can't refresh the MicroProfile JWT public keys: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    static String keyId(final String token) {
+        final int end = token.indexOf('.');
+        if (end <= 0) {
+            return null;
+        }
+        try {
+            final String header = new String(Base64.getUrlDecoder().decode(token.substring(0, end)), StandardCharsets.UTF_8);
+            final JsonObject json = Json.createReader(new StringReader(header)).readObject();
+            return json.getString("kid", null);
+        } catch (final RuntimeException e) { // invalid token, the verification will fail
+            return null;
+        }
+    }
+}
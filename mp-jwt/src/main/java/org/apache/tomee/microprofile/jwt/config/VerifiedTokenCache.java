@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.config;
+
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.tomee.microprofile.jwt.principal.JWTCallerPrincipal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tokens which already went through the signature and claims verification, keyed by their SHA-256 hash.
+ * An entry is used until the expiration of the token (plus the configured grace period)
+ * so a client reusing its token only pays the verification once.
+ */
+public class VerifiedTokenCache {
+    private final int maxSize;
+    private final Map<String, Entry> tokens = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verificationTime = new LongAdder();
+
+    public VerifiedTokenCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public JWTCallerPrincipal get(final String token) {
+        final String key = hash(token);
+        final Entry entry = tokens.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiry < System.currentTimeMillis()) {
+            tokens.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principal;
+    }
+
+    /**
+     * @param expiry the time (ms) after which the token must be verified again.
+     */
+    public void put(final String token, final JWTCallerPrincipal principal, final long expiry) {
+        if (tokens.size() >= maxSize) {
+            evict();
+        }
+        tokens.put(hash(token), new Entry(principal, expiry));
+    }
+
+    public void recordVerification(final long nanos) {
+        verifications.increment();
+        verificationTime.add(nanos);
+    }
+
+    public void clear() {
+        tokens.clear();
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getVerifications() {
+        return verifications.sum();
+    }
+
+    public double getAverageVerificationTime() {
+        final long count = verifications.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(verificationTime.sum()) / (double) count;
+    }
+
+    // expired tokens first then any token, it is just a bound not an LRU
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        tokens.values().removeIf(e -> e.expiry < now);
+
+        final Iterator<String> it = tokens.keySet().iterator();
+        while (tokens.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String hash(final String token) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        private final JWTCallerPrincipal principal;
+        private final long expiry;
+
+        private Entry(final JWTCallerPrincipal principal, final long expiry) {
+            this.principal = principal;
+            this.expiry = expiry;
+        }
+    }
+
+    @MBean
+    @Description("MicroProfile JWT verified tokens")
+    public static class JMXVerifiedTokenCache {
+        private final VerifiedTokenCache cache;
+
+        public JMXVerifiedTokenCache(final VerifiedTokenCache cache) {
+            this.cache = cache;
+        }
+
+        @ManagedAttribute
+        @Description("cached tokens")
+        public int getSize() {
+            return cache.size();
+        }
+
+        @ManagedAttribute
+        @Description("requests served with an already verified token")
+        public long getHits() {
+            return cache.getHits();
+        }
+
+        @ManagedAttribute
+        @Description("requests which needed to verify their token")
+        public long getMisses() {
+            return cache.getMisses();
+        }
+
+        @ManagedAttribute
+        @Description("token verifications")
+        public long getVerifications() {
+            return cache.getVerifications();
+        }
+
+        @ManagedAttribute
+        @Description("average verification time in microseconds")
+        public double getAverageVerificationTime() {
+            return cache.getAverageVerificationTime();
+        }
+
+        @ManagedOperation
+        @Description("drop the cached tokens")
+        public void clear() {
+            cache.clear();
+        }
+    }
+}
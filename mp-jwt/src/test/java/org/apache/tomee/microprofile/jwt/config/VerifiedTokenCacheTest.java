@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomee.microprofile.jwt.config;
+
+import org.apache.tomee.microprofile.jwt.principal.JWTCallerPrincipal;
+import org.jose4j.jwt.JwtClaims;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VerifiedTokenCacheTest {
+
+    @Test
+    public void cache() {
+        final VerifiedTokenCache cache = new VerifiedTokenCache(2);
+        final JWTCallerPrincipal principal = new JWTCallerPrincipal("a", "JWT", new JwtClaims(), "jane");
+
+        assertNull(cache.get("a"));
+        cache.put("a", principal, System.currentTimeMillis() + 60000);
+        assertSame(principal, cache.get("a"));
+
+        cache.put("expired", principal, System.currentTimeMillis() - 1);
+        assertNull(cache.get("expired"));
+
+        cache.put("b", principal, System.currentTimeMillis() + 60000);
+        cache.put("c", principal, System.currentTimeMillis() + 60000);
+        assertEquals(2, cache.size());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void refreshOnUnknownKeyId() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final Map<String, Key> keys = new HashMap<>();
+        keys.put("k1", generator.generateKeyPair().getPublic());
+        keys.put("k2", generator.generateKeyPair().getPublic());
+
+        final JWTAuthConfiguration configuration = JWTAuthConfiguration.authConfiguration(keys, null);
+        final VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("token", new JWTCallerPrincipal("token", "JWT", new JwtClaims(), "jane"), System.currentTimeMillis() + 60000);
+        configuration.setTokenCache(cache);
+        assertEquals(2, configuration.getPublicKeys().size());
+
+        final AtomicInteger loads = new AtomicInteger();
+        final Map<String, Key> rotated = new HashMap<>(keys);
+        rotated.put("k3", generator.generateKeyPair().getPublic());
+        final PublicKeysRefresher refresher = new PublicKeysRefresher(configuration, () -> {
+            loads.incrementAndGet();
+            return rotated;
+        }, 0);
+
+        refresher.onToken(token("k1"));
+        assertEquals(0, loads.get());
+
+        assertFalse(configuration.hasKeyId("k3"));
+        refresher.onToken(token("k3"));
+        assertEquals(1, loads.get());
+        assertTrue(configuration.hasKeyId("k3"));
+        assertEquals(3, configuration.getPublicKeys().size());
+        assertEquals(0, cache.size());
+
+        refresher.onToken("not a token");
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void rateLimited() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final Map<String, Key> keys = new HashMap<>();
+        keys.put("k1", generator.generateKeyPair().getPublic());
+        keys.put("k2", generator.generateKeyPair().getPublic());
+
+        final AtomicInteger loads = new AtomicInteger();
+        final JWTAuthConfiguration configuration = JWTAuthConfiguration.authConfiguration(keys, null);
+        final PublicKeysRefresher refresher = new PublicKeysRefresher(configuration, () -> {
+            loads.incrementAndGet();
+            return keys;
+        }, 60000);
+
+        refresher.onToken(token("unknown"));
+        refresher.onToken(token("unknown"));
+        assertEquals(0, loads.get()); // created less than a minute ago
+    }
+
+    private static String token(final String kid) {
+        final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(("{\"alg\":\"RS256\",\"kid\":\"" + kid + "\"}").getBytes(StandardCharsets.UTF_8)) + ".e30.sig";
+    }
+}
@@ -59,6 +59,10 @@ public class Client {
 
     public static final ThreadLocal<Set<URI>> failed = new ThreadLocal<>();
     private static final ProtocolMetaData PROTOCOL_META_DATA = new ProtocolMetaData();
+    private static final ProtocolMetaData BASE_META_DATA = new ProtocolMetaData("4.6"); // understood by the servers we don't know yet
+
+    // protocol announced by each server, a request only uses what the server reading it understands
+    private static final Map<URI, ProtocolMetaData> SERVER_META_DATA = new ConcurrentHashMap<>();
 
     private static Client client = new Client();
     private static final ProtocolMetaData COMPATIBLE_META_DATA;
@@ -143,6 +147,15 @@ public class Client {
         }
     }
 
+    private static ProtocolMetaData requestMetaData(final URI uri) {
+        if (null != COMPATIBLE_META_DATA) {
+            return COMPATIBLE_META_DATA;
+        }
+
+        final ProtocolMetaData known = uri == null ? null : SERVER_META_DATA.get(uri);
+        return known != null && known.isAtLeast(PROTOCOL_META_DATA.getMajor(), PROTOCOL_META_DATA.getMinor()) ? PROTOCOL_META_DATA : BASE_META_DATA;
+    }
+
     protected Response processRequest(final Request req, final Response res, final ServerMetaData server) throws RemoteException {
 
         if (server == null) {
@@ -152,9 +165,6 @@ public class Client {
         final long start = System.nanoTime();
         final ClusterMetaData cluster = getClusterMetaData(server);
 
-        //Determine which protocol to use for request writes
-        final ProtocolMetaData protocolRequest = (null != COMPATIBLE_META_DATA ? COMPATIBLE_META_DATA : PROTOCOL_META_DATA);
-
         /*----------------------------*/
         /* Get a connection to server */
         /*----------------------------*/
@@ -166,6 +176,9 @@ public class Client {
             throw new RemoteException("Unable to connect", e);
         }
 
+        //Determine which protocol to use for request writes
+        final ProtocolMetaData protocolRequest = requestMetaData(conn.getURI());
+
         OutputStream out = null;
         InputStream in = null;
 
@@ -283,6 +296,9 @@ public class Client {
 
                 throw newIOException("Cannot determine server protocol version: Received " + protocolResponse.getSpec() + " : " + e.getMessage(), e);
             }
+            if (conn.getURI() != null) {
+                SERVER_META_DATA.put(conn.getURI(), protocolResponse);
+            }
 
             final ObjectInput objectIn;
             try {
@@ -323,7 +339,8 @@ public class Client {
             /* Read response */
             /*----------------------------------*/
             try {
-                res.setMetaData(protocolResponse);
+                // the server writes the response with the protocol of the request
+                res.setMetaData(protocolRequest.isAtLeast(protocolResponse.getMajor(), protocolResponse.getMinor()) ? protocolResponse : protocolRequest);
                 res.readExternal(objectIn);
             } catch (final ClassNotFoundException e) {
                 throw new RemoteException("Cannot read the response from the server.  The class for an object being returned is not located in this system:", e);
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Writes strings and boxed primitives as a tag and their raw data instead of going
+ * through the object stream and the class descriptors of the boxed types.
+ *
+ * Only immutable values are written this way since they can't be shared with another
+ * parameter or a field of one. Anything else (arrays, collections, DTOs...) is written with
+ * writeObject so it keeps the references of the object stream, the usual serialization
+ * semantic and class filtering.
+ *
+ * Used by the 4.7 protocol for the method parameters and results.
+ */
+final class CompactObjects {
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int SHORT = 7;
+    private static final int BYTE = 8;
+    private static final int CHARACTER = 9;
+    private static final int OBJECT = 10;
+
+    // writeUTF is limited to 65535 bytes, a char takes at most 3 of them
+    private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+    private CompactObjects() {
+        // no-op
+    }
+
+    public static void write(final ObjectOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+
+        // exact types only, a subclass must keep its own serialization
+        final Class<?> type = value.getClass();
+        if (type == String.class && ((String) value).length() <= MAX_UTF_LENGTH) {
+            out.write(STRING);
+            out.writeUTF((String) value);
+        } else if (type == Integer.class) {
+            out.write(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (type == Long.class) {
+            out.write(LONG);
+            out.writeLong((Long) value);
+        } else if (type == Boolean.class) {
+            out.write(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (type == Double.class) {
+            out.write(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (type == Float.class) {
+            out.write(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (type == Short.class) {
+            out.write(SHORT);
+            out.writeShort((Short) value);
+        } else if (type == Byte.class) {
+            out.write(BYTE);
+            out.writeByte((Byte) value);
+        } else if (type == Character.class) {
+            out.write(CHARACTER);
+            out.writeChar((Character) value);
+        } else {
+            out.write(OBJECT);
+            out.writeObject(value);
+        }
+    }
+
+    public static Object read(final ObjectInput in) throws IOException, ClassNotFoundException {
+        final int type = in.read();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case CHARACTER:
+                return in.readChar();
+            case OBJECT:
+                return in.readObject();
+            default:
+                throw new IOException("Unknown compact data type: " + type);
+        }
+    }
+}
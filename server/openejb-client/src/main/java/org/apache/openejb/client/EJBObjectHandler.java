@@ -300,6 +300,7 @@ public abstract class EJBObjectHandler extends EJBInvocationHandler {
     private Object _handleBusinessMethodResponse(final EJBResponse res) throws Throwable {
         switch (res.getResponseCode()) {
             case ResponseCodes.EJB_ERROR:
+                LookupCache.get().invalidate(ejb.getDeploymentID()); // undeployed or redeployed, look it up again
                 throw new SystemError((ThrowableArtifact) getResult(res));
             case ResponseCodes.EJB_SYS_EXCEPTION:
                 throw new SystemException((ThrowableArtifact) getResult(res));
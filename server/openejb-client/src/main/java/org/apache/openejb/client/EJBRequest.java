@@ -556,11 +556,19 @@ public class EJBRequest implements ClusterableRequest {
                     }
                     out.write(OBJECT);
                     out.writeObject(clazz);
-                    out.writeObject(obj);
+                    if (isCompact()) {
+                        CompactObjects.write(out, obj);
+                    } else {
+                        out.writeObject(obj);
+                    }
                 }
             }
         }
 
+        private boolean isCompact() {
+            return null == metaData || metaData.isAtLeast(4, 7);
+        }
+
         static final Class[] noArgsC = new Class[0];
         static final Object[] noArgsO = new Object[0];
 
@@ -628,7 +636,7 @@ public class EJBRequest implements ClusterableRequest {
 
                     case OBJECT:
                         clazz = (Class) in.readObject();
-                        final Object read = in.readObject();
+                        final Object read = isCompact() ? CompactObjects.read(in) : in.readObject();
                         if (InstanceOf.isStub(read)) {
                             obj = Corbas.connect(read);
                         } else {
@@ -146,7 +146,11 @@ public class EJBResponse implements ClusterableResponse {
 
         responseCode = in.readByte();
 
-        result = in.readObject();
+        if (null == metaData || metaData.isAtLeast(4, 7)) {
+            result = CompactObjects.read(in);
+        } else {
+            result = in.readObject();
+        }
 
         if (version >= 2) {
 
@@ -186,7 +190,11 @@ public class EJBResponse implements ClusterableResponse {
         }
 
         start(Time.SERIALIZATION);
-        out.writeObject(result);
+        if (null == metaData || metaData.isAtLeast(4, 7)) {
+            CompactObjects.write(out, result);
+        } else {
+            out.writeObject(result);
+        }
         stop(Time.SERIALIZATION);
         stop(Time.TOTAL);
 
@@ -82,6 +82,8 @@ public class JNDIContext implements InitialContextFactory, Context {
     private Hashtable env;
     private String moduleId;
     private ClientInstance clientIdentity;
+    private long lookupCacheTtl;
+    private int lookupCacheSize;
 
     private static final ThreadPoolExecutor GLOBAL_CLIENT_POOL = newExecutor(10, null);
 
@@ -227,6 +229,8 @@ public class JNDIContext implements InitialContextFactory, Context {
         this.moduleId = that.moduleId;
         this.env = (Hashtable) that.env.clone();
         this.clientIdentity = that.clientIdentity;
+        this.lookupCacheTtl = that.lookupCacheTtl;
+        this.lookupCacheSize = that.lookupCacheSize;
     }
 
     private JNDIResponse request(final JNDIRequest req) throws Exception {
@@ -306,9 +310,72 @@ public class JNDIContext implements InitialContextFactory, Context {
         blockingQueue = new LinkedBlockingQueue<Runnable>((queue < 2 ? 2 : queue));
         threads = Integer.parseInt(getProperty(env, "openejb.client.invoker.threads", "-1"));
 
+        lookupCacheTtl = Long.parseLong(getProperty(env, LookupCache.TTL, "0"));
+        lookupCacheSize = Math.max(1, Integer.parseInt(getProperty(env, LookupCache.SIZE, "1000")));
+        final String preload = getProperty(env, LookupCache.PRELOAD, null);
+        if (lookupCacheTtl > 0 && preload != null) {
+            preload(preload.split(" *, *"));
+        }
+
         return this;
     }
 
+    /**
+     * Looks up the names in a single request to fill the lookup cache, failures are ignored
+     * (the names are then looked up one by one when used).
+     */
+    private void preload(final String[] names) {
+        final StringBuilder request = new StringBuilder();
+        final List<String> absoluteNames = new ArrayList<String>(names.length);
+        for (final String name : names) {
+            if (name.trim().isEmpty()) {
+                continue;
+            }
+            final String absoluteName = absoluteName(name.trim());
+            absoluteNames.add(absoluteName);
+            if (request.length() > 0) {
+                request.append('\n');
+            }
+            request.append(absoluteName);
+        }
+        if (absoluteNames.isEmpty()) {
+            return;
+        }
+
+        final JNDIRequest req = new JNDIRequest(RequestMethodCode.JNDI_LOOKUP_ALL, request.toString());
+        req.setModuleId(moduleId);
+        try {
+            final JNDIResponse res = request(req);
+            if (res.getResponseCode() != ResponseCodes.JNDI_LOOKUP_RESULTS) {
+                LOGGER.fine("Can't preload " + absoluteNames + ": " + res);
+                return;
+            }
+
+            final JNDIResponse[] results = (JNDIResponse[]) res.getResult();
+            for (int i = 0; i < results.length && i < absoluteNames.size(); i++) {
+                if (results[i].getResponseCode() == ResponseCodes.JNDI_BUSINESS_OBJECT && LookupCache.isCacheable(results[i].getResult())) {
+                    LookupCache.get().put(server.getLocation(), moduleId, absoluteNames.get(i), (EJBMetaDataImpl) results[i].getResult(),
+                        clusterVersion(), lookupCacheTtl, lookupCacheSize);
+                }
+            }
+        } catch (final Exception e) {
+            LOGGER.log(Level.FINE, "Can't preload " + absoluteNames, e);
+        }
+    }
+
+    private long clusterVersion() {
+        return Client.getContext(server).getClusterMetaData().getVersion();
+    }
+
+    private String absoluteName(final String name) {
+        if (name.startsWith("java:")) {
+            return name.replaceFirst("^java:", "");
+        } else if (!name.startsWith("/")) {
+            return tail + name;
+        }
+        return name;
+    }
+
     private Hashtable decipher(final Hashtable clone) {
         Decipher decipher = Decipher.class.cast(clone.get(Decipher.class.getName()));
         if (decipher == null) {
@@ -417,11 +484,8 @@ public class JNDIContext implements InitialContextFactory, Context {
             throw new InvalidNameException("The name cannot be null");
         } else if (name.equals("")) {
             return new JNDIContext(this);
-        } else if (name.startsWith("java:")) {
-            name = name.replaceFirst("^java:", "");
-        } else if (!name.startsWith("/")) {
-            name = tail + name;
         }
+        name = absoluteName(name);
 
         final String prop = name.replaceFirst("comp/env/", "");
         String value = System.getProperty(prop);
@@ -433,6 +497,13 @@ public class JNDIContext implements InitialContextFactory, Context {
             return getDefaultOrb();
         }
 
+        if (lookupCacheTtl > 0) {
+            final EJBMetaDataImpl cached = LookupCache.get().get(server.getLocation(), moduleId, name, clusterVersion());
+            if (cached != null) {
+                return createBusinessObject(cached);
+            }
+        }
+
         final JNDIRequest req = new JNDIRequest();
         req.setRequestMethod(RequestMethodCode.JNDI_LOOKUP);
         req.setRequestString(name);
@@ -458,6 +529,10 @@ public class JNDIContext implements InitialContextFactory, Context {
                 return createEJBHomeProxy((EJBMetaDataImpl) res.getResult());
 
             case ResponseCodes.JNDI_BUSINESS_OBJECT:
+                if (lookupCacheTtl > 0 && LookupCache.isCacheable(res.getResult())) {
+                    LookupCache.get().put(server.getLocation(), moduleId, name, (EJBMetaDataImpl) res.getResult(),
+                        clusterVersion(), lookupCacheTtl, lookupCacheSize);
+                }
                 return createBusinessObject(res.getResult());
 
             case ResponseCodes.JNDI_OK:
@@ -497,6 +572,9 @@ public class JNDIContext implements InitialContextFactory, Context {
                 }
 
             case ResponseCodes.JNDI_NOT_FOUND:
+                if (lookupCacheTtl > 0) {
+                    LookupCache.get().remove(server.getLocation(), moduleId, name);
+                }
                 throw new NameNotFoundException(name + " does not exist in the system.  Check that the app was successfully deployed.");
 
             case ResponseCodes.JNDI_NAMING_EXCEPTION:
@@ -20,6 +20,7 @@ import javax.naming.Reference;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
 
 public class JNDIResponse implements ClusterableResponse {
 
@@ -131,6 +132,15 @@ public class JNDIResponse implements ClusterableResponse {
             case ResponseCodes.JNDI_REFERENCE:
                 result = in.readObject();
                 break;
+            case ResponseCodes.JNDI_LOOKUP_RESULTS:
+                final JNDIResponse[] results = new JNDIResponse[in.readInt()];
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = new JNDIResponse();
+                    results[i].setMetaData(metaData);
+                    results[i].readExternal(in);
+                }
+                result = results;
+                break;
         }
     }
 
@@ -189,6 +199,14 @@ public class JNDIResponse implements ClusterableResponse {
                 final Reference ref = (Reference) result;
                 out.writeObject(ref);
                 break;
+            case ResponseCodes.JNDI_LOOKUP_RESULTS:
+                final JNDIResponse[] results = (JNDIResponse[]) result;
+                out.writeInt(results.length);
+                for (final JNDIResponse response : results) {
+                    response.setMetaData(metaData);
+                    response.writeExternal(out);
+                }
+                break;
         }
     }
 
@@ -229,6 +247,10 @@ public class JNDIResponse implements ClusterableResponse {
             case ResponseCodes.JNDI_INJECTIONS:
                 sb.append("JNDI_INJECTIONS:");
                 break;
+            case ResponseCodes.JNDI_LOOKUP_RESULTS:
+                sb.append("JNDI_LOOKUP_RESULTS:");
+                sb.append(Arrays.toString((Object[]) this.getResult()));
+                return sb.toString();
         }
         sb.append(this.getResult());
         return sb.toString();
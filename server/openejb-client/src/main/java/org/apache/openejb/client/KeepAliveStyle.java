@@ -22,5 +22,6 @@ package org.apache.openejb.client;
 public enum KeepAliveStyle {
     PING,
     PING_PONG,
-    PING_PING
+    PING_PING,
+    MULTIPLEX
 }
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side cache of the metadata of stateless and singleton business objects looked up remotely,
+ * shared by the JNDIContext instances of the JVM.
+ *
+ * An entry is used until its TTL expires, the cluster metadata version changes, the name is not found anymore
+ * or an invocation of the bean fails with an EJB_ERROR (undeployed or redeployed bean).
+ * Stateful beans are never cached since each lookup creates a new session.
+ */
+final class LookupCache {
+    static final String TTL = "openejb.client.lookup.cache.ttl";
+    static final String SIZE = "openejb.client.lookup.cache.size";
+    static final String PRELOAD = "openejb.client.lookup.preload";
+
+    private static final LookupCache INSTANCE = new LookupCache();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    static LookupCache get() {
+        return INSTANCE;
+    }
+
+    static boolean isCacheable(final Object result) {
+        if (!EJBMetaDataImpl.class.isInstance(result)) {
+            return false;
+        }
+        final EJBMetaDataImpl ejb = EJBMetaDataImpl.class.cast(result);
+        return ejb.getPrimaryKey() == null && (ejb.isStatelessSession() || ejb.isSingletonSession());
+    }
+
+    synchronized EJBMetaDataImpl get(final URI location, final String moduleId, final String name, final long clusterVersion) {
+        final String key = key(location, moduleId, name);
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.clusterVersion != clusterVersion || entry.expiry - System.nanoTime() < 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.ejb;
+    }
+
+    synchronized void put(final URI location, final String moduleId, final String name, final EJBMetaDataImpl ejb,
+                          final long clusterVersion, final long ttl, final int maxSize) {
+        entries.put(key(location, moduleId, name), new Entry(ejb, clusterVersion, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl)));
+        final Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxSize && it.hasNext()) { // access order so least recently used first
+            it.next();
+            it.remove();
+        }
+    }
+
+    synchronized void remove(final URI location, final String moduleId, final String name) {
+        entries.remove(key(location, moduleId, name));
+    }
+
+    synchronized void invalidate(final String deploymentId) {
+        if (deploymentId == null) {
+            return;
+        }
+        final Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (deploymentId.equals(it.next().ejb.getDeploymentID())) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private static String key(final URI location, final String moduleId, final String name) {
+        return location + "|" + moduleId + "|" + name;
+    }
+
+    private static final class Entry {
+        private final EJBMetaDataImpl ejb;
+        private final long clusterVersion;
+        private final long expiry;
+
+        private Entry(final EJBMetaDataImpl ejb, final long clusterVersion, final long expiry) {
+            this.ejb = ejb;
+            this.clusterVersion = clusterVersion;
+            this.expiry = expiry;
+        }
+    }
+}
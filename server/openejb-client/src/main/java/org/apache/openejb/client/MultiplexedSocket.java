@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A socket carrying many requests at the same time.
+ *
+ * Each request is written as a frame tagged with an id, a single reader thread
+ * reads the response frames and hands each one to the call waiting for that id,
+ * whatever the order the server completes them in.
+ *
+ * Frame = request id (int) + length (int) + the bytes of a plain ejbd request/response
+ */
+class MultiplexedSocket implements Runnable {
+
+    private final SocketConnectionFactory.SocketConnection connection;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final long timeout;
+    private final int maxFrameSize;
+    private final Map<Integer, Call> calls = new ConcurrentHashMap<Integer, Call>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile boolean sent;
+    private volatile boolean answered;
+
+    MultiplexedSocket(final SocketConnectionFactory.SocketConnection connection, final long timeout, final int maxFrameSize) throws IOException {
+        this.connection = connection;
+        this.in = new DataInputStream(connection.getInputStream());
+        this.out = new DataOutputStream(connection.getOutputStream());
+        this.timeout = timeout;
+        this.maxFrameSize = maxFrameSize;
+
+        final Thread reader = new Thread(this, "OpenEJB.Client.Multiplexed " + connection.getURI());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return true once the server sent a response
+     */
+    public boolean hasAnswered() {
+        return this.answered;
+    }
+
+    /**
+     * @return true if requests were sent but none answered, as a server accepting the handshake but not the calls
+     */
+    public boolean isUnanswered() {
+        return this.sent && !this.answered;
+    }
+
+    public Connection newConnection() {
+        return new Call(this.ids.incrementAndGet());
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!this.closed) {
+                final int id = this.in.readInt();
+                final int length = this.in.readInt();
+                if (length < 0 || length > this.maxFrameSize) {
+                    throw new IOException("Invalid multiplexed response length " + length + " (max " + this.maxFrameSize + ")");
+                }
+                final byte[] response = new byte[length];
+                this.in.readFully(response);
+                if (!this.answered) {
+                    this.answered = true;
+                }
+
+                final Call call = this.calls.remove(id);
+                if (call != null) { // else the caller gave up waiting
+                    call.response = response;
+                    call.done.countDown();
+                }
+            }
+        } catch (final IOException e) {
+            this.close(e);
+        }
+    }
+
+    private void send(final int id, final byte[] request) throws IOException {
+        try {
+            synchronized (this.out) {
+                this.sent = true;
+                this.out.writeInt(id);
+                this.out.writeInt(request.length);
+                this.out.write(request);
+                this.out.flush();
+            }
+        } catch (final IOException e) {
+            this.close(e);
+            throw e;
+        }
+    }
+
+    private void close(final IOException cause) {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.connection.discard();
+
+        for (final Call call : this.calls.values()) {
+            call.failure = cause;
+            call.done.countDown();
+        }
+        this.calls.clear();
+    }
+
+    private class Call implements Connection {
+
+        private final int id;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private ByteArrayOutputStream request;
+        private volatile byte[] response;
+        private volatile IOException failure;
+
+        private Call(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        public URI getURI() {
+            return MultiplexedSocket.this.connection.getURI();
+        }
+
+        @Override
+        public void discard() {
+            MultiplexedSocket.this.calls.remove(this.id);
+        }
+
+        @Override
+        public void close() throws IOException {
+            MultiplexedSocket.this.calls.remove(this.id);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (this.response == null) {
+                this.await();
+            }
+            return new ByteArrayInputStream(this.response);
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if (this.request == null) {
+                this.request = new ByteArrayOutputStream();
+            }
+            return this.request;
+        }
+
+        private void await() throws IOException {
+            // registered before checking closed, close() fails every call it finds
+            MultiplexedSocket.this.calls.put(this.id, this);
+            if (MultiplexedSocket.this.closed) {
+                MultiplexedSocket.this.calls.remove(this.id);
+                throw new IOException("Multiplexed connection to " + this.getURI() + " is closed");
+            }
+
+            MultiplexedSocket.this.send(this.id, this.request.toByteArray());
+
+            try {
+                if (MultiplexedSocket.this.timeout <= 0) { // as Socket.setSoTimeout(0), no timeout
+                    this.done.await();
+                } else if (!this.done.await(MultiplexedSocket.this.timeout, TimeUnit.MILLISECONDS)) {
+                    MultiplexedSocket.this.calls.remove(this.id);
+                    throw new SocketTimeoutException("No response for request " + this.id + " after " + MultiplexedSocket.this.timeout + "ms");
+                }
+            } catch (final InterruptedException e) {
+                Thread.interrupted();
+                MultiplexedSocket.this.calls.remove(this.id);
+                throw new IOException("Interrupted waiting for the response of request " + this.id, e);
+            }
+
+            if (this.failure != null) {
+                throw new IOException("Multiplexed connection to " + this.getURI() + " failed", this.failure);
+            }
+        }
+    }
+}
@@ -43,6 +43,7 @@ public enum RequestMethodCode {
     JNDI_LOOKUP(27),
     JNDI_LIST(28),
     JNDI_LIST_BINDINGS(29),
+    JNDI_LOOKUP_ALL(30),
 
     FUTURE_CANCEL(35);
 
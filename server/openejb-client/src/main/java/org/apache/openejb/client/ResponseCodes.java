@@ -50,5 +50,6 @@ public class ResponseCodes {
     public static final int JNDI_WEBSERVICE = 25;
     public static final int JNDI_REFERENCE = 26;
     // LOGOUT codes: 27-28
+    public static final int JNDI_LOOKUP_RESULTS = 29;
 }
 
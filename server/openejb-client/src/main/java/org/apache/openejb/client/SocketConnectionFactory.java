@@ -18,6 +18,7 @@ package org.apache.openejb.client;
 
 import org.apache.openejb.client.event.ConnectionOpened;
 import org.apache.openejb.client.event.ConnectionPoolCreated;
+import org.apache.openejb.client.event.ConnectionPoolMultiplexingDisabled;
 import org.apache.openejb.client.event.ConnectionPoolTimeout;
 
 import javax.net.ssl.SSLSocket;
@@ -53,15 +54,20 @@ public class SocketConnectionFactory implements ConnectionFactory {
     public static final String PROPERTY_POOL_SIZE = "openejb.client.connection.pool.size";
     private static final String PROPERTY_POOL_SIZE2 = "openejb.client.connectionpool.size";
     public static final String PROPERTY_KEEPALIVE = "openejb.client.keepalive";
+    public static final String PROPERTY_MULTIPLEX = "openejb.client.connection.multiplex";
+    public static final String PROPERTY_MULTIPLEX_MAX_FRAME = "openejb.client.connection.multiplex.max-frame-size";
     public static final String ENABLED_CIPHER_SUITES = "openejb.client.enabledCipherSuites";
 
     private static final Map<URI, Pool> connections = new ConcurrentHashMap<URI, Pool>();
+    private static final Map<URI, MultiplexedSocket> multiplexed = new ConcurrentHashMap<URI, MultiplexedSocket>();
     private int size = 5;
     private long timeoutPool = 1000;
     private int timeoutConnect = 1000;
     private int timeoutRead = 14400000;
     private int timeoutLinger;
     private String[] enabledCipherSuites;
+    private boolean multiplex;
+    private int maxFrameSize = 4 * 1024 * 1024;
 
     public SocketConnectionFactory() {
 
@@ -71,6 +77,8 @@ public class SocketConnectionFactory implements ConnectionFactory {
         this.timeoutLinger = this.getTimeoutLinger();
         this.timeoutRead = this.getTimeoutRead();
         this.enabledCipherSuites = this.getEnabledCipherSuites();
+        this.multiplex = this.isMultiplex();
+        this.maxFrameSize = this.getMaxFrameSize();
 
         try {
             String property = System.getProperty(PROPERTY_KEEPALIVE);
@@ -150,11 +158,27 @@ public class SocketConnectionFactory implements ConnectionFactory {
         }
     }
 
+    private boolean isMultiplex() {
+        return Boolean.parseBoolean(System.getProperty(SocketConnectionFactory.PROPERTY_MULTIPLEX, "false"));
+    }
+
+    private int getMaxFrameSize() {
+        final Properties p = System.getProperties();
+        return getInt(p, SocketConnectionFactory.PROPERTY_MULTIPLEX_MAX_FRAME, this.maxFrameSize);
+    }
+
     @Override
     public Connection getConnection(final URI uri) throws java.io.IOException {
 
         final Pool pool = this.getPool(uri);
 
+        if (this.multiplex && pool.canMultiplex()) {
+            final MultiplexedSocket socket = this.getMultiplexedSocket(uri, pool);
+            if (socket != null) {
+                return socket.newConnection();
+            }
+        }
+
         SocketConnection conn = pool.get();
         if (conn == null) {
             try {
@@ -209,6 +233,71 @@ public class SocketConnectionFactory implements ConnectionFactory {
         return conn;
     }
 
+    private MultiplexedSocket getMultiplexedSocket(final URI uri, final Pool pool) throws IOException {
+        MultiplexedSocket socket = multiplexed.get(uri);
+        if (socket != null && !socket.isClosed()) {
+            if (pool.multiplexFailures != 0 && socket.hasAnswered()) {
+                pool.multiplexFailures = 0;
+            }
+            return socket;
+        }
+
+        synchronized (pool) {
+            socket = multiplexed.get(uri);
+            if (socket != null && !socket.isClosed()) {
+                return socket;
+            }
+            if (socket != null) {
+                multiplexed.remove(uri, socket);
+                if (socket.isUnanswered()) { // accepted the handshake but not the calls
+                    pool.multiplexFailed();
+                    return null;
+                }
+            }
+
+            // the multiplexed socket keeps one of the pool connections for itself
+            SocketConnection conn = pool.get();
+            if (conn == null) {
+                try {
+                    conn = new SocketConnection(uri, pool);
+                    conn.open(uri);
+                } catch (IOException e) {
+
+                    conn.cleanUp();
+
+                    pool.put(null);
+                    throw e;
+                }
+            }
+
+            // an older server doesn't know the MULTIPLEX style and hangs up, newer ones answer with their protocol
+            final ProtocolMetaData server = new ProtocolMetaData();
+            try {
+                final OutputStream out = conn.getOutputStream();
+                out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+                new ProtocolMetaData().writeExternal(out);
+
+                server.readExternal(conn.getInputStream());
+            } catch (IOException e) {
+                // may be an older server hanging up or a transient failure, try again later
+                pool.multiplexFailed();
+                conn.discard();
+                return null;
+            }
+
+            if (!server.isAtLeast(4, 7)) {
+                pool.classic = true;
+                conn.discard();
+                return null;
+            }
+
+            socket = new MultiplexedSocket(conn, this.timeoutRead, this.maxFrameSize);
+            multiplexed.put(uri, socket);
+            pool.multiplexed();
+            return socket;
+        }
+    }
+
     private Pool getPool(final URI uri) {
         Pool pool = connections.get(uri);
         if (pool == null) {
@@ -439,6 +528,10 @@ public class SocketConnectionFactory implements ConnectionFactory {
 
     private static class Pool {
 
+        private static final long MIN_MULTIPLEX_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+        private static final long MAX_MULTIPLEX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+        private static final int MAX_MULTIPLEX_FAILURES = 5;
+
         private final Semaphore semaphore;
         private final Stack<SocketConnection> pool;
         private final long timeout;
@@ -446,6 +539,16 @@ public class SocketConnectionFactory implements ConnectionFactory {
         private final int size;
         private final URI uri;
 
+        // set once the server answered with a protocol not supporting multiplexing
+        private volatile boolean classic;
+
+        // the multiplexing handshake failed, not tried again before that time
+        private volatile long multiplexRetry;
+        private volatile long multiplexBackoff = MIN_MULTIPLEX_BACKOFF;
+
+        // consecutive failures, the socket pool is used for good past MAX_MULTIPLEX_FAILURES
+        private volatile int multiplexFailures;
+
         private Pool(final URI uri, final int size, final long timeout) {
             this.uri = uri;
             this.size = size;
@@ -461,6 +564,25 @@ public class SocketConnectionFactory implements ConnectionFactory {
             Client.fireEvent(new ConnectionPoolCreated(uri, size, timeout, this.timeUnit));
         }
 
+        private boolean canMultiplex() {
+            return !this.classic && System.currentTimeMillis() >= this.multiplexRetry;
+        }
+
+        private void multiplexFailed() {
+            if (++this.multiplexFailures >= MAX_MULTIPLEX_FAILURES) {
+                this.classic = true;
+                Client.fireEvent(new ConnectionPoolMultiplexingDisabled(this.uri, this.multiplexFailures));
+                return;
+            }
+            this.multiplexRetry = System.currentTimeMillis() + this.multiplexBackoff;
+            this.multiplexBackoff = Math.min(this.multiplexBackoff * 2, MAX_MULTIPLEX_BACKOFF);
+        }
+
+        private void multiplexed() {
+            this.multiplexRetry = 0;
+            this.multiplexBackoff = MIN_MULTIPLEX_BACKOFF;
+        }
+
         public SocketConnection get() throws IOException {
             try {
                 if (this.semaphore.tryAcquire(this.timeout, this.timeUnit)) {
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client.event;
+
+import java.net.URI;
+
+/**
+ * The multiplexed socket of a server failed too many times in a row, its calls use the socket pool.
+ */
+@Log(Log.Level.WARNING)
+public class ConnectionPoolMultiplexingDisabled {
+
+    private final URI uri;
+    private final int failures;
+
+    public ConnectionPoolMultiplexingDisabled(final URI uri, final int failures) {
+        this.uri = uri;
+        this.failures = failures;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolMultiplexingDisabled{" +
+            "uri=" + uri +
+            ", failures=" + failures +
+            '}';
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+public class CompactObjectsTest extends TestCase {
+
+    public void testSimpleValues() throws Exception {
+        for (final Object value : new Object[]{null, "hola mundo", 1, 2L, true, 3.0d, 4.0f, (short) 5, (byte) 6, 'c', new BigDecimal("7.5")}) {
+            assertEquals(value, roundTrip(value)[0]);
+        }
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3})[0]));
+    }
+
+    public void testOtherTypesKeepTheirClass() throws Exception {
+        final LinkedList<String> list = new LinkedList<String>(Arrays.asList("a", "b"));
+        final Object read = roundTrip(list)[0];
+        assertEquals(LinkedList.class, read.getClass());
+        assertEquals(list, read);
+
+        final char[] chars = new char[70000];
+        Arrays.fill(chars, '\u20ac');
+        final String big = new String(chars);
+        assertEquals(big, roundTrip(big)[0]);
+    }
+
+    public void testSharedValuesStayShared() throws Exception {
+        final ArrayList<Object> list = new ArrayList<Object>(Arrays.<Object>asList("a", 1));
+        final byte[] bytes = {1, 2, 3};
+        final Map<String, Object> holder = new HashMap<String, Object>();
+        holder.put("list", list);
+        holder.put("bytes", bytes);
+
+        final Object[] read = roundTrip(list, bytes, holder, list, bytes);
+        assertEquals(list, read[0]);
+        assertSame(read[0], read[3]);
+        assertSame(read[1], read[4]);
+
+        final Map<?, ?> readHolder = (Map<?, ?>) read[2];
+        assertSame(read[0], readHolder.get("list"));
+        assertSame(read[1], readHolder.get("bytes"));
+    }
+
+    public void testUnknownTypeIsRejected() throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        out.write(42);
+        out.writeInt(Integer.MAX_VALUE);
+        out.close();
+
+        try {
+            CompactObjects.read(new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())));
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    private static Object[] roundTrip(final Object... values) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        for (final Object value : values) {
+            CompactObjects.write(out, value);
+        }
+        out.close();
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        final Object[] read = new Object[values.length];
+        for (int i = 0; i < read.length; i++) {
+            read[i] = CompactObjects.read(in);
+        }
+        return read;
+    }
+}
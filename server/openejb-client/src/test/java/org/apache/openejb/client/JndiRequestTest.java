@@ -53,6 +53,23 @@ public class JndiRequestTest extends TestCase {
         assertEquals("JNDI Name not the same", expected.getRequestString(), actual.getRequestString());
     }
 
+    public void testExternalizeLookupResults() throws Exception {
+        final JNDIResponse expected = new JNDIResponse(ResponseCodes.JNDI_LOOKUP_RESULTS, new JNDIResponse[]{
+            new JNDIResponse(ResponseCodes.JNDI_OK, "value"),
+            new JNDIResponse(ResponseCodes.JNDI_NOT_FOUND, null)
+        });
+        final JNDIResponse actual = new JNDIResponse();
+
+        externalize(expected, actual);
+
+        assertEquals(ResponseCodes.JNDI_LOOKUP_RESULTS, actual.getResponseCode());
+        final JNDIResponse[] results = (JNDIResponse[]) actual.getResult();
+        assertEquals(2, results.length);
+        assertEquals(ResponseCodes.JNDI_OK, results[0].getResponseCode());
+        assertEquals("value", results[0].getResult());
+        assertEquals(ResponseCodes.JNDI_NOT_FOUND, results[1].getResponseCode());
+    }
+
     private void externalize(final Externalizable original, final Externalizable copy) throws IOException, ClassNotFoundException {
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
         final ObjectOutputStream out = new ObjectOutputStream(baos);
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LookupCacheTest {
+    private static final URI LOCATION = URI.create("ejbd://localhost:4201");
+
+    private final LookupCache cache = LookupCache.get();
+
+    @After
+    public void clear() {
+        cache.clear();
+    }
+
+    @Test
+    public void cacheable() {
+        assertTrue(LookupCache.isCacheable(ejb("STATELESS", "a")));
+        assertTrue(LookupCache.isCacheable(ejb("SINGLETON", "a")));
+        assertFalse(LookupCache.isCacheable(ejb("STATEFUL", "a")));
+        assertFalse(LookupCache.isCacheable("not an ejb"));
+    }
+
+    @Test
+    public void expiryAndVersion() throws InterruptedException {
+        final EJBMetaDataImpl ejb = ejb("STATELESS", "a");
+        cache.put(LOCATION, null, "/a", ejb, 1, 50, 10);
+        assertSame(ejb, cache.get(LOCATION, null, "/a", 1));
+        assertNull(cache.get(LOCATION, "other", "/a", 1));
+
+        assertNull(cache.get(LOCATION, null, "/a", 2)); // cluster changed
+        assertEquals(0, cache.size());
+
+        cache.put(LOCATION, null, "/a", ejb, 1, 50, 10);
+        Thread.sleep(100);
+        assertNull(cache.get(LOCATION, null, "/a", 1));
+    }
+
+    @Test
+    public void bounded() {
+        cache.put(LOCATION, null, "/a", ejb("STATELESS", "a"), 0, 60000, 2);
+        cache.put(LOCATION, null, "/b", ejb("STATELESS", "b"), 0, 60000, 2);
+        cache.get(LOCATION, null, "/a", 0); // b is now the least recently used
+        cache.put(LOCATION, null, "/c", ejb("STATELESS", "c"), 0, 60000, 2);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(LOCATION, null, "/b", 0));
+        assertEquals("a", cache.get(LOCATION, null, "/a", 0).getDeploymentID());
+    }
+
+    @Test
+    public void invalidateDeployment() {
+        cache.put(LOCATION, null, "/a", ejb("STATELESS", "a"), 0, 60000, 10);
+        cache.put(LOCATION, null, "/a2", ejb("STATELESS", "a"), 0, 60000, 10);
+        cache.put(LOCATION, null, "/b", ejb("STATELESS", "b"), 0, 60000, 10);
+
+        cache.invalidate("a");
+        assertEquals(1, cache.size());
+        assertEquals("b", cache.get(LOCATION, null, "/b", 0).getDeploymentID());
+    }
+
+    private static EJBMetaDataImpl ejb(final String type, final String id) {
+        return new EJBMetaDataImpl(null, null, null, type, id, InterfaceType.BUSINESS_REMOTE, null, null);
+    }
+}
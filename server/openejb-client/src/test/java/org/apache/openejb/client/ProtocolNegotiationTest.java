@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProtocolNegotiationTest extends TestCase {
+
+    public void testNewerEncodingOnceTheServerIsKnown() throws Exception {
+        final ProtocolServer server = new ProtocolServer("4.7");
+        ConnectionManager.registerFactory("protocol47", server);
+
+        final URI uri = new URI("protocol47://localhost:4201");
+        assertEquals("hello", call(uri));
+        assertEquals("hello", call(uri));
+        assertEquals("[4.6, 4.7]", server.requests.toString());
+    }
+
+    public void testOlderServerKeepsTheBaseEncoding() throws Exception {
+        final ProtocolServer server = new ProtocolServer("4.6");
+        ConnectionManager.registerFactory("protocol46", server);
+
+        final URI uri = new URI("protocol46://localhost:4201");
+        assertEquals("hello", call(uri));
+        assertEquals("hello", call(uri));
+        assertEquals("[4.6, 4.6]", server.requests.toString());
+    }
+
+    private static Object call(final URI uri) throws Exception {
+        final EJBResponse response = new EJBResponse();
+        new Client().processRequest(new JNDIRequest(RequestMethodCode.JNDI_LOOKUP, "hello"), response, new ServerMetaData(uri));
+        return response.getResult();
+    }
+
+    /**
+     * Answers with its protocol as a server does, the response being written with the protocol of the request.
+     */
+    public static class ProtocolServer implements ConnectionFactory {
+        private final String version;
+        private final List<String> requests = new ArrayList<>();
+
+        public ProtocolServer(final String version) {
+            this.version = version;
+        }
+
+        @Override
+        public Connection getConnection(final URI uri) throws IOException {
+            final ByteArrayOutputStream request = new ByteArrayOutputStream();
+            return new Connection() {
+                @Override
+                public URI getURI() {
+                    return uri;
+                }
+
+                @Override
+                public void discard() {
+                    // no-op
+                }
+
+                @Override
+                public void close() {
+                    // no-op
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    final ProtocolMetaData client = new ProtocolMetaData();
+                    client.readExternal(new ByteArrayInputStream(request.toByteArray()));
+                    requests.add(client.getVersion());
+
+                    final ByteArrayOutputStream response = new ByteArrayOutputStream();
+                    new ProtocolMetaData(version).writeExternal(response);
+                    try (final ObjectOutputStream out = new ObjectOutputStream(response)) {
+                        final ClusterResponse cluster = new ClusterResponse();
+                        cluster.setCurrent();
+                        cluster.setMetaData(client);
+                        cluster.writeExternal(out);
+
+                        final EJBResponse ejb = new EJBResponse();
+                        ejb.setResponse(EJBResponse.VERSION, ResponseCodes.EJB_OK, "hello");
+                        ejb.setMetaData(client);
+                        ejb.writeExternal(out);
+                    }
+                    return new ByteArrayInputStream(response.toByteArray());
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return request;
+                }
+            };
+        }
+    }
+}
@@ -136,6 +136,7 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
@@ -155,6 +156,9 @@ public class CxfRsHttpListener implements RsHttpListener {
     public static final String STATIC_RESOURCE_KEY = CXF_JAXRS_PREFIX + "static-resources-list";
     public static final String STATIC_SUB_RESOURCE_RESOLUTION_KEY = "staticSubresourceResolution";
     public static final String RESOURCE_COMPARATOR_KEY = CXF_JAXRS_PREFIX + "resourceComparator";
+    public static final String STATIC_CACHE_SIZE_KEY = CXF_JAXRS_PREFIX + "static-cache.size";
+    public static final String STATIC_CACHE_MAX_ENTRY_SIZE_KEY = CXF_JAXRS_PREFIX + "static-cache.max-entry-size";
+    public static final String STATIC_CACHE_GZIP_KEY = CXF_JAXRS_PREFIX + "static-cache.gzip";
 
     private static final String GLOBAL_PROVIDERS = SystemInstance.get().getProperty(PROVIDERS_KEY);
     public static final boolean TRY_STATIC_RESOURCES = "true".equalsIgnoreCase(SystemInstance.get().getProperty("openejb.jaxrs.static-first", "true"));
@@ -162,6 +166,8 @@ public class CxfRsHttpListener implements RsHttpListener {
 
     private static final Map<String, String> STATIC_CONTENT_TYPES;
     private static final String[] DEFAULT_WELCOME_FILES = new String[]{"/index.html", "/index.htm"};
+    private static final long DEFAULT_STATIC_CACHE_SIZE = 10 * 1024 * 1024;
+    private static final int DEFAULT_STATIC_CACHE_MAX_ENTRY_SIZE = 1024 * 1024;
 
     // we have proxies etc so we can't really give it to cxf properly,
     // bval impl supports it (message just uses Object instead of the real instance)
@@ -175,6 +181,7 @@ public class CxfRsHttpListener implements RsHttpListener {
     private String context = "";
     private String servlet = "";
     private final Collection<Pattern> staticResourcesList = new CopyOnWriteArrayList<>();
+    private StaticResourceCache staticResources = new StaticResourceCache(DEFAULT_STATIC_CACHE_SIZE, DEFAULT_STATIC_CACHE_MAX_ENTRY_SIZE, true);
     private final List<ObjectName> jmxNames = new ArrayList<>();
     private final Collection<CreationalContext<?>> toRelease = new LinkedHashSet<>();
     private final Collection<CdiSingletonResourceProvider> singletons = new LinkedHashSet<>();
@@ -279,6 +286,16 @@ public class CxfRsHttpListener implements RsHttpListener {
     }
 
     public InputStream findStaticContent(final HttpServletRequest request, final String[] welcomeFiles) throws ServletException {
+        for (final String path : staticPaths(request, welcomeFiles)) {
+            final InputStream is = request.getServletContext().getResourceAsStream(path);
+            if (is != null) {
+                return is;
+            }
+        }
+        return null;
+    }
+
+    private static Collection<String> staticPaths(final HttpServletRequest request, final String[] welcomeFiles) {
         String pathInfo = request.getRequestURI().substring(request.getContextPath().length());
         for (final char c : URL_SEP) {
             final int indexOf = pathInfo.indexOf(c);
@@ -290,33 +307,96 @@ public class CxfRsHttpListener implements RsHttpListener {
             if (pathInfo.endsWith("/")) {
               pathInfo = pathInfo.substring(0, pathInfo.length() - 1);
             }
+            final Collection<String> paths = new ArrayList<>(welcomeFiles.length);
             for (final String n : welcomeFiles) {
-                final InputStream is = request.getServletContext().getResourceAsStream(pathInfo + n);
-                if (is != null) {
-                    return is;
-                }
+                paths.add(pathInfo + n);
             }
-            return null; // "/" resolves to an empty string otherwise, we need to avoid it
+            return paths; // "/" resolves to an empty string otherwise, we need to avoid it
         }
-        return request.getServletContext().getResourceAsStream(pathInfo);
+        return Collections.singletonList(pathInfo);
     }
 
     public boolean serveStaticContent(final HttpServletRequest request,
                                       final HttpServletResponse response,
                                       final String pathInfo) throws ServletException {
-        final InputStream is = findStaticContent(request, DEFAULT_WELCOME_FILES);
-        if (is == null) {
+        if (!staticResources.isEnabled()) {
+            return serveUncachedStaticContent(response, pathInfo, findStaticContent(request, DEFAULT_WELCOME_FILES));
+        }
+
+        StaticResourceCache.Resource resource = null;
+        try {
+            for (final String path : staticPaths(request, DEFAULT_WELCOME_FILES)) {
+                resource = staticResources.find(request.getServletContext(), path);
+                if (resource == StaticResourceCache.UNCACHEABLE) { // exists but not as a plain file, use the plain stream
+                    return serveUncachedStaticContent(response, pathInfo, request.getServletContext().getResourceAsStream(path));
+                }
+                if (resource != null) {
+                    break;
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.debug("Can't cache static resource " + pathInfo, e);
+            return serveUncachedStaticContent(response, pathInfo, findStaticContent(request, DEFAULT_WELCOME_FILES));
+        }
+        if (resource == null) { // not a static resource, most JAX-RS calls end there so don't look it up again
             return false;
         }
+
         try {
-            final int ind = pathInfo.lastIndexOf(".");
-            if (ind != -1 && ind < pathInfo.length()) {
-                final String type = STATIC_CONTENT_TYPES.get(pathInfo.substring(ind + 1));
-                if (type != null) {
-                    response.setContentType(type);
+            setStaticContentType(response, pathInfo);
+            response.setHeader("ETag", resource.getETag());
+            if (resource.getLastModifiedHeader() != null) {
+                response.setHeader("Last-Modified", resource.getLastModifiedHeader());
+            }
+            if (resource.isNotModified(request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"))) {
+                response.setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+                return true;
+            }
+            response.setStatus(HttpURLConnection.HTTP_OK);
+
+            final byte[] gzipped = resource.getGzipped();
+            if (gzipped != null) {
+                response.setHeader("Vary", "Accept-Encoding");
+                final String acceptEncoding = request.getHeader("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    response.setHeader("Content-Length", Integer.toString(gzipped.length));
+                    final ServletOutputStream os = response.getOutputStream();
+                    os.write(gzipped);
+                    os.flush();
+                    return true;
                 }
             }
 
+            if (resource.getLength() >= 0) {
+                response.setHeader("Content-Length", Long.toString(resource.getLength()));
+            }
+            if (!resource.isLoaded() && resource.getFile() != null
+                    && Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) { // let the connector send it
+                request.setAttribute("org.apache.tomcat.sendfile.filename", resource.getFile().getAbsolutePath());
+                request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+                request.setAttribute("org.apache.tomcat.sendfile.end", resource.getLength());
+                return true;
+            }
+
+            final ServletOutputStream os = response.getOutputStream();
+            resource.write(os);
+            os.flush();
+        } catch (final IOException ex) {
+            throw new ServletException("Static resource " + pathInfo + " can not be written to the output stream");
+        }
+        return true;
+    }
+
+    private boolean serveUncachedStaticContent(final HttpServletResponse response,
+                                               final String pathInfo,
+                                               final InputStream is) throws ServletException {
+        if (is == null) {
+            return false;
+        }
+        try {
+            setStaticContentType(response, pathInfo);
+
             final ServletOutputStream os = response.getOutputStream();
             IOUtils.copy(is, os);
             os.flush();
@@ -332,6 +412,16 @@ public class CxfRsHttpListener implements RsHttpListener {
         }
         return true;
     }
+
+    private static void setStaticContentType(final HttpServletResponse response, final String pathInfo) {
+        final int ind = pathInfo.lastIndexOf(".");
+        if (ind != -1 && ind < pathInfo.length()) {
+            final String type = STATIC_CONTENT_TYPES.get(pathInfo.substring(ind + 1));
+            if (type != null) {
+                response.setContentType(type);
+            }
+        }
+    }
         
     private Application findApplication() {
         try {
@@ -593,6 +683,8 @@ public class CxfRsHttpListener implements RsHttpListener {
 
     @Override
     public void undeploy() {
+        staticResources.clear();
+
         for (final ObjectName objectName : jmxNames) {
             LocalMBeanServer.unregisterSilently(objectName);
         }
@@ -1034,6 +1126,11 @@ public class CxfRsHttpListener implements RsHttpListener {
                 }
             }
         }
+        final Properties properties = serviceConfiguration.getProperties();
+        staticResources = new StaticResourceCache(
+            Long.parseLong(properties.getProperty(STATIC_CACHE_SIZE_KEY, Long.toString(DEFAULT_STATIC_CACHE_SIZE))),
+            Integer.parseInt(properties.getProperty(STATIC_CACHE_MAX_ENTRY_SIZE_KEY, Integer.toString(DEFAULT_STATIC_CACHE_MAX_ENTRY_SIZE))),
+            !"false".equalsIgnoreCase(properties.getProperty(STATIC_CACHE_GZIP_KEY, "true")));
 
         // providers
         Set<String> providersConfig = null;
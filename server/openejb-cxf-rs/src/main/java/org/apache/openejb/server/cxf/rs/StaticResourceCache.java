@@ -0,0 +1,310 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.loader.IO;
+
+import javax.servlet.ServletContext;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the static resources served by a JAX-RS application (SPA assets typically) in memory:
+ * content, validators and a gzip variant are computed once, file backed resources are checked
+ * with a stat on each hit and the ones bigger than the max entry size are only described (not loaded)
+ * to be transferred from their file channel.
+ */
+public class StaticResourceCache {
+    private static final int MIN_GZIP_SIZE = 256;
+    private static final Collection<String> COMPRESSIBLE = new HashSet<>(Arrays.asList(
+        "html", "htm", "xhtml", "txt", "css", "js", "mjs", "json", "map", "xml", "xsd", "svg"));
+
+    /**
+     * Returned for the resources the servlet context has but which can't be cached (not a plain file), to stream as before.
+     */
+    public static final Resource UNCACHEABLE = new Resource(null, null, -1, 0, null, null);
+
+    private final long maxSize;
+    private final int maxEntrySize;
+    private final boolean gzip;
+    private final Map<String, Resource> resources = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    public StaticResourceCache(final long maxSize, final int maxEntrySize, final boolean gzip) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = (int) Math.min(maxEntrySize, maxSize);
+        this.gzip = gzip;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return the resource, {@link #UNCACHEABLE} if it can't be cached or null if the servlet context doesn't expose it as an URL.
+     */
+    public Resource find(final ServletContext context, final String path) throws IOException {
+        if (!isEnabled()) {
+            return UNCACHEABLE;
+        }
+
+        synchronized (this) {
+            final Resource cached = resources.get(path);
+            if (cached != null) {
+                if (!cached.isStale()) {
+                    return cached;
+                }
+                remove(path);
+            }
+        }
+
+        final URL url = context.getResource(path);
+        if (url == null) {
+            return null;
+        }
+        final Resource resource = load(path, url);
+        if (resource == null) {
+            return UNCACHEABLE;
+        }
+        put(path, resource);
+        return resource;
+    }
+
+    public synchronized int size() {
+        return resources.size();
+    }
+
+    public synchronized long weight() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        resources.clear();
+        size = 0;
+    }
+
+    private synchronized void put(final String path, final Resource resource) {
+        final Resource old = resources.put(path, resource);
+        if (old != null) {
+            size -= old.weight();
+        }
+        size += resource.weight();
+
+        final Iterator<Resource> it = resources.values().iterator();
+        while (size > maxSize && it.hasNext()) { // access order so least recently used first
+            size -= it.next().weight();
+            it.remove();
+        }
+    }
+
+    private void remove(final String path) {
+        final Resource old = resources.remove(path);
+        if (old != null) {
+            size -= old.weight();
+        }
+    }
+
+    private Resource load(final String path, final URL url) throws IOException {
+        File file = null;
+        if ("file".equals(url.getProtocol())) {
+            try {
+                file = new File(url.toURI());
+            } catch (final URISyntaxException | IllegalArgumentException e) {
+                file = new File(url.getFile());
+            }
+            if (!file.isFile()) {
+                return null; // directories etc, let the caller use the servlet context stream
+            }
+        }
+
+        final long lastModified;
+        final long length;
+        byte[] content = null;
+        if (file != null) {
+            lastModified = file.lastModified();
+            length = file.length();
+            if (length <= maxEntrySize) {
+                content = read(IO.read(file));
+            }
+        } else {
+            final URLConnection connection = url.openConnection();
+            lastModified = connection.getLastModified();
+            content = read(connection.getInputStream());
+            length = content != null ? content.length : connection.getContentLengthLong();
+        }
+
+        byte[] gzipped = null;
+        if (gzip && content != null && content.length >= MIN_GZIP_SIZE && isCompressible(path)) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 2);
+            try (final GZIPOutputStream out = new GZIPOutputStream(baos)) {
+                out.write(content);
+            }
+            if (baos.size() < content.length) {
+                gzipped = baos.toByteArray();
+            }
+        }
+
+        return new Resource(url, file, length, lastModified, content, gzipped);
+    }
+
+    // reads at most maxEntrySize bytes, null if the stream is bigger
+    private byte[] read(final InputStream stream) throws IOException {
+        try (final InputStream is = stream) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                if (baos.size() + read > maxEntrySize) {
+                    return null;
+                }
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    private static boolean isCompressible(final String path) {
+        final int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') && COMPRESSIBLE.contains(path.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    public static final class Resource {
+        private final URL url;
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final String lastModifiedHeader;
+        private final String etag;
+        private final byte[] content;
+        private final byte[] gzipped;
+
+        private Resource(final URL url, final File file, final long length, final long lastModified,
+                         final byte[] content, final byte[] gzipped) {
+            this.url = url;
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.lastModifiedHeader = lastModified > 0 ?
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC)) : null;
+            this.etag = "W/\"" + length + '-' + lastModified + '"';
+            this.content = content;
+            this.gzipped = gzipped;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public String getLastModifiedHeader() {
+            return lastModifiedHeader;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isLoaded() {
+            return content != null;
+        }
+
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        /**
+         * @param ifNoneMatch the If-None-Match header
+         * @param ifModifiedSince the If-Modified-Since header, only used without If-None-Match
+         */
+        public boolean isNotModified(final String ifNoneMatch, final String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                for (final String tag : ifNoneMatch.split(",")) {
+                    final String trimmed = tag.trim();
+                    if ("*".equals(trimmed) || etag.equals(trimmed) || etag.substring(2).equals(trimmed)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (ifModifiedSince != null && lastModified > 0) {
+                try {
+                    final long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                    return lastModified / 1000 <= since / 1000; // header has a second precision
+                } catch (final RuntimeException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Writes the content, the loaded one if small enough otherwise file backed resources
+         * are transferred from their channel and the other ones streamed from their URL.
+         */
+        public void write(final OutputStream os) throws IOException {
+            if (content != null) {
+                os.write(content);
+            } else if (file != null) {
+                try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    final WritableByteChannel target = Channels.newChannel(os);
+                    long position = 0;
+                    final long size = channel.size();
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, target);
+                    }
+                }
+            } else {
+                try (final InputStream is = url.openStream()) {
+                    IO.copy(is, os);
+                }
+            }
+        }
+
+        private boolean isStale() {
+            return file != null && (file.lastModified() != lastModified || file.length() != length);
+        }
+
+        private long weight() {
+            return (content != null ? content.length : 0) + (gzipped != null ? gzipped.length : 0) + 128;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *     Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.loader.IO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.ServletContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StaticResourceCacheTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cacheAndValidators() throws Exception {
+        final File app = new File(folder.getRoot(), "app.js");
+        final StringBuilder js = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            js.append("console.log('").append(i).append("');\n");
+        }
+        IO.writeString(app, js.toString());
+
+        final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 4096, true);
+        final ServletContext context = context();
+        final StaticResourceCache.Resource resource = cache.find(context, "/app.js");
+        assertNotNull(resource);
+        assertTrue(resource.isLoaded());
+        assertSame(resource, cache.find(context, "/app.js"));
+        assertNull(cache.find(context, "/missing.js"));
+        assertSame(StaticResourceCache.UNCACHEABLE, cache.find(context, "/")); // directory
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        resource.write(content);
+        assertArrayEquals(Files.readAllBytes(app.toPath()), content.toByteArray());
+        assertNotNull(resource.getGzipped());
+        final ByteArrayOutputStream gunzipped = new ByteArrayOutputStream();
+        IO.copy(new GZIPInputStream(new ByteArrayInputStream(resource.getGzipped())), gunzipped);
+        assertArrayEquals(content.toByteArray(), gunzipped.toByteArray());
+
+        assertTrue(resource.isNotModified(resource.getETag(), null));
+        assertTrue(resource.isNotModified("\"other\", " + resource.getETag(), null));
+        assertFalse(resource.isNotModified("\"other\"", resource.getLastModifiedHeader()));
+        assertTrue(resource.isNotModified(null, resource.getLastModifiedHeader()));
+        assertFalse(resource.isNotModified(null, "Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertFalse(resource.isNotModified(null, "not a date"));
+
+        IO.writeString(app, "changed");
+        assertTrue(app.setLastModified(app.lastModified() + 5000));
+        final StaticResourceCache.Resource updated = cache.find(context, "/app.js");
+        assertNotSame(resource, updated);
+        assertNull(updated.getGzipped()); // too small to be worth it
+        assertFalse(resource.getETag().equals(updated.getETag()));
+    }
+
+    @Test
+    public void bigResourcesAreTransferredFromTheirFile() throws Exception {
+        final byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        IO.copy(bytes, new File(folder.getRoot(), "big.bin"));
+
+        final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 1024, true);
+        final StaticResourceCache.Resource resource = cache.find(context(), "/big.bin");
+        assertFalse(resource.isLoaded());
+        assertEquals(bytes.length, resource.getLength());
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        resource.write(content);
+        assertArrayEquals(bytes, content.toByteArray());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        for (final String name : new String[]{"a.txt", "b.txt", "c.txt"}) {
+            IO.writeString(new File(folder.getRoot(), name), name);
+        }
+
+        final StaticResourceCache cache = new StaticResourceCache(300, 1024, false);
+        final ServletContext context = context();
+        cache.find(context, "/a.txt");
+        cache.find(context, "/b.txt");
+        cache.find(context, "/c.txt");
+        assertEquals(2, cache.size());
+        assertTrue(cache.weight() <= 300);
+    }
+
+    private ServletContext context() {
+        return (ServletContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ServletContext.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("getResource".equals(method.getName())) {
+                    final File file = new File(folder.getRoot(), String.class.cast(args[0]));
+                    return file.exists() ? file.toURI().toURL() : null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
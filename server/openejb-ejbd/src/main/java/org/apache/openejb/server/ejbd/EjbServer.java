@@ -50,6 +50,7 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
         }
         server.init(props);
         keepAlive = new KeepAliveServer(this, server.isGzip());
+        keepAlive.configure(props);
     }
 
     @Override
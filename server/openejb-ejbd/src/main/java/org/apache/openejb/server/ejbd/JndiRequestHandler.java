@@ -30,6 +30,7 @@ import org.apache.openejb.client.JNDIResponse;
 import org.apache.openejb.client.NameClassPairEnumeration;
 import org.apache.openejb.client.PortRefMetaData;
 import org.apache.openejb.client.ProtocolMetaData;
+import org.apache.openejb.client.RequestMethodCode;
 import org.apache.openejb.client.Response;
 import org.apache.openejb.client.ResponseCodes;
 import org.apache.openejb.client.ThrowableArtifact;
@@ -187,6 +188,9 @@ class JndiRequestHandler extends RequestHandler {
                         case JNDI_LIST:
                             doList(req, res, prefix);
                             break;
+                        case JNDI_LOOKUP_ALL:
+                            doLookupAll(req, res);
+                            break;
                     }
                 }
 
@@ -247,6 +251,25 @@ class JndiRequestHandler extends RequestHandler {
         return prefix;
     }
 
+    /**
+     * Looks up several names (one per line) in a single request, used by the clients to fill their lookup cache.
+     */
+    private void doLookupAll(final JNDIRequest req, final JNDIResponse res) throws NamingException {
+        final String[] names = req.getRequestString().split("\n");
+        final JNDIResponse[] results = new JNDIResponse[names.length];
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i].startsWith("/") ? names[i].substring(1) : names[i];
+            final JNDIRequest lookup = new JNDIRequest(RequestMethodCode.JNDI_LOOKUP, name);
+            lookup.setModuleId(req.getModuleId());
+
+            results[i] = new JNDIResponse();
+            results[i].setRequest(lookup);
+            doLookup(lookup, results[i], getPrefix(lookup));
+        }
+        res.setResponseCode(ResponseCodes.JNDI_LOOKUP_RESULTS);
+        res.setResult(results);
+    }
+
     private void doLookup(final JNDIRequest req, final JNDIResponse res, final String prefix) {
         Object object;
         final String name = req.getRequestString();
@@ -18,29 +18,49 @@ package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.client.FlushableGZIPOutputStream;
 import org.apache.openejb.client.KeepAliveStyle;
+import org.apache.openejb.client.ProtocolMetaData;
+import org.apache.openejb.loader.Options;
 import org.apache.openejb.server.ServerService;
 import org.apache.openejb.server.ServiceException;
 import org.apache.openejb.server.ServicePool;
 import org.apache.openejb.server.Unwrappable;
 import org.apache.openejb.server.context.RequestInfos;
+import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -61,6 +81,12 @@ public class KeepAliveServer implements ServerService {
     private BlockingQueue<Runnable> threadQueue;
     private Timer timer;
     private final boolean gzip;
+    private boolean nio;
+    private IdleSelector idleSelector;
+    private int threads = 200;
+    private int maxFrameSize = 4 * 1024 * 1024;
+    private int maxFramesInFlight = 64;
+    private ThreadPoolExecutor multiplexed;
 
     @SuppressWarnings("deprecation")
     public KeepAliveServer() {
@@ -205,9 +231,11 @@ public class KeepAliveServer implements ServerService {
 
     private class Session {
 
-        private final Thread thread;
+        private volatile Thread thread;
         private final KeepAliveServer kas;
         private final Lock lock = new ReentrantLock();
+        private final ClassLoader loader;
+        private Executor executor;
 
         // only used inside the Lock
         private final AtomicLong lastRequest;
@@ -220,6 +248,7 @@ public class KeepAliveServer implements ServerService {
             this.socket = socket;
             this.lastRequest = new AtomicLong(System.currentTimeMillis());
             this.thread = Thread.currentThread();
+            this.loader = this.thread.getContextClassLoader();
         }
 
         @Override
@@ -232,9 +261,12 @@ public class KeepAliveServer implements ServerService {
         }
 
         private void service() throws ServiceException, IOException {
+            final Thread current = Thread.currentThread();
+            this.thread = current;
             this.kas.addSession(this);
 
             int i = -1;
+            boolean parked = false;
 
             try {
 
@@ -242,7 +274,9 @@ public class KeepAliveServer implements ServerService {
                 l1.lock();
 
                 try {
-                    if (!KeepAliveServer.this.gzip) {
+                    if (in != null) {
+                        // resumed after waiting in the selector
+                    } else if (!KeepAliveServer.this.gzip) {
                         in = new BufferedInputStream(socket.getInputStream());
                         out = new BufferedOutputStream(socket.getOutputStream());
                     } else {
@@ -266,6 +300,12 @@ public class KeepAliveServer implements ServerService {
                     }
                     final KeepAliveStyle style = KeepAliveStyle.values()[i];
 
+                    if (style == KeepAliveStyle.MULTIPLEX) {
+                        // the connection now carries framed requests until the client hangs up
+                        multiplex();
+                        break;
+                    }
+
                     final Lock l2 = this.lock;
                     l2.lock();
 
@@ -294,6 +334,11 @@ public class KeepAliveServer implements ServerService {
                         this.lastRequest.set(System.currentTimeMillis());
                         l2.unlock();
                     }
+
+                    if (in.available() == 0 && park(current)) {
+                        parked = true;
+                        break;
+                    }
                 }
             } catch (ArrayIndexOutOfBoundsException e) {
                 throw new IOException("Unexpected byte " + i);
@@ -301,9 +346,149 @@ public class KeepAliveServer implements ServerService {
                 Thread.interrupted();
             } finally {
 
+                if (!parked) {
+                    close();
+                }
+
+                KeepAliveServer.this.sessions.remove(current, this);
+            }
+        }
+
+        /**
+         * Reads the request frames of a multiplexed connection, each one is serviced by
+         * the multiplexing pool and its response written back with the id of the request
+         * so the client can match them whatever the order they complete in.
+         *
+         * Frame = request id (int) + length (int) + the bytes of a plain ejbd request/response
+         */
+        private void multiplex() throws IOException {
+            final ProtocolMetaData clientProtocol = new ProtocolMetaData();
+            clientProtocol.readExternal(in);
+            new ProtocolMetaData().writeExternal(out); // let the client know we understood it
+
+            final DataInputStream frames = new DataInputStream(in);
+            final DataOutputStream responses = new DataOutputStream(out);
+            final ThreadPoolExecutor executor = KeepAliveServer.this.multiplexed;
+            final int maxFrameSize = KeepAliveServer.this.maxFrameSize;
+            // no more frame is read while that many are serviced, throttles the client
+            final Semaphore inFlight = new Semaphore(KeepAliveServer.this.maxFramesInFlight);
+
+            while (KeepAliveServer.this.running.get()) {
+                final int id;
+                try {
+                    id = frames.readInt();
+                } catch (final EOFException e) {
+                    // client hung up
+                    return;
+                }
+                final int length = frames.readInt();
+                if (length < 0 || length > maxFrameSize) {
+                    logger.warning("Closing multiplexed connection of " + socket.getInetAddress()
+                        + ": invalid request length " + length + " (max " + maxFrameSize + ")");
+                    return;
+                }
+                final byte[] request = new byte[length];
+                frames.readFully(request);
+                this.lastRequest.set(System.currentTimeMillis());
+
+                try {
+                    inFlight.acquire();
+                } catch (final InterruptedException e) {
+                    Thread.interrupted();
+                    return;
+                }
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                serviceFrame(id, request, responses);
+                            } finally {
+                                inFlight.release();
+                            }
+                        }
+                    });
+                } catch (final RejectedExecutionException e) { // stopping
+                    inFlight.release();
+                    return;
+                }
+            }
+        }
+
+        private void serviceFrame(final int id, final byte[] request, final DataOutputStream responses) {
+            final Thread current = Thread.currentThread();
+            final ClassLoader oldLoader = current.getContextClassLoader();
+            current.setContextClassLoader(loader);
+            RequestInfos.initRequestInfo(socket);
+
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try {
+                KeepAliveServer.this.service.service(new ByteArrayInputStream(request), response);
+            } catch (final Throwable e) {
+                logger.error("Can't service multiplexed request " + id + " of " + socket.getInetAddress(), e);
+                response.reset(); // an empty response fails the call on the client side
+            } finally {
+                RequestInfos.clearRequestInfo();
+                current.setContextClassLoader(oldLoader);
+            }
+
+            try {
+                synchronized (responses) {
+                    responses.writeInt(id);
+                    responses.writeInt(response.size());
+                    response.writeTo(responses);
+                    responses.flush();
+                }
+                this.lastRequest.set(System.currentTimeMillis());
+            } catch (final IOException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Can't write multiplexed response " + id + " to " + socket.getInetAddress(), e);
+                }
                 close();
+            }
+        }
 
-                this.kas.removeSession(this);
+        /**
+         * Hands the connection over to the selector until the next request arrives
+         * so an idle client doesn't hold a thread.
+         *
+         * @param current the thread servicing the session
+         * @return true if the session is now waiting in the selector
+         */
+        private boolean park(final Thread current) throws IOException {
+            final IdleSelector selector = KeepAliveServer.this.idleSelector;
+            if (selector == null || socket.getChannel() == null) {
+                return false;
+            }
+            if (executor == null) { // first request, detach the socket from the ServicePool
+                executor = ServicePool.detachSocket();
+                if (executor == null) {
+                    return false;
+                }
+            }
+
+            KeepAliveServer.this.sessions.remove(current, this);
+            socket.getChannel().configureBlocking(false);
+            selector.park(this);
+            return true;
+        }
+
+        private void resume() {
+            final Thread current = Thread.currentThread();
+            final ClassLoader oldLoader = current.getContextClassLoader();
+            current.setContextClassLoader(loader);
+            RequestInfos.initRequestInfo(socket);
+            try {
+                socket.getChannel().configureBlocking(true);
+                service();
+            } catch (final Throwable e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Can't service " + socket.getInetAddress(), e);
+                }
+                close();
+            } finally {
+                RequestInfos.clearRequestInfo();
+                current.setContextClassLoader(oldLoader);
             }
         }
 
@@ -368,6 +553,19 @@ public class KeepAliveServer implements ServerService {
         if (!this.running.getAndSet(true)) {
             this.timer = new Timer("KeepAliveTimer", true);
             this.timer.scheduleAtFixedRate(new KeepAliveTimer(this), this.timeout, (this.timeout / 2));
+
+            // when all threads are busy the reading thread services the request itself, this throttles the client
+            this.multiplexed = new ThreadPoolExecutor(0, this.threads, 1, TimeUnit.MINUTES,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory("OpenEJB.Multiplexed", this.getName()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+            if (this.nio && !this.gzip) { // gzip streams can buffer a request we wouldn't see
+                try {
+                    this.idleSelector = new IdleSelector();
+                } catch (final IOException e) {
+                    throw new ServiceException("Can't open the keep-alive selector", e);
+                }
+            }
         }
     }
 
@@ -384,12 +582,117 @@ public class KeepAliveServer implements ServerService {
             } catch (Throwable e) {
                 //Ignore
             }
+            if (this.idleSelector != null) {
+                this.idleSelector.selector.wakeup();
+                this.idleSelector = null;
+            }
+            this.multiplexed.shutdown();
         }
     }
 
     @Override
     public void init(final Properties props) throws Exception {
         this.service.init(props);
+        this.configure(props);
+    }
+
+    /**
+     * Reads the keep-alive settings only, used when the wrapped service is already initialized.
+     *
+     * @param props the service properties
+     */
+    void configure(final Properties props) {
+        final Options options = new Options(props);
+        this.nio = options.get("nio", false);
+        this.threads = options.get("threads", this.threads);
+        this.maxFrameSize = options.get("multiplexMaxFrameSize", this.maxFrameSize);
+        this.maxFramesInFlight = Math.max(1, options.get("multiplexMaxInFlight", this.maxFramesInFlight));
+    }
+
+    /**
+     * Keeps the connections waiting for their next request, when one becomes readable
+     * it is given back to a thread of the ServicePool which reads and services the request.
+     * The protocol doesn't frame requests so they are still read with blocking streams.
+     */
+    private class IdleSelector implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Session> parked = new ConcurrentLinkedQueue<>();
+
+        private IdleSelector() throws IOException {
+            this.selector = Selector.open();
+
+            final Thread thread = new Thread(this, "OpenEJB.KeepAlive." + KeepAliveServer.this.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void park(final Session session) {
+            this.parked.add(session);
+            this.selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            final List<Session> ready = new ArrayList<>();
+
+            while (KeepAliveServer.this.running.get()) {
+                try {
+                    this.selector.select();
+
+                    Session session;
+                    while ((session = this.parked.poll()) != null) {
+                        try {
+                            session.socket.getChannel().register(this.selector, SelectionKey.OP_READ, session);
+                        } catch (final IOException | RuntimeException e) {
+                            session.close();
+                        }
+                    }
+
+                    // a channel can only go back to blocking mode once its key is deregistered by a select
+                    do {
+                        final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                        while (keys.hasNext()) {
+                            final SelectionKey key = keys.next();
+                            keys.remove();
+                            key.cancel();
+                            ready.add((Session) key.attachment());
+                        }
+                    } while (this.selector.selectNow() > 0);
+
+                    for (final Session readable : ready) {
+                        try {
+                            readable.executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    readable.resume();
+                                }
+                            });
+                        } catch (final RejectedExecutionException e) {
+                            readable.close();
+                        }
+                    }
+                    ready.clear();
+                } catch (final ClosedSelectorException e) {
+                    break;
+                } catch (final IOException e) {
+                    logger.warning("Keep-alive selector error: " + e.getMessage());
+                }
+            }
+
+            for (final SelectionKey key : this.selector.keys()) {
+                ((Session) key.attachment()).close();
+            }
+            Session session;
+            while ((session = this.parked.poll()) != null) {
+                session.close();
+            }
+            try {
+                this.selector.close();
+            } catch (final IOException e) {
+                //Ignore
+            }
+        }
     }
 
     public class Input extends java.io.FilterInputStream {
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.client.ConnectionFactory;
+import org.apache.openejb.client.ConnectionManager;
+import org.apache.openejb.client.SocketConnectionFactory;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.Remote;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Concurrent calls sharing a pool of a single connection, only possible if they are multiplexed.
+ */
+public class MultiplexedKeepAliveTest {
+    private ServiceDaemon serviceDaemon;
+
+    @Before
+    public void start() throws Exception {
+        System.setProperty(SocketConnectionFactory.PROPERTY_MULTIPLEX, "true");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_SIZE, "1");
+
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+
+        final Properties props = new Properties();
+        props.setProperty("bind", "127.0.0.1");
+        props.setProperty("port", "0");
+
+        serviceDaemon = new ServiceDaemon(new ServicePool(new KeepAliveServer(new EjbServer(), false), 2, 1, false));
+        serviceDaemon.init(props);
+        serviceDaemon.start();
+
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new StatelessBean(KeepAilveTest.EchoBean.class));
+        ejbJar.addEnterpriseBean(new StatelessBean(SlowBean.class));
+        final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+        assembler.createApplication(new ConfigurationFactory().configureApplication(ejbJar));
+    }
+
+    @After
+    public void stop() throws Exception {
+        System.clearProperty(SocketConnectionFactory.PROPERTY_MULTIPLEX);
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_SIZE);
+        serviceDaemon.stop();
+        OpenEJB.destroy();
+    }
+
+    @Test
+    public void concurrentCallsShareOneSocket() throws Exception {
+        final KeepAilveTest.Echo echo = (KeepAilveTest.Echo) lookup("EchoBeanRemote");
+
+        final int clients = 10;
+        final CountDownLatch done = new CountDownLatch(clients);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        for (int i = 0; i < clients; i++) {
+            final int id = i;
+            KeepAilveTest.thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int count = 0; count < 20; count++) {
+                            final String message = id + ": " + count + " bottles of beer on the wall";
+                            assertEquals(new StringBuilder(message).reverse().toString(), echo.echo(message));
+                        }
+                    } catch (final Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, true);
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertNull(error.get());
+    }
+
+    @Test
+    public void responsesAreMatchedToTheirCallers() throws Exception {
+        final Slow slow = (Slow) lookup("SlowBeanRemote");
+        SlowBean.started = new CountDownLatch(1);
+        SlowBean.release = new CountDownLatch(1);
+
+        // holds the only socket of the pool until released
+        final AtomicReference<Object> blocked = new AtomicReference<>();
+        final Thread first = KeepAilveTest.thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.set(slow.await("first"));
+                } catch (final Throwable e) {
+                    blocked.set(e);
+                }
+            }
+        }, true);
+        assertTrue(SlowBean.started.await(1, TimeUnit.MINUTES));
+
+        // the longest call is sent first so the responses come back in the reverse order
+        final int clients = 5;
+        final CountDownLatch done = new CountDownLatch(clients);
+        final List<AtomicReference<Object>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            final String message = "call " + i;
+            final long duration = (clients - i) * 100L;
+            final AtomicReference<Object> result = new AtomicReference<>();
+            results.add(result);
+            KeepAilveTest.thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.set(slow.sleep(message, duration));
+                    } catch (final Throwable e) {
+                        result.set(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, true);
+            Thread.sleep(10);
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        for (int i = 0; i < clients; i++) {
+            assertEquals("call " + i, results.get(i).get());
+        }
+        assertEquals(1, SlowBean.release.getCount()); // the first call still holds the socket
+        assertNull(blocked.get());
+
+        SlowBean.release.countDown();
+        first.join(TimeUnit.MINUTES.toMillis(1));
+        assertEquals("first", blocked.get());
+    }
+
+    @Test
+    public void zeroReadTimeoutWaitsForever() throws Exception {
+        System.setProperty(SocketConnectionFactory.PROPERTY_SOCKET_READ, "0"); // as the socket read timeout
+        final ConnectionFactory previous = ConnectionManager.unregisterFactory("ejbd");
+        ConnectionManager.registerFactory("ejbd", new SocketConnectionFactory());
+        try {
+            final Slow slow = (Slow) lookup("SlowBeanRemote");
+            assertEquals("done", slow.sleep("done", 200));
+        } finally {
+            System.clearProperty(SocketConnectionFactory.PROPERTY_SOCKET_READ);
+            ConnectionManager.registerFactory("ejbd", previous);
+        }
+    }
+
+    private Object lookup(final String name) throws Exception {
+        final Properties props = new Properties();
+        props.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+        props.put(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + serviceDaemon.getPort() + "?multiplexed");
+        return new InitialContext(props).lookup(name);
+    }
+
+    public static class SlowBean implements Slow {
+        private static volatile CountDownLatch started;
+        private static volatile CountDownLatch release;
+
+        @Override
+        public String sleep(final String s, final long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (final InterruptedException e) {
+                Thread.interrupted();
+            }
+            return s;
+        }
+
+        @Override
+        public String await(final String s) {
+            started.countDown();
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Thread.interrupted();
+            }
+            return s;
+        }
+    }
+
+    @Remote
+    public interface Slow {
+        String sleep(String s, long millis);
+
+        String await(String s);
+    }
+}
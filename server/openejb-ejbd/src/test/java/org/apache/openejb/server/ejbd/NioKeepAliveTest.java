@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * More keep-alive clients than pool threads, only possible if idle connections don't hold a thread.
+ */
+public class NioKeepAliveTest {
+    private ServiceDaemon serviceDaemon;
+    private ServicePool pool;
+
+    @Before
+    public void start() throws Exception {
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+
+        final Properties props = new Properties();
+        props.setProperty("bind", "127.0.0.1");
+        props.setProperty("port", "0");
+        props.setProperty("nio", "true");
+
+        pool = new ServicePool(new KeepAliveServer(new EjbServer(), false), 2, 1, false);
+        serviceDaemon = new ServiceDaemon(pool);
+        serviceDaemon.init(props);
+        serviceDaemon.start();
+
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new StatelessBean(KeepAilveTest.EchoBean.class));
+        final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+        assembler.createApplication(new ConfigurationFactory().configureApplication(ejbJar));
+    }
+
+    @After
+    public void stop() throws Exception {
+        serviceDaemon.stop();
+        OpenEJB.destroy();
+    }
+
+    @Test
+    public void idleClientsDontHoldThreads() throws Exception {
+        final int clients = 6;
+        final CountDownLatch done = new CountDownLatch(clients);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        final Collection<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            final Properties props = new Properties();
+            props.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + serviceDaemon.getPort() + "?" + i);
+            final KeepAilveTest.Echo echo = (KeepAilveTest.Echo) new InitialContext(props).lookup("EchoBeanRemote");
+
+            threads.add(KeepAilveTest.thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int count = 0; count < 5; count++) {
+                            final String message = count + " bottles of beer on the wall";
+                            assertEquals(new StringBuilder(message).reverse().toString(), echo.echo(message));
+                            Thread.sleep(200);
+                        }
+                    } catch (final Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, true));
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertNull(error.get());
+        for (final Thread thread : threads) {
+            thread.join(1000);
+        }
+        assertTrue(pool.getThreadPool().getLargestPoolSize() <= 2);
+    }
+}
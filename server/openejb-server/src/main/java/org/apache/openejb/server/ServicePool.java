@@ -29,6 +29,7 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
@@ -42,6 +43,8 @@ public class ServicePool extends ServerServiceFilter {
 
     private static final Logger log = Logger.getInstance(LogCategory.SERVICEPOOL, "org.apache.openejb.util.resources");
     private static final int KEEP_ALIVE_TIME = 1000 * 60 * 1;
+    private static final ThreadLocal<ServicePool> SERVICING = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> DETACHED = new ThreadLocal<>();
 
     private final ThreadPoolExecutor threadPool;
     private final AtomicBoolean stop = new AtomicBoolean();
@@ -178,6 +181,22 @@ public class ServicePool extends ServerServiceFilter {
         }
     }
 
+    /**
+     * Called by a service keeping the socket it is servicing once it returns,
+     * for instance to wait for the next request without holding a thread.
+     * The service is then responsible for closing the socket.
+     *
+     * @return the executor of the pool servicing the current socket or null if the socket is not serviced by a pool
+     */
+    public static Executor detachSocket() {
+        final ServicePool pool = SERVICING.get();
+        if (pool == null) {
+            return null;
+        }
+        DETACHED.set(Boolean.TRUE);
+        return pool.threadPool;
+    }
+
     public ThreadPoolExecutor getThreadPool() {
         return threadPool;
     }
@@ -235,7 +254,12 @@ public class ServicePool extends ServerServiceFilter {
                         return;
                     }
 
-                    ServicePool.super.service(socket);
+                    SERVICING.set(ServicePool.this);
+                    try {
+                        ServicePool.super.service(socket);
+                    } finally {
+                        SERVICING.remove();
+                    }
 
                 } catch (SecurityException e) {
                     final String msg = "ServicePool '" + ServicePool.this.getName() + "': Security error: " + e.getMessage();
@@ -263,8 +287,10 @@ public class ServicePool extends ServerServiceFilter {
 
                     //Ensure delegated socket is closed here
 
+                    final boolean detached = DETACHED.get() != null;
+                    DETACHED.remove();
                     try {
-                        if (forceSocketClose && socket != null) {
+                        if (forceSocketClose && socket != null && !detached) {
                             socket.close();
                         }
                     } catch (Throwable t) {
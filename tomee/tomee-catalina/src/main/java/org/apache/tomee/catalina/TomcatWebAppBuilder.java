@@ -98,6 +98,7 @@ import org.apache.openejb.core.ParentClassLoaderFinder;
 import org.apache.openejb.core.WebContext;
 import org.apache.openejb.core.ivm.IntraVmProxy;
 import org.apache.openejb.core.ivm.naming.SystemComponentReference;
+import org.apache.openejb.core.stateful.ReplicationChannel;
 import org.apache.openejb.jee.EnvEntry;
 import org.apache.openejb.jee.WebApp;
 import org.apache.openejb.loader.Files;
@@ -126,6 +127,7 @@ import org.apache.tomcat.util.scan.StandardJarScanFilter;
 import org.apache.tomee.catalina.cdi.ServletContextHandler;
 import org.apache.tomee.catalina.cdi.WebBeansThreadBindingListener;
 import org.apache.tomee.catalina.cluster.ClusterObserver;
+import org.apache.tomee.catalina.cluster.ClusterReplicationChannel;
 import org.apache.tomee.catalina.cluster.TomEEClusterListener;
 import org.apache.tomee.catalina.environment.Hosts;
 import org.apache.tomee.catalina.event.AfterApplicationCreated;
@@ -382,6 +384,10 @@ public class TomcatWebAppBuilder implements WebAppBuilder, ContextListener, Pare
             }
             haCluster.addClusterListener(listener); // better to be a singleton
             clusters.add(haCluster);
+
+            if (SystemInstance.get().getComponent(ReplicationChannel.class) == null) { // stateful replication uses the first cluster
+                SystemInstance.get().setComponent(ReplicationChannel.class, new ClusterReplicationChannel(haCluster));
+            }
         }
     }
 
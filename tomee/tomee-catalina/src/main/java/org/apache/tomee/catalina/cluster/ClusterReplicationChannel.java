@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.cluster;
+
+import org.apache.catalina.ha.CatalinaCluster;
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelException;
+import org.apache.catalina.tribes.Member;
+import org.apache.openejb.core.stateful.ReplicationChannel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the stateful session beans replication messages through the Tomcat cluster,
+ * received by {@link TomEEClusterListener}.
+ *
+ * The messages go through the cluster channel directly and wait for the member to acknowledge their reception,
+ * CatalinaCluster.send() would hide the failures the replication relies on to send whole states again.
+ */
+public class ClusterReplicationChannel implements ReplicationChannel {
+    private final CatalinaCluster cluster;
+
+    public ClusterReplicationChannel(final CatalinaCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    public String getLocalMember() {
+        return cluster.getLocalMember().getName();
+    }
+
+    @Override
+    public List<String> getMembers() {
+        final Member[] members = cluster.getMembers();
+        final List<String> names = new ArrayList<>(members.length);
+        for (final Member member : members) {
+            names.add(member.getName());
+        }
+        return names;
+    }
+
+    @Override
+    public void send(final String member, final Object containerId, final byte[] message) throws IOException {
+        for (final Member m : cluster.getMembers()) {
+            if (m.getName().equals(member)) {
+                final StatefulReplicationMessage msg = new StatefulReplicationMessage(String.valueOf(containerId), message);
+                msg.setAddress(cluster.getLocalMember());
+                try {
+                    cluster.getChannel().send(new Member[]{m}, msg, Channel.SEND_OPTIONS_USE_ACK);
+                } catch (final ChannelException e) {
+                    throw new IOException("Can't send stateful replication message to " + member, e);
+                }
+                return;
+            }
+        }
+        throw new IOException("member " + member + " left the cluster");
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.cluster;
+
+import org.apache.catalina.ha.ClusterMessageBase;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StatefulReplicationMessage extends ClusterMessageBase {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String containerId;
+    private final byte[] payload;
+    private final String uniqueId;
+
+    public StatefulReplicationMessage(final String containerId, final byte[] payload) {
+        this.containerId = containerId;
+        this.payload = payload;
+        this.uniqueId = "STATEFUL-" + containerId + "-" + SEQUENCE.incrementAndGet();
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String getUniqueId() {
+        return uniqueId;
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.openejb.UndeployException;
 import org.apache.openejb.assembler.Deployer;
 import org.apache.openejb.assembler.classic.Assembler;
 import org.apache.openejb.core.LocalInitialContextFactory;
+import org.apache.openejb.core.stateful.ReplicatedCache;
 import org.apache.openejb.loader.Files;
 import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.SystemInstance;
@@ -45,7 +46,15 @@ public class TomEEClusterListener extends ClusterListener {
     public void messageReceived(final ClusterMessage clusterMessage) {
         final Class<?> type = clusterMessage.getClass();
 
-        if (DeployMessage.class.equals(type)) {
+        if (StatefulReplicationMessage.class.equals(type)) {
+            final StatefulReplicationMessage msg = (StatefulReplicationMessage) clusterMessage;
+            Static.REPLICATION.submit(new Runnable() { // can send messages, not done by the cluster receiving threads
+                @Override
+                public void run() {
+                    ReplicatedCache.receive(msg.getContainerId(), msg.getPayload());
+                }
+            });
+        } else if (DeployMessage.class.equals(type)) {
             final DeployMessage msg = (DeployMessage) clusterMessage;
             String file = msg.getFile();
 
@@ -111,15 +120,19 @@ public class TomEEClusterListener extends ClusterListener {
     public boolean accept(final ClusterMessage clusterMessage) {
         return clusterMessage != null
             && (DeployMessage.class.equals(clusterMessage.getClass())
-                || UndeployMessage.class.equals(clusterMessage.getClass()));
+                || UndeployMessage.class.equals(clusterMessage.getClass())
+                || StatefulReplicationMessage.class.equals(clusterMessage.getClass()));
     }
 
     public static void stop() {
+        Static.REPLICATION.shutdown();
         Static.SERVICE.shutdown();
         try {
             Static.SERVICE.awaitTermination(1, TimeUnit.MINUTES);
+            Static.REPLICATION.awaitTermination(1, TimeUnit.MINUTES);
         } catch (final InterruptedException e) {
             Static.SERVICE.shutdownNow();
+            Static.REPLICATION.shutdownNow();
         }
     }
 
@@ -179,6 +192,9 @@ public class TomEEClusterListener extends ClusterListener {
         // async processing to avoid to make the cluster hanging
         private static final ExecutorService SERVICE = Executors.newSingleThreadExecutor(new DaemonThreadFactory("TomEE-Cluster-Listener-thread-"));
 
+        // a single thread keeps the order of the stateful replication messages
+        private static final ExecutorService REPLICATION = Executors.newSingleThreadExecutor(new DaemonThreadFactory("TomEE-Stateful-Replication-thread-"));
+
         static {
             IC_PROPS.setProperty(Context.INITIAL_CONTEXT_FACTORY, LocalInitialContextFactory.class.getName());
         }
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.security.identitystore;
+
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+
+import javax.security.enterprise.credential.Credential;
+import javax.security.enterprise.credential.UsernamePasswordCredential;
+import javax.security.enterprise.identitystore.CredentialValidationResult;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Successful credential validations and caller groups of the identity stores of an application.
+ *
+ * Credentials are only kept as a salted SHA-256 (the salt is random per cache so the keys are useless
+ * outside of this JVM) and only username/password credentials are cached since the other ones
+ * (remember me tokens, custom credentials) can't be assumed stable.
+ * A changed or revoked password stays usable until the TTL expires or {@link #invalidate(String)} is called.
+ */
+public class IdentityStoreCache {
+    private final long ttl;
+    private final long groupsTtl;
+    private final int maxSize;
+    private final byte[] salt = new byte[16];
+
+    private final Map<String, Entry<CredentialValidationResult>> results = new ConcurrentHashMap<>();
+    private final Map<String, Entry<Set<String>>> groups = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder groupHits = new LongAdder();
+    private final LongAdder groupMisses = new LongAdder();
+
+    /**
+     * @param ttl       duration (ms) a successful validation is reused, 0 to not cache validations.
+     * @param groupsTtl duration (ms) the groups of a caller are reused, 0 to not cache groups.
+     */
+    public IdentityStoreCache(final long ttl, final long groupsTtl, final int maxSize) {
+        this.ttl = ttl;
+        this.groupsTtl = groupsTtl;
+        this.maxSize = maxSize;
+        new SecureRandom().nextBytes(salt);
+    }
+
+    public CredentialValidationResult getResult(final Credential credential) {
+        final String key = key(credential);
+        if (key == null) {
+            return null;
+        }
+        final CredentialValidationResult result = get(results, key);
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    public void putResult(final Credential credential, final CredentialValidationResult result) {
+        final String key = key(credential);
+        if (key != null) {
+            put(results, key, new Entry<>(result.getCallerPrincipal().getName(), result, ttl));
+        }
+    }
+
+    public Set<String> getGroups(final String storeId, final CredentialValidationResult result) {
+        if (groupsTtl <= 0) {
+            return null;
+        }
+        final Set<String> cached = get(groups, groupsKey(storeId, result));
+        if (cached == null) {
+            groupMisses.increment();
+        } else {
+            groupHits.increment();
+        }
+        return cached;
+    }
+
+    public void putGroups(final String storeId, final CredentialValidationResult result, final Set<String> callerGroups) {
+        if (groupsTtl > 0) {
+            put(groups, groupsKey(storeId, result), new Entry<>(result.getCallerPrincipal().getName(), callerGroups, groupsTtl));
+        }
+    }
+
+    /**
+     * Forgets the validations and groups of a caller, to call when its password or groups change.
+     */
+    public void invalidate(final String caller) {
+        results.values().removeIf(e -> e.caller.equals(caller));
+        groups.values().removeIf(e -> e.caller.equals(caller));
+    }
+
+    public void invalidateAll() {
+        results.clear();
+        groups.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getGroupHits() {
+        return groupHits.sum();
+    }
+
+    public long getGroupMisses() {
+        return groupMisses.sum();
+    }
+
+    public int size() {
+        return results.size() + groups.size();
+    }
+
+    private <T> T get(final Map<String, Entry<T>> cache, final String key) {
+        final Entry<T> entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiry < System.currentTimeMillis()) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    // expired entries first then any entry, it is just a bound not an LRU
+    private <T> void put(final Map<String, Entry<T>> cache, final String key, final Entry<T> entry) {
+        if (cache.size() >= maxSize) {
+            final long now = System.currentTimeMillis();
+            cache.values().removeIf(e -> e.expiry < now);
+
+            final Iterator<String> it = cache.keySet().iterator();
+            while (cache.size() >= maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(key, entry);
+    }
+
+    private String key(final Credential credential) {
+        if (ttl <= 0 || !UsernamePasswordCredential.class.isInstance(credential)) {
+            return null;
+        }
+        final UsernamePasswordCredential usernamePassword = UsernamePasswordCredential.class.cast(credential);
+        if (usernamePassword.getCaller() == null || usernamePassword.getPassword() == null
+                || usernamePassword.getPassword().getValue() == null) {
+            return null;
+        }
+
+        final MessageDigest digest = sha256();
+        digest.update(salt);
+        digest.update(usernamePassword.getCaller().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        final ByteBuffer password = StandardCharsets.UTF_8.encode(CharBuffer.wrap(usernamePassword.getPassword().getValue()));
+        digest.update(password.duplicate());
+        if (password.hasArray()) { // don't leave the clear password around longer than the credential itself
+            Arrays.fill(password.array(), (byte) 0);
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static String groupsKey(final String storeId, final CredentialValidationResult result) {
+        return storeId + '\0' + result.getIdentityStoreId() + '\0' + result.getCallerPrincipal().getName()
+                + '\0' + result.getCallerDn() + '\0' + result.getCallerUniqueId();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final String caller;
+        private final T value;
+        private final long expiry;
+
+        private Entry(final String caller, final T value, final long ttl) {
+            this.caller = caller;
+            this.value = value;
+            this.expiry = System.currentTimeMillis() + ttl;
+        }
+    }
+
+    @MBean
+    @Description("Security API identity store cache")
+    public static class JMXIdentityStoreCache {
+        private final IdentityStoreCache cache;
+
+        public JMXIdentityStoreCache(final IdentityStoreCache cache) {
+            this.cache = cache;
+        }
+
+        @ManagedAttribute
+        @Description("cached validations and groups")
+        public int getSize() {
+            return cache.size();
+        }
+
+        @ManagedAttribute
+        @Description("validations served from the cache")
+        public long getHits() {
+            return cache.getHits();
+        }
+
+        @ManagedAttribute
+        @Description("validations delegated to the identity stores")
+        public long getMisses() {
+            return cache.getMisses();
+        }
+
+        @ManagedAttribute
+        @Description("validation hit rate")
+        public double getHitRate() {
+            final long hits = cache.getHits();
+            final long total = hits + cache.getMisses();
+            return total == 0 ? 0 : hits / (double) total;
+        }
+
+        @ManagedAttribute
+        @Description("caller groups served from the cache")
+        public long getGroupHits() {
+            return cache.getGroupHits();
+        }
+
+        @ManagedAttribute
+        @Description("caller groups requested to the identity stores")
+        public long getGroupMisses() {
+            return cache.getGroupMisses();
+        }
+
+        @ManagedOperation
+        @Description("forget the validations and groups of a caller")
+        public void invalidate(final String caller) {
+            cache.invalidate(caller);
+        }
+
+        @ManagedOperation
+        @Description("forget all the validations and groups")
+        public void invalidateAll() {
+            cache.invalidateAll();
+        }
+    }
+}
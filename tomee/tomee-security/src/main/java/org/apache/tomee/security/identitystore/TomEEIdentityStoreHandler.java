@@ -16,18 +16,28 @@
  */
 package org.apache.tomee.security.identitystore;
 
+import org.apache.openejb.AppContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.AppFinder;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import javax.management.ObjectName;
 import javax.security.enterprise.credential.Credential;
 import javax.security.enterprise.identitystore.CredentialValidationResult;
 import javax.security.enterprise.identitystore.IdentityStore;
 import javax.security.enterprise.identitystore.IdentityStoreHandler;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -39,11 +49,19 @@ import static javax.security.enterprise.identitystore.IdentityStore.ValidationTy
 
 @ApplicationScoped
 public class TomEEIdentityStoreHandler implements IdentityStoreHandler {
+    // opt-in, durations in ms
+    public static final String CACHE_TTL = "tomee.security.identity-store.cache.ttl";
+    public static final String CACHE_GROUPS_TTL = "tomee.security.identity-store.cache.groups-ttl";
+    public static final String CACHE_SIZE = "tomee.security.identity-store.cache.size";
+
     @Inject
     private Instance<IdentityStore> identityStores;
 
     private List<IdentityStore> authenticationStores;
     private List<IdentityStore> authorizationStores;
+    private final Map<IdentityStore, String> storeIds = new IdentityHashMap<>();
+    private IdentityStoreCache cache;
+    private ObjectName cacheObjectName;
 
     @PostConstruct
     private void init() {
@@ -59,6 +77,51 @@ public class TomEEIdentityStoreHandler implements IdentityStoreHandler {
                               .filter(i -> !i.validationTypes().contains(VALIDATE))
                               .sorted(Comparator.comparing(IdentityStore::priority))
                               .collect(Collectors.toList());
+
+        final long ttl = SystemInstance.get().getOptions().get(CACHE_TTL, 0L);
+        final long groupsTtl = SystemInstance.get().getOptions().get(CACHE_GROUPS_TTL, ttl);
+        if (ttl > 0 || groupsTtl > 0) {
+            for (final IdentityStore store : authenticationStores) {
+                storeIds.put(store, Integer.toString(storeIds.size()));
+            }
+            for (final IdentityStore store : authorizationStores) {
+                storeIds.put(store, Integer.toString(storeIds.size()));
+            }
+            cache = new IdentityStoreCache(ttl, groupsTtl, SystemInstance.get().getOptions().get(CACHE_SIZE, 1000));
+
+            final AppContext appContext = AppFinder.findAppContextOrWeb(
+                    Thread.currentThread().getContextClassLoader(), AppFinder.AppContextTransformer.INSTANCE);
+            cacheObjectName = new ObjectNameBuilder("openejb.management")
+                    .set("J2EEServer", "openejb")
+                    .set("J2EEApplication", appContext != null ? appContext.getId() : null)
+                    .set("j2eeType", "IdentityStoreCache")
+                    .set("name", "IdentityStoreHandler")
+                    .build();
+            LocalMBeanServer.registerDynamicWrapperSilently(new IdentityStoreCache.JMXIdentityStoreCache(cache), cacheObjectName);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (cacheObjectName != null) {
+            LocalMBeanServer.unregisterSilently(cacheObjectName);
+        }
+    }
+
+    /**
+     * Forgets the cached validations and groups of a caller (password or groups changed),
+     * no-op if the cache is not enabled.
+     */
+    public void invalidate(final String caller) {
+        if (cache != null) {
+            cache.invalidate(caller);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
     }
 
     @Override
@@ -67,9 +130,16 @@ public class TomEEIdentityStoreHandler implements IdentityStoreHandler {
             return NOT_VALIDATED_RESULT;
         }
 
+        if (cache != null) {
+            final CredentialValidationResult cached = cache.getResult(credential);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         CredentialValidationResult validationResult = null;
         IdentityStore authorizedStore = null;
-        for (final IdentityStore identityStore : identityStores) {
+        for (final IdentityStore identityStore : authenticationStores) {
             validationResult = identityStore.validate(credential);
             if (validationResult.getStatus().equals(VALID)) {
                 authorizedStore = identityStore;
@@ -83,21 +153,35 @@ public class TomEEIdentityStoreHandler implements IdentityStoreHandler {
 
         final Set<String> groups = new HashSet<>();
         if (authorizedStore.validationTypes().contains(PROVIDE_GROUPS)) {
-            groups.addAll(authorizedStore.getCallerGroups(validationResult));
+            groups.addAll(getCallerGroups(authorizedStore, validationResult));
+        }
+        for (final IdentityStore authorizationStore : authorizationStores) {
+            groups.addAll(getCallerGroups(authorizationStore, validationResult));
         }
 
-        final CredentialValidationResult authorizedValidationResult = validationResult;
-        final Set<String> additionalGroups =
-                authorizationStores.stream()
-                                   .map(as -> as.getCallerGroups(authorizedValidationResult))
-                                   .flatMap(Collection::stream)
-                                   .collect(Collectors.toSet());
-        groups.addAll(additionalGroups);
-
-        return new CredentialValidationResult(authorizedValidationResult.getIdentityStoreId(),
-                                              authorizedValidationResult.getCallerPrincipal(),
-                                              authorizedValidationResult.getCallerDn(),
-                                              authorizedValidationResult.getCallerUniqueId(),
-                                              groups);
+        final CredentialValidationResult result = new CredentialValidationResult(validationResult.getIdentityStoreId(),
+                                                                                validationResult.getCallerPrincipal(),
+                                                                                validationResult.getCallerDn(),
+                                                                                validationResult.getCallerUniqueId(),
+                                                                                groups);
+        if (cache != null) {
+            cache.putResult(credential, result);
+        }
+        return result;
+    }
+
+    private Set<String> getCallerGroups(final IdentityStore store, final CredentialValidationResult validationResult) {
+        if (cache == null) {
+            return store.getCallerGroups(validationResult);
+        }
+
+        final String storeId = storeIds.get(store);
+        final Set<String> cached = cache.getGroups(storeId, validationResult);
+        if (cached != null) {
+            return cached;
+        }
+        final Set<String> groups = Collections.unmodifiableSet(new HashSet<>(store.getCallerGroups(validationResult)));
+        cache.putGroups(storeId, validationResult, groups);
+        return groups;
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.security.identitystore;
+
+import org.junit.Test;
+
+import javax.security.enterprise.credential.CallerOnlyCredential;
+import javax.security.enterprise.credential.UsernamePasswordCredential;
+import javax.security.enterprise.identitystore.CredentialValidationResult;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityStoreCacheTest {
+    @Test
+    public void validations() throws InterruptedException {
+        final IdentityStoreCache cache = new IdentityStoreCache(200, 0, 10);
+        final CredentialValidationResult result = new CredentialValidationResult("tomcat", Collections.singleton("admin"));
+
+        assertNull(cache.getResult(new UsernamePasswordCredential("tomcat", "tomcat")));
+        cache.putResult(new UsernamePasswordCredential("tomcat", "tomcat"), result);
+        assertSame(result, cache.getResult(new UsernamePasswordCredential("tomcat", "tomcat")));
+        assertNull(cache.getResult(new UsernamePasswordCredential("tomcat", "wrong")));
+        assertNull(cache.getResult(new UsernamePasswordCredential("tomcat2", "tomcat")));
+
+        cache.putResult(new CallerOnlyCredential("tomcat"), result);
+        assertNull(cache.getResult(new CallerOnlyCredential("tomcat"))); // not cacheable
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        Thread.sleep(300);
+        assertNull(cache.getResult(new UsernamePasswordCredential("tomcat", "tomcat")));
+    }
+
+    @Test
+    public void groupsAndInvalidation() {
+        final IdentityStoreCache cache = new IdentityStoreCache(60000, 60000, 10);
+        final CredentialValidationResult tomcat = new CredentialValidationResult("tomcat");
+        final CredentialValidationResult user = new CredentialValidationResult("user");
+        final Set<String> groups = Collections.singleton("admin");
+
+        cache.putResult(new UsernamePasswordCredential("tomcat", "tomcat"), tomcat);
+        cache.putGroups("0", tomcat, groups);
+        cache.putGroups("0", user, Collections.singleton("user"));
+        assertSame(groups, cache.getGroups("0", new CredentialValidationResult("tomcat")));
+        assertNull(cache.getGroups("1", tomcat));
+
+        cache.invalidate("tomcat");
+        assertNull(cache.getResult(new UsernamePasswordCredential("tomcat", "tomcat")));
+        assertNull(cache.getGroups("0", tomcat));
+        assertEquals(Collections.singleton("user"), cache.getGroups("0", user));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.ContainerInfo;
+import org.apache.openejb.assembler.classic.ProxyFactoryInfo;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.SingletonSessionContainerInfo;
+import org.apache.openejb.assembler.classic.StatefulSessionContainerInfo;
+import org.apache.openejb.assembler.classic.StatelessSessionContainerInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ivm.naming.InitContextFactory;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.EnterpriseBean;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.Properties;
+
+/**
+ * Boots a minimal embedded container (no scanning, no resources)
+ * with only the beans a benchmark needs.
+ */
+public final class Containers {
+
+    private Containers() {
+        // no-op
+    }
+
+    public static Context start(final Properties containerProperties, final EnterpriseBean... beans) throws Exception {
+        final ConfigurationFactory config = new ConfigurationFactory();
+        final Assembler assembler = new Assembler();
+
+        assembler.createProxyFactory(config.configureService(ProxyFactoryInfo.class));
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+
+        assembler.createContainer(configure(config.configureService(StatelessSessionContainerInfo.class), containerProperties));
+        assembler.createContainer(configure(config.configureService(SingletonSessionContainerInfo.class), containerProperties));
+        assembler.createContainer(configure(config.configureService(StatefulSessionContainerInfo.class), containerProperties));
+
+        final EjbJar ejbJar = new EjbJar();
+        for (final EnterpriseBean bean : beans) {
+            ejbJar.addEnterpriseBean(bean);
+        }
+        assembler.createApplication(config.configureApplication(ejbJar));
+
+        final Properties properties = new Properties();
+        properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, InitContextFactory.class.getName());
+        return new InitialContext(properties);
+    }
+
+    public static void stop(final Context context) throws NamingException {
+        if (context != null) {
+            context.close();
+        }
+        OpenEJB.destroy();
+    }
+
+    private static <T extends ContainerInfo> T configure(final T info, final Properties containerProperties) {
+        if (containerProperties != null) {
+            info.properties.putAll(containerProperties);
+        }
+        return info;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import javax.annotation.security.PermitAll;
+import javax.ejb.LocalBean;
+import javax.ejb.TransactionAttribute;
+import javax.interceptor.Interceptors;
+
+import static javax.ejb.TransactionAttributeType.REQUIRED;
+import static javax.ejb.TransactionAttributeType.SUPPORTS;
+
+/**
+ * Bean used by the stateless and stateful benchmarks,
+ * methods only differ by the metadata the container has to honor.
+ */
+@LocalBean
+@PermitAll
+public class InvocationBean {
+
+    @TransactionAttribute(REQUIRED)
+    public int required(final int value) {
+        return value + 1;
+    }
+
+    @TransactionAttribute(SUPPORTS)
+    public int supports(final int value) {
+        return value + 1;
+    }
+
+    @TransactionAttribute(SUPPORTS)
+    @Interceptors({PassThroughInterceptor.class, OtherPassThroughInterceptor.class})
+    public int intercepted(final int value) {
+        return value + 1;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.apache.openejb.util.Pool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw pop/push of the instance pool backing stateless and MDB containers,
+ * run it with several threads (-t) to see the contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+
+    @Param({"linked", "striped"})
+    private String implementation;
+
+    @Param({"64"})
+    private int size;
+
+    private Pool<Object> pool;
+
+    @Setup
+    public void setup() {
+        final Pool.Builder<Object> builder = new Pool.Builder<>();
+        builder.setMaxSize(size);
+        builder.setMinSize(size / 2);
+        builder.setPoolImplementation(implementation);
+        pool = builder.build();
+        for (int i = 0; i < size; i++) {
+            pool.add(new Object());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        pool.close(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Object popPush() throws Exception {
+        final Pool<Object>.Entry entry = pool.pop(1, TimeUnit.MINUTES);
+        if (entry == null) {
+            final Object instance = new Object();
+            pool.push(instance);
+            return instance;
+        }
+        final Object instance = entry.get();
+        pool.push(entry);
+        return instance;
+    }
+}
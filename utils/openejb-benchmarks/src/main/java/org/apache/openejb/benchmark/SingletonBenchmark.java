@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.apache.openejb.jee.SingletonBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.Context;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Container managed concurrency of singletons, READ alone
+ * and READ mixed with some WRITE calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingletonBenchmark {
+
+    private Context context;
+    private ConfigurationBean bean;
+
+    @Setup
+    public void setup() throws Exception {
+        context = Containers.start(null, new SingletonBean(ConfigurationBean.class));
+        bean = (ConfigurationBean) context.lookup("ConfigurationBeanLocalBean");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Containers.stop(context);
+    }
+
+    @Benchmark
+    public int read() {
+        return bean.read();
+    }
+
+    @Benchmark
+    public int write() {
+        return bean.write();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public int mixedRead() {
+        return bean.read();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int mixedWrite() {
+        return bean.write();
+    }
+}
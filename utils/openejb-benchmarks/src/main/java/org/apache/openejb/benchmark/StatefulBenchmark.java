@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.apache.openejb.jee.StatefulBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.Context;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stateful invocations, each call checks the instance out of
+ * and back into the container cache.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatefulBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Container {
+        private Context context;
+
+        @Setup
+        public void setup() throws Exception {
+            context = Containers.start(null, new StatefulBean(InvocationBean.class));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            Containers.stop(context);
+        }
+    }
+
+    /**
+     * One conversation per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Conversation {
+        private InvocationBean bean;
+        private int value;
+
+        @Setup
+        public void setup(final Container container) throws Exception {
+            bean = (InvocationBean) container.context.lookup("InvocationBeanLocalBean");
+        }
+    }
+
+    @Benchmark
+    public int txRequired(final Conversation conversation) {
+        return conversation.bean.required(conversation.value++);
+    }
+
+    @Benchmark
+    public int txSupports(final Conversation conversation) {
+        return conversation.bean.supports(conversation.value++);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.apache.openejb.jee.StatelessBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.Context;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stateless invocation: proxy handler, StatelessContainer, instance pool,
+ * interceptor stack, transaction policy and authorization check.
+ *
+ * Throughput and sampled latency (percentiles) are reported,
+ * allocations per call come from the GC profiler (see {@link Benchmarks}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatelessBenchmark {
+
+    @Param({"linked", "striped"})
+    private String poolImplementation;
+
+    private Context context;
+    private InvocationBean bean;
+
+    /**
+     * The argument of each benchmark thread, a shared counter would be contended.
+     */
+    @State(Scope.Thread)
+    public static class Argument {
+        private int value;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("PoolImplementation", poolImplementation);
+        properties.setProperty("MaxSize", "64");
+        properties.setProperty("MinSize", "8");
+
+        context = Containers.start(properties, new StatelessBean(InvocationBean.class));
+        bean = (InvocationBean) context.lookup("InvocationBeanLocalBean");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Containers.stop(context);
+    }
+
+    @Benchmark
+    public int txRequired(final Argument argument) {
+        return bean.required(argument.value++);
+    }
+
+    @Benchmark
+    public int txSupports(final Argument argument) {
+        return bean.supports(argument.value++);
+    }
+
+    @Benchmark
+    public int intercepted(final Argument argument) {
+        return bean.intercepted(argument.value++);
+    }
+}